@@ -0,0 +1,104 @@
+package engine;
+
+import org.joml.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Память, занимаемая блоками: прежнее представление (HashMap координата - Block с Vector3i, int[6] id сторон
+ * и boolean[6] прорисовки сторон) и секции World (номер типа и маска сторон в примитивных массивах).
+ * Счётчик bytesPerBlock - прирост занятой кучи после сборки мусора, делённый на количество блоков.
+ * JMH суммирует счётчики событий по итерациям, поэтому замер выполняется одной итерацией в одном форке
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(1)
+public class BlockMemoryBenchmark {
+    /**
+     * Прежнее представление блока
+     */
+    static class LegacyBlock {
+        final Vector3i cord;
+        final int id;
+        final int[] sideIds;
+        final boolean[] sideRender;
+
+        LegacyBlock(Vector3i cord, int id, int[] sideIds) {
+            this.cord = cord;
+            this.id = id;
+            this.sideIds = sideIds;
+            this.sideRender = new boolean[]{true, true, true, true, true, true};
+        }
+    }
+
+    /**
+     * Результат замера
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerBlock;
+    }
+
+    /**
+     * Сторона квадратного слоя, блоков в мире - SIDE * SIDE * layers
+     */
+    private static final int SIDE = 100;
+
+    /**
+     * Количество блоков
+     */
+    @Param({"1000000"})
+    public int blocks;
+
+    /**
+     * @return занятая куча после сборки мусора, байт
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public int legacy(Footprint footprint) {
+        final long before = usedHeap();
+        final Map<Vector3i, LegacyBlock> map = new HashMap<>();
+        for (int y = 0; y < blocks / (SIDE * SIDE); y++) {
+            for (int z = 0; z < SIDE; z++) {
+                for (int x = 0; x < SIDE; x++) {
+                    final int sideId = 16 + (x + y + z) % 4;
+                    final LegacyBlock block = new LegacyBlock(new Vector3i(x, y, z), 0, new int[]{sideId, sideId, sideId, sideId, sideId, sideId});
+                    map.put(block.cord, block);
+                }
+            }
+        }
+        footprint.bytesPerBlock = (double) (usedHeap() - before) / map.size();
+        return map.size();
+    }
+
+    @Benchmark
+    public int world(Footprint footprint) {
+        final long before = usedHeap();
+        final World world = new World();
+        final int[] sideIds = new int[6];
+        for (int y = 0; y < blocks / (SIDE * SIDE); y++) {
+            for (int z = 0; z < SIDE; z++) {
+                for (int x = 0; x < SIDE; x++) {
+                    final int sideId = 16 + (x + y + z) % 4;
+                    for (int side = 0; side < 6; side++) sideIds[side] = sideId;
+                    world.set(x, y, z, 0, sideIds);
+                }
+            }
+        }
+        world.sweepFaces(world.chunkKeys());
+        footprint.bytesPerBlock = (double) (usedHeap() - before) / world.size();
+        return world.size();
+    }
+}
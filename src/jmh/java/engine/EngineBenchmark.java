@@ -0,0 +1,129 @@
+package engine;
+
+import controller.RTController;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции движка без окна на мирах разного размера: трассировка луча камеры, прежний поиск ближайших блоков,
+ * обновление сторон вокруг блока, постановка и удаление блока, сохранение и загрузка StateFile.
+ * Мир - плита 100x100 блоков толщиной blocks / 10000 под моделью, стороны считаются один раз при подготовке
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+    /**
+     * Сторона плиты в блоках
+     */
+    private static final int SIDE = 100;
+
+    /**
+     * Количество блоков мира
+     */
+    @Param({"10000", "1000000", "10000000"})
+    public int blocks;
+
+    private EngineRuntime runtime;
+    private Path directory;
+    private Path state;
+    private final Vector3i inside = new Vector3i(10, 5, 10);
+    private final Vector3i above = new Vector3i(10, 6, 10);
+    private final int[] sideIds = {17, 17, 17, 17, 17, 17};
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final HeadlessOrientation orientation = new HeadlessOrientation();
+        orientation.set(1.0f, -1.0f, 0.3f);
+        runtime = new EngineRuntime(new RTController(), new World(), orientation);
+        final int layers = blocks / (SIDE * SIDE);
+        for (int y = 5; y > 5 - layers; y--) {
+            for (int z = -SIDE / 2; z < SIDE / 2; z++) {
+                for (int x = -SIDE / 2; x < SIDE / 2; x++) runtime.blocks.set(x, y, z, 0, sideIds);
+            }
+        }
+        runtime.blocks.sweepFaces(runtime.blocks.chunkKeys());
+        runtime.commitRenderSnapshot();
+        directory = Files.createTempDirectory("engine-benchmark");
+        state = directory.resolve("state");
+        StateFile.save(runtime.blocks, state);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("saved"));
+        Files.deleteIfExists(state);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void rayTrace() {
+        runtime.rayTrace();
+    }
+
+    @Benchmark
+    public Set<Vector3i> getNearest() {
+        return getNearest(5);
+    }
+
+    /**
+     * Прежний поиск ближайших блоков EngineRuntime: множество координат существующих блоков
+     * с разницей в координате с моделью <= delta
+     *
+     * @param delta максимальная разница в координате
+     * @return множество координат существующих ближайших блоков
+     */
+    private Set<Vector3i> getNearest(int delta) {
+        final Set<Vector3i> vector3is = new LinkedHashSet<>();
+        final Vector3f pos = runtime.getModel().getPosition();
+        final Vector3i modelInt = EngineRuntime.getVector3i(pos).add(-delta, -delta, -delta);
+        final int delta2 = delta * 2;
+        for (int dx = 0; dx <= delta2; dx++) {
+            for (int dy = 0; dy <= delta2; dy++) {
+                for (int dz = 0; dz <= delta2; dz++) {
+                    Vector3i checkedVector3i = new Vector3i(modelInt).add(dx, dy, dz);
+                    if (runtime.checkCord(checkedVector3i)) {
+                        vector3is.add(checkedVector3i);
+                    }
+                }
+            }
+        }
+        return vector3is;
+    }
+
+    @Benchmark
+    public void updateBlockSpace() {
+        runtime.updateBlockSpace(inside);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void placeRemove() {
+        runtime.createBlock(above, 1, sideIds);
+        runtime.removeBlock(above);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        StateFile.save(runtime.blocks.snapshot(), directory.resolve("saved"));
+    }
+
+    @Benchmark
+    public World load() throws IOException {
+        final World loaded = new World();
+        StateFile.load(state, loaded);
+        loaded.sweepFaces(loaded.chunkKeys());
+        return loaded;
+    }
+}
@@ -0,0 +1,97 @@
+package engine;
+
+import controller.Settings;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение трассировки луча камеры: прежний проход шагами 1/RAY_PRECISION и обход сетки VoxelRay.
+ * Запускается через gradle jmh, профилировщик gc показывает объём выделяемой памяти на операцию
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RayTraceBenchmark {
+    /**
+     * Количество лучей в наборе
+     */
+    private static final int RAYS = 256;
+    /**
+     * Количество шагов прежнего прохода на единицу длины луча
+     */
+    private static final float RAY_PRECISION = 100f;
+
+    private World world;
+    private float[] rays;
+    private RayHit hit;
+
+    @Setup
+    public void setup() {
+        world = new World();
+        final int[] sideIds = {17, 17, 17, 17, 17, 17};
+        for (int x = -64; x < 64; x++) {
+            for (int z = -64; z < 64; z++) {
+                world.set(x, 0, z, 0, sideIds);
+                if (((x * 31 + z * 17) & 63) == 0) {
+                    for (int y = 1; y < 6; y++) world.set(x, y, z, 0, sideIds);
+                }
+            }
+        }
+        final Random random = new Random(42);
+        rays = new float[RAYS * 6];
+        for (int i = 0; i < RAYS; i++) {
+            rays[i * 6] = random.nextFloat() * 40 - 20;
+            rays[i * 6 + 1] = 2.5f + random.nextFloat() * 3;
+            rays[i * 6 + 2] = random.nextFloat() * 40 - 20;
+            final Vector3f direction = new Vector3f(random.nextFloat() * 2 - 1, -random.nextFloat() * 0.3f, random.nextFloat() * 2 - 1).normalize();
+            rays[i * 6 + 3] = direction.x;
+            rays[i * 6 + 4] = direction.y;
+            rays[i * 6 + 5] = direction.z;
+        }
+        hit = new RayHit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int voxelRay() {
+        int hits = 0;
+        for (int i = 0; i < rays.length; i += 6) {
+            if (VoxelRay.trace(world, rays[i], rays[i + 1], rays[i + 2], rays[i + 3], rays[i + 4], rays[i + 5], Settings.rayDistance, hit))
+                hits++;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int fixedStep() {
+        int hits = 0;
+        for (int i = 0; i < rays.length; i += 6) {
+            if (fixedStep(rays[i], rays[i + 1], rays[i + 2], rays[i + 3], rays[i + 4], rays[i + 5]) != null) hits++;
+        }
+        return hits;
+    }
+
+    /**
+     * Прежняя реализация EngineRuntime.rayTrace(): проход лучом с шагом 1/RAY_PRECISION
+     *
+     * @return координата первого блока на пути луча или null
+     */
+    private Vector3i fixedStep(float x, float y, float z, float dx, float dy, float dz) {
+        final Vector3f pos = new Vector3f(x, y, z);
+        final Vector3f dir = new Vector3f(dx, dy, dz).div(RAY_PRECISION);
+        for (int i = 0; i < Settings.rayDistance * RAY_PRECISION; i++) {
+            pos.add(dir);
+            final Vector3i posI = EngineRuntime.getVector3i(pos);
+            if (world.isSolid(posI.x, posI.y, posI.z)) return posI;
+        }
+        return null;
+    }
+}
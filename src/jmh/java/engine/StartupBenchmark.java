@@ -0,0 +1,36 @@
+package engine;
+
+import controller.RTController;
+import org.joml.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время до первого такта движка без окна: генерация мира, создание движка и первый такт.
+ * Каждая итерация - отдельный холодный запуск, поэтому режим однократного замера;
+ * несколько форков показывают разброс с учётом загрузки классов
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+@Fork(3)
+public class StartupBenchmark {
+
+    /**
+     * Половина стороны начального слоя блоков
+     */
+    @Param({"25", "100"})
+    public int delta;
+
+    @Benchmark
+    public EngineRuntime timeToFirstTick() {
+        RTController controller = new RTController();
+        EngineRuntime runtime = new EngineRuntime(controller, EngineRuntime.generateBlockLayer(new Vector3i(0, 5, 0), delta), new HeadlessOrientation());
+        controller.hookEngineRuntime(runtime);
+        runtime.tick();
+        return runtime;
+    }
+}
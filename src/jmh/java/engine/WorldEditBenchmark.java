@@ -0,0 +1,61 @@
+package engine;
+
+import controller.RTController;
+import org.joml.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заполнение и очистка области мира: поблочно через createBlock/removeBlock движка
+ * с обновлением соседей каждого блока и одной правкой WorldEdit с общим пересчётом сторон
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldEditBenchmark {
+    /**
+     * Сторона квадратной области в блоках, высота области - 16 блоков
+     */
+    @Param({"32", "128"})
+    public int side;
+
+    private EngineRuntime runtime;
+    private final int[] sideIds = {17, 17, 17, 17, 17, 17};
+    private final Vector3i cord = new Vector3i();
+    private Vector3i from, to;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runtime = new EngineRuntime(new RTController(), new World(), new HeadlessOrientation());
+        from = new Vector3i(0, -16, 0);
+        to = new Vector3i(side - 1, -1, side - 1);
+    }
+
+    @Benchmark
+    public int perBlock() {
+        for (int y = from.y; y <= to.y; y++) {
+            for (int z = from.z; z <= to.z; z++) {
+                for (int x = from.x; x <= to.x; x++) runtime.createBlock(cord.set(x, y, z), 1, sideIds);
+            }
+        }
+        final int size = runtime.blocks.size();
+        for (int y = from.y; y <= to.y; y++) {
+            for (int z = from.z; z <= to.z; z++) {
+                for (int x = from.x; x <= to.x; x++) runtime.removeBlock(cord.set(x, y, z));
+            }
+        }
+        return size;
+    }
+
+    @Benchmark
+    public int bulk() {
+        new WorldEdit().fill(from, to, 1, sideIds).apply(runtime.blocks);
+        final int size = runtime.blocks.size();
+        new WorldEdit().clear(from, to).apply(runtime.blocks);
+        return size;
+    }
+}
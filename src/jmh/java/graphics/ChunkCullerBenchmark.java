@@ -0,0 +1,51 @@
+package graphics;
+
+import engine.World;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер отсечения секций по пирамиде видимости и построения команд непрямой отрисовки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkCullerBenchmark {
+
+    /**
+     * Количество секций: слой 8 секций в высоту и квадрат по горизонтали
+     */
+    @Param({"100000"})
+    public int chunks;
+
+    private ChunkCuller culler;
+    private Matrix4f viewProjection;
+
+    @Setup
+    public void setup() {
+        culler = new ChunkCuller();
+        final int side = (int) Math.ceil(Math.sqrt(chunks / 8.0));
+        int count = 0;
+        for (int x = 0; x < side && count < chunks; x++) {
+            for (int z = 0; z < side && count < chunks; z++) {
+                for (int y = 0; y < 8 && count < chunks; y++) {
+                    culler.set(World.key(x - side / 2, y - 4, z - side / 2), count * 36, 36);
+                    count++;
+                }
+            }
+        }
+        viewProjection = new Matrix4f().perspective((float) Math.toRadians(45), 16f / 9f, 0.1f, 10000f)
+                .lookAt(new Vector3f(0, 8, 0), new Vector3f(1, 7.5f, -1), new Vector3f(0, 1, 0));
+    }
+
+    @Benchmark
+    public int cull() {
+        return culler.cull(viewProjection, 0, 0);
+    }
+}
@@ -0,0 +1,68 @@
+package graphics;
+
+import controller.RTController;
+import engine.BlockStore;
+import engine.EngineRuntime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер построения геометрии всех секций мира в пуле рабочих потоков: постановка всех секций и приём результатов.
+ * Масштабирование по числу потоков ограничено количеством ядер машины
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkMeshingBenchmark {
+
+    /**
+     * Количество рабочих потоков
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * Размер стороны местности в блоках
+     */
+    @Param({"128"})
+    public int size;
+
+    private MeshingPool pool;
+    private BlockStore blocks;
+    private long[] keys;
+    private int indices;
+
+    @Setup
+    public void setup() {
+        RTController controller = new RTController();
+        controller.hookGraphicsDisplay(new GraphicsDisplay(controller, 1920, 1080, "Benchmark"));
+        EngineRuntime runtime = new EngineRuntime(controller, DataTransformationBenchmark.generateTerrain(size));
+        controller.hookEngineRuntime(runtime);
+        blocks = runtime.blocks.snapshot();
+        keys = new long[blocks.size()];
+        final int[] count = {0};
+        blocks.forEachChunk(key -> keys[count[0]++] = key);
+        keys = Arrays.copyOf(keys, count[0]);
+        pool = new MeshingPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int meshAllChunks() {
+        for (int i = 0; i < keys.length; i++) pool.submit(keys[i], 0, blocks, i);
+        indices = 0;
+        while (pool.pending() > 0) {
+            if (pool.drain(job -> indices += job.mesh().sizeI) == 0) Thread.onSpinWait();
+        }
+        return indices;
+    }
+}
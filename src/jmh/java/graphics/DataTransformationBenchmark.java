@@ -0,0 +1,68 @@
+package graphics;
+
+import controller.RTController;
+import engine.EngineRuntime;
+import engine.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер построения геометрии всех секций мира.
+ * Запускается через gradle jmh, профилировщик gc показывает объём выделяемой памяти на операцию
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataTransformationBenchmark {
+
+    /**
+     * Размер стороны местности в блоках
+     */
+    @Param({"128"})
+    public int size;
+
+    private DataTransformation dataTransformation;
+    private long[] keys;
+
+    @Setup
+    public void setup() {
+        RTController controller = new RTController();
+        controller.hookGraphicsDisplay(new GraphicsDisplay(controller, 1920, 1080, "Benchmark"));
+        EngineRuntime runtime = new EngineRuntime(controller, generateTerrain(size));
+        controller.hookEngineRuntime(runtime);
+        dataTransformation = new DataTransformation(controller);
+        keys = runtime.blocks.chunkKeys();
+    }
+
+    /**
+     * Холмистая местность с чередующимися id сторон, чтобы у блоков были видимые боковые стороны
+     *
+     * @param size размер стороны местности
+     * @return мир из блоков местности
+     */
+    static World generateTerrain(int size) {
+        final World blocks = new World();
+        final int[] sideIds = new int[6];
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                final int height = 7 + (int) (3 * Math.sin(x * 0.21) + 3 * Math.cos(z * 0.17));
+                for (int y = 0; y < height; y++) {
+                    Arrays.fill(sideIds, 16 + (x + y + z) % 4);
+                    blocks.set(x, y, z, 0, sideIds);
+                }
+            }
+        }
+        return blocks;
+    }
+
+    @Benchmark
+    public int rebuildAllChunks() {
+        for (long key : keys) dataTransformation.rebuildChunk(key);
+        return dataTransformation.indicesSize();
+    }
+}
@@ -1,17 +1,26 @@
 import controller.RTController;
+import controller.StartupProfile;
 import engine.EngineRuntime;
+import engine.World;
 import graphics.GraphicsDisplay;
 import org.joml.Vector3i;
 
 public class Main {
     public static void main(String[] args) {
         RTController runtimeController = new RTController();
+        StartupProfile profile = runtimeController.getStartupProfile();
 
         GraphicsDisplay graphicsDisplay = new GraphicsDisplay(runtimeController, 1920, 1080, "Setup");
         runtimeController.hookGraphicsDisplay(graphicsDisplay);
 
-        EngineRuntime runtime = new EngineRuntime(runtimeController, EngineRuntime.generateBlockLayer(new Vector3i(0, 5, 0), 25));
+        long begin = profile.begin();
+        World blocks = EngineRuntime.generateBlockLayer(new Vector3i(0, 5, 0), 25);
+        profile.end("world generation", begin);
+
+        begin = profile.begin();
+        EngineRuntime runtime = new EngineRuntime(runtimeController, blocks);
         runtimeController.hookEngineRuntime(runtime);
+        profile.end("engine init", begin);
 
 
         runtimeController.run();
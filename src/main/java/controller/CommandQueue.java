@@ -0,0 +1,116 @@
+package controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченная очередь команд без блокировок для одного писателя (поток отрисовки, опрос клавиатуры)
+ * и одного читателя (поток движка). Каждое событие хранит время его возникновения, по которому
+ * читатель измеряет задержку ввода. Очередь не выделяет память после создания
+ */
+public class CommandQueue {
+    /**
+     * Получатель событий очереди
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @param command   команда
+         * @param timestamp время возникновения события, нс (System.nanoTime())
+         * @return принято ли событие; при false событие остаётся в очереди и чтение прекращается
+         */
+        boolean accept(Commands command, long timestamp);
+    }
+
+    /**
+     * Команды событий по кругу
+     */
+    private final Commands[] commands;
+    /**
+     * Время событий по кругу, нс
+     */
+    private final long[] timestamps;
+    private final int mask;
+    /**
+     * Номер следующего читаемого события, пишется только читателем
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Номер следующего записываемого события, пишется только писателем
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Последнее известное писателю значение head, чтобы не читать общий счётчик на каждую запись
+     */
+    private long cachedHead;
+    /**
+     * Последнее известное читателю значение tail
+     */
+    private long cachedTail;
+
+    /**
+     * Конструктор
+     *
+     * @param capacity вместимость, округляется вверх до степени двойки
+     */
+    public CommandQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Вместимость очереди должна быть положительной");
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        commands = new Commands[size];
+        timestamps = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Добавление события, вызывается только писателем
+     *
+     * @param command   команда
+     * @param timestamp время возникновения события, нс
+     * @return false, если очередь заполнена и событие не добавлено
+     */
+    public boolean offer(Commands command, long timestamp) {
+        final long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) return false;
+        }
+        final int index = (int) t & mask;
+        commands[index] = command;
+        timestamps[index] = timestamp;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Чтение событий по порядку, вызывается только читателем
+     *
+     * @param sink получатель событий
+     * @return количество принятых событий
+     */
+    public int drain(Sink sink) {
+        long h = head.get();
+        if (h == cachedTail) cachedTail = tail.get();
+        final long start = h;
+        while (h != cachedTail) {
+            final int index = (int) h & mask;
+            if (!sink.accept(commands[index], timestamps[index])) break;
+            commands[index] = null;
+            h++;
+        }
+        head.lazySet(h);
+        return (int) (h - start);
+    }
+
+    /**
+     * @return приблизительное количество событий в очереди
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * @return вместимость очереди
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -3,8 +3,8 @@ package controller;
 import engine.EngineRuntime;
 import graphics.GraphicsDisplay;
 
-import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Set;
 
 import static org.lwjgl.glfw.GLFW.*;
@@ -26,40 +26,47 @@ public class RTController {
     private GraphicsDisplay graphicsDisplay;
 
     /**
-     * Множество команд
+     * Все команды по порядковым номерам, без копирования массива при каждом обращении к values()
      */
-    public Set<Commands> commandsSet;
+    private static final Commands[] COMMANDS = Commands.values();
 
     /**
-     * Данные для команд, которые требуют одиночного нажатия
+     * Очередь разовых команд (одиночные нажатия) для потока движка
      */
-    private HashMap<Commands, Boolean> commandsHashSet;
+    private final CommandQueue commandQueue = new CommandQueue(Settings.commandQueueCapacity);
+
+    /**
+     * Битовая маска удерживаемых команд (бит - порядковый номер команды), публикуется каждый кадр
+     */
+    private volatile long heldCommands;
+
+    /**
+     * Разовые команды, клавиши которых нажаты и ещё не отпущены
+     */
+    private final Set<Commands> lockedCommands = EnumSet.noneOf(Commands.class);
+
+    /**
+     * Удерживаемые клавиши, обрабатываемые через pressOnce()
+     */
+    private Set<Integer> heldKeys;
 
     /**
      * Индикатор выполнения программы
      */
     private boolean isRunning = true;
 
+    /**
+     * Замер этапов запуска
+     */
+    private final StartupProfile startupProfile = new StartupProfile();
+
     /**
      * Метод для запуска приложения
      */
     public void run() {
         if (engineRuntime == null) throw new RuntimeException("engineRuntime was null");
         if (graphicsDisplay == null) throw new RuntimeException("graphicsDisplay was null");
-        commandsSet = new LinkedHashSet<>();
-        commandsHashSet = new HashMap<>();
-        commandsHashSet.put(REMOVE, true);
-        commandsHashSet.put(ADD, true);
-        commandsHashSet.put(JUMP, true);
-        commandsHashSet.put(START_DEBUG, true);
-        commandsHashSet.put(END_DEBUG, true);
-        commandsHashSet.put(PLACE_LIGHT, true);
-        commandsHashSet.put(REMOVE_LIGHT, true);
-        commandsHashSet.put(CREATE_LEVEL, true);
-        commandsHashSet.put(ID0, true);
-        commandsHashSet.put(ID1, true);
-        commandsHashSet.put(ID2, true);
-        commandsHashSet.put(ID3, true);
+        heldKeys = new HashSet<>();
         Thread thread = new Thread(engineRuntime::run);
         thread.start();
         graphicsDisplay.run();
@@ -104,6 +111,13 @@ public class RTController {
         return graphicsDisplay;
     }
 
+    /**
+     * @return замер этапов запуска
+     */
+    public StartupProfile getStartupProfile() {
+        return startupProfile;
+    }
+
     /**
      * Индикатор выполнения приложения
      *
@@ -121,46 +135,70 @@ public class RTController {
     }
 
     /**
-     * Метод для блокировки ключа комманды
-     *
-     * @param command комманда
+     * @return очередь разовых команд, читается только потоком движка
      */
-    private void lockKey(Commands command) {
-        commandsHashSet.put(command, false);
+    public CommandQueue getCommandQueue() {
+        return commandQueue;
     }
 
     /**
-     * Метод для разблокировки ключа комманды
+     * Запись удерживаемых в последнем кадре команд в множество
      *
-     * @param command комманда
+     * @param dest множество для записи, предварительно не очищается
+     * @return dest
      */
-    private void unlockKey(Commands command) {
-        commandsHashSet.put(command, true);
+    public Set<Commands> getHeldCommands(Set<Commands> dest) {
+        final long held = heldCommands;
+        for (int ordinal = 0; ordinal < COMMANDS.length; ordinal++) {
+            if ((held >> ordinal & 1) != 0) dest.add(COMMANDS[ordinal]);
+        }
+        return dest;
     }
 
     /**
-     * Метод для получения значения ключа для данной комманды
+     * Замена удерживаемых команд без окна, например сценарием команд движка без графики
      *
-     * @param command комманда
-     * @return ключ комманды
+     * @param commands удерживаемые команды
      */
-    private boolean getKeyValue(Commands command) {
-        return commandsHashSet.get(command);
+    public void setHeldCommands(Set<Commands> commands) {
+        long held = 0;
+        for (Commands command : commands) held |= bit(command);
+        heldCommands = held;
     }
 
     /**
-     * Метод для обработки комманд с единичным значением
+     * Метод для обработки комманд с единичным значением: команда ставится в очередь один раз за нажатие.
+     * Если очередь заполнена, клавиша не блокируется и команда ставится в очередь в следующем кадре
      *
      * @param window  идентификатор окна
      * @param command комманда
      * @param key     ключ
      */
     private void keyHandler(long window, Commands command, int key) {
-        if (getKeyValue(command) && glfwGetKey(window, key) == GLFW_PRESS) {
-            commandsSet.add(command);
-            lockKey(command);
-        }
-        if (!getKeyValue(command) && glfwGetKey(window, key) == GLFW_RELEASE) unlockKey(command);
+        if (glfwGetKey(window, key) != GLFW_PRESS) lockedCommands.remove(command);
+        else if (!lockedCommands.contains(command) && commandQueue.offer(command, System.nanoTime()))
+            lockedCommands.add(command);
+    }
+
+    /**
+     * @param command команда
+     * @return бит команды в маске удерживаемых команд
+     */
+    private static long bit(Commands command) {
+        return 1L << command.ordinal();
+    }
+
+    /**
+     * Проверка нажатия клавиши, срабатывающая один раз до её отпускания
+     *
+     * @param window идентификатор окна
+     * @param key    ключ
+     * @return была ли клавиша нажата с момента прошлого отпускания
+     */
+    private boolean pressOnce(long window, int key) {
+        if (glfwGetKey(window, key) == GLFW_PRESS) return heldKeys.add(key);
+        heldKeys.remove(key);
+        return false;
     }
 
     /**
@@ -169,27 +207,28 @@ public class RTController {
      * @param window идентификатор окна
      */
     public void Input(long window) {
-        commandsSet = new LinkedHashSet<>();
+        long held = 0;
 
         if (glfwGetKey(window, GLFW_KEY_Q) == GLFW_PRESS) {
             glfwSetWindowShouldClose(window, true);
             toClose();
         }
 
-        if (glfwGetKey(window, GLFW_KEY_Z) == GLFW_PRESS) engineRuntime.saveState("state1");
-        if (glfwGetKey(window, GLFW_KEY_X) == GLFW_PRESS) engineRuntime.loadState("state1");
+        if (pressOnce(window, GLFW_KEY_Z)) engineRuntime.saveState("state1");
+        if (pressOnce(window, GLFW_KEY_X)) engineRuntime.loadState("state1");
 
-        if (glfwGetKey(window, GLFW_KEY_C) == GLFW_PRESS) engineRuntime.saveState("state2");
-        if (glfwGetKey(window, GLFW_KEY_V) == GLFW_PRESS) engineRuntime.loadState("state2");
+        if (pressOnce(window, GLFW_KEY_C)) engineRuntime.saveState("state2");
+        if (pressOnce(window, GLFW_KEY_V)) engineRuntime.loadState("state2");
 
-        if (glfwGetKey(window, GLFW_KEY_LEFT_SHIFT) == GLFW_PRESS) commandsSet.add(SPEED_1);
-        if (glfwGetKey(window, GLFW_KEY_LEFT_SHIFT) == GLFW_RELEASE) commandsSet.add(SPEED_01);
-        if (glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) commandsSet.add(SPEED_0025);
+        if (glfwGetKey(window, GLFW_KEY_LEFT_SHIFT) == GLFW_PRESS) held |= bit(SPEED_1);
+        if (glfwGetKey(window, GLFW_KEY_LEFT_SHIFT) == GLFW_RELEASE) held |= bit(SPEED_01);
+        if (glfwGetKey(window, GLFW_KEY_LEFT_CONTROL) == GLFW_PRESS) held |= bit(SPEED_0025);
 
-        if (glfwGetKey(window, GLFW_KEY_W) == GLFW_PRESS) commandsSet.add(FORWARD);
-        if (glfwGetKey(window, GLFW_KEY_S) == GLFW_PRESS) commandsSet.add(BACKWARD);
-        if (glfwGetKey(window, GLFW_KEY_A) == GLFW_PRESS) commandsSet.add(LEFT);
-        if (glfwGetKey(window, GLFW_KEY_D) == GLFW_PRESS) commandsSet.add(RIGHT);
+        if (glfwGetKey(window, GLFW_KEY_W) == GLFW_PRESS) held |= bit(FORWARD);
+        if (glfwGetKey(window, GLFW_KEY_S) == GLFW_PRESS) held |= bit(BACKWARD);
+        if (glfwGetKey(window, GLFW_KEY_A) == GLFW_PRESS) held |= bit(LEFT);
+        if (glfwGetKey(window, GLFW_KEY_D) == GLFW_PRESS) held |= bit(RIGHT);
+        heldCommands = held;
 
         if (glfwGetKey(window, GLFW_KEY_EQUAL) == GLFW_PRESS) graphicsDisplay.increaseAmbLight();
         if (glfwGetKey(window, GLFW_KEY_MINUS) == GLFW_PRESS) graphicsDisplay.decreaseAmbLight();
@@ -4,19 +4,112 @@ package controller;
  * Настройки для движка и программы в целом
  */
 public class Settings {
-    public static final int translationSize = 20000000;
-
     public static final String textureName = "texturePack.png";
-    public static final int textureWidth = 4096;
-    public static final int textureHeight = 4096;
+    public static final String specularMapName = "texturePackSpecularMap.png";
+    /**
+     * Количество тайлов по каждой стороне карты текстур
+     */
+    public static final int atlasTiles = 16;
+    /**
+     * Каталог кеша разрезанных карт текстур с готовыми уровнями детализации
+     */
+    public static final String textureCacheDirectory = "cache";
 
     public static final float blockSize = 1.0f;
 
-    public static final float rayPrecision = 100f;
     public static final int rayDistance = 100;
 
     public static final float fovDeg = 100.0f;
 
+    /**
+     * Частота тактов движка в секунду, от неё зависят скорость передвижения и гравитация модели
+     */
+    public static final int tickRate = 200;
+
+    /**
+     * Наибольшее количество тактов, которое движок выполняет подряд при отставании, остальные отбрасываются
+     */
+    public static final int maxCatchUpTicks = 5;
+
+    /**
+     * Вместимость очереди разовых команд от потока отрисовки к потоку движка
+     */
+    public static final int commandQueueCapacity = 256;
+
+    /**
+     * Режим жадного построения геометрии: соседние стороны с одинаковым id объединяются в прямоугольники
+     */
+    public static final boolean greedyMeshing = true;
+
+    /**
+     * Упакованный формат вершин: 8 байт на вершину вместо 36.
+     * Подходит для блоков с координатами x, z в [-32768, 32767] и y в [-1024, 1023],
+     * отладочные отрезки в этом формате не выводятся
+     */
+    public static final boolean packedVertices = false;
+
+    /**
+     * Количество сегментов в кольце отображённых буферов вершин и индексов:
+     * запись следующего кадра не ждёт, пока GPU дочитает предыдущие
+     */
+    public static final int streamBufferCount = 3;
+
+    /**
+     * Отсечение секций по пирамиде видимости камеры: рисуются только видимые секции через glMultiDrawElementsIndirect
+     */
+    public static final boolean frustumCulling = true;
+
+    /**
+     * Отсечение закрытых пространств по графу видимости секций, работает вместе с frustumCulling
+     */
+    public static final boolean occlusionCulling = true;
+
+    /**
+     * Упрощённая геометрия дальних секций: ячейки 2x2x2, 4x4x4 и 8x8x8 блоков
+     */
+    public static final boolean levelOfDetail = true;
+
+    /**
+     * Расстояния от камеры до центра секции в блоках, начиная с которых используются уровни детализации 1, 2 и 3
+     */
+    public static final float[] lodDistances = {128.0f, 256.0f, 512.0f};
+
+    /**
+     * Количество рабочих потоков построения геометрии секций, 0 - построение в потоке отрисовки
+     */
+    public static final int meshingThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /**
+     * Размер кластера освещения (ячейки сетки распределения источников света) в блоках
+     */
+    public static final int lightClusterSize = 16;
+
+    /**
+     * Радиус влияния источника света в блоках, за ним освещение плавно спадает до нуля
+     */
+    public static final float lightRadius = 32.0f;
+
+    /**
+     * Наибольшее количество кластеров освещения, при превышении размер кластера увеличивается
+     */
+    public static final int maxLightClusters = 1 << 16;
+
+    /**
+     * Радиус рабочего набора столбцов секций вокруг модели при подкачке из файлов регионов,
+     * 0 - подкачка отключена и весь мир хранится в памяти
+     */
+    public static final int pageRadius = 0;
+
+    /**
+     * Каталог файлов регионов
+     */
+    public static final String regionDirectory = "regions";
+
+    /**
+     * Количество секций, начиная с которого массовое изменение мира обрабатывает секции параллельно
+     */
+    public static final int parallelEditChunks = 16;
+
     /**
      * Идентификатор режима отладки сцены
      */
@@ -0,0 +1,93 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Замер этапов запуска программы. Этапы могут выполняться в разных потоках параллельно,
+ * для каждого запоминается начало относительно создания профиля, длительность и поток
+ */
+public class StartupProfile {
+    /**
+     * Этап запуска
+     *
+     * @param name     название
+     * @param start    начало от создания профиля, нс
+     * @param duration длительность, нс
+     * @param thread   поток, в котором выполнялся этап
+     */
+    public record Phase(String name, long start, long duration, String thread) {
+    }
+
+    /**
+     * Время создания профиля, нс
+     */
+    private final long origin;
+    private final List<Phase> phases;
+    /**
+     * Был ли профиль выведен
+     */
+    private boolean reported;
+
+    /**
+     * Конструктор, отсчёт времени начинается с создания профиля
+     */
+    public StartupProfile() {
+        origin = System.nanoTime();
+        phases = new ArrayList<>();
+    }
+
+    /**
+     * @return текущее время для начала этапа, нс
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Запись завершившегося этапа
+     *
+     * @param name  название этапа
+     * @param begin время начала, полученное из begin()
+     */
+    public synchronized void end(String name, long begin) {
+        final long now = System.nanoTime();
+        phases.add(new Phase(name, begin - origin, now - begin, Thread.currentThread().getName()));
+    }
+
+    /**
+     * @return записанные этапы в порядке завершения
+     */
+    public synchronized List<Phase> phases() {
+        return List.copyOf(phases);
+    }
+
+    /**
+     * @return время от создания профиля, нс
+     */
+    public long elapsed() {
+        return System.nanoTime() - origin;
+    }
+
+    /**
+     * Однократный вывод профиля
+     *
+     * @param title заголовок, например событие, до которого замерен запуск
+     */
+    public synchronized void report(String title) {
+        if (reported) return;
+        reported = true;
+        System.out.println(title + " через " + String.format("%.1f", elapsed() / 1e6) + " мс после запуска:");
+        System.out.print(this);
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (Phase phase : phases) {
+            builder.append(String.format("  %-28s %8.1f мс  (с %8.1f мс, %s)%n",
+                    phase.name(), phase.duration() / 1e6, phase.start() / 1e6, phase.thread()));
+        }
+        return builder.toString();
+    }
+}
@@ -1,18 +1,67 @@
 package engine;
 
-import org.joml.Vector3i;
-
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Блок, основной элемент при создании сцены
+ * Тип блока: id блока и id текстур шести сторон.
+ * Типы неизменяемы и общие для всего мира: секция хранит для каждой ячейки только номер типа
+ * и маску прорисовки сторон, координата блока задаётся положением ячейки.
+ * Номер типа действителен в пределах запуска, в файлы записываются id блока и id сторон
  */
-public class Block {
+public final class Block {
+
+    /**
+     * Маска со всеми прорисовываемыми сторонами
+     */
+    public static final byte ALL_FACES = 0b111111;
+
+    /**
+     * Смещения к соседним блокам для каждой стороны: near, up, down, far, left, right
+     */
+    public static final int[][] SIDE_OFFSETS = {{0, 0, 1}, {0, 1, 0}, {0, -1, 0}, {0, 0, -1}, {-1, 0, 0}, {1, 0, 0}};
+
+    /**
+     * Номер противоположной стороны для каждой стороны
+     */
+    public static final int[] OPPOSITE_SIDE = {3, 2, 1, 0, 5, 4};
+
+    /**
+     * Наибольшее количество типов: номер типа + 1 хранится в short ячейки секции
+     */
+    public static final int MAX_TYPES = 0xFFFF;
 
     /**
-     * Координата блока
+     * Ключ поиска типа
      */
-    public Vector3i cord;
+    private record Key(int id, int side0, int side1, int side2, int side3, int side4, int side5) {
+        Key(int id, int[] sideIds) {
+            this(id, sideIds[0], sideIds[1], sideIds[2], sideIds[3], sideIds[4], sideIds[5]);
+        }
+    }
+
+    /**
+     * Типы по номерам, массив только дополняется и читается без блокировок
+     */
+    private static volatile Block[] types = new Block[64];
+    /**
+     * Количество типов
+     */
+    private static int count;
+    /**
+     * Типы по id блока и id сторон
+     */
+    private static final Map<Key, Block> index = new HashMap<>();
+    /**
+     * Последний запрошенный тип: блоки обычно ставятся сериями одного типа
+     */
+    private static Block last;
+
+    /**
+     * Номер типа
+     */
+    public final int type;
 
     /**
      * id блока
@@ -22,34 +71,80 @@ public class Block {
     /**
      * Массив[6] значений id сторон
      */
-    public final int[] sideIds;
+    private final int[] sideIds;
 
     /**
-     * Массив[6] значений прорисовки сторон
+     * Конструктор типа блока
+     *
+     * @param type    номер типа
+     * @param id      id блока
+     * @param sideIds массив[6] id сторон, копируется
      */
-    public final boolean[] sideRender;
+    private Block(int type, int id, int[] sideIds) {
+        this.type = type;
+        this.id = id;
+        this.sideIds = sideIds.clone();
+    }
 
     /**
-     * Конструктор блока
-     * @param cord координата блока
-     * @param id id блока
+     * Тип блока с заданными id и id сторон, при первом запросе тип добавляется в таблицу типов
+     *
+     * @param id      id блока
      * @param sideIds массив[6] id сторон
+     * @return тип блока
      */
-    public Block(Vector3i cord, int id, int[] sideIds) {
-        if(sideIds.length != 6) throw new IllegalArgumentException("Массив id сторон блока неравен стандартному размеру(6)");
-        this.cord = cord;
-        this.id = id;
-        this.sideIds = sideIds;
-        this.sideRender = new boolean[]{true, true, true, true, true, true};
+    public static synchronized Block of(int id, int[] sideIds) {
+        if (sideIds.length != 6) throw new IllegalArgumentException("Массив id сторон блока неравен стандартному размеру(6)");
+        if (last != null && last.id == id && Arrays.equals(last.sideIds, sideIds)) return last;
+        final Key key = new Key(id, sideIds);
+        Block block = index.get(key);
+        if (block == null) {
+            if (count == MAX_TYPES) throw new IllegalStateException("Таблица типов блоков переполнена");
+            block = new Block(count, id, sideIds);
+            final Block[] table = count == types.length ? Arrays.copyOf(types, count * 2) : types;
+            table[count++] = block;
+            types = table;
+            index.put(key, block);
+        }
+        return last = block;
+    }
+
+    /**
+     * @param type номер типа
+     * @return тип блока
+     */
+    public static Block get(int type) {
+        return types[type];
     }
 
     /**
-     * Перегруженный метод toString, используется при сохранении сцены
-     * @return текстовое представление блока
+     * @return количество типов
      */
+    public static synchronized int typeCount() {
+        return count;
+    }
+
+    /**
+     * @param side номер стороны
+     * @return id стороны
+     */
+    public int sideId(int side) {
+        return sideIds[side];
+    }
+
+    /**
+     * Копирование id сторон в массив
+     *
+     * @param dest массив[6] для записи
+     * @return dest
+     */
+    public int[] getSideIds(int[] dest) {
+        System.arraycopy(sideIds, 0, dest, 0, 6);
+        return dest;
+    }
+
     @Override
     public String toString() {
-        return "Block: cord=[\t" + cord.x + '\t' + cord.y + '\t' + cord.z + "\t],\tid=" + id +
-                ",\tsideIds=" + Arrays.toString(sideIds);
+        return "Block: type=" + type + ",\tid=" + id + ",\tsideIds=" + Arrays.toString(sideIds);
     }
 }
@@ -0,0 +1,209 @@
+package engine;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище блоков сцены с доступом по целочисленным координатам
+ */
+public interface BlockStore {
+
+    /**
+     * Проверка на существование блока в координате
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return наличие блока
+     */
+    boolean contains(int x, int y, int z);
+
+    /**
+     * id блока в координате
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return id блока (-1, если блока нет)
+     */
+    int getId(int x, int y, int z);
+
+    /**
+     * Номер типа блока в координате
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return номер типа Block (-1, если блока нет)
+     */
+    int getType(int x, int y, int z);
+
+    /**
+     * id стороны блока в координате
+     *
+     * @param x    координата x
+     * @param y    координата y
+     * @param z    координата z
+     * @param side номер стороны
+     * @return id стороны (-1, если блока нет)
+     */
+    int getSideId(int x, int y, int z, int side);
+
+    /**
+     * Маска прорисовки сторон блока, бит i отвечает за сторону i
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return маска сторон (0, если блока нет)
+     */
+    int getFaces(int x, int y, int z);
+
+    /**
+     * Задание прорисовки стороны блока, для отсутствующего блока ничего не делает
+     *
+     * @param x      координата x
+     * @param y      координата y
+     * @param z      координата z
+     * @param side   номер стороны
+     * @param render прорисовывать ли сторону
+     */
+    void setFace(int x, int y, int z, int side, boolean render);
+
+    /**
+     * Постановка блока, все стороны помечаются для прорисовки
+     *
+     * @param x       координата x
+     * @param y       координата y
+     * @param z       координата z
+     * @param id      id блока
+     * @param sideIds массив[6] id сторон
+     */
+    default void set(int x, int y, int z, int id, int[] sideIds) {
+        set(x, y, z, Block.of(id, sideIds));
+    }
+
+    /**
+     * Постановка блока, все стороны помечаются для прорисовки
+     *
+     * @param x     координата x
+     * @param y     координата y
+     * @param z     координата z
+     * @param block тип блока
+     */
+    void set(int x, int y, int z, Block block);
+
+    /**
+     * Удаление блока
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return был ли блок удалён
+     */
+    boolean remove(int x, int y, int z);
+
+    /**
+     * @return количество блоков в хранилище
+     */
+    int size();
+
+    /**
+     * Удаление всех блоков
+     */
+    void clear();
+
+    /**
+     * Согласованный снимок хранилища, не меняющийся при последующих изменениях хранилища
+     *
+     * @return снимок
+     */
+    BlockStore snapshot();
+
+    /**
+     * Замена всего содержимого хранилища содержимым другого хранилища,
+     * после вызова other больше не используется
+     *
+     * @param other хранилище с новым содержимым
+     */
+    void replaceWith(BlockStore other);
+
+    /**
+     * Обход всех блоков хранилища
+     *
+     * @param visitor обработчик блоков
+     */
+    void forEach(BlockVisitor visitor);
+
+    /**
+     * Обход блоков одной секции
+     *
+     * @param key     ключ секции
+     * @param visitor обработчик блоков
+     */
+    void forEachInChunk(long key, BlockVisitor visitor);
+
+    /**
+     * Удаление всех блоков секции
+     *
+     * @param key ключ секции
+     */
+    void removeChunk(long key);
+
+    /**
+     * Обход ключей непустых секций
+     *
+     * @param consumer получатель ключей секций
+     */
+    void forEachChunk(LongConsumer consumer);
+
+    /**
+     * Передача и сброс ключей секций, изменённых с момента предыдущего вызова.
+     * Секция считается изменённой при постановке, удалении блока или смене маски сторон в ней
+     *
+     * @param consumer получатель ключей секций
+     */
+    void drainDirtyChunks(LongConsumer consumer);
+
+    /**
+     * Пересчёт масок сторон всех блоков секции по наличию соседей,
+     * применяется после массовой постановки или удаления блоков без обновления соседей
+     *
+     * @param key ключ секции
+     */
+    default void updateFaces(long key) {
+        forEachInChunk(key, (x, y, z, id, sideIds, faces) -> {
+            for (int side = 0; side < 6; side++) {
+                final int[] offset = Block.SIDE_OFFSETS[side];
+                setFace(x, y, z, side, !isSolid(x + offset[0], y + offset[1], z + offset[2]));
+            }
+        });
+    }
+
+    /**
+     * Проверка на наличие твёрдого блока (существующего и с id != -1)
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return является ли координата занятой
+     */
+    default boolean isSolid(int x, int y, int z) {
+        return getId(x, y, z) != -1;
+    }
+
+    /**
+     * Обработчик блоков при обходе хранилища
+     */
+    @FunctionalInterface
+    interface BlockVisitor {
+        /**
+         * @param x       координата x
+         * @param y       координата y
+         * @param z       координата z
+         * @param id      id блока
+         * @param sideIds массив[6] id сторон, переиспользуется между вызовами
+         * @param faces   маска прорисовки сторон
+         */
+        void visit(int x, int y, int z, int id, int[] sideIds, int faces);
+    }
+}
@@ -0,0 +1,237 @@
+package engine;
+
+/**
+ * Секция мира размером 16x16x16 блоков.
+ * Блоки хранятся в примитивных массивах: номер типа блока (Block) и маска прорисовки сторон,
+ * всего три байта на ячейку
+ */
+public class Chunk {
+    /**
+     * Сдвиг для перевода координаты блока в координату секции
+     */
+    public static final int SHIFT = 4;
+    /**
+     * Размер стороны секции
+     */
+    public static final int SIZE = 1 << SHIFT;
+    /**
+     * Маска локальной координаты
+     */
+    public static final int MASK = SIZE - 1;
+    /**
+     * Количество блоков в секции
+     */
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+    /**
+     * Номера типов блоков + 1, 0 - пустая ячейка
+     */
+    private final short[] cells;
+    /**
+     * Маски прорисовки сторон
+     */
+    private final byte[] faces;
+    /**
+     * Количество блоков в секции
+     */
+    private int count;
+    /**
+     * Поколение мира, которому принадлежит секция. Секцию другого поколения (входящую в снимок)
+     * World перед записью заменяет копией
+     */
+    long generation;
+
+    /**
+     * Конструктор пустой секции
+     */
+    public Chunk() {
+        cells = new short[VOLUME];
+        faces = new byte[VOLUME];
+        count = 0;
+    }
+
+    /**
+     * Конструктор копии секции
+     *
+     * @param source копируемая секция
+     */
+    private Chunk(Chunk source) {
+        cells = source.cells.clone();
+        faces = source.faces.clone();
+        count = source.count;
+    }
+
+    /**
+     * @return независимая копия секции
+     */
+    public Chunk copy() {
+        return new Chunk(this);
+    }
+
+    /**
+     * Индекс ячейки по локальным координатам
+     *
+     * @param x локальная координата x
+     * @param y локальная координата y
+     * @param z локальная координата z
+     * @return индекс в массивах секции
+     */
+    public static int index(int x, int y, int z) {
+        return ((y & MASK) << (SHIFT * 2)) | ((z & MASK) << SHIFT) | (x & MASK);
+    }
+
+    /**
+     * @param index индекс ячейки
+     * @return наличие блока в ячейке
+     */
+    public boolean contains(int index) {
+        return cells[index] != 0;
+    }
+
+    /**
+     * @param index индекс ячейки
+     * @return id блока (-1, если блока нет)
+     */
+    public int getId(int index) {
+        final int entry = cells[index] & 0xFFFF;
+        if (entry == 0) return -1;
+        return Block.get(entry - 1).id;
+    }
+
+    /**
+     * @param index индекс ячейки
+     * @return номер типа блока (-1, если блока нет)
+     */
+    public int getType(int index) {
+        return (cells[index] & 0xFFFF) - 1;
+    }
+
+    /**
+     * @param index индекс ячейки
+     * @param side  номер стороны
+     * @return id стороны (-1, если блока нет)
+     */
+    public int getSideId(int index, int side) {
+        final int entry = cells[index] & 0xFFFF;
+        if (entry == 0) return -1;
+        return Block.get(entry - 1).sideId(side);
+    }
+
+    /**
+     * Копирование id сторон блока в массив
+     *
+     * @param index   индекс ячейки
+     * @param sideIds массив[6] для записи
+     */
+    public void getSideIds(int index, int[] sideIds) {
+        final int entry = cells[index] & 0xFFFF;
+        if (entry == 0) return;
+        Block.get(entry - 1).getSideIds(sideIds);
+    }
+
+    /**
+     * @param index индекс ячейки
+     * @return маска прорисовки сторон
+     */
+    public int getFaces(int index) {
+        return faces[index];
+    }
+
+    /**
+     * Задание прорисовки стороны
+     *
+     * @param index  индекс ячейки
+     * @param side   номер стороны
+     * @param render прорисовывать ли сторону
+     * @return изменилась ли маска сторон
+     */
+    public boolean setFace(int index, int side, boolean render) {
+        if (cells[index] == 0) return false;
+        final byte old = faces[index];
+        if (render) faces[index] |= (byte) (1 << side);
+        else faces[index] &= (byte) ~(1 << side);
+        return old != faces[index];
+    }
+
+    /**
+     * Расчёт масок прорисовки сторон всех блоков секции по наличию соседей.
+     * Соседи внутри секции проверяются по её ячейкам, на границе - по ячейкам соседней секции
+     *
+     * @param neighbours соседние секции по номерам сторон Block.SIDE_OFFSETS, null - секции нет
+     * @param dest       массив[VOLUME] для записи масок
+     * @return отличается ли хотя бы одна рассчитанная маска от текущей
+     */
+    public boolean computeFaces(Chunk[] neighbours, byte[] dest) {
+        boolean changed = false;
+        for (int index = 0; index < VOLUME; index++) {
+            byte mask = 0;
+            if (cells[index] != 0) {
+                final int x = index & MASK, y = index >> (SHIFT * 2), z = (index >> SHIFT) & MASK;
+                for (int side = 0; side < 6; side++) {
+                    final int[] offset = Block.SIDE_OFFSETS[side];
+                    final int nx = x + offset[0], ny = y + offset[1], nz = z + offset[2];
+                    final short[] source;
+                    if (((nx | ny | nz) & ~MASK) == 0) source = cells;
+                    else if (neighbours[side] != null) source = neighbours[side].cells;
+                    else source = null;
+                    if (source == null || source[index(nx, ny, nz)] == 0) mask |= (byte) (1 << side);
+                }
+            }
+            dest[index] = mask;
+            changed |= mask != faces[index];
+        }
+        return changed;
+    }
+
+    /**
+     * Замена масок прорисовки сторон всех блоков
+     *
+     * @param masks массив[VOLUME] масок, рассчитанный computeFaces()
+     */
+    public void setFaces(byte[] masks) {
+        System.arraycopy(masks, 0, faces, 0, VOLUME);
+    }
+
+    /**
+     * Постановка блока в ячейку
+     *
+     * @param index   индекс ячейки
+     * @param id      id блока
+     * @param sideIds массив[6] id сторон
+     */
+    public void set(int index, int id, int[] sideIds) {
+        set(index, Block.of(id, sideIds));
+    }
+
+    /**
+     * Постановка блока в ячейку
+     *
+     * @param index индекс ячейки
+     * @param block тип блока
+     */
+    public void set(int index, Block block) {
+        if (cells[index] == 0) count++;
+        faces[index] = Block.ALL_FACES;
+        cells[index] = (short) (block.type + 1);
+    }
+
+    /**
+     * Удаление блока из ячейки
+     *
+     * @param index индекс ячейки
+     * @return был ли блок удалён
+     */
+    public boolean remove(int index) {
+        if (cells[index] == 0) return false;
+        cells[index] = 0;
+        faces[index] = 0;
+        count--;
+        return true;
+    }
+
+    /**
+     * @return количество блоков в секции
+     */
+    public int count() {
+        return count;
+    }
+}
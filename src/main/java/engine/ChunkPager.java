@@ -0,0 +1,418 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Подкачка столбцов секций между хранилищем блоков и файлами регионов (RegionFile).
+ * В хранилище держатся только столбцы в квадрате радиуса radius вокруг модели,
+ * столбцы дальше radius + 1 сохраняются и выгружаются, поэтому рабочий набор ограничен.
+ * Сохранённый в файле столбец заменяет столбец хранилища, ещё не принятый подкачкой
+ * (например, столбец сгенерированного при запуске мира), а не дополняет его.
+ * Маски сторон затронутых секций пересчитываются одним World.sweepFaces() за обновление.
+ * Методы синхронизированы: сохранение сцены читает выгруженные столбцы из потока state-io
+ */
+public class ChunkPager {
+    /**
+     * Наибольшее количество одновременно открытых файлов регионов
+     */
+    private static final int OPEN_REGIONS = 8;
+    /**
+     * Имя файла региона с координатами региона
+     */
+    private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d{1,9})\\.(-?\\d{1,9})\\.region");
+
+    private final World blocks;
+    private final Path directory;
+    /**
+     * Радиус рабочего набора в секциях
+     */
+    private final int radius;
+    /**
+     * Открытые файлы регионов в порядке последнего обращения
+     */
+    private final LinkedHashMap<Long, RegionFile> regions;
+    /**
+     * Принятые столбцы: их содержимое в хранилище актуальнее сохранённого в файлах
+     */
+    private final Set<Long> resident;
+    /**
+     * Столбцы прежнего мира, оставшиеся в файлах после замены содержимого хранилища:
+     * не загружаются и стираются после записи столбцов нового мира
+     */
+    private final Set<Long> staleColumns;
+    /**
+     * Ключи секций по столбцам, заполняется на время обновления
+     */
+    private final Map<Long, long[]> columnChunks;
+    /**
+     * Количество ключей секций по столбцам
+     */
+    private final Map<Long, Integer> columnCounts;
+    /**
+     * Ключи удалённых и загруженных за обновление секций для пересчёта сторон
+     */
+    private long[] sweepKeys;
+    private int sweepCount;
+    /**
+     * Столбец модели при последнем обновлении
+     */
+    private int centerX, centerZ;
+    /**
+     * Содержимое хранилища заменено целиком: при следующем обновлении всё содержимое хранилища
+     * принимается без загрузки, а остальные столбцы файлов становятся устаревшими
+     */
+    private boolean adopt;
+
+    /**
+     * Конструктор
+     *
+     * @param blocks    хранилище блоков
+     * @param directory каталог файлов регионов
+     * @param radius    радиус рабочего набора в секциях
+     */
+    public ChunkPager(World blocks, Path directory, int radius) {
+        this.blocks = blocks;
+        this.directory = directory;
+        this.radius = radius;
+        regions = new LinkedHashMap<>(16, 0.75f, true);
+        resident = new HashSet<>();
+        staleColumns = new HashSet<>();
+        columnChunks = new HashMap<>();
+        columnCounts = new HashMap<>();
+        sweepKeys = new long[64];
+        sweepCount = 0;
+        centerX = Integer.MIN_VALUE;
+        centerZ = Integer.MIN_VALUE;
+        adopt = false;
+    }
+
+    /**
+     * Упаковка координаты столбца в long
+     *
+     * @param cx координата секции x
+     * @param cz координата секции z
+     * @return ключ столбца
+     */
+    public static long columnKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Сброс состояния после замены содержимого хранилища целиком (загрузка сохранения):
+     * при следующем обновлении рабочий набор берётся из хранилища, столбцы нового мира записываются
+     * в файлы регионов, и только после этого из файлов стираются столбцы прежнего мира
+     */
+    public synchronized void invalidate() {
+        resident.clear();
+        centerX = Integer.MIN_VALUE;
+        centerZ = Integer.MIN_VALUE;
+        adopt = true;
+    }
+
+    /**
+     * @return количество загруженных столбцов
+     */
+    public synchronized int residentColumns() {
+        return resident.size();
+    }
+
+    /**
+     * Подкачка при перемещении модели, при нахождении в прежнем столбце ничего не делает.
+     * При ошибке столбец, который не удалось сохранить, остаётся в хранилище
+     *
+     * @param x координата модели x
+     * @param z координата модели z
+     * @throws IOException ошибка чтения или записи файла региона
+     */
+    public synchronized void update(float x, float z) throws IOException {
+        final int cx = (int) Math.floor(x) >> Chunk.SHIFT, cz = (int) Math.floor(z) >> Chunk.SHIFT;
+        if (cx == centerX && cz == centerZ) return;
+        centerX = cx;
+        centerZ = cz;
+        try {
+            groupChunks();
+            if (adopt) adopt();
+            evict();
+            dropStale();
+            load();
+        } finally {
+            if (sweepCount > 0) blocks.sweepFaces(Arrays.copyOf(sweepKeys, sweepCount));
+            sweepCount = 0;
+            columnChunks.clear();
+            columnCounts.clear();
+        }
+    }
+
+    /**
+     * Сохранение всех загруженных столбцов и закрытие файлов регионов
+     *
+     * @throws IOException ошибка записи
+     */
+    public synchronized void close() throws IOException {
+        groupChunks();
+        if (adopt) adopt();
+        final Set<Long> columns = new HashSet<>(resident);
+        columns.addAll(columnChunks.keySet());
+        for (long column : columns) {
+            if (owned(column)) save(column);
+        }
+        dropStale();
+        resident.clear();
+        columnChunks.clear();
+        columnCounts.clear();
+        for (RegionFile region : regions.values()) region.close();
+        regions.clear();
+    }
+
+    /**
+     * Ключи столбцов, которые есть только в файлах регионов: их нет в хранилище и в его снимке.
+     * Вызывается потоком движка вместе со снимком хранилища после обновления подкачки
+     *
+     * @return ключи столбцов
+     * @throws IOException ошибка чтения файла региона
+     */
+    public synchronized long[] storedColumns() throws IOException {
+        // после invalidate() всё содержимое мира находится в хранилище
+        if (adopt) return new long[0];
+        final long[] columns = storedColumnKeys();
+        int count = 0;
+        for (long column : columns) {
+            if (stored(column) && !resident.contains(column)) columns[count++] = column;
+        }
+        return Arrays.copyOf(columns, count);
+    }
+
+    /**
+     * Копия данных сохранённого столбца для переноса в файл сохранения, может вызываться из любого потока.
+     * Столбец, выгруженный после получения storedColumns(), читается в новом состоянии
+     *
+     * @param column ключ столбца
+     * @return данные в формате RegionFile.readColumnData() или null, если столбец больше не сохранён
+     * @throws IOException ошибка чтения или повреждённые данные
+     */
+    public synchronized ByteBuffer storedColumnData(long column) throws IOException {
+        if (!stored(column)) return null;
+        final ByteBuffer data = region((int) (column >> 32), (int) column).readColumnData((int) (column >> 32), (int) column);
+        return ByteBuffer.allocate(data.remaining()).put(data).flip();
+    }
+
+    /**
+     * Приём всего содержимого хранилища после invalidate(): столбцы хранилища становятся принятыми,
+     * остальные столбцы файлов - устаревшими
+     */
+    private void adopt() throws IOException {
+        resident.addAll(columnChunks.keySet());
+        for (long column : storedColumnKeys()) {
+            if (!resident.contains(column)) staleColumns.add(column);
+        }
+        adopt = false;
+    }
+
+    /**
+     * Стирание из файлов регионов устаревших столбцов прежнего мира
+     */
+    private void dropStale() throws IOException {
+        final Iterator<Long> iterator = staleColumns.iterator();
+        while (iterator.hasNext()) {
+            final long column = iterator.next();
+            final int cx = (int) (column >> 32), cz = (int) column;
+            region(cx, cz).writeColumn(cx, cz, blocks, new long[0], 0);
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Сохранение и удаление из хранилища столбцов за пределами radius + 1.
+     * Не принятый столбец, для которого в файле есть данные, удаляется без сохранения
+     */
+    private void evict() throws IOException {
+        final Set<Long> evicted = new HashSet<>();
+        for (long column : columnChunks.keySet()) {
+            if (!inRange(column, radius + 1)) evicted.add(column);
+        }
+        for (long column : resident) {
+            if (!inRange(column, radius + 1)) evicted.add(column);
+        }
+        for (long column : evicted) {
+            if (owned(column)) save(column);
+            resident.remove(column);
+            removeColumn(column);
+        }
+    }
+
+    /**
+     * Приём столбцов хранилища в пределах radius + 1 и загрузка недостающих столбцов в квадрате радиуса radius.
+     * Сохранённый в файле столбец заменяет содержимое хранилища
+     */
+    private void load() throws IOException {
+        for (long column : columnChunks.keySet().toArray(new Long[0])) {
+            if (inRange(column, radius + 1)) accept(column);
+        }
+        for (int dz = -radius; dz <= radius; dz++) {
+            for (int dx = -radius; dx <= radius; dx++) accept(columnKey(centerX + dx, centerZ + dz));
+        }
+    }
+
+    /**
+     * Приём столбца: если он ещё не принят и сохранён в файле, содержимое хранилища заменяется сохранённым.
+     * При ошибке чтения содержимое хранилища не изменяется, и столбец не принимается
+     *
+     * @param column ключ столбца
+     */
+    private void accept(long column) throws IOException {
+        if (resident.contains(column)) return;
+        final int cx = (int) (column >> 32), cz = (int) column;
+        final RegionFile region = region(cx, cz);
+        final ByteBuffer data = stored(column) ? region.readColumnData(cx, cz) : null;
+        resident.add(column);
+        if (data == null) return;
+        removeColumn(column);
+        region.decodeColumn(data, blocks, this::sweep);
+    }
+
+    /**
+     * @param column ключ столбца
+     * @return есть ли в файле региона данные столбца текущего мира
+     */
+    private boolean stored(long column) throws IOException {
+        final int cx = (int) (column >> 32), cz = (int) column;
+        return !staleColumns.contains(column) && region(cx, cz).hasColumn(cx, cz);
+    }
+
+    /**
+     * @param column ключ столбца
+     * @return актуальнее ли содержимое хранилища сохранённого в файле: столбец принят или не сохранён
+     */
+    private boolean owned(long column) throws IOException {
+        return resident.contains(column) || !stored(column);
+    }
+
+    /**
+     * Удаление секций столбца из хранилища, ключи его секций берутся из columnChunks
+     *
+     * @param column ключ столбца
+     */
+    private void removeColumn(long column) {
+        final long[] keys = columnChunks.remove(column);
+        final Integer count = columnCounts.remove(column);
+        if (keys == null) return;
+        for (int i = 0; i < count; i++) {
+            blocks.removeChunk(keys[i]);
+            sweep(keys[i]);
+        }
+    }
+
+    /**
+     * Сохранение столбца, ключи его секций берутся из columnChunks
+     *
+     * @param column ключ столбца
+     */
+    private void save(long column) throws IOException {
+        final int cx = (int) (column >> 32), cz = (int) column;
+        final long[] keys = columnChunks.get(column);
+        region(cx, cz).writeColumn(cx, cz, blocks, keys == null ? new long[0] : keys, columnCounts.getOrDefault(column, 0));
+        staleColumns.remove(column);
+    }
+
+    /**
+     * Группировка ключей секций хранилища по столбцам
+     */
+    private void groupChunks() {
+        columnChunks.clear();
+        columnCounts.clear();
+        blocks.forEachChunk(key -> {
+            final long column = columnKey(World.keyX(key), World.keyZ(key));
+            long[] keys = columnChunks.get(column);
+            final int count = columnCounts.getOrDefault(column, 0);
+            if (keys == null) columnChunks.put(column, keys = new long[4]);
+            else if (count == keys.length) columnChunks.put(column, keys = Arrays.copyOf(keys, count * 2));
+            keys[count] = key;
+            columnCounts.put(column, count + 1);
+        });
+    }
+
+    /**
+     * Учёт удалённой или загруженной секции для пересчёта сторон её и соседних секций в конце обновления
+     *
+     * @param key ключ секции
+     */
+    private void sweep(long key) {
+        if (sweepCount == sweepKeys.length) sweepKeys = Arrays.copyOf(sweepKeys, sweepCount * 2);
+        sweepKeys[sweepCount++] = key;
+    }
+
+    /**
+     * Ключи всех столбцов, сохранённых в файлах регионов каталога
+     *
+     * @return ключи столбцов
+     * @throws IOException ошибка чтения файла региона
+     */
+    private long[] storedColumnKeys() throws IOException {
+        if (!Files.isDirectory(directory)) return new long[0];
+        long[] keys = new long[64];
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "r.*.region")) {
+            for (Path file : files) {
+                final Matcher name = REGION_NAME.matcher(file.getFileName().toString());
+                if (!name.matches()) continue;
+                final int baseX = Integer.parseInt(name.group(1)) << RegionFile.SHIFT;
+                final int baseZ = Integer.parseInt(name.group(2)) << RegionFile.SHIFT;
+                final RegionFile region = region(baseX, baseZ);
+                for (int z = baseZ; z < baseZ + RegionFile.SIZE; z++) {
+                    for (int x = baseX; x < baseX + RegionFile.SIZE; x++) {
+                        if (!region.hasColumn(x, z)) continue;
+                        if (count == keys.length) keys = Arrays.copyOf(keys, count * 2);
+                        keys[count++] = columnKey(x, z);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    /**
+     * @param column ключ столбца
+     * @param range  радиус
+     * @return находится ли столбец в квадрате радиуса range вокруг модели
+     */
+    private boolean inRange(long column, int range) {
+        final int cx = (int) (column >> 32), cz = (int) column;
+        return Math.abs(cx - centerX) <= range && Math.abs(cz - centerZ) <= range;
+    }
+
+    /**
+     * Файл региона, содержащий столбец, при превышении OPEN_REGIONS закрывается давно не использованный файл
+     *
+     * @param cx координата секции x
+     * @param cz координата секции z
+     * @return файл региона
+     */
+    private RegionFile region(int cx, int cz) throws IOException {
+        final int rx = cx >> RegionFile.SHIFT, rz = cz >> RegionFile.SHIFT;
+        final long key = columnKey(rx, rz);
+        RegionFile region = regions.get(key);
+        if (region != null) return region;
+        Files.createDirectories(directory);
+        region = new RegionFile(directory.resolve("r." + rx + "." + rz + ".region"));
+        regions.put(key, region);
+        if (regions.size() > OPEN_REGIONS) {
+            final Iterator<RegionFile> eldest = regions.values().iterator();
+            eldest.next().close();
+            eldest.remove();
+        }
+        return region;
+    }
+}
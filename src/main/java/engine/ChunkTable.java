@@ -0,0 +1,223 @@
+package engine;
+
+/**
+ * Неизменяемая таблица "ключ секции - секция": префиксное дерево по 5 бит перемешанного ключа (HAMT).
+ * Изменение возвращает новую таблицу, которая разделяет с прежней все узлы, кроме пути до изменённой записи,
+ * поэтому таблицу можно читать из любых потоков без блокировок, а поиск не упаковывает ключ и не выделяет память
+ */
+final class ChunkTable {
+    /**
+     * Количество бит хеша на уровень дерева
+     */
+    private static final int BITS = 5;
+    /**
+     * Пустая таблица
+     */
+    static final ChunkTable EMPTY = new ChunkTable(new Node(0, new Object[0]), 0);
+
+    /**
+     * Обработчик записей при обходе таблицы
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        /**
+         * @param key   ключ секции
+         * @param chunk секция
+         */
+        void accept(long key, Chunk chunk);
+    }
+
+    /**
+     * Запись таблицы
+     */
+    private static final class Entry {
+        final long key;
+        final Chunk chunk;
+
+        Entry(long key, Chunk chunk) {
+            this.key = key;
+            this.chunk = chunk;
+        }
+    }
+
+    /**
+     * Узел дерева: бит i маски означает наличие ячейки с номером i на этом уровне,
+     * ячейки хранятся подряд в порядке номеров, каждая - запись (Entry) или дочерний узел (Node)
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        /**
+         * @param bit бит ячейки
+         * @return позиция ячейки в slots
+         */
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        /**
+         * @return копия узла с заменённой ячейкой
+         */
+        Node replace(int index, Object slot) {
+            final Object[] copy = slots.clone();
+            copy[index] = slot;
+            return new Node(bitmap, copy);
+        }
+
+        /**
+         * @return копия узла с добавленной ячейкой
+         */
+        Node insert(int bit, int index, Object slot) {
+            final Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = slot;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new Node(bitmap | bit, copy);
+        }
+
+        /**
+         * @return копия узла без ячейки
+         */
+        Node without(int bit, int index) {
+            final Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, copy.length - index);
+            return new Node(bitmap & ~bit, copy);
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private ChunkTable(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Перемешивание ключа: взаимно однозначное, поэтому разные ключи не дают одинаковых хешей
+     *
+     * @param key ключ секции
+     * @return хеш ключа
+     */
+    private static long hash(long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ hash >>> 32;
+    }
+
+    /**
+     * @param hash  хеш ключа
+     * @param shift сдвиг уровня дерева
+     * @return бит ячейки ключа на уровне
+     */
+    private static int bit(long hash, int shift) {
+        return 1 << (int) (hash >>> shift & 31);
+    }
+
+    /**
+     * @param key ключ секции
+     * @return секция или null
+     */
+    Chunk get(long key) {
+        final long hash = hash(key);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            final int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) return null;
+            final Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Node) {
+                node = (Node) slot;
+            } else {
+                final Entry entry = (Entry) slot;
+                return entry.key == key ? entry.chunk : null;
+            }
+        }
+    }
+
+    /**
+     * @param key   ключ секции
+     * @param chunk секция
+     * @return таблица с записью key - chunk
+     */
+    ChunkTable put(long key, Chunk chunk) {
+        final boolean added = get(key) == null;
+        return new ChunkTable(put(root, new Entry(key, chunk), hash(key), 0), added ? size + 1 : size);
+    }
+
+    /**
+     * @param key ключ секции
+     * @return таблица без записи key (эта же таблица, если записи не было)
+     */
+    ChunkTable remove(long key) {
+        if (get(key) == null) return this;
+        return new ChunkTable(remove(root, key, hash(key), 0), size - 1);
+    }
+
+    /**
+     * @return количество записей
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Обход всех записей
+     *
+     * @param consumer обработчик записей
+     */
+    void forEach(EntryConsumer consumer) {
+        forEach(root, consumer);
+    }
+
+    private static void forEach(Node node, EntryConsumer consumer) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Node) {
+                forEach((Node) slot, consumer);
+            } else {
+                final Entry entry = (Entry) slot;
+                consumer.accept(entry.key, entry.chunk);
+            }
+        }
+    }
+
+    private static Node put(Node node, Entry entry, long hash, int shift) {
+        final int bit = bit(hash, shift), index = node.index(bit);
+        if ((node.bitmap & bit) == 0) return node.insert(bit, index, entry);
+        final Object slot = node.slots[index];
+        if (slot instanceof Node) return node.replace(index, put((Node) slot, entry, hash, shift + BITS));
+        final Entry existing = (Entry) slot;
+        if (existing.key == entry.key) return node.replace(index, entry);
+        return node.replace(index, pair(existing, hash(existing.key), entry, hash, shift + BITS));
+    }
+
+    /**
+     * Узел для двух записей, хеши которых совпали на предыдущих уровнях
+     */
+    private static Node pair(Entry first, long firstHash, Entry second, long secondHash, int shift) {
+        final int firstBit = bit(firstHash, shift), secondBit = bit(secondHash, shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit, new Object[]{pair(first, firstHash, second, secondHash, shift + BITS)});
+        }
+        return new Node(firstBit | secondBit, Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[]{first, second} : new Object[]{second, first});
+    }
+
+    /**
+     * Удаление существующего ключа, узел с единственной записью заменяется этой записью
+     */
+    private static Node remove(Node node, long key, long hash, int shift) {
+        final int bit = bit(hash, shift), index = node.index(bit);
+        final Object slot = node.slots[index];
+        if (slot instanceof Entry) return node.without(bit, index);
+        final Node child = remove((Node) slot, key, hash, shift + BITS);
+        if (child.slots.length == 0) return node.without(bit, index);
+        if (child.slots.length == 1 && child.slots[0] instanceof Entry) return node.replace(index, child.slots[0]);
+        return node.replace(index, child);
+    }
+}
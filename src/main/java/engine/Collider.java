@@ -0,0 +1,149 @@
+package engine;
+
+import org.joml.Vector3f;
+
+/**
+ * Столкновения прямоугольного параллелепипеда (AABB) с блоками методом swept AABB.
+ * Параллелепипед задаётся позицией центра основания, полушириной и высотой.
+ * За один вызов move() находится самое раннее столкновение по всем осям сразу,
+ * после чего движение продолжается вдоль препятствия (скольжение), не более трёх раз.
+ * Блоки запрашиваются напрямую из хранилища, память не выделяется
+ */
+public class Collider {
+    /**
+     * Зазор, оставляемый между параллелепипедом и блоком после столкновения
+     */
+    private static final float EPSILON = 1e-4f;
+    /**
+     * Бит заблокированной оси x в результате move()
+     */
+    public static final int AXIS_X = 1;
+    /**
+     * Бит заблокированной оси y в результате move()
+     */
+    public static final int AXIS_Y = 2;
+    /**
+     * Бит заблокированной оси z в результате move()
+     */
+    public static final int AXIS_Z = 4;
+
+    private final float halfWidth;
+    private final float height;
+    /**
+     * Ось самого раннего столкновения последнего sweep() (0 - x, 1 - y, 2 - z)
+     */
+    private int hitAxis;
+
+    /**
+     * Конструктор
+     *
+     * @param halfWidth полуширина по x и z
+     * @param height    высота
+     */
+    public Collider(float halfWidth, float height) {
+        this.halfWidth = halfWidth;
+        this.height = height;
+    }
+
+    /**
+     * Перемещение с учётом столкновений
+     *
+     * @param blocks   хранилище блоков
+     * @param position позиция центра основания, изменяется
+     * @param motion   перемещение, составляющие вдоль препятствий обнуляются
+     * @return маска заблокированных осей AXIS_X | AXIS_Y | AXIS_Z
+     */
+    public int move(BlockStore blocks, Vector3f position, Vector3f motion) {
+        int blocked = 0;
+        for (int iteration = 0; iteration < 3; iteration++) {
+            if (motion.x == 0.0f && motion.y == 0.0f && motion.z == 0.0f) break;
+            final float time = sweep(blocks, position, motion.x, motion.y, motion.z);
+            if (time >= 1.0f) {
+                position.add(motion);
+                break;
+            }
+            final int axis = hitAxis;
+            final float component = motion.get(axis);
+            final float safe = Math.max(0.0f, time - EPSILON / Math.abs(component));
+            position.fma(safe, motion);
+            motion.mul(1.0f - safe);
+            motion.setComponent(axis, 0.0f);
+            blocked |= 1 << axis;
+        }
+        return blocked;
+    }
+
+    /**
+     * Пересекается ли параллелепипед с ячейкой блока
+     *
+     * @param position позиция центра основания
+     * @param x        координата блока x
+     * @param y        координата блока y
+     * @param z        координата блока z
+     * @return есть ли пересечение
+     */
+    public boolean intersects(Vector3f position, int x, int y, int z) {
+        return position.x + halfWidth > x && position.x - halfWidth < x + 1
+                && position.y + height > y && position.y < y + 1
+                && position.z + halfWidth > z && position.z - halfWidth < z + 1;
+    }
+
+    /**
+     * Поиск самого раннего столкновения на перемещении
+     *
+     * @param blocks   хранилище блоков
+     * @param position позиция центра основания
+     * @param dx       перемещение x
+     * @param dy       перемещение y
+     * @param dz       перемещение z
+     * @return доля перемещения до столкновения (1, если столкновения нет), ось записывается в hitAxis
+     */
+    private float sweep(BlockStore blocks, Vector3f position, float dx, float dy, float dz) {
+        final float minX = position.x - halfWidth, maxX = position.x + halfWidth;
+        final float minY = position.y, maxY = position.y + height;
+        final float minZ = position.z - halfWidth, maxZ = position.z + halfWidth;
+
+        final int fromX = (int) Math.floor(Math.min(minX, minX + dx)), toX = (int) Math.floor(Math.max(maxX, maxX + dx));
+        final int fromY = (int) Math.floor(Math.min(minY, minY + dy)), toY = (int) Math.floor(Math.max(maxY, maxY + dy));
+        final int fromZ = (int) Math.floor(Math.min(minZ, minZ + dz)), toZ = (int) Math.floor(Math.max(maxZ, maxZ + dz));
+
+        float earliest = 1.0f;
+        for (int y = fromY; y <= toY; y++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                for (int x = fromX; x <= toX; x++) {
+                    if (!blocks.isSolid(x, y, z)) continue;
+                    final float entryX = entry(minX, maxX, dx, x), entryY = entry(minY, maxY, dy, y), entryZ = entry(minZ, maxZ, dz, z);
+                    final float exit = Math.min(exit(minX, maxX, dx, x), Math.min(exit(minY, maxY, dy, y), exit(minZ, maxZ, dz, z)));
+                    final float time = Math.max(entryX, Math.max(entryY, entryZ));
+                    // уже пересекающиеся блоки пропускаются, чтобы из них можно было выйти
+                    if (time >= exit || time < 0.0f || time >= earliest) continue;
+                    earliest = time;
+                    hitAxis = time == entryY ? 1 : (time == entryX ? 0 : 2);
+                }
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Время входа отрезка [min, max], движущегося на d, в ячейку [cell, cell + 1]
+     *
+     * @return доля перемещения (-бесконечность, если по оси пересечение есть всегда)
+     */
+    private static float entry(float min, float max, float d, int cell) {
+        if (d > 0) return (cell - max) / d;
+        if (d < 0) return (cell + 1 - min) / d;
+        return max > cell && min < cell + 1 ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Время выхода отрезка [min, max], движущегося на d, из ячейки [cell, cell + 1]
+     *
+     * @return доля перемещения (+бесконечность, если по оси пересечение есть всегда)
+     */
+    private static float exit(float min, float max, float d, int cell) {
+        if (d > 0) return (cell + 1 - min) / d;
+        if (d < 0) return (cell - max) / d;
+        return max > cell && min < cell + 1 ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+    }
+}
@@ -0,0 +1,174 @@
+package engine;
+
+import controller.Commands;
+import controller.RTController;
+
+import java.util.*;
+
+/**
+ * Сценарий команд для движка без окна: по номеру такта задаются удерживаемые команды,
+ * разовые нажатия и направление взгляда. Шаги не изменяются при воспроизведении,
+ * сценарий воспроизводится повторно с такта 0.
+ * Текстовый формат - по одному шагу в строке: "&lt;такт&gt; hold|release|press &lt;КОМАНДА&gt;" или
+ * "&lt;такт&gt; look &lt;x&gt; &lt;y&gt; &lt;z&gt;", пустые строки и текст после # пропускаются
+ */
+public class CommandScript {
+    /**
+     * Вид шага сценария
+     */
+    private enum Action {HOLD, RELEASE, PRESS, LOOK}
+
+    /**
+     * Шаг сценария
+     *
+     * @param action  вид шага
+     * @param command команда (null для LOOK)
+     * @param x       компонента x направления взгляда
+     * @param y       компонента y направления взгляда
+     * @param z       компонента z направления взгляда
+     */
+    private record Step(Action action, Commands command, float x, float y, float z) {
+    }
+
+    /**
+     * Шаги по номерам тактов в порядке добавления
+     */
+    private final NavigableMap<Integer, List<Step>> steps = new TreeMap<>();
+    /**
+     * Удерживаемые команды при воспроизведении, переиспользуется между тактами
+     */
+    private final Set<Commands> held = EnumSet.noneOf(Commands.class);
+
+    /**
+     * Разбор сценария из текста
+     *
+     * @param text текст сценария
+     * @return сценарий
+     * @throws IllegalArgumentException при ошибке в строке сценария
+     */
+    public static CommandScript parse(String text) {
+        final CommandScript script = new CommandScript();
+        final String[] lines = text.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            final int comment = lines[i].indexOf('#');
+            final String line = (comment < 0 ? lines[i] : lines[i].substring(0, comment)).trim();
+            if (line.isEmpty()) continue;
+            final String[] parts = line.split("\\s+");
+            try {
+                final int tick = Integer.parseInt(parts[0]);
+                final String action = parts.length > 1 ? parts[1] : "";
+                switch (action) {
+                    case "hold" -> script.hold(tick, command(parts));
+                    case "release" -> script.release(tick, command(parts));
+                    case "press" -> script.press(tick, command(parts));
+                    case "look" -> {
+                        if (parts.length != 5) throw new IllegalArgumentException("look требует три компоненты");
+                        script.look(tick, Float.parseFloat(parts[2]), Float.parseFloat(parts[3]), Float.parseFloat(parts[4]));
+                    }
+                    default -> throw new IllegalArgumentException("неизвестный шаг '" + action + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Ошибка в строке " + (i + 1) + " сценария: " + e.getMessage(), e);
+            }
+        }
+        return script;
+    }
+
+    /**
+     * @param parts части строки сценария
+     * @return команда третьей части
+     */
+    private static Commands command(String[] parts) {
+        if (parts.length != 3) throw new IllegalArgumentException("шаг требует одну команду");
+        return Commands.valueOf(parts[2]);
+    }
+
+    /**
+     * Добавление шага
+     *
+     * @param tick номер такта
+     * @param step шаг
+     * @return this
+     */
+    private CommandScript add(int tick, Step step) {
+        if (tick < 0) throw new IllegalArgumentException("Отрицательный номер такта " + tick);
+        steps.computeIfAbsent(tick, t -> new ArrayList<>()).add(step);
+        return this;
+    }
+
+    /**
+     * Начало удержания команды, команда действует в каждом такте до release
+     *
+     * @param tick    номер такта
+     * @param command команда
+     * @return this
+     */
+    public CommandScript hold(int tick, Commands command) {
+        return add(tick, new Step(Action.HOLD, command, 0, 0, 0));
+    }
+
+    /**
+     * Конец удержания команды
+     *
+     * @param tick    номер такта
+     * @param command команда
+     * @return this
+     */
+    public CommandScript release(int tick, Commands command) {
+        return add(tick, new Step(Action.RELEASE, command, 0, 0, 0));
+    }
+
+    /**
+     * Разовое нажатие: команда ставится в очередь контроллера
+     *
+     * @param tick    номер такта
+     * @param command команда
+     * @return this
+     */
+    public CommandScript press(int tick, Commands command) {
+        return add(tick, new Step(Action.PRESS, command, 0, 0, 0));
+    }
+
+    /**
+     * Поворот взгляда, действует только для HeadlessOrientation
+     *
+     * @param tick номер такта
+     * @param x    компонента x направления
+     * @param y    компонента y направления
+     * @param z    компонента z направления
+     * @return this
+     */
+    public CommandScript look(int tick, float x, float y, float z) {
+        return add(tick, new Step(Action.LOOK, null, x, y, z));
+    }
+
+    /**
+     * @return количество тактов до последнего шага включительно
+     */
+    public int length() {
+        return steps.isEmpty() ? 0 : steps.lastKey() + 1;
+    }
+
+    /**
+     * Применение шагов такта перед его выполнением. В такте 0 удерживаемые команды сбрасываются
+     *
+     * @param tick        номер такта
+     * @param controller  контроллер, получающий команды
+     * @param orientation источник направления взгляда движка
+     */
+    public void apply(int tick, RTController controller, OrientationSource orientation) {
+        if (tick == 0) held.clear();
+        boolean heldChanged = tick == 0;
+        for (Step step : steps.getOrDefault(tick, List.of())) {
+            switch (step.action) {
+                case HOLD -> heldChanged |= held.add(step.command);
+                case RELEASE -> heldChanged |= held.remove(step.command);
+                case PRESS -> controller.getCommandQueue().offer(step.command, System.nanoTime());
+                case LOOK -> {
+                    if (orientation instanceof HeadlessOrientation headless) headless.set(step.x, step.y, step.z);
+                }
+            }
+        }
+        if (heldChanged) controller.setHeldCommands(held);
+    }
+}
@@ -1,5 +1,6 @@
 package engine;
 
+import controller.CommandQueue;
 import controller.Commands;
 import controller.RTController;
 import controller.Settings;
@@ -7,14 +8,18 @@ import org.joml.Vector3f;
 import org.joml.Vector3i;
 import org.joml.Vector4f;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 import static controller.Commands.*;
 
@@ -24,9 +29,55 @@ import static controller.Commands.*;
 public class EngineRuntime {
 
     /**
-     * Хеш-таблица "координата(Vector3i) - блок(Block)" с безопасным многопоточным доступом
+     * Хранилище блоков сцены, разбитое на секции
      */
-    public final ConcurrentHashMap<Vector3i, Block> blocks;
+    public final World blocks;
+    /**
+     * Подкачка секций из файлов регионов (null, если подкачка отключена)
+     */
+    private final ChunkPager pager;
+    /**
+     * Планировщик тактов движка
+     */
+    private final TickScheduler scheduler;
+    /**
+     * Команды текущего такта: удерживаемые и принятые из очереди разовые, переиспользуется между тактами
+     */
+    private final Set<Commands> commands;
+    /**
+     * Получатель разовых команд из очереди контроллера
+     */
+    private final CommandQueue.Sink commandSink;
+    /**
+     * Задержка от нажатия клавиши до обработки команды тактом
+     */
+    private final InputLatency inputLatency;
+    /**
+     * Время начала текущего такта, нс
+     */
+    private long tickTime;
+    /**
+     * Выполнен ли первый такт (он записывается в профиль запуска)
+     */
+    private boolean firstTickDone;
+    /**
+     * Последняя опубликованная для отрисовки версия мира
+     */
+    private volatile RenderSnapshot renderSnapshot;
+    /**
+     * Ключи секций, изменённых за такт, переиспользуется между тактами
+     */
+    private long[] changedChunks;
+    private int changedCount;
+    private final LongConsumer changedCollector;
+    /**
+     * Поток фоновых операций сохранения и загрузки
+     */
+    private final ExecutorService stateExecutor;
+    /**
+     * Задачи других потоков, выполняемые потоком движка после подкачки такта: снимок мира для сохранения и подмена мира загрузкой
+     */
+    private final Queue<Runnable> engineTasks;
     /**
      * Множество прямых
      */
@@ -35,10 +86,22 @@ public class EngineRuntime {
      * Множество источников света
      */
     public final Set<LightPoint> lightPoints;
+    /**
+     * Опубликованные для отрисовки копии источников света, массив заменяется целиком при изменении набора
+     */
+    private volatile LightPoint[] publishedLights;
+    /**
+     * Набор источников света изменился с последней публикации
+     */
+    private boolean lightsChanged;
     /**
      * Контроллер
      */
     private final RTController rtController;
+    /**
+     * Источник направления взгляда модели: камера окна или HeadlessOrientation
+     */
+    private final OrientationSource orientation;
     /**
      * Модель персонажа
      */
@@ -47,18 +110,34 @@ public class EngineRuntime {
      * Настройки сцены
      */
     private final Settings settings;
+    /**
+     * Выбран ли блок в результате rayTrace(), при false значения selectedCord, lastCord и selectedFloatCord недействительны
+     */
+    private boolean selected;
     /**
      * Координата блока, на который смотрит камера
      */
-    private Vector3i selectedCord;
+    private final Vector3i selectedCord;
+    /**
+     * Координата перед выбранным блоком со стороны камеры, куда ставится новый блок
+     */
+    private final Vector3i lastCord;
+    /**
+     * Точка попадания луча камеры в выбранный блок
+     */
+    private final Vector3f selectedFloatCord;
     /**
-     * Последняя обработанная в результате rayTrace() координата вне блоков
+     * Результат трассировки луча камеры
      */
-    private Vector3i lastCord;
+    private final RayHit rayHit;
     /**
-     * Первая обработанная в результате rayTrace() координата внутри блока
+     * Начало луча камеры
      */
-    private Vector3f selectedFloatCord;
+    private final Vector3f rayOrigin;
+    /**
+     * Направление луча камеры
+     */
+    private final Vector3f rayDirection;
 
     /**
      * id выбранного блока
@@ -66,39 +145,72 @@ public class EngineRuntime {
     private int selectedId;
 
     /**
-     * Конструктор класса EngineRuntime
+     * Конструктор класса EngineRuntime, направление взгляда задаёт камера графического дисплея контроллера
+     *
+     * @param rtController контроллер
+     * @param initBlocks   блоки дефотной сцены
+     */
+    public EngineRuntime(RTController rtController, BlockStore initBlocks) {
+        this(rtController, initBlocks, rtController.getGraphicsDisplay().getCamera());
+    }
+
+    /**
+     * Конструктор класса EngineRuntime с заданным источником направления взгляда.
+     * С HeadlessOrientation движок работает без окна и графического дисплея
      *
      * @param rtController контроллер
-     * @param initBlocks   массив блоков для дефотной сцены
+     * @param initBlocks   блоки дефотной сцены
+     * @param orientation  источник направления взгляда модели
      */
-    public EngineRuntime(RTController rtController, Block[] initBlocks) {
+    public EngineRuntime(RTController rtController, BlockStore initBlocks, OrientationSource orientation) {
         System.out.println("Инициализация EngineRuntime");
         this.rtController = rtController;
-        model = new Model(new Vector3f(0.0f, 10.0f, 0.0f), 0.5f, rtController.getGraphicsDisplay().getCamera());
+        this.orientation = orientation;
+        model = new Model(new Vector3f(0.0f, 10.0f, 0.0f), 0.5f, orientation);
         settings = new Settings();
-        selectedCord = null;
-        selectedFloatCord = null;
-        lastCord = null;
-        blocks = new ConcurrentHashMap<>();
+        selected = false;
+        selectedCord = new Vector3i();
+        selectedFloatCord = new Vector3f();
+        lastCord = new Vector3i();
+        rayHit = new RayHit();
+        rayOrigin = new Vector3f();
+        rayDirection = new Vector3f();
+        blocks = new World();
         setBlocks(initBlocks);
+        changedChunks = new long[64];
+        changedCollector = key -> {
+            if (changedCount == changedChunks.length) changedChunks = Arrays.copyOf(changedChunks, changedCount * 2);
+            changedChunks[changedCount++] = key;
+        };
+        blocks.drainDirtyChunks(key -> {
+        });
+        renderSnapshot = new RenderSnapshot(0, blocks.snapshot(), new long[0]);
+        scheduler = new TickScheduler(Settings.tickRate, Settings.maxCatchUpTicks);
+        commands = EnumSet.noneOf(Commands.class);
+        commandSink = this::acceptCommand;
+        inputLatency = new InputLatency();
+        engineTasks = new ConcurrentLinkedQueue<>();
+        stateExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "state-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pager = Settings.pageRadius > 0 ? new ChunkPager(blocks, Path.of(Settings.regionDirectory), Settings.pageRadius) : null;
         lines = new HashSet<>();
         lightPoints = new HashSet<>();
         lightPoints.add(new LightPoint(new Vector3f(0.0f, 7.0f, -10.0f), new Vector4f(1.0f, 0.0f, 0.0f, 1.0f)));
         lightPoints.add(new LightPoint(new Vector3f(0.0f, 7.0f, 10.0f), new Vector4f(1.0f, 1.0f, 1.0f, 1.0f)));
+        publishLights();
         System.out.println("Инициализация EngineRuntime завершена");
     }
 
     /**
-     * Инизциализация блоков сцены из массива блоков
+     * Инизциализация блоков сцены вставкой готовых блоков одной правкой WorldEdit
      *
-     * @param initBlocks массив блоков
+     * @param initBlocks блоки сцены
      */
-    private void setBlocks(Block[] initBlocks) {
-        for (Block initBlock : initBlocks) {
-            if (initBlock == null) throw new RuntimeException("initBlock was null");
-            blocks.put(initBlock.cord, initBlock);
-            updateBlockSpace(initBlock.cord);
-        }
+    private void setBlocks(BlockStore initBlocks) {
+        new WorldEdit().paste(initBlocks, new Vector3i()).apply(blocks);
     }
 
     /**
@@ -107,104 +219,127 @@ public class EngineRuntime {
      * @param id id удаляемых блоков
      */
     private void removeId(int id) {
-        for (Block block : blocks.values()) {
-            if (block.id == id && block.cord != lastCord) blocks.remove(block.cord);
-        }
+        blocks.forEach((x, y, z, blockId, sideIds, faces) -> {
+            if (blockId == id && (!selected || !lastCord.equals(x, y, z))) blocks.remove(x, y, z);
+        });
     }
 
     /**
-     * Сохранение сцены
+     * Фоновое сохранение сцены в двоичном формате StateFile.
+     * Снимок мира снимается потоком движка в следующем такте после подкачки, файл записывается потоком state-io,
+     * операции сохранения и загрузки выполняются по очереди.
+     * При подкачке в файл переносятся и столбцы, выгруженные в файлы регионов
      *
      * @param fileName файл, в которой созраняется сцена
+     * @return ход выполнения и завершение сохранения
      */
-    public void saveState(String fileName) {
-        try {
-            Thread.sleep(250);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        try {
-            FileWriter fileWriter = new FileWriter(fileName, false);
-            for (Block block : blocks.values()) {
-                fileWriter.append(block.toString()).append(String.valueOf('\n'));
+    public StateFuture saveState(String fileName) {
+        final StateFuture future = new StateFuture();
+        engineTasks.add(() -> {
+            final BlockStore snapshot = blocks.snapshot();
+            final long[] storedColumns;
+            try {
+                storedColumns = pager != null ? pager.storedColumns() : new long[0];
+            } catch (IOException ex) {
+                System.out.println("Cannot save state");
+                System.out.println("file: " + ex.getMessage());
+                future.completeExceptionally(ex);
+                return;
             }
-            fileWriter.flush();
-            System.out.println("state " + fileName + " saved");
-        } catch (IOException ex) {
-            System.out.println("Cannot save state");
-            System.out.println("file: " + ex.getMessage());
-        }
+            executeState(future, () -> {
+                try {
+                    final List<ByteBuffer> columns = new ArrayList<>(storedColumns.length);
+                    for (long column : storedColumns) {
+                        final ByteBuffer data = pager.storedColumnData(column);
+                        if (data != null) columns.add(data);
+                    }
+                    final Path path = Path.of(fileName);
+                    final Path temp = Path.of(fileName + ".tmp");
+                    StateFile.save(snapshot, columns, temp, future::setProgress);
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    System.out.println("state " + fileName + " saved");
+                    future.complete(null);
+                } catch (IOException ex) {
+                    System.out.println("Cannot save state");
+                    System.out.println("file: " + ex.getMessage());
+                    future.completeExceptionally(ex);
+                }
+            });
+        });
+        return future;
     }
 
     /**
-     * Загрузка сцены
+     * Фоновая загрузка сцены, двоичный и старый текстовый форматы определяются автоматически.
+     * Новый мир строится потоком state-io после ранее запрошенных сохранений,
+     * а подменяет текущий и сбрасывает подкачку поток движка в следующем такте после подкачки
      *
      * @param fileName файл, из которого загружаеся сцена
+     * @return ход выполнения и завершение загрузки
      */
-    public void loadState(String fileName) {
-        try {
-            Thread.sleep(250);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        try {
-            blocks.clear();
-            for (String line : Files.lines(new File(fileName).toPath()).toList()) {
-                final int[] cords = parseLine(line, Pattern.compile("cord=\\[.*?]"), 7, 2, Pattern.compile("\\s+"));
-                final int id = parseLine(line, Pattern.compile("id=.*?,"), 3, 1, Pattern.compile("\\s+"))[0];
-                final int[] sideIds = parseLine(line, Pattern.compile("sideIds=\\[.*?]"), 9, 1, Pattern.compile(",\\s+"));
-
-                if (cords.length != 3 || sideIds.length != 6) throw new RuntimeException("state corruption");
-
-                Vector3i vector3i = new Vector3i(cords[0], cords[1], cords[2]);
-                createBlock(vector3i, id, sideIds);
+    public StateFuture loadState(String fileName) {
+        final StateFuture future = new StateFuture();
+        engineTasks.add(() -> executeState(future, () -> {
+            try {
+                final World loaded = new World();
+                StateFile.load(Path.of(fileName), loaded, future::setProgress);
+                loaded.sweepFaces(loaded.chunkKeys());
+                engineTasks.add(() -> {
+                    blocks.replaceWith(loaded);
+                    if (pager != null) pager.invalidate();
+                    System.out.println("state " + fileName + " loaded");
+                    future.complete(null);
+                });
+            } catch (IOException ex) {
+                System.out.println("Cannot load state");
+                System.out.println("file: " + ex.getMessage());
+                future.completeExceptionally(ex);
             }
-            System.out.println("state " + fileName + " loaded");
-        } catch (IOException ex) {
-            System.out.println("Cannot load state");
-            System.out.println("file: " + ex.getMessage());
-        }
+        }));
+        return future;
     }
 
     /**
-     * Парсер значений, применяемый для чтения сцены из файла
+     * Передача операции сохранения или загрузки потоку state-io, исключения операции завершают future
      *
-     * @param line    строка со значенимями
-     * @param pattern паттерн, указывающий на местонахождение значений
-     * @param st      длина начала паттерна
-     * @param delta   длина конца паттерна
-     * @param split   сплиттер
-     * @return массив значений типа int
-     */
-    private static int[] parseLine(String line, Pattern pattern, int st, int delta, Pattern split) {
-        Matcher matcher = pattern.matcher(line);
-        if (!matcher.find()) throw new RuntimeException("Something wrong with state data");
-        String cord = matcher.group();
-        cord = cord.substring(st, cord.length() - delta);
-        String[] cordS = cord.split(split.pattern());
-        int[] result = new int[cordS.length];
-        for (int i = 0; i < result.length; i++) {
-            result[i] = Integer.parseInt(cordS[i]);
+     * @param future завершение операции
+     * @param task   операция
+     */
+    private void executeState(StateFuture future, Runnable task) {
+        try {
+            stateExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
         }
-        return result;
+    }
+
+    /**
+     * Выполнение задач, переданных потоку движка
+     */
+    private void runEngineTasks() {
+        for (Runnable task = engineTasks.poll(); task != null; task = engineTasks.poll()) task.run();
     }
 
     /**
      * Генерация платформы из блоков в начале координат
      *
-     * @param delta расстояние от центра до края платформы
-     * @return массив сгенерированных блоков
-     */
-    public static Block[] generateBlockLayer(Vector3i start, int delta) {
-        final Block[] result = new Block[delta * delta];
-        for (int z = 0; z < delta; z++) {
-            for (int x = 0; x < delta; x++) {
-                final int sideId = 17;
-                result[z * delta + x] = new Block(new Vector3i(start.x + x - delta / 2, start.y, start.z + z - delta / 2), 0, new int[]{sideId, sideId, sideId, sideId, sideId, sideId});
-            }
-        }
+     * @param start центр платформы
+     * @param delta сторона платформы
+     * @return мир из сгенерированных блоков
+     */
+    public static World generateBlockLayer(Vector3i start, int delta) {
+        final World result = new World();
+        final int sideId = 17;
+        final Vector3i from = new Vector3i(start.x - delta / 2, start.y, start.z - delta / 2);
+        if (delta > 0) new WorldEdit()
+                .fill(from, new Vector3i(from.x + delta - 1, start.y, from.z + delta - 1), 0, new int[]{sideId, sideId, sideId, sideId, sideId, sideId})
+                .apply(result);
         return result;
     }
 
@@ -215,31 +350,7 @@ public class EngineRuntime {
      * @return наличие блока на указанной координате
      */
     public boolean checkCord(Vector3i vector3i) {
-        return blocks.containsKey(vector3i) && blocks.get(vector3i).id != -1;
-    }
-
-    /**
-     * Множество координат ближайших блоков с разницей в координате <= delta
-     *
-     * @param delta максимальная разница в координате
-     * @return множество координат существующих ближайших блоков
-     */
-    protected Set<Vector3i> getNearest(int delta) {
-        final Set<Vector3i> vector3is = new LinkedHashSet<>();
-        final Vector3f pos = model.getPosition();
-        final Vector3i modelInt = getVector3i(pos).add(-delta, -delta, -delta);
-        final int delta2 = delta * 2;
-        for (int dx = 0; dx <= delta2; dx++) {
-            for (int dy = 0; dy < delta2; dy++) {
-                for (int dz = 0; dz < delta2; dz++) {
-                    Vector3i checkedVector3i = new Vector3i(modelInt).add(dx, dy, dz);
-                    if (checkCord(checkedVector3i)) {
-                        vector3is.add(checkedVector3i);
-                    }
-                }
-            }
-        }
-        return vector3is;
+        return blocks.isSolid(vector3i.x, vector3i.y, vector3i.z);
     }
 
     /**
@@ -247,7 +358,7 @@ public class EngineRuntime {
      * @return инсточник света (null, если такового нет или блок не выбран)
      */
     protected LightPoint getNearestLight() {
-        if( selectedCord == null || lightPoints.size() == 0 ) return null;
+        if( !selected || lightPoints.size() == 0 ) return null;
         float dist = Float.MAX_VALUE;
         LightPoint light = null;
         for(LightPoint lightPoint: lightPoints){
@@ -272,34 +383,25 @@ public class EngineRuntime {
     }
 
     /**
-     * Просчёт взаимодействия луча направления ориентации и мира
-     * при взаимодействии с миром selectedCord - первый блок на пути луча
+     * Просчёт взаимодействия луча направления ориентации и мира (VoxelRay, без выделения памяти).
+     * При попадании selected = true, selectedCord - первый блок на пути луча, lastCord - ячейка перед ним.
+     * Блок, соседний с ячейкой камеры по ходу луча, не выбирается
      */
     protected void rayTrace() {
-        final Vector3f orientation = model.getOrientation();
-        final Vector3f pos = model.getCameraPosition();
-        final Vector3i startPosI = getVector3i(pos);
-        final Vector3f dir = new Vector3f(orientation).div(Settings.rayPrecision);
-
-
-        Vector3i lastCheckedPos = null;
-        lastCord = null;
-        selectedCord = null;
-        selectedFloatCord = null;
-
-        for (int i = 0; i < Settings.rayDistance * Settings.rayPrecision; i++) {
-            pos.add(dir);
-            Vector3i posI = getVector3i(pos);
-            if (checkCord(posI)) {
-                if (lastCheckedPos != null && !lastCheckedPos.equals(startPosI)) {
-                    lastCord = lastCheckedPos;
-                    selectedCord = posI;
-                    selectedFloatCord = pos;
-                }
-                break;
-            }
-            lastCheckedPos = posI;
-        }
+        model.getCameraPosition(rayOrigin);
+        model.getOrientation(rayDirection);
+        selected = false;
+        if (!VoxelRay.trace(blocks, rayOrigin.x, rayOrigin.y, rayOrigin.z,
+                rayDirection.x, rayDirection.y, rayDirection.z, Settings.rayDistance, rayHit)) return;
+
+        final RayHit hit = rayHit;
+        final int lastX = hit.x + hit.normalX, lastY = hit.y + hit.normalY, lastZ = hit.z + hit.normalZ;
+        if (hit.distance == 0.0f || lastX == (int) Math.floor(rayOrigin.x) && lastY == (int) Math.floor(rayOrigin.y) && lastZ == (int) Math.floor(rayOrigin.z))
+            return;
+        selected = true;
+        selectedCord.set(hit.x, hit.y, hit.z);
+        lastCord.set(lastX, lastY, lastZ);
+        selectedFloatCord.set(hit.pointX, hit.pointY, hit.pointZ);
     }
 
     /**
@@ -320,9 +422,8 @@ public class EngineRuntime {
      * @param id       id блока
      * @param sideIds  массив[6] id боковых сторон
      */
-    private void createBlock(Vector3i vector3i, int id, int[] sideIds) {
-        Vector3i v3i = new Vector3i(vector3i);
-        blocks.put(v3i, new Block(v3i, id, sideIds));
+    protected void createBlock(Vector3i vector3i, int id, int[] sideIds) {
+        blocks.set(vector3i.x, vector3i.y, vector3i.z, id, sideIds);
         updateBlockSpace(vector3i);
     }
 
@@ -331,38 +432,44 @@ public class EngineRuntime {
      *
      * @param vector3i координаты удаляемого блока
      */
-    private void removeBlock(Vector3i vector3i) {
-        blocks.remove(vector3i);
+    protected void removeBlock(Vector3i vector3i) {
+        blocks.remove(vector3i.x, vector3i.y, vector3i.z);
         updateBlockSpace(vector3i);
     }
 
     /**
      * Вызов двустороннего обновления сторон при постановке блока,
-     * производится проверка на существование блока в координате anotherCord
+     * производится проверка на существование блока по соседству со стороны side
      *
-     * @param block       поставленный блок
-     * @param anotherCord координаты парного блока
-     * @param sideR       id обновляемой стороны поставленного блока
-     * @param sideAR      id обновляемой стороны парного блока
-     */
-    private void pairUpdate(Block block, Vector3i anotherCord, int sideR, int sideAR) {
-        if (checkCord(anotherCord)) {
-            block.sideRender[sideR] = false;
-            blocks.get(anotherCord).sideRender[sideAR] = false;
+     * @param x    координата x поставленного блока
+     * @param y    координата y поставленного блока
+     * @param z    координата z поставленного блока
+     * @param side id обновляемой стороны поставленного блока
+     */
+    private void pairUpdate(int x, int y, int z, int side) {
+        final int[] offset = Block.SIDE_OFFSETS[side];
+        final int ax = x + offset[0], ay = y + offset[1], az = z + offset[2];
+        if (blocks.isSolid(ax, ay, az)) {
+            blocks.setFace(x, y, z, side, false);
+            blocks.setFace(ax, ay, az, Block.OPPOSITE_SIDE[side], false);
         } else {
-            block.sideRender[sideR] = true;
+            blocks.setFace(x, y, z, side, true);
         }
     }
 
     /**
-     * Вызов обновления стороны блока,
-     * производится проверка на существование блока в координате anotherCord
+     * Вызов обновления стороны соседнего блока после удаления,
+     * производится проверка на существование блока по соседству со стороны side
      *
-     * @param anotherCord координаты обновляемого блока
-     * @param sideAR      id обновляемой стороны
+     * @param x    координата x удалённого блока
+     * @param y    координата y удалённого блока
+     * @param z    координата z удалённого блока
+     * @param side сторона, с которой находится обновляемый блок
      */
-    private void pairDeleteUpdate(Vector3i anotherCord, int sideAR) {
-        if (checkCord(anotherCord)) blocks.get(anotherCord).sideRender[sideAR] = true;
+    private void pairDeleteUpdate(int x, int y, int z, int side) {
+        final int[] offset = Block.SIDE_OFFSETS[side];
+        final int ax = x + offset[0], ay = y + offset[1], az = z + offset[2];
+        if (blocks.isSolid(ax, ay, az)) blocks.setFace(ax, ay, az, Block.OPPOSITE_SIDE[side], true);
     }
 
     /**
@@ -370,23 +477,12 @@ public class EngineRuntime {
      *
      * @param vector3i координата, вокруг которой проверяются блоки
      */
-    private void updateBlockSpace(Vector3i vector3i) {
-        final Vector3i center = vector3i;
-        if (blocks.containsKey(vector3i)) {
-            Block block = blocks.get(vector3i);
-            pairUpdate(block, new Vector3i(center).add(0, 0, 1), 0, 3);
-            pairUpdate(block, new Vector3i(center).add(0, 0, -1), 3, 0);
-            pairUpdate(block, new Vector3i(center).add(0, 1, 0), 1, 2);
-            pairUpdate(block, new Vector3i(center).add(0, -1, 0), 2, 1);
-            pairUpdate(block, new Vector3i(center).add(1, 0, 0), 5, 4);
-            pairUpdate(block, new Vector3i(center).add(-1, 0, 0), 4, 5);
-        } else {
-            pairDeleteUpdate(new Vector3i(center).add(0, 0, 1), 3);
-            pairDeleteUpdate(new Vector3i(center).add(0, 0, -1), 0);
-            pairDeleteUpdate(new Vector3i(center).add(0, 1, 0), 2);
-            pairDeleteUpdate(new Vector3i(center).add(0, -1, 0), 1);
-            pairDeleteUpdate(new Vector3i(center).add(1, 0, 0), 4);
-            pairDeleteUpdate(new Vector3i(center).add(-1, 0, 0), 5);
+    protected void updateBlockSpace(Vector3i vector3i) {
+        final int x = vector3i.x, y = vector3i.y, z = vector3i.z;
+        final boolean present = blocks.contains(x, y, z);
+        for (int side = 0; side < 6; side++) {
+            if (present) pairUpdate(x, y, z, side);
+            else pairDeleteUpdate(x, y, z, side);
         }
     }
 
@@ -396,29 +492,32 @@ public class EngineRuntime {
      * @param commandsSet множество команд из контроллера
      */
     private void handleInput(Set<Commands> commandsSet) {
-        if (commandsSet.contains(REMOVE) && selectedCord != null) {
-            Block selectedBlock = blocks.get(selectedCord);
-            if(selectedBlock != null) {
+        if (commandsSet.contains(REMOVE) && selected) {
+            if (blocks.contains(selectedCord.x, selectedCord.y, selectedCord.z)) {
                 removeBlock(selectedCord);
             }
         }
-        if (commandsSet.contains(ADD) && lastCord != null && model.checkPosToPlace(lastCord))
+        if (commandsSet.contains(ADD) && selected && model.checkPosToPlace(lastCord))
             createBlock(lastCord, 1, selectedId + 16);
         if (commandsSet.contains(START_DEBUG)) settings.debug = true;
         if (commandsSet.contains(END_DEBUG)) {
             settings.debug = false;
             lines.clear();
         }
-        if (commandsSet.contains(PLACE_LIGHT) && selectedCord != null){
+        if (commandsSet.contains(PLACE_LIGHT) && selected){
             lightPoints.add(new LightPoint(new Vector3f(selectedFloatCord).add(0.0f, 2.0f, 0.0f), new Vector4f(1.0f, 1.0f, 1.0f, 1.0f)));
+            lightsChanged = true;
         }
         if (commandsSet.contains(REMOVE_LIGHT)){
             LightPoint nearLight = getNearestLight();
-            if(nearLight != null) lightPoints.remove(nearLight);
+            if(nearLight != null && lightPoints.remove(nearLight)) lightsChanged = true;
         }
         if(commandsSet.contains(CREATE_LEVEL)){
             blocks.clear();
-            setBlocks(generateBlockLayer(new Vector3i(0, 5, 0), 25));
+            final int sideId = 17;
+            new WorldEdit()
+                    .fill(new Vector3i(-12, 5, -12), new Vector3i(12, 5, 12), 0, new int[]{sideId, sideId, sideId, sideId, sideId, sideId})
+                    .apply(blocks);
         }
         if(commandsSet.contains(ID0)) selectedId = 0;
         if(commandsSet.contains(ID1)) selectedId = 1;
@@ -435,33 +534,172 @@ public class EngineRuntime {
         createBlock(new Vector3i(0, 5, 0), 1, 1);
         removeBlock(new Vector3i(0, 5, 0));
         rayTrace();
-        getNearest(5);
         getNearestLight();
         rayTrace();
         setBlocks(generateBlockLayer(new Vector3i(1, 0, 0), 1));
     }
 
     /**
-     * Метод для запуска основного цикла движка
+     * Публикация новой версии мира для отрисовки, если с прошлой публикации изменилась хотя бы одна секция,
+     * и нового набора источников света, если он изменился.
+     * Вызывается в конце такта: все изменения такта попадают в одну версию
      */
-    public void run() {
-        System.out.println("EngineRuntime started");
-        while (rtController.isRunning()) {
-            rayTrace();
+    public void commitRenderSnapshot() {
+        if (lightsChanged) publishLights();
+        changedCount = 0;
+        blocks.drainDirtyChunks(changedCollector);
+        if (changedCount == 0) return;
+        renderSnapshot = renderSnapshot.append(blocks.snapshot(), Arrays.copyOf(changedChunks, changedCount));
+    }
+
+    /**
+     * Публикация копий источников света для отрисовки
+     */
+    private void publishLights() {
+        final LightPoint[] lights = new LightPoint[lightPoints.size()];
+        int count = 0;
+        for (LightPoint point : lightPoints) {
+            lights[count++] = new LightPoint(new Vector3f(point.cord), new Vector4f(point.color));
+        }
+        publishedLights = lights;
+        lightsChanged = false;
+    }
+
+    /**
+     * Опубликованные источники света. Массив не изменяется после публикации
+     * и заменяется новым при изменении набора, поэтому изменение определяется сравнением ссылок
+     *
+     * @return копии источников света
+     */
+    public LightPoint[] getLights() {
+        return publishedLights;
+    }
+
+    /**
+     * @return последняя опубликованная для отрисовки версия мира
+     */
+    public RenderSnapshot getRenderSnapshot() {
+        return renderSnapshot;
+    }
+
+    /**
+     * Приём разовой команды из очереди: повтор уже принятой в этом такте команды
+     * остаётся в очереди до следующего такта, чтобы каждое нажатие обработалось отдельно
+     *
+     * @param command   команда
+     * @param timestamp время нажатия, нс
+     * @return принята ли команда
+     */
+    private boolean acceptCommand(Commands command, long timestamp) {
+        if (!commands.add(command)) return false;
+        inputLatency.record(tickTime - timestamp);
+        return true;
+    }
+
+    /**
+     * @return задержка от нажатия клавиши до обработки команды тактом
+     */
+    public InputLatency getInputLatency() {
+        return inputLatency;
+    }
+
+    /**
+     * @return планировщик тактов движка с метриками
+     */
+    public TickScheduler getScheduler() {
+        return scheduler;
+    }
 
-            model.handleInput(rtController.commandsSet, getNearest(2));
-            this.handleInput(rtController.commandsSet);
+    /**
+     * @return модель персонажа
+     */
+    public Model getModel() {
+        return model;
+    }
 
-            if(settings.debug) synchronized (lines) {
-                lines.clear();
-                if (selectedFloatCord != null)
-                    lines.add(new Line(model.getCameraPosition().add(model.getOrientation().normalize().cross(new Vector3f(0.0f, 1.0f, 0.0f)).mul(0.2f)), new Vector3f(selectedFloatCord)));//settings.debug = true;
+    /**
+     * Координаты камеры для отрисовки, интерполированные между двумя последними тактами
+     *
+     * @param dest вектор для записи
+     * @return dest
+     */
+    public Vector3f getInterpolatedCameraPosition(Vector3f dest) {
+        return model.getInterpolatedCameraPosition(scheduler.alpha(), dest);
+    }
+
+    /**
+     * Один такт движка фиксированной длительности
+     */
+    public void tick() {
+        final long begin = System.nanoTime();
+        if (pager != null) {
+            final Vector3f position = model.getPosition();
+            try {
+                pager.update(position.x, position.z);
+            } catch (IOException ex) {
+                System.out.println("Cannot page regions");
+                System.out.println("file: " + ex.getMessage());
             }
+        }
+        runEngineTasks();
+        rayTrace();
+
+        tickTime = System.nanoTime();
+        commands.clear();
+        rtController.getHeldCommands(commands);
+        rtController.getCommandQueue().drain(commandSink);
+        model.handleInput(commands, blocks);
+        this.handleInput(commands);
+
+        commitRenderSnapshot();
+        if (!firstTickDone) {
+            firstTickDone = true;
+            rtController.getStartupProfile().end("first tick", begin);
+        }
+
+        if(settings.debug) synchronized (lines) {
+            lines.clear();
+            if (selected)
+                lines.add(new Line(model.getCameraPosition().add(model.getOrientation().normalize().cross(new Vector3f(0.0f, 1.0f, 0.0f)).mul(0.2f)), new Vector3f(selectedFloatCord)));//settings.debug = true;
+        }
+    }
 
+    /**
+     * Воспроизведение сценария команд без планировщика: такты выполняются подряд без ожидания,
+     * перед каждым тактом применяются его шаги сценария
+     *
+     * @param script сценарий команд
+     * @param ticks  количество тактов
+     */
+    public void runScript(CommandScript script, int ticks) {
+        for (int tick = 0; tick < ticks; tick++) {
+            script.apply(tick, rtController, orientation);
+            tick();
+        }
+    }
+
+    /**
+     * Метод для запуска основного цикла движка с фиксированной частотой тактов Settings.tickRate
+     */
+    public void run() {
+        System.out.println("EngineRuntime started");
+        scheduler.run(rtController::isRunning, this::tick);
+        System.out.println("EngineRuntime ticks: " + scheduler.metrics());
+        System.out.println("EngineRuntime input latency: " + inputLatency);
+        runEngineTasks();
+        stateExecutor.shutdown();
+        try {
+            stateExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        runEngineTasks();
+        if (pager != null) {
             try {
-                Thread.sleep(5L);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                pager.close();
+            } catch (IOException ex) {
+                System.out.println("Cannot save regions");
+                System.out.println("file: " + ex.getMessage());
             }
         }
         System.out.println("EngineRuntime finished");
@@ -0,0 +1,31 @@
+package engine;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+/**
+ * Направление взгляда для движка без окна и камеры, задаётся сценарием команд или тестом
+ */
+public class HeadlessOrientation implements OrientationSource {
+    /**
+     * Направление взгляда, изменяется потоком движка
+     */
+    private final Vector3f orientation = new Vector3f(0.0f, 0.0f, -1.0f);
+
+    /**
+     * Задание направления взгляда
+     *
+     * @param x компонента x
+     * @param y компонента y
+     * @param z компонента z
+     */
+    public void set(float x, float y, float z) {
+        if (x == 0.0f && y == 0.0f && z == 0.0f) throw new IllegalArgumentException("Направление взгляда не может быть нулевым");
+        orientation.set(x, y, z).normalize();
+    }
+
+    @Override
+    public Vector3fc getOrientation() {
+        return orientation;
+    }
+}
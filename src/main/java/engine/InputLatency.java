@@ -0,0 +1,71 @@
+package engine;
+
+/**
+ * Задержка ввода: время от опроса клавиши в потоке отрисовки до обработки команды тактом движка.
+ * Пишется потоком движка, читается из любого потока
+ */
+public class InputLatency {
+    /**
+     * Количество последних событий, по которым считаются процентили
+     */
+    private static final int WINDOW = 256;
+
+    /**
+     * Задержки последних событий, нс
+     */
+    private final RollingSamples latencies = new RollingSamples(WINDOW);
+    private long max;
+
+    /**
+     * Учёт обработанного события
+     *
+     * @param latency задержка события, нс
+     */
+    synchronized void record(long latency) {
+        latencies.add(latency);
+        if (latency > max) max = latency;
+    }
+
+    /**
+     * Процентиль задержки по последним событиям
+     *
+     * @param percentile процентиль от 0 до 100
+     * @return задержка, нс (0, если событий не было)
+     */
+    public long percentile(double percentile) {
+        return latencies.percentile(percentile);
+    }
+
+    /**
+     * @return медианная задержка, нс
+     */
+    public long p50() {
+        return percentile(50);
+    }
+
+    /**
+     * @return 99-й процентиль задержки, нс
+     */
+    public long p99() {
+        return percentile(99);
+    }
+
+    /**
+     * @return наибольшая задержка за всё время, нс
+     */
+    public synchronized long max() {
+        return max;
+    }
+
+    /**
+     * @return количество обработанных событий
+     */
+    public long count() {
+        return latencies.count();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("events=%d p50=%.3fms p99=%.3fms max=%.3fms", count(), p50() / 1e6, p99() / 1e6, max() / 1e6);
+    }
+}
@@ -1,7 +1,6 @@
 package engine;
 
 import controller.Commands;
-import graphics.Camera;
 import org.joml.Vector3f;
 import org.joml.Vector3i;
 
@@ -14,32 +13,49 @@ import static controller.Commands.*;
  */
 public class Model {
     /**
-     * Камера
+     * Источник направления взгляда
      */
-    private Camera camera;
+    private final OrientationSource orientation;
     /**
      * Координаты модели
      */
     private Vector3f position;
+    /**
+     * Координаты модели на начало последнего такта, для интерполяции при отрисовке
+     */
+    private final Vector3f previousPosition;
 
     private final float g = 0.00098f;
     private float speed;
     private float downSpeed;
     private final Vector3f up = new Vector3f(0.0f, 1.0f, 0.0f);
     private final float modelHeight = 1.5f;
+    /**
+     * Доля скорости, на которую модель перемещается за один такт
+     */
+    private static final float STEP = 0.8f;
+    /**
+     * Параллелепипед модели: от ног до уровня чуть выше камеры
+     */
+    private final Collider collider = new Collider(0.3f, modelHeight + 0.3f);
+    /**
+     * Переиспользуемые векторы направления и перемещения
+     */
+    private final Vector3f forward = new Vector3f(), right = new Vector3f(), motion = new Vector3f();
 
     /**
      * Констуктор модели для движка
      *
-     * @param position координаты позиции
-     * @param speed    изначальная скорость передвижения
-     * @param camera   камера
+     * @param position    координаты позиции
+     * @param speed       изначальная скорость передвижения
+     * @param orientation источник направления взгляда
      */
-    Model(Vector3f position, float speed, Camera camera) {
+    Model(Vector3f position, float speed, OrientationSource orientation) {
         this.position = new Vector3f(position);
+        this.previousPosition = new Vector3f(position);
         this.speed = speed;
         this.downSpeed = 0f;
-        this.camera = camera;
+        this.orientation = orientation;
     }
 
     /**
@@ -57,153 +73,80 @@ public class Model {
     }
 
     /**
-     * @return новый Vector3f, равный нормарованной ориентации камеры
+     * @param dest вектор для записи
+     * @return dest, равный координатам камеры
      */
-    public Vector3f getOrientation() {
-        return new Vector3f(camera.orientation).normalize();
+    public Vector3f getCameraPosition(Vector3f dest) {
+        return dest.set(position).add(0f, modelHeight, 0f);
     }
 
     /**
-     * Обработка ввода для модели
+     * Координаты камеры между двумя последними тактами
      *
-     * @param commandsSet   множество комманд
-     * @param nearestBlocks ближайшие к можели блоки
+     * @param alpha доля такта от 0 (начало последнего такта) до 1 (его конец)
+     * @param dest  вектор для записи
+     * @return dest, равный интерполированным координатам камеры
      */
-    public void handleInput(Set<Commands> commandsSet, Set<Vector3i> nearestBlocks) {
-        Vector3f orientation = getOrientation();
-        orientation.y = 0f;
-        orientation.normalize();
-
-        if (commandsSet.contains(FORWARD)) moveForward(orientation, nearestBlocks);
-        if (commandsSet.contains(BACKWARD)) moveBackward(orientation, nearestBlocks);
-        if (commandsSet.contains(LEFT)) moveLeft(orientation, nearestBlocks);
-        if (commandsSet.contains(RIGHT)) moveRight(orientation, nearestBlocks);
-        if (commandsSet.contains(JUMP)) {
-            //System.out.println(downSpeed);
-            downSpeed += 0.1f;
-        }
-        fallDown(nearestBlocks);
-
-        final float df = 0.1f;
-        if (commandsSet.contains(SPEED_1)) speed = df;
-        if (commandsSet.contains(SPEED_01)) speed = 0.1f * df;
-        if (commandsSet.contains(SPEED_0025)) speed = 0.025f * df;
-        camera.setPos(new Vector3f(position).add(0f, modelHeight, 0f));
+    public Vector3f getInterpolatedCameraPosition(float alpha, Vector3f dest) {
+        return dest.set(previousPosition).lerp(position, alpha).add(0f, modelHeight, 0f);
     }
 
     /**
-     * Проверка возможности такого передвижения
-     *
-     * @param delta         изменение координат
-     * @param nearestBlocks ближайшие блоки
-     * @return возможно ли перемещение
-     */
-    protected boolean checkMove(Vector3f delta, Set<Vector3i> nearestBlocks) {
-        final Vector3i adjustableProbPosition = EngineRuntime.getVector3i(getPosition().add(delta));
-        final Vector3i cameraProbPos = EngineRuntime.getVector3i(getCameraPosition().add(delta));
-        while (adjustableProbPosition.y <= cameraProbPos.y) {
-            if (nearestBlocks.contains(adjustableProbPosition)) return false;
-            adjustableProbPosition.add(0, 1, 0);
-        }
-        return true;
-    }
-
-    /**
-     * Проверка возможности постановки блока
-     *
-     * @param block предрполагаемая координата блока
-     * @return возможно ли размещение блока
+     * @return новый Vector3f, равный нормарованной ориентации камеры
      */
-    protected boolean checkPosToPlace(Vector3i block) {
-        final Vector3i adjustableProbPosition = EngineRuntime.getVector3i(getPosition());
-        final Vector3i cameraProbPos = EngineRuntime.getVector3i(getCameraPosition());
-        while (adjustableProbPosition.y <= cameraProbPos.y) {
-            if (adjustableProbPosition.equals(block)) return false;
-            adjustableProbPosition.add(0, 1, 0);
-        }
-        return true;
+    public Vector3f getOrientation() {
+        return new Vector3f(orientation.getOrientation()).normalize();
     }
 
     /**
-     * Движение вперёд с учётом расположения ближайших блоков
-     *
-     * @param movingOrientation направление движения
-     * @param nearestBlocks     ближайшие блоки
+     * @param dest вектор для записи
+     * @return dest, равный нормарованной ориентации камеры
      */
-    private void moveForward(Vector3f movingOrientation, Set<Vector3i> nearestBlocks) {
-        final Vector3f delta = new Vector3f(movingOrientation).mul(speed);
-        final Vector3f dx = new Vector3f(delta).mul(0f, 0f, 16f), dz = new Vector3f(delta).mul(16f, 0f, 0f);
-        //position.add(delta);
-        if (checkMove(dx, nearestBlocks))
-            position.add(dx.mul(0.05f));
-        if (checkMove(dz, nearestBlocks))
-            position.add(dz.mul(0.05f));
+    public Vector3f getOrientation(Vector3f dest) {
+        return dest.set(orientation.getOrientation()).normalize();
     }
 
     /**
-     * Движение назад с учётом расположения ближайших блоков
+     * Обработка ввода для модели: горизонтальное перемещение и гравитация
+     * разрешаются одним перемещением параллелепипеда модели через Collider
      *
-     * @param movingOrientation направление движения
-     * @param nearestBlocks     ближайшие блоки
+     * @param commandsSet множество комманд
+     * @param blocks      хранилище блоков сцены
      */
-    private void moveBackward(Vector3f movingOrientation, Set<Vector3i> nearestBlocks) {
-        final Vector3f delta = new Vector3f(movingOrientation).mul(-speed);
-        final Vector3f dx = new Vector3f(delta).mul(0f, 0f, 16f), dz = new Vector3f(delta).mul(16f, 0f, 0f);
-        if (checkMove(dx, nearestBlocks))
-            position.add(dx.mul(0.05f));
-        if (checkMove(dz, nearestBlocks))
-            position.add(dz.mul(0.05f));
-    }
+    public void handleInput(Set<Commands> commandsSet, BlockStore blocks) {
+        previousPosition.set(position);
+        getOrientation(forward);
+        forward.y = 0f;
+        forward.normalize();
+        forward.cross(up, right).normalize();
+
+        motion.zero();
+        if (commandsSet.contains(FORWARD)) motion.add(forward);
+        if (commandsSet.contains(BACKWARD)) motion.sub(forward);
+        if (commandsSet.contains(LEFT)) motion.sub(right);
+        if (commandsSet.contains(RIGHT)) motion.add(right);
+        motion.mul(speed * STEP, 0f, speed * STEP);
+        if (commandsSet.contains(JUMP)) {
+            downSpeed += 0.1f;
+        }
+        motion.y = downSpeed * STEP;
 
-    /**
-     * Движение вправо с учётом расположения ближайших блоков
-     *
-     * @param movingOrientation направление движения
-     * @param nearestBlocks     ближайшие блоки
-     */
-    private void moveRight(Vector3f movingOrientation, Set<Vector3i> nearestBlocks) {
-        final Vector3f delta = new Vector3f(movingOrientation).cross(up).normalize().mul(speed);
-        final Vector3f dx = new Vector3f(delta).mul(0f, 0f, 16f), dz = new Vector3f(delta).mul(16f, 0f, 0f);
-        if (checkMove(dx, nearestBlocks))
-            position.add(dx.mul(0.05f));
-        if (checkMove(dz, nearestBlocks))
-            position.add(dz.mul(0.05f));
-    }
+        if ((collider.move(blocks, position, motion) & Collider.AXIS_Y) != 0) downSpeed = 0f;
+        else downSpeed -= g;
 
-    /**
-     * Движение влево с учётом расположения ближайших блоков
-     *
-     * @param movingOrientation направление движения
-     * @param nearestBlocks     ближайшие блоки
-     */
-    private void moveLeft(Vector3f movingOrientation, Set<Vector3i> nearestBlocks) {
-        final Vector3f delta = new Vector3f(movingOrientation).cross(up).normalize().mul(-speed);
-        final Vector3f dx = new Vector3f(delta).mul(0f, 0f, 16f), dz = new Vector3f(delta).mul(16f, 0f, 0f);
-        if (checkMove(dx, nearestBlocks))
-            position.add(dx.mul(0.05f));
-        if (checkMove(dz, nearestBlocks))
-            position.add(dz.mul(0.05f));
+        final float df = 0.1f;
+        if (commandsSet.contains(SPEED_1)) speed = df;
+        if (commandsSet.contains(SPEED_01)) speed = 0.1f * df;
+        if (commandsSet.contains(SPEED_0025)) speed = 0.025f * df;
     }
 
     /**
-     * Метод имитации гравитации с учётом расположения ближайших блоков
+     * Проверка возможности постановки блока
      *
-     * @param nearestBlocks ближайшие блоки
+     * @param block предрполагаемая координата блока
+     * @return возможно ли размещение блока
      */
-    private void fallDown(Set<Vector3i> nearestBlocks) {
-        //float f1 = System.nanoTime();
-        final Vector3f dy = new Vector3f(0f, downSpeed, 0f);
-        final Vector3f checkV3f = new Vector3f(dy.mul(0f, 16f / 10f, 0f));
-        final Vector3f mulV3f = new Vector3f(dy.mul(0.05f));
-        for (int i = 0; i < 10; i++) {
-            if (checkMove(checkV3f, nearestBlocks)) {
-                position.add(mulV3f);
-                downSpeed -= g / 10f;
-            } else {
-                downSpeed = 0f;
-                break;
-            }
-        }
-        //System.out.println((System.nanoTime() - f1)/1000;
+    protected boolean checkPosToPlace(Vector3i block) {
+        return !collider.intersects(position, block.x, block.y, block.z);
     }
 }
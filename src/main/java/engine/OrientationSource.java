@@ -0,0 +1,13 @@
+package engine;
+
+import org.joml.Vector3fc;
+
+/**
+ * Источник направления взгляда модели: камера окна или заданное направление в режиме без окна
+ */
+public interface OrientationSource {
+    /**
+     * @return текущее направление взгляда, не обязательно нормированное
+     */
+    Vector3fc getOrientation();
+}
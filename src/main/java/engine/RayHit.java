@@ -0,0 +1,42 @@
+package engine;
+
+/**
+ * Результат трассировки луча по сетке блоков (VoxelRay).
+ * Объект переиспользуется между вызовами, чтобы трассировка не выделяла память
+ */
+public class RayHit {
+    /**
+     * Попал ли луч в блок
+     */
+    public boolean hit;
+    /**
+     * Координата блока, в который попал луч
+     */
+    public int x, y, z;
+    /**
+     * Нормаль стороны, через которую луч вошёл в блок (нулевая, если луч начинается внутри блока)
+     */
+    public int normalX, normalY, normalZ;
+    /**
+     * Точка попадания
+     */
+    public float pointX, pointY, pointZ;
+    /**
+     * Расстояние от начала луча до точки попадания
+     */
+    public float distance;
+
+    /**
+     * Номер стороны блока, через которую луч вошёл в блок
+     *
+     * @return номер стороны (-1, если луч начинается внутри блока или не попал)
+     */
+    public int side() {
+        if (!hit) return -1;
+        for (int side = 0; side < 6; side++) {
+            final int[] offset = Block.SIDE_OFFSETS[side];
+            if (offset[0] == normalX && offset[1] == normalY && offset[2] == normalZ) return side;
+        }
+        return -1;
+    }
+}
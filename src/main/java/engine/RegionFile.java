@@ -0,0 +1,256 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Файл региона: столбцы секций 32x32 по x и z (все секции столбца по y хранятся вместе).
+ * В начале файла - отображённая в память таблица смещений [сектор, длина, CRC32] на каждый столбец,
+ * далее данные столбцов, выровненные по секторам 4 КБ.
+ * Данные столбца: количество секций и секции в кодировке StateFile.
+ * Занятые сектора отмечаются в битовом наборе, освобождённые сектора занимаются снова.
+ * Новые данные столбца не записываются поверх его старых данных, поэтому прерванная запись
+ * оставляет в файле прежнюю версию столбца, а при чтении проверяются границы записи и CRC32
+ */
+public class RegionFile implements Closeable {
+    /**
+     * Сдвиг для перевода координаты секции в координату региона
+     */
+    public static final int SHIFT = 5;
+    /**
+     * Размер стороны региона в секциях
+     */
+    public static final int SIZE = 1 << SHIFT;
+    /**
+     * Размер сектора данных
+     */
+    private static final int SECTOR = 4096;
+    /**
+     * Количество int в записи таблицы смещений
+     */
+    private static final int ENTRY = 3;
+    /**
+     * Размер таблицы смещений в байтах
+     */
+    private static final int HEADER = SIZE * SIZE * ENTRY * Integer.BYTES;
+
+    private final FileChannel channel;
+    /**
+     * Таблица смещений
+     */
+    private final MappedByteBuffer header;
+    /**
+     * Занятые сектора: таблица смещений и данные столбцов
+     */
+    private final BitSet usedSectors;
+    /**
+     * Буфер чтения данных столбца
+     */
+    private ByteBuffer readBuffer;
+    private final StateFile.Writer writer;
+    private final StateFile.ChunkCodec codec;
+    private final CRC32 crc;
+
+    /**
+     * Открытие или создание файла региона
+     *
+     * @param path файл региона
+     * @throws IOException ошибка открытия
+     */
+    public RegionFile(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+        usedSectors = new BitSet();
+        usedSectors.set(0, sectors(HEADER));
+        final long size = channel.size();
+        for (int entry = 0; entry < HEADER; entry += ENTRY * Integer.BYTES) {
+            final int sector = header.getInt(entry), length = header.getInt(entry + Integer.BYTES);
+            // повреждённые записи не занимают сектора, ошибка сообщается при чтении столбца
+            if (valid(sector, length, size)) usedSectors.set(sector, sector + sectors(length));
+        }
+        readBuffer = ByteBuffer.allocateDirect(SECTOR * 4);
+        writer = new StateFile.Writer();
+        codec = new StateFile.ChunkCodec();
+        crc = new CRC32();
+    }
+
+    /**
+     * Смещение записи столбца в таблице
+     *
+     * @param cx координата секции x
+     * @param cz координата секции z
+     * @return смещение в байтах
+     */
+    private static int entry(int cx, int cz) {
+        return (((cz & (SIZE - 1)) << SHIFT) | (cx & (SIZE - 1))) * ENTRY * Integer.BYTES;
+    }
+
+    /**
+     * @param length длина данных в байтах
+     * @return количество секторов, занимаемых данными
+     */
+    private static int sectors(int length) {
+        return (length + SECTOR - 1) / SECTOR;
+    }
+
+    /**
+     * @param sector первый сектор данных столбца
+     * @param length длина данных в байтах
+     * @param size   размер файла в байтах
+     * @return лежат ли данные целиком за таблицей смещений и в пределах файла
+     */
+    private static boolean valid(int sector, int length, long size) {
+        return sector >= sectors(HEADER) && length > 0 && (long) sector * SECTOR + length <= size;
+    }
+
+    /**
+     * Поиск первого участка из sectors свободных подряд секторов, при отсутствии - в конце файла
+     *
+     * @param sectors количество секторов
+     * @return номер первого сектора участка, участок отмечается занятым
+     */
+    private int allocate(int sectors) {
+        int start = usedSectors.nextClearBit(0);
+        while (true) {
+            final int next = usedSectors.nextSetBit(start);
+            if (next < 0 || next - start >= sectors) break;
+            start = usedSectors.nextClearBit(next);
+        }
+        usedSectors.set(start, start + sectors);
+        return start;
+    }
+
+    /**
+     * @param cx координата секции x
+     * @param cz координата секции z
+     * @return сохранён ли столбец в файле
+     */
+    public boolean hasColumn(int cx, int cz) {
+        return header.getInt(entry(cx, cz)) != 0;
+    }
+
+    /**
+     * @return количество секторов до конца последних данных, включая таблицу смещений
+     */
+    int sectorCount() {
+        return usedSectors.length();
+    }
+
+    /**
+     * Чтение столбца секций с постановкой блоков в хранилище
+     *
+     * @param cx     координата секции x
+     * @param cz     координата секции z
+     * @param blocks хранилище, в которое добавляются блоки
+     * @return количество прочитанных секций
+     * @throws IOException ошибка чтения или повреждённые данные
+     */
+    public int readColumn(int cx, int cz, BlockStore blocks) throws IOException {
+        final ByteBuffer data = readColumnData(cx, cz);
+        return data == null ? 0 : decodeColumn(data, blocks, key -> {
+        });
+    }
+
+    /**
+     * Чтение данных столбца без разбора с проверкой границ записи и CRC32
+     *
+     * @param cx координата секции x
+     * @param cz координата секции z
+     * @return данные столбца, действительны до следующего чтения, или null, если столбец не сохранён
+     * @throws IOException ошибка чтения или повреждённые данные
+     */
+    public ByteBuffer readColumnData(int cx, int cz) throws IOException {
+        final int entry = entry(cx, cz);
+        final int sector = header.getInt(entry);
+        if (sector == 0) return null;
+        final int length = header.getInt(entry + Integer.BYTES);
+        if (!valid(sector, length, channel.size())) throw new IOException("Повреждённая запись столбца " + cx + ", " + cz);
+        if (length > readBuffer.capacity()) readBuffer = ByteBuffer.allocateDirect(length);
+        readBuffer.clear().limit(length);
+        long position = (long) sector * SECTOR;
+        while (readBuffer.hasRemaining()) {
+            final int read = channel.read(readBuffer, position);
+            if (read < 0) throw new IOException("Неожиданный конец файла региона");
+            position += read;
+        }
+        readBuffer.flip();
+        crc.reset();
+        crc.update(readBuffer.duplicate());
+        if ((int) crc.getValue() != header.getInt(entry + 2 * Integer.BYTES)) {
+            throw new IOException("Неверная контрольная сумма столбца " + cx + ", " + cz);
+        }
+        return readBuffer;
+    }
+
+    /**
+     * Постановка блоков столбца из прочитанных данных в хранилище
+     *
+     * @param data   данные столбца из readColumnData()
+     * @param blocks хранилище, в которое добавляются блоки
+     * @param keys   получатель ключей прочитанных секций
+     * @return количество прочитанных секций
+     * @throws IOException повреждённые данные
+     */
+    public int decodeColumn(ByteBuffer data, BlockStore blocks, LongConsumer keys) throws IOException {
+        final StateFile.Reader reader = new StateFile.Reader(data);
+        final int count = reader.getVarInt();
+        if (count < 0) throw new IOException("Повреждённое количество секций столбца");
+        for (int i = 0; i < count; i++) keys.accept(codec.read(reader, blocks));
+        return count;
+    }
+
+    /**
+     * Запись столбца секций, неизменённые данные (по длине и CRC32) не перезаписываются.
+     * Новые данные пишутся в первый подходящий участок свободных секторов, иначе - в конец файла;
+     * сектора старых данных освобождаются только после обновления записи таблицы смещений
+     *
+     * @param cx     координата секции x
+     * @param cz     координата секции z
+     * @param blocks хранилище блоков
+     * @param keys   ключи непустых секций столбца
+     * @param count  количество ключей
+     * @throws IOException ошибка записи
+     */
+    public void writeColumn(int cx, int cz, BlockStore blocks, long[] keys, int count) throws IOException {
+        final int entry = entry(cx, cz);
+        final int oldSector = header.getInt(entry), oldLength = header.getInt(entry + Integer.BYTES);
+        if (count == 0) {
+            if (valid(oldSector, oldLength, channel.size())) usedSectors.clear(oldSector, oldSector + sectors(oldLength));
+            header.putInt(entry, 0).putInt(entry + Integer.BYTES, 0).putInt(entry + 2 * Integer.BYTES, 0);
+            return;
+        }
+        writer.reset();
+        writer.putVarInt(count);
+        for (int i = 0; i < count; i++) codec.write(blocks, keys[i], writer);
+        final ByteBuffer data = writer.data();
+        crc.reset();
+        crc.update(data.duplicate());
+        final int length = data.remaining(), checksum = (int) crc.getValue();
+
+        if (oldSector != 0 && oldLength == length && header.getInt(entry + 2 * Integer.BYTES) == checksum) return;
+        final int sector = allocate(sectors(length));
+        long position = (long) sector * SECTOR;
+        while (data.hasRemaining()) position += channel.write(data, position);
+        header.putInt(entry, sector).putInt(entry + Integer.BYTES, length).putInt(entry + 2 * Integer.BYTES, checksum);
+        if (valid(oldSector, oldLength, channel.size())) usedSectors.clear(oldSector, oldSector + sectors(oldLength));
+    }
+
+    /**
+     * Сохранение таблицы смещений на диск и закрытие файла
+     *
+     * @throws IOException ошибка записи
+     */
+    @Override
+    public void close() throws IOException {
+        header.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,91 @@
+package engine;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Опубликованная для отрисовки версия мира. Версии образуют цепочку: движок в конце такта, в котором
+ * мир изменился, добавляет новую версию со снимком мира и списком изменённых секций,
+ * поток отрисовки без блокировок берёт последнюю версию и перестраивает секции, изменённые
+ * с уже отрисованной версии. Снимок не меняется после публикации
+ */
+public final class RenderSnapshot {
+    /**
+     * Номер версии
+     */
+    private final long epoch;
+    /**
+     * Снимок мира
+     */
+    private final BlockStore blocks;
+    /**
+     * Ключи секций, изменённых относительно предыдущей версии
+     */
+    private final long[] changedChunks;
+    /**
+     * Следующая версия, записывается один раз до публикации следующей версии
+     */
+    private volatile RenderSnapshot next;
+
+    /**
+     * Конструктор
+     *
+     * @param epoch         номер версии
+     * @param blocks        снимок мира
+     * @param changedChunks ключи секций, изменённых относительно предыдущей версии
+     */
+    RenderSnapshot(long epoch, BlockStore blocks, long[] changedChunks) {
+        this.epoch = epoch;
+        this.blocks = blocks;
+        this.changedChunks = changedChunks;
+    }
+
+    /**
+     * Создание следующей версии, вызывается только потоком движка
+     *
+     * @param blocks        снимок мира
+     * @param changedChunks ключи секций, изменённых относительно этой версии
+     * @return следующая версия
+     */
+    RenderSnapshot append(BlockStore blocks, long[] changedChunks) {
+        final RenderSnapshot snapshot = new RenderSnapshot(epoch + 1, blocks, changedChunks);
+        next = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * @return номер версии
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * @return снимок мира, только для чтения
+     */
+    public BlockStore blocks() {
+        return blocks;
+    }
+
+    /**
+     * Обход секций, изменённых после этой версии до версии latest включительно.
+     * Секция, изменённая в нескольких версиях, передаётся один раз
+     *
+     * @param latest   более поздняя версия из той же цепочки
+     * @param consumer обработчик ключей секций
+     */
+    public void forEachChangedUntil(RenderSnapshot latest, LongConsumer consumer) {
+        if (latest == this) return;
+        if (next == latest) {
+            for (long key : latest.changedChunks) consumer.accept(key);
+            return;
+        }
+        final Set<Long> keys = new LinkedHashSet<>();
+        for (RenderSnapshot snapshot = next; snapshot != null; snapshot = snapshot.next) {
+            for (long key : snapshot.changedChunks) keys.add(key);
+            if (snapshot == latest) break;
+        }
+        for (long key : keys) consumer.accept(key);
+    }
+}
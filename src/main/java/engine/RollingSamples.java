@@ -0,0 +1,59 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Последние значения измерения в кольцевом буфере фиксированного размера для подсчёта процентилей.
+ * Пишется одним потоком, читается из любого потока
+ */
+class RollingSamples {
+    /**
+     * Значения по кругу
+     */
+    private final long[] samples;
+    private long count;
+
+    /**
+     * Конструктор
+     *
+     * @param window количество последних значений, по которым считаются процентили
+     */
+    RollingSamples(int window) {
+        samples = new long[window];
+    }
+
+    /**
+     * Добавление значения, самое старое значение вытесняется
+     *
+     * @param sample значение
+     */
+    synchronized void add(long sample) {
+        samples[(int) (count % samples.length)] = sample;
+        count++;
+    }
+
+    /**
+     * Процентиль по последним значениям
+     *
+     * @param percentile процентиль от 0 до 100
+     * @return значение (0, если значений не было)
+     */
+    long percentile(double percentile) {
+        final long[] sorted;
+        synchronized (this) {
+            final int size = (int) Math.min(count, samples.length);
+            if (size == 0) return 0;
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * @return количество добавленных значений за всё время
+     */
+    synchronized long count() {
+        return count;
+    }
+}
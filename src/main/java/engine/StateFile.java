@@ -0,0 +1,471 @@
+package engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Файл сохранения сцены.
+ * Двоичный формат (версия 1): заголовок MAGIC, VERSION, количество секций,
+ * затем для каждой секции координаты, палитра [id, sideIds[0..5]] и серии (длина, номер в палитре + 1, 0 - пусто)
+ * по ячейкам в порядке Chunk.index(). Все числа после заголовка записываются как varint (знаковые - в zigzag).
+ * Старый текстовый формат (строки Block.toString()) распознаётся при загрузке и импортируется
+ */
+public final class StateFile {
+    /**
+     * Сигнатура двоичного файла сохранения
+     */
+    public static final int MAGIC = 0x56585354;
+    /**
+     * Версия двоичного формата
+     */
+    public static final int VERSION = 1;
+    /**
+     * Размер буфера ввода-вывода
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Количество int в записи палитры: id блока и 6 id сторон
+     */
+    private static final int ENTRY = 7;
+
+    private static final Pattern CORD = Pattern.compile("cord=\\[.*?]");
+    private static final Pattern ID = Pattern.compile("id=.*?,");
+    private static final Pattern SIDE_IDS = Pattern.compile("sideIds=\\[.*?]");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern COMMAS = Pattern.compile(",\\s+");
+
+    private StateFile() {
+    }
+
+    /**
+     * Сохранение блоков в двоичном формате
+     *
+     * @param blocks хранилище блоков
+     * @param path   файл сохранения
+     * @throws IOException ошибка записи
+     */
+    public static void save(BlockStore blocks, Path path) throws IOException {
+        save(blocks, path, progress -> {
+        });
+    }
+
+    /**
+     * Сохранение блоков в двоичном формате с отчётом о ходе выполнения
+     *
+     * @param blocks   хранилище блоков
+     * @param path     файл сохранения
+     * @param progress получатель доли записанных секций
+     * @throws IOException ошибка записи
+     */
+    public static void save(BlockStore blocks, Path path, DoubleConsumer progress) throws IOException {
+        save(blocks, List.of(), path, progress);
+    }
+
+    /**
+     * Сохранение блоков и столбцов, выгруженных в файлы регионов, в двоичном формате с отчётом о ходе выполнения.
+     * Секции столбцов переносятся в файл сохранения без разбора: данные столбца RegionFile - это количество
+     * секций и секции в кодировке ChunkCodec
+     *
+     * @param blocks   хранилище блоков
+     * @param columns  данные столбцов из RegionFile.readColumnData(), которых нет в хранилище
+     * @param path     файл сохранения
+     * @param progress получатель доли записанных секций и столбцов
+     * @throws IOException ошибка записи или повреждённые данные столбца
+     */
+    public static void save(BlockStore blocks, List<ByteBuffer> columns, Path path, DoubleConsumer progress) throws IOException {
+        final long[][] keys = {new long[64]};
+        final int[] count = {0};
+        blocks.forEachChunk(key -> {
+            if (count[0] == keys[0].length) keys[0] = Arrays.copyOf(keys[0], count[0] * 2);
+            keys[0][count[0]++] = key;
+        });
+
+        // секции каждого столбца идут после количества секций в нём
+        final ByteBuffer[] columnChunks = new ByteBuffer[columns.size()];
+        long total = count[0];
+        for (int i = 0; i < columnChunks.length; i++) {
+            columnChunks[i] = columns.get(i).duplicate();
+            final int chunks = new Reader(columnChunks[i]).getVarInt();
+            if (chunks < 0) throw new IOException("Повреждённое количество секций столбца");
+            total += chunks;
+        }
+        if (total > Integer.MAX_VALUE) throw new IOException("Слишком много секций для файла сохранения");
+
+        final int steps = count[0] + columnChunks.length;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final Writer writer = new Writer(channel);
+            writer.buffer.putInt(MAGIC).putInt(VERSION);
+            writer.putVarInt((int) total);
+            final ChunkCodec codec = new ChunkCodec();
+            for (int i = 0; i < count[0]; i++) {
+                codec.write(blocks, keys[0][i], writer);
+                progress.accept((i + 1) / (double) steps);
+            }
+            for (int i = 0; i < columnChunks.length; i++) {
+                writer.put(columnChunks[i]);
+                progress.accept((count[0] + i + 1) / (double) steps);
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Загрузка блоков в хранилище, формат определяется по сигнатуре.
+     * Маски сторон не восстанавливаются: каждый блок ставится с Block.ALL_FACES
+     *
+     * @param path   файл сохранения
+     * @param blocks хранилище, в которое добавляются блоки
+     * @throws IOException ошибка чтения или повреждённый файл
+     */
+    public static void load(Path path, BlockStore blocks) throws IOException {
+        load(path, blocks, progress -> {
+        });
+    }
+
+    /**
+     * Загрузка блоков в хранилище с отчётом о ходе выполнения, формат определяется по сигнатуре.
+     * Для текстового формата ход выполнения сообщается только по завершении
+     *
+     * @param path     файл сохранения
+     * @param blocks   хранилище, в которое добавляются блоки
+     * @param progress получатель доли прочитанных секций
+     * @throws IOException ошибка чтения или повреждённый файл
+     */
+    public static void load(Path path, BlockStore blocks, DoubleConsumer progress) throws IOException {
+        if (!isBinary(path)) {
+            loadText(path, blocks);
+            progress.accept(1.0);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final Reader reader = new Reader(channel);
+            if (!reader.fill(8)) throw new IOException("Неожиданный конец файла сохранения");
+            reader.buffer.getInt();
+            final int version = reader.buffer.getInt();
+            if (version != VERSION) throw new IOException("Неподдерживаемая версия файла сохранения: " + version);
+            final int count = reader.getVarInt();
+            if (count < 0) throw new IOException("Повреждённое количество секций");
+            final ChunkCodec codec = new ChunkCodec();
+            for (int i = 0; i < count; i++) {
+                codec.read(reader, blocks);
+                progress.accept((i + 1) / (double) count);
+            }
+        }
+    }
+
+    /**
+     * Проверка сигнатуры двоичного формата: файл начинается с MAGIC и содержит номер версии
+     *
+     * @param path файл сохранения
+     * @return является ли файл двоичным
+     * @throws IOException ошибка чтения
+     */
+    private static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) break;
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Построчный импорт старого текстового формата
+     *
+     * @param path   файл сохранения
+     * @param blocks хранилище, в которое добавляются блоки
+     * @throws IOException ошибка чтения
+     */
+    private static void loadText(Path path, BlockStore blocks) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                final int[] cords = parseLine(line, CORD, 7, 2, SPACES);
+                final int id = parseLine(line, ID, 3, 1, SPACES)[0];
+                final int[] sideIds = parseLine(line, SIDE_IDS, 9, 1, COMMAS);
+
+                if (cords.length != 3 || sideIds.length != 6) throw new RuntimeException("state corruption");
+                blocks.set(cords[0], cords[1], cords[2], id, sideIds);
+            }
+        }
+    }
+
+    /**
+     * Парсер значений, применяемый для чтения сцены из файла
+     *
+     * @param line    строка со значенимями
+     * @param pattern паттерн, указывающий на местонахождение значений
+     * @param st      длина начала паттерна
+     * @param delta   длина конца паттерна
+     * @param split   сплиттер
+     * @return массив значений типа int
+     */
+    private static int[] parseLine(String line, Pattern pattern, int st, int delta, Pattern split) {
+        Matcher matcher = pattern.matcher(line);
+        if (!matcher.find()) throw new RuntimeException("Something wrong with state data");
+        String cord = matcher.group();
+        cord = cord.substring(st, cord.length() - delta);
+        String[] cordS = split.split(cord);
+        int[] result = new int[cordS.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Integer.parseInt(cordS[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Кодирование секций: палитра и номера ячеек, массивы переиспользуются между секциями
+     */
+    static class ChunkCodec {
+        private final short[] cells = new short[Chunk.VOLUME];
+        private int[] palette = new int[ENTRY * 16];
+        private int paletteSize;
+        private Block[] types = new Block[16];
+        private final int[] sideIds = new int[6];
+
+        /**
+         * Запись секции
+         *
+         * @param blocks хранилище блоков
+         * @param key    ключ секции
+         * @param writer приёмник данных
+         * @throws IOException ошибка записи
+         */
+        void write(BlockStore blocks, long key, Writer writer) throws IOException {
+            Arrays.fill(cells, (short) 0);
+            paletteSize = 0;
+            blocks.forEachInChunk(key, (x, y, z, id, sideIds, faces) ->
+                    cells[Chunk.index(x, y, z)] = (short) (entry(id, sideIds) + 1));
+
+            writer.putSignedVarInt(World.keyX(key));
+            writer.putSignedVarInt(World.keyY(key));
+            writer.putSignedVarInt(World.keyZ(key));
+            writer.putVarInt(paletteSize);
+            for (int i = 0; i < paletteSize * ENTRY; i++) writer.putSignedVarInt(palette[i]);
+            int index = 0;
+            while (index < Chunk.VOLUME) {
+                final short value = cells[index];
+                int end = index + 1;
+                while (end < Chunk.VOLUME && cells[end] == value) end++;
+                writer.putVarInt(end - index);
+                writer.putVarInt(value & 0xFFFF);
+                index = end;
+            }
+        }
+
+        /**
+         * Чтение секции с постановкой её блоков в хранилище
+         *
+         * @param reader источник данных
+         * @param blocks хранилище, в которое добавляются блоки
+         * @return ключ прочитанной секции
+         * @throws IOException ошибка чтения или повреждённые данные
+         */
+        long read(Reader reader, BlockStore blocks) throws IOException {
+            final int cx = reader.getSignedVarInt(), cy = reader.getSignedVarInt(), cz = reader.getSignedVarInt();
+            final int baseX = cx << Chunk.SHIFT, baseY = cy << Chunk.SHIFT, baseZ = cz << Chunk.SHIFT;
+            paletteSize = reader.getVarInt();
+            if (paletteSize < 0 || paletteSize > Chunk.VOLUME) throw new IOException("Повреждённая палитра секции");
+            if (paletteSize * ENTRY > palette.length) palette = new int[paletteSize * ENTRY];
+            for (int j = 0; j < paletteSize * ENTRY; j++) palette[j] = reader.getSignedVarInt();
+            if (types.length < paletteSize) types = new Block[paletteSize];
+            for (int j = 0; j < paletteSize; j++) {
+                System.arraycopy(palette, j * ENTRY + 1, sideIds, 0, 6);
+                types[j] = Block.of(palette[j * ENTRY], sideIds);
+            }
+            int index = 0;
+            while (index < Chunk.VOLUME) {
+                final int length = reader.getVarInt();
+                final int entry = reader.getVarInt();
+                if (length <= 0 || index + length > Chunk.VOLUME || entry < 0 || entry > paletteSize) throw new IOException("Повреждённая серия ячеек секции");
+                if (entry != 0) {
+                    final Block block = types[entry - 1];
+                    for (int end = index + length; index < end; index++) {
+                        blocks.set(
+                                baseX + (index & Chunk.MASK),
+                                baseY + (index >> (Chunk.SHIFT * 2)),
+                                baseZ + ((index >> Chunk.SHIFT) & Chunk.MASK),
+                                block
+                        );
+                    }
+                } else {
+                    index += length;
+                }
+            }
+            return World.key(cx, cy, cz);
+        }
+
+        /**
+         * Поиск или добавление записи в палитру секции
+         *
+         * @param id      id блока
+         * @param sideIds массив[6] id сторон
+         * @return номер записи
+         */
+        private int entry(int id, int[] sideIds) {
+            for (int i = 0; i < paletteSize; i++) {
+                final int offset = i * ENTRY;
+                if (palette[offset] == id && Arrays.equals(palette, offset + 1, offset + ENTRY, sideIds, 0, 6)) return i;
+            }
+            if ((paletteSize + 1) * ENTRY > palette.length) palette = Arrays.copyOf(palette, palette.length * 2);
+            final int offset = paletteSize * ENTRY;
+            palette[offset] = id;
+            System.arraycopy(sideIds, 0, palette, offset + 1, 6);
+            return paletteSize++;
+        }
+    }
+
+    /**
+     * Буферизованная запись в канал или, без канала, в растущий буфер в памяти
+     */
+    static class Writer {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        Writer() {
+            this(null);
+        }
+
+        /**
+         * @return записанные в память данные (для записи без канала), действительны до следующей записи
+         */
+        ByteBuffer data() {
+            return buffer.duplicate().flip();
+        }
+
+        /**
+         * Сброс записанных в память данных
+         */
+        void reset() {
+            buffer.clear();
+        }
+
+        /**
+         * Запись числа без знака как varint
+         *
+         * @param value число
+         */
+        void putVarInt(int value) throws IOException {
+            if (buffer.remaining() < 5) flush();
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Запись готовых данных
+         *
+         * @param data данные, читаются до конца
+         */
+        void put(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                if (!buffer.hasRemaining()) flush();
+                final int length = Math.min(buffer.remaining(), data.remaining());
+                buffer.put(buffer.position(), data, data.position(), length);
+                buffer.position(buffer.position() + length);
+                data.position(data.position() + length);
+            }
+        }
+
+        /**
+         * Запись знакового числа как zigzag varint
+         *
+         * @param value число
+         */
+        void putSignedVarInt(int value) throws IOException {
+            putVarInt((value << 1) ^ (value >> 31));
+        }
+
+        /**
+         * Отправка накопленных данных в канал, без канала - увеличение буфера
+         */
+        void flush() throws IOException {
+            if (channel == null) {
+                final ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                grown.put(buffer.flip());
+                buffer = grown;
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Буферизованное потоковое чтение из канала или из готового буфера в памяти
+     */
+    static class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.limit(0);
+        }
+
+        Reader(ByteBuffer data) {
+            channel = null;
+            buffer = data;
+        }
+
+        /**
+         * Дочитывание данных до наличия в буфере не менее bytes байт
+         *
+         * @param bytes необходимое количество байт
+         * @return удалось ли прочитать
+         */
+        boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return true;
+            if (channel == null) return false;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+
+        /**
+         * @return прочитанное число без знака
+         */
+        int getVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (!fill(1)) throw new IOException("Неожиданный конец файла сохранения");
+                final byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IOException("Повреждённое число в файле сохранения");
+        }
+
+        /**
+         * @return прочитанное знаковое число
+         */
+        int getSignedVarInt() throws IOException {
+            final int value = getVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
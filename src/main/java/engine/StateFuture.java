@@ -0,0 +1,33 @@
+package engine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Фоновая операция сохранения или загрузки сцены с доступом к её ходу выполнения
+ */
+public class StateFuture extends CompletableFuture<Void> {
+    /**
+     * Доля выполненной работы от 0 до 1
+     */
+    private volatile double progress;
+
+    /**
+     * @return доля выполненной работы от 0 до 1
+     */
+    public double progress() {
+        return progress;
+    }
+
+    /**
+     * @param progress доля выполненной работы от 0 до 1
+     */
+    void setProgress(double progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public boolean complete(Void value) {
+        progress = 1.0;
+        return super.complete(value);
+    }
+}
@@ -0,0 +1,129 @@
+package engine;
+
+/**
+ * Метрики тактов движка: длительности последних тактов для процентилей, переполнения и достигнутая частота.
+ * Пишутся потоком движка, читаются из любого потока
+ */
+public class TickMetrics {
+    /**
+     * Количество последних тактов, по которым считаются процентили
+     */
+    private static final int WINDOW = 1024;
+    /**
+     * Период пересчёта достигнутой частоты, нс
+     */
+    private static final long TPS_PERIOD = 1_000_000_000L;
+
+    /**
+     * Длительности последних тактов, нс
+     */
+    private final RollingSamples durations = new RollingSamples(WINDOW);
+    /**
+     * Бюджет одного такта, нс
+     */
+    private final long budget;
+    private long totalTicks;
+    private long overruns;
+    private long droppedTicks;
+    /**
+     * Начало текущего периода подсчёта частоты и количество тактов в нём
+     */
+    private long periodStart = Long.MIN_VALUE;
+    private int periodTicks;
+    private volatile double tps;
+
+    /**
+     * Конструктор
+     *
+     * @param budget бюджет одного такта, нс
+     */
+    public TickMetrics(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Учёт выполненного такта
+     *
+     * @param end      время окончания такта, нс
+     * @param duration длительность такта, нс
+     */
+    synchronized void record(long end, long duration) {
+        durations.add(duration);
+        totalTicks++;
+        if (duration > budget) overruns++;
+        if (periodStart == Long.MIN_VALUE) periodStart = end;
+        periodTicks++;
+        if (end - periodStart >= TPS_PERIOD) {
+            tps = periodTicks * 1e9 / (end - periodStart);
+            periodStart = end;
+            periodTicks = 0;
+        }
+    }
+
+    /**
+     * Учёт тактов, отброшенных из-за ограничения догоняющих тактов
+     *
+     * @param ticks количество тактов
+     */
+    synchronized void drop(long ticks) {
+        droppedTicks += ticks;
+    }
+
+    /**
+     * Процентиль длительности по последним тактам
+     *
+     * @param percentile процентиль от 0 до 100
+     * @return длительность такта, нс (0, если тактов не было)
+     */
+    public long percentile(double percentile) {
+        return durations.percentile(percentile);
+    }
+
+    /**
+     * @return медианная длительность такта, нс
+     */
+    public long p50() {
+        return percentile(50);
+    }
+
+    /**
+     * @return 99-й процентиль длительности такта, нс
+     */
+    public long p99() {
+        return percentile(99);
+    }
+
+    /**
+     * @return количество тактов, длившихся дольше бюджета
+     */
+    public synchronized long overruns() {
+        return overruns;
+    }
+
+    /**
+     * @return количество тактов, отброшенных из-за ограничения догоняющих тактов
+     */
+    public synchronized long droppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * @return количество выполненных тактов
+     */
+    public synchronized long totalTicks() {
+        return totalTicks;
+    }
+
+    /**
+     * @return достигнутая частота тактов за последний полный период в 1 с
+     */
+    public double tps() {
+        return tps;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tps=%.1f p50=%.3fms p99=%.3fms overruns=%d dropped=%d",
+                tps(), p50() / 1e6, p99() / 1e6, overruns(), droppedTicks());
+    }
+}
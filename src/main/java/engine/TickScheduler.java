@@ -0,0 +1,132 @@
+package engine;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Планировщик тактов с фиксированным шагом времени.
+ * Прошедшее время копится в аккумуляторе и расходуется целыми тактами, при отставании за один шаг
+ * выполняется не больше maxCatchUp тактов, остальные отбрасываются.
+ * Остаток аккумулятора в долях такта (alpha()) используется для интерполяции состояния при отрисовке
+ */
+public class TickScheduler {
+    /**
+     * Длительность такта, нс
+     */
+    private final long tickNanos;
+    /**
+     * Наибольшее количество тактов, выполняемых за один шаг при отставании
+     */
+    private final int maxCatchUp;
+    /**
+     * Источник времени, нс
+     */
+    private final LongSupplier clock;
+    /**
+     * Ожидание заданного количества нс
+     */
+    private final LongConsumer sleeper;
+    private final TickMetrics metrics;
+    /**
+     * Накопленное и ещё не отработанное время, нс
+     */
+    private long accumulator;
+    /**
+     * Время предыдущего шага, нс
+     */
+    private long lastTime = Long.MIN_VALUE;
+    /**
+     * Доля такта, прошедшая после последнего выполненного такта
+     */
+    private volatile float alpha;
+
+    /**
+     * Конструктор с системными часами
+     *
+     * @param tickRate   частота тактов в секунду
+     * @param maxCatchUp наибольшее количество тактов за один шаг
+     */
+    public TickScheduler(int tickRate, int maxCatchUp) {
+        this(tickRate, maxCatchUp, System::nanoTime, LockSupport::parkNanos);
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param tickRate   частота тактов в секунду
+     * @param maxCatchUp наибольшее количество тактов за один шаг
+     * @param clock      источник времени, нс
+     * @param sleeper    ожидание заданного количества нс
+     */
+    public TickScheduler(int tickRate, int maxCatchUp, LongSupplier clock, LongConsumer sleeper) {
+        if (tickRate <= 0 || maxCatchUp <= 0) throw new IllegalArgumentException("Частота и количество догоняющих тактов должны быть положительными");
+        this.tickNanos = 1_000_000_000L / tickRate;
+        this.maxCatchUp = maxCatchUp;
+        this.clock = clock;
+        this.sleeper = sleeper;
+        metrics = new TickMetrics(tickNanos);
+    }
+
+    /**
+     * Цикл тактов, пока running возвращает true
+     *
+     * @param running условие продолжения
+     * @param tick    действие одного такта
+     */
+    public void run(BooleanSupplier running, Runnable tick) {
+        while (running.getAsBoolean()) {
+            if (step(tick) == 0) sleeper.accept(tickNanos - accumulator);
+        }
+    }
+
+    /**
+     * Один шаг планировщика: учёт прошедшего времени и выполнение накопившихся тактов
+     *
+     * @param tick действие одного такта
+     * @return количество выполненных тактов
+     */
+    public int step(Runnable tick) {
+        final long now = clock.getAsLong();
+        if (lastTime != Long.MIN_VALUE) accumulator += now - lastTime;
+        lastTime = now;
+
+        int ticks = 0;
+        while (accumulator >= tickNanos && ticks < maxCatchUp) {
+            final long start = clock.getAsLong();
+            tick.run();
+            final long end = clock.getAsLong();
+            metrics.record(end, end - start);
+            accumulator -= tickNanos;
+            ticks++;
+        }
+        if (accumulator >= tickNanos) {
+            metrics.drop(accumulator / tickNanos);
+            accumulator %= tickNanos;
+        }
+        alpha = (float) accumulator / tickNanos;
+        return ticks;
+    }
+
+    /**
+     * @return доля такта от 0 до 1, прошедшая после последнего выполненного такта
+     */
+    public float alpha() {
+        return alpha;
+    }
+
+    /**
+     * @return длительность такта, нс
+     */
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return метрики тактов
+     */
+    public TickMetrics metrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,88 @@
+package engine;
+
+/**
+ * Трассировка луча по сетке блоков методом Amanatides-Woo:
+ * каждая пересечённая лучом ячейка проверяется ровно один раз, без шагов фиксированной длины
+ */
+public final class VoxelRay {
+
+    private VoxelRay() {
+    }
+
+    /**
+     * Поиск первого блока на пути луча
+     *
+     * @param blocks      хранилище блоков
+     * @param originX     начало луча x
+     * @param originY     начало луча y
+     * @param originZ     начало луча z
+     * @param directionX  направление x
+     * @param directionY  направление y
+     * @param directionZ  направление z
+     * @param maxDistance наибольшая длина луча
+     * @param hit         результат, заполняется при попадании
+     * @return попал ли луч в блок
+     */
+    public static boolean trace(BlockStore blocks, float originX, float originY, float originZ,
+                                float directionX, float directionY, float directionZ, float maxDistance, RayHit hit) {
+        hit.hit = false;
+        final float length = (float) Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+        if (length == 0.0f) return false;
+        final float dx = directionX / length, dy = directionY / length, dz = directionZ / length;
+
+        int x = (int) Math.floor(originX), y = (int) Math.floor(originY), z = (int) Math.floor(originZ);
+        final int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+        final int stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+        final int stepZ = dz > 0 ? 1 : (dz < 0 ? -1 : 0);
+        // расстояние вдоль луча, за которое он проходит одну ячейку по оси
+        final float deltaX = stepX != 0 ? Math.abs(1.0f / dx) : Float.POSITIVE_INFINITY;
+        final float deltaY = stepY != 0 ? Math.abs(1.0f / dy) : Float.POSITIVE_INFINITY;
+        final float deltaZ = stepZ != 0 ? Math.abs(1.0f / dz) : Float.POSITIVE_INFINITY;
+        // расстояние вдоль луча до следующей границы ячеек по оси
+        float maxX = stepX > 0 ? (x + 1 - originX) * deltaX : (stepX < 0 ? (originX - x) * deltaX : Float.POSITIVE_INFINITY);
+        float maxY = stepY > 0 ? (y + 1 - originY) * deltaY : (stepY < 0 ? (originY - y) * deltaY : Float.POSITIVE_INFINITY);
+        float maxZ = stepZ > 0 ? (z + 1 - originZ) * deltaZ : (stepZ < 0 ? (originZ - z) * deltaZ : Float.POSITIVE_INFINITY);
+
+        float distance = 0.0f;
+        int normalX = 0, normalY = 0, normalZ = 0;
+        while (true) {
+            if (blocks.isSolid(x, y, z)) {
+                hit.hit = true;
+                hit.x = x;
+                hit.y = y;
+                hit.z = z;
+                hit.normalX = normalX;
+                hit.normalY = normalY;
+                hit.normalZ = normalZ;
+                hit.pointX = originX + dx * distance;
+                hit.pointY = originY + dy * distance;
+                hit.pointZ = originZ + dz * distance;
+                hit.distance = distance;
+                return true;
+            }
+            if (maxX < maxY && maxX < maxZ) {
+                distance = maxX;
+                maxX += deltaX;
+                x += stepX;
+                normalX = -stepX;
+                normalY = 0;
+                normalZ = 0;
+            } else if (maxY < maxZ) {
+                distance = maxY;
+                maxY += deltaY;
+                y += stepY;
+                normalX = 0;
+                normalY = -stepY;
+                normalZ = 0;
+            } else {
+                distance = maxZ;
+                maxZ += deltaZ;
+                z += stepZ;
+                normalX = 0;
+                normalY = 0;
+                normalZ = -stepZ;
+            }
+            if (distance > maxDistance) return false;
+        }
+    }
+}
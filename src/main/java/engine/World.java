@@ -0,0 +1,450 @@
+package engine;
+
+import controller.Settings;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Мир, разбитый на секции 16x16x16 (Chunk) с безопасным многопоточным доступом к таблице секций.
+ * Таблица секций неизменяема (ChunkTable) и заменяется при каждом изменении набора секций.
+ * Изменения выполняются под монитором мира, чтение - без блокировок и без выделения памяти.
+ * Снимок мира разделяет секции с миром и создаётся за постоянное время: мир переходит к новому поколению,
+ * и секция прежнего поколения перед изменением копируется (copy-on-write)
+ */
+public class World implements BlockStore {
+
+    /**
+     * Изменение одной секции при массовом изменении мира
+     */
+    @FunctionalInterface
+    public interface ChunkEditor {
+        /**
+         * @param key   ключ секции
+         * @param chunk секция для изменения, пустая новая секция, если её не было; вызывается, пока вызвавший
+         *              edit() поток удерживает монитор мира: в этом потоке или, при параллельном изменении, в потоках пула
+         * @return изменилась ли секция
+         */
+        boolean edit(long key, Chunk chunk);
+    }
+
+    /**
+     * Источник поколений миров
+     */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    /**
+     * Таблица "упакованная координата секции - секция", заменяется новой версией при изменении
+     */
+    private volatile ChunkTable chunks;
+    /**
+     * Поколение мира: секции этого поколения изменяются на месте, остальные входят в снимки
+     */
+    private long generation;
+
+    /**
+     * Ключи секций, изменённых с момента последнего drainDirtyChunks()
+     */
+    private final Set<Long> dirtyChunks;
+
+    /**
+     * Конструктор пустого мира
+     */
+    public World() {
+        chunks = ChunkTable.EMPTY;
+        generation = GENERATIONS.incrementAndGet();
+        dirtyChunks = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Конструктор мира из готовой таблицы секций
+     *
+     * @param chunks таблица секций
+     */
+    private World(ChunkTable chunks) {
+        this.chunks = chunks;
+        generation = GENERATIONS.incrementAndGet();
+        dirtyChunks = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Упаковка координаты секции в long (по 21 биту на ось)
+     *
+     * @param cx координата секции x
+     * @param cy координата секции y
+     * @param cz координата секции z
+     * @return ключ секции
+     */
+    public static long key(int cx, int cy, int cz) {
+        return ((long) (cx & 0x1FFFFF) << 42) | ((long) (cy & 0x1FFFFF) << 21) | (cz & 0x1FFFFF);
+    }
+
+    /**
+     * @param key ключ секции
+     * @return координата секции x
+     */
+    public static int keyX(long key) {
+        return (int) (key << 1 >> 43);
+    }
+
+    /**
+     * @param key ключ секции
+     * @return координата секции y
+     */
+    public static int keyY(long key) {
+        return (int) (key << 22 >> 43);
+    }
+
+    /**
+     * @param key ключ секции
+     * @return координата секции z
+     */
+    public static int keyZ(long key) {
+        return (int) (key << 43 >> 43);
+    }
+
+    /**
+     * Секция, содержащая координату блока
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return секция или null
+     */
+    private Chunk chunkAt(int x, int y, int z) {
+        return chunks.get(chunkKey(x, y, z));
+    }
+
+    /**
+     * Ключ секции, содержащей координату блока
+     *
+     * @param x координата x
+     * @param y координата y
+     * @param z координата z
+     * @return ключ секции
+     */
+    public static long chunkKey(int x, int y, int z) {
+        return key(x >> Chunk.SHIFT, y >> Chunk.SHIFT, z >> Chunk.SHIFT);
+    }
+
+    /**
+     * Секция по её ключу
+     *
+     * @param key ключ секции
+     * @return секция или null
+     */
+    public Chunk getChunk(long key) {
+        return chunks.get(key);
+    }
+
+    /**
+     * @return ключи всех секций мира
+     */
+    public long[] chunkKeys() {
+        final ChunkTable table = chunks;
+        final long[] keys = new long[table.size()];
+        final int[] count = {0};
+        table.forEach((key, chunk) -> keys[count[0]++] = key);
+        return keys;
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        final Chunk chunk = chunkAt(x, y, z);
+        return chunk != null && chunk.contains(Chunk.index(x, y, z));
+    }
+
+    @Override
+    public int getId(int x, int y, int z) {
+        final Chunk chunk = chunkAt(x, y, z);
+        return chunk == null ? -1 : chunk.getId(Chunk.index(x, y, z));
+    }
+
+    @Override
+    public int getType(int x, int y, int z) {
+        final Chunk chunk = chunkAt(x, y, z);
+        return chunk == null ? -1 : chunk.getType(Chunk.index(x, y, z));
+    }
+
+    @Override
+    public int getSideId(int x, int y, int z, int side) {
+        final Chunk chunk = chunkAt(x, y, z);
+        return chunk == null ? -1 : chunk.getSideId(Chunk.index(x, y, z), side);
+    }
+
+    @Override
+    public int getFaces(int x, int y, int z) {
+        final Chunk chunk = chunkAt(x, y, z);
+        return chunk == null ? 0 : chunk.getFaces(Chunk.index(x, y, z));
+    }
+
+    /**
+     * Секция для изменения: секция прежнего поколения заменяется своей копией
+     *
+     * @param key ключ секции
+     * @return секция или null
+     */
+    private Chunk writable(long key) {
+        final Chunk chunk = chunks.get(key);
+        if (chunk == null || chunk.generation == generation) return chunk;
+        return insert(key, chunk.copy());
+    }
+
+    /**
+     * Вставка секции текущего поколения в таблицу
+     *
+     * @param key   ключ секции
+     * @param chunk новая секция
+     * @return chunk
+     */
+    private Chunk insert(long key, Chunk chunk) {
+        chunk.generation = generation;
+        chunks = chunks.put(key, chunk);
+        return chunk;
+    }
+
+    @Override
+    public synchronized void setFace(int x, int y, int z, int side, boolean render) {
+        final long key = chunkKey(x, y, z);
+        final int index = Chunk.index(x, y, z);
+        final Chunk chunk = chunks.get(key);
+        if (chunk == null || !chunk.contains(index) || ((chunk.getFaces(index) >> side & 1) != 0) == render) return;
+        writable(key).setFace(index, side, render);
+        dirtyChunks.add(key);
+    }
+
+    @Override
+    public synchronized void set(int x, int y, int z, Block block) {
+        final long key = chunkKey(x, y, z);
+        Chunk chunk = writable(key);
+        if (chunk == null) chunk = insert(key, new Chunk());
+        chunk.set(Chunk.index(x, y, z), block);
+        dirtyChunks.add(key);
+    }
+
+    @Override
+    public synchronized boolean remove(int x, int y, int z) {
+        final long key = chunkKey(x, y, z);
+        final Chunk current = chunks.get(key);
+        if (current == null || !current.contains(Chunk.index(x, y, z))) return false;
+        final Chunk chunk = writable(key);
+        chunk.remove(Chunk.index(x, y, z));
+        if (chunk.count() == 0) chunks = chunks.remove(key);
+        dirtyChunks.add(key);
+        return true;
+    }
+
+    @Override
+    public synchronized void removeChunk(long key) {
+        final ChunkTable table = chunks.remove(key);
+        if (table == chunks) return;
+        chunks = table;
+        dirtyChunks.add(key);
+    }
+
+    @Override
+    public int size() {
+        final int[] size = {0};
+        chunks.forEach((key, chunk) -> size[0] += chunk.count());
+        return size[0];
+    }
+
+    @Override
+    public synchronized void clear() {
+        chunks.forEach((key, chunk) -> dirtyChunks.add(key));
+        chunks = ChunkTable.EMPTY;
+    }
+
+    @Override
+    public synchronized BlockStore snapshot() {
+        generation = GENERATIONS.incrementAndGet();
+        return new World(chunks);
+    }
+
+    @Override
+    public void replaceWith(BlockStore other) {
+        if (!(other instanceof World)) {
+            synchronized (this) {
+                clear();
+                other.forEach((x, y, z, id, sideIds, faces) -> {
+                    set(x, y, z, id, sideIds);
+                    for (int side = 0; side < 6; side++) setFace(x, y, z, side, (faces & (1 << side)) != 0);
+                });
+            }
+            return;
+        }
+        // мир принимает поколение other, а other переходит к новому и больше не изменяет свои секции на месте
+        final World source = (World) other;
+        final ChunkTable replacement;
+        final long adopted;
+        synchronized (source) {
+            replacement = source.chunks;
+            adopted = source.generation;
+            source.generation = GENERATIONS.incrementAndGet();
+        }
+        synchronized (this) {
+            chunks.forEach((key, chunk) -> dirtyChunks.add(key));
+            replacement.forEach((key, chunk) -> dirtyChunks.add(key));
+            chunks = replacement;
+            generation = adopted;
+        }
+    }
+
+    @Override
+    public void forEach(BlockVisitor visitor) {
+        chunks.forEach((key, chunk) -> forEachInChunk(key, chunk, visitor));
+    }
+
+    @Override
+    public void forEachInChunk(long key, BlockVisitor visitor) {
+        final Chunk chunk = chunks.get(key);
+        if (chunk != null) forEachInChunk(key, chunk, visitor);
+    }
+
+    @Override
+    public void forEachChunk(LongConsumer consumer) {
+        chunks.forEach((key, chunk) -> consumer.accept(key));
+    }
+
+    @Override
+    public void drainDirtyChunks(LongConsumer consumer) {
+        final Iterator<Long> iterator = dirtyChunks.iterator();
+        while (iterator.hasNext()) {
+            final long key = iterator.next();
+            iterator.remove();
+            consumer.accept(key);
+        }
+    }
+
+    /**
+     * Массовое изменение секций: сначала изменяются все секции, затем одним проходом пересчитываются
+     * маски сторон в них и в соседних секциях. При количестве секций от Settings.parallelEditChunks
+     * секции изменяются и пересчитываются параллельно. Изменённые секции попадают в множество
+     * изменённых секций за один раз
+     *
+     * @param keys   ключи изменяемых секций без повторов
+     * @param editor изменение одной секции
+     * @return ключи изменённых секций
+     */
+    public long[] edit(long[] keys, ChunkEditor editor) {
+        return edit(keys, key -> true, editor);
+    }
+
+    /**
+     * Массовое изменение секций, при котором отсутствующие секции создаются только для ключей,
+     * изменение которых может поставить блоки; остальные отсутствующие секции пропускаются
+     *
+     * @param keys    ключи изменяемых секций без повторов
+     * @param creates может ли изменение секции с ключом поставить блоки
+     * @param editor  изменение одной секции
+     * @return ключи изменённых секций
+     */
+    public synchronized long[] edit(long[] keys, LongPredicate creates, ChunkEditor editor) {
+        final ChunkTable table = chunks;
+        final long[] editKeys = Arrays.stream(keys).filter(key -> table.get(key) != null || creates.test(key)).toArray();
+        final Chunk[] targets = new Chunk[editKeys.length];
+        for (int i = 0; i < editKeys.length; i++) {
+            Chunk chunk = writable(editKeys[i]);
+            if (chunk == null) chunk = insert(editKeys[i], new Chunk());
+            targets[i] = chunk;
+        }
+        final boolean[] edited = new boolean[editKeys.length];
+        forEachIndex(editKeys.length, i -> edited[i] = editor.edit(editKeys[i], targets[i]));
+        for (int i = 0; i < editKeys.length; i++) {
+            if (targets[i].count() == 0) chunks = chunks.remove(editKeys[i]);
+        }
+        final long[] faced = sweepFaces(editKeys);
+        final long[] changed = LongStream.concat(
+                IntStream.range(0, editKeys.length).filter(i -> edited[i]).mapToLong(i -> editKeys[i]),
+                Arrays.stream(faced)
+        ).distinct().toArray();
+        for (long key : changed) dirtyChunks.add(key);
+        return changed;
+    }
+
+    /**
+     * Пересчёт масок сторон в секциях и в соседних с ними секциях одним проходом,
+     * применяется после постановки или удаления блоков без обновления соседей.
+     * Маски рассчитываются параллельно по неизменяемой версии таблицы, затем записываются по очереди
+     *
+     * @param keys ключи изменённых секций
+     * @return ключи секций, маски сторон которых изменились
+     */
+    public synchronized long[] sweepFaces(long[] keys) {
+        final ChunkTable table = chunks;
+        final long[] sweep = Arrays.stream(keys)
+                .flatMap(key -> LongStream.rangeClosed(-1, 5).map(side -> side < 0 ? key : neighbourKey(key, (int) side)))
+                .distinct()
+                .filter(key -> table.get(key) != null)
+                .toArray();
+        final byte[][] masks = new byte[sweep.length][];
+        forEachIndex(sweep.length, i -> {
+            final long key = sweep[i];
+            final Chunk[] neighbours = new Chunk[6];
+            for (int side = 0; side < 6; side++) neighbours[side] = table.get(neighbourKey(key, side));
+            final byte[] computed = new byte[Chunk.VOLUME];
+            if (table.get(key).computeFaces(neighbours, computed)) masks[i] = computed;
+        });
+        final long[] result = IntStream.range(0, sweep.length).filter(i -> masks[i] != null).mapToLong(i -> sweep[i]).toArray();
+        for (int i = 0; i < sweep.length; i++) {
+            if (masks[i] == null) continue;
+            writable(sweep[i]).setFaces(masks[i]);
+            dirtyChunks.add(sweep[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param key  ключ секции
+     * @param side номер стороны Block.SIDE_OFFSETS
+     * @return ключ соседней секции со стороны side
+     */
+    public static long neighbourKey(long key, int side) {
+        final int[] offset = Block.SIDE_OFFSETS[side];
+        return key(keyX(key) + offset[0], keyY(key) + offset[1], keyZ(key) + offset[2]);
+    }
+
+    /**
+     * Выполнение действия для индексов 0..count-1, параллельно при count от Settings.parallelEditChunks
+     *
+     * @param count  количество индексов
+     * @param action действие
+     */
+    private static void forEachIndex(int count, IntConsumer action) {
+        if (count < Settings.parallelEditChunks) {
+            for (int i = 0; i < count; i++) action.accept(i);
+        } else {
+            IntStream.range(0, count).parallel().forEach(action);
+        }
+    }
+
+    /**
+     * Обход блоков одной секции
+     *
+     * @param key     ключ секции
+     * @param chunk   секция
+     * @param visitor обработчик блоков
+     */
+    public static void forEachInChunk(long key, Chunk chunk, BlockVisitor visitor) {
+        final int baseX = keyX(key) << Chunk.SHIFT, baseY = keyY(key) << Chunk.SHIFT, baseZ = keyZ(key) << Chunk.SHIFT;
+        final int[] sideIds = new int[6];
+        for (int index = 0; index < Chunk.VOLUME; index++) {
+            if (!chunk.contains(index)) continue;
+            chunk.getSideIds(index, sideIds);
+            visitor.visit(
+                    baseX + (index & Chunk.MASK),
+                    baseY + (index >> (Chunk.SHIFT * 2)),
+                    baseZ + ((index >> Chunk.SHIFT) & Chunk.MASK),
+                    chunk.getId(index), sideIds, chunk.getFaces(index)
+            );
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package engine;
+
+import org.joml.Vector3ic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Массовое изменение мира: заполнение и очистка области, замена id блоков в области, вставка шаблона.
+ * Операции накапливаются и применяются вместе через World.edit(): каждая затронутая секция изменяется
+ * всеми операциями по порядку их добавления, после чего маски сторон пересчитываются одним проходом.
+ * Отсутствующие секции, которых касаются только операции без постановки блоков (очистка, замена), не создаются.
+ * Границы областей включительные, углы задаются в любом порядке
+ */
+public class WorldEdit {
+    /**
+     * Операция над областью мира
+     */
+    private abstract static class Operation {
+        final int minX, minY, minZ, maxX, maxY, maxZ;
+        /**
+         * Может ли операция поставить блоки в пустые ячейки
+         */
+        final boolean creates;
+
+        Operation(int x0, int y0, int z0, int x1, int y1, int z1, boolean creates) {
+            minX = Math.min(x0, x1);
+            minY = Math.min(y0, y1);
+            minZ = Math.min(z0, z1);
+            maxX = Math.max(x0, x1);
+            maxY = Math.max(y0, y1);
+            maxZ = Math.max(z0, z1);
+            this.creates = creates;
+        }
+
+        Operation(Vector3ic from, Vector3ic to, boolean creates) {
+            this(from.x(), from.y(), from.z(), to.x(), to.y(), to.z(), creates);
+        }
+
+        /**
+         * Применение операции к части области внутри секции
+         *
+         * @param key   ключ секции
+         * @param chunk секция
+         * @return изменилась ли секция
+         */
+        boolean apply(long key, Chunk chunk) {
+            final int baseX = World.keyX(key) << Chunk.SHIFT, baseY = World.keyY(key) << Chunk.SHIFT, baseZ = World.keyZ(key) << Chunk.SHIFT;
+            final int fromX = Math.max(minX, baseX), toX = Math.min(maxX, baseX + Chunk.MASK);
+            final int fromY = Math.max(minY, baseY), toY = Math.min(maxY, baseY + Chunk.MASK);
+            final int fromZ = Math.max(minZ, baseZ), toZ = Math.min(maxZ, baseZ + Chunk.MASK);
+            boolean changed = false;
+            for (int y = fromY; y <= toY; y++) {
+                for (int z = fromZ; z <= toZ; z++) {
+                    for (int x = fromX; x <= toX; x++) changed |= cell(chunk, Chunk.index(x, y, z), x, y, z);
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Применение операции к ячейке
+         *
+         * @param chunk секция
+         * @param index индекс ячейки в секции
+         * @param x     координата x
+         * @param y     координата y
+         * @param z     координата z
+         * @return изменилась ли ячейка
+         */
+        abstract boolean cell(Chunk chunk, int index, int x, int y, int z);
+    }
+
+    /**
+     * Операции в порядке добавления
+     */
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * Заполнение области блоками
+     *
+     * @param from    угол области
+     * @param to      противоположный угол области
+     * @param id      id блоков
+     * @param sideIds массив[6] id сторон блоков
+     * @return this
+     */
+    public WorldEdit fill(Vector3ic from, Vector3ic to, int id, int[] sideIds) {
+        final Block block = Block.of(id, sideIds);
+        operations.add(new Operation(from, to, true) {
+            @Override
+            boolean cell(Chunk chunk, int index, int x, int y, int z) {
+                if (chunk.getType(index) == block.type) return false;
+                chunk.set(index, block);
+                return true;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Замена блоков с id oldId в области на новые блоки
+     *
+     * @param from    угол области
+     * @param to      противоположный угол области
+     * @param oldId   id заменяемых блоков
+     * @param id      id новых блоков
+     * @param sideIds массив[6] id сторон новых блоков
+     * @return this
+     */
+    public WorldEdit replace(Vector3ic from, Vector3ic to, int oldId, int id, int[] sideIds) {
+        final Block block = Block.of(id, sideIds);
+        operations.add(new Operation(from, to, false) {
+            @Override
+            boolean cell(Chunk chunk, int index, int x, int y, int z) {
+                if (chunk.getId(index) != oldId || chunk.getType(index) == block.type) return false;
+                chunk.set(index, block);
+                return true;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Удаление всех блоков области
+     *
+     * @param from угол области
+     * @param to   противоположный угол области
+     * @return this
+     */
+    public WorldEdit clear(Vector3ic from, Vector3ic to) {
+        operations.add(new Operation(from, to, false) {
+            @Override
+            boolean cell(Chunk chunk, int index, int x, int y, int z) {
+                return chunk.remove(index);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Вставка шаблона со сдвигом: блоки шаблона заменяют блоки мира, пустые ячейки шаблона мир не изменяют.
+     * Шаблон не должен изменяться до применения
+     *
+     * @param schematic хранилище блоков шаблона
+     * @param offset    сдвиг шаблона в мире
+     * @return this
+     */
+    public WorldEdit paste(BlockStore schematic, Vector3ic offset) {
+        final int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        schematic.forEach((x, y, z, id, sideIds, faces) -> {
+            bounds[0] = Math.min(bounds[0], x);
+            bounds[1] = Math.min(bounds[1], y);
+            bounds[2] = Math.min(bounds[2], z);
+            bounds[3] = Math.max(bounds[3], x);
+            bounds[4] = Math.max(bounds[4], y);
+            bounds[5] = Math.max(bounds[5], z);
+        });
+        if (bounds[0] > bounds[3]) return this;
+        final int dx = offset.x(), dy = offset.y(), dz = offset.z();
+        operations.add(new Operation(bounds[0] + dx, bounds[1] + dy, bounds[2] + dz, bounds[3] + dx, bounds[4] + dy, bounds[5] + dz, true) {
+            @Override
+            boolean cell(Chunk chunk, int index, int x, int y, int z) {
+                final int type = schematic.getType(x - dx, y - dy, z - dz);
+                if (type == -1 || chunk.getType(index) == type) return false;
+                chunk.set(index, Block.get(type));
+                return true;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @return ключи секций, пересекающихся с областями операций, без повторов
+     */
+    long[] chunkKeys() {
+        return chunkKeys(false);
+    }
+
+    /**
+     * @param creating учитывать только операции, которые могут поставить блоки
+     * @return ключи секций, пересекающихся с областями операций, без повторов
+     */
+    private long[] chunkKeys(boolean creating) {
+        long[] keys = new long[64];
+        int count = 0;
+        for (Operation operation : operations) {
+            if (creating && !operation.creates) continue;
+            for (int cy = operation.minY >> Chunk.SHIFT; cy <= operation.maxY >> Chunk.SHIFT; cy++) {
+                for (int cz = operation.minZ >> Chunk.SHIFT; cz <= operation.maxZ >> Chunk.SHIFT; cz++) {
+                    for (int cx = operation.minX >> Chunk.SHIFT; cx <= operation.maxX >> Chunk.SHIFT; cx++) {
+                        if (count == keys.length) keys = Arrays.copyOf(keys, count * 2);
+                        keys[count++] = World.key(cx, cy, cz);
+                    }
+                }
+            }
+        }
+        return Arrays.stream(keys, 0, count).distinct().toArray();
+    }
+
+    /**
+     * Применение всех операций к миру
+     *
+     * @param world мир
+     * @return ключи изменённых секций
+     */
+    public long[] apply(World world) {
+        final long[] creating = chunkKeys(true);
+        Arrays.sort(creating);
+        return world.edit(chunkKeys(), key -> Arrays.binarySearch(creating, key) >= 0, (key, chunk) -> {
+            boolean changed = false;
+            for (Operation operation : operations) changed |= operation.apply(key, chunk);
+            return changed;
+        });
+    }
+}
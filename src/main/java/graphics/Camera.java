@@ -1,17 +1,17 @@
 package graphics;
 
+import engine.OrientationSource;
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector3f;
-import org.lwjgl.system.MemoryStack;
+import org.joml.Vector3fc;
 
 import static org.lwjgl.glfw.GLFW.*;
-import static org.lwjgl.opengl.GL46.glGetUniformLocation;
-import static org.lwjgl.opengl.GL46.glUniformMatrix4fv;
 
 /**
  * Камера
  */
-public class Camera {
+public class Camera implements OrientationSource {
     /**
      * Вектор, указывающий направлекие вверх
      */
@@ -51,6 +51,12 @@ public class Camera {
      */
     private boolean cursorHookHandler = true;
 
+    /**
+     * Матрицы вида, проекции и их произведение, пересчитываются в Matrix()
+     */
+    private final Matrix4f view = new Matrix4f(), projection = new Matrix4f(), viewProjection = new Matrix4f();
+    private final Vector3f center = new Vector3f();
+
     /**
      * Конструктор камеры
      * @param width ширина экрана
@@ -66,28 +72,32 @@ public class Camera {
         this.position = position;
     }
 
+    @Override
+    public Vector3fc getOrientation() {
+        return orientation;
+    }
+
     /**
      * Расчёт и передача в шейдер матрицы камеры
      * @param FOVdeg угол обзора
      * @param nearPlane близость прорисовки
      * @param farPlane дальность прорисовки
-     * @param shader шейдер
      * @param uniform uniform для матрицы камеры
      */
-    public void Matrix(float FOVdeg, float nearPlane, float farPlane, Shader shader, String uniform) {
-        Matrix4f view = new Matrix4f();
-        Vector3f center = new Vector3f().add(position).add(orientation);
-        view = view.lookAt(position, center, up);
-        Matrix4f proj = new Matrix4f();
-        proj = proj.perspective(FOVdeg / 180.0f * pi, (float) (width / height), nearPlane, farPlane);
-
-        int projLoc = glGetUniformLocation(shader.getId(), uniform);
-
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            glUniformMatrix4fv(projLoc, false, proj.mul(view).get(stack.mallocFloat(16)));
-        } catch (Exception e) {
-            System.out.println(e + " error in Camera");
-        }
+    public void Matrix(float FOVdeg, float nearPlane, float farPlane, Shader.Uniform uniform) {
+        center.set(position).add(orientation);
+        view.setLookAt(position, center, up);
+        projection.setPerspective(FOVdeg / 180.0f * pi, (float) (width / height), nearPlane, farPlane);
+        projection.mul(view, viewProjection);
+
+        uniform.set(viewProjection);
+    }
+
+    /**
+     * @return произведение матриц проекции и вида, рассчитанное в последнем вызове Matrix()
+     */
+    public Matrix4fc getViewProjection() {
+        return viewProjection;
     }
 
     /**
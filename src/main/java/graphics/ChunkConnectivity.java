@@ -0,0 +1,124 @@
+package graphics;
+
+import engine.Block;
+import engine.Chunk;
+
+import java.util.Arrays;
+
+/**
+ * Связность сторон секции через пустые ячейки: заливкой находятся связные области пустых ячеек,
+ * стороны секции, которых касается одна область, считаются видимыми друг из друга.
+ * Результат - маска из 36 бит, бит side * 6 + other означает связь сторон side и other.
+ * Стороны нумеруются как в Block.SIDE_OFFSETS. Экземпляр переиспользует буферы и не потокобезопасен
+ */
+public class ChunkConnectivity {
+    /**
+     * Маска полностью связной (например, пустой) секции
+     */
+    public static final long ALL = (1L << 36) - 1;
+    /**
+     * При меньшем количестве твёрдых блоков секция считается полностью связной без заливки:
+     * такие блоки не могут перегородить секцию
+     */
+    private static final int MIN_SOLID = Chunk.SIZE * Chunk.SIZE;
+
+    /**
+     * Очередь заливки
+     */
+    private final int[] queue = new int[Chunk.VOLUME];
+    /**
+     * Пройденные ячейки, бит на ячейку
+     */
+    private final long[] visited = new long[Chunk.VOLUME / 64];
+
+    /**
+     * @param connectivity маска связности
+     * @param side         номер стороны
+     * @param other        номер другой стороны
+     * @return видна ли сторона other через секцию со стороны side
+     */
+    public static boolean connected(long connectivity, int side, int other) {
+        return (connectivity >> (side * 6 + other) & 1) != 0;
+    }
+
+    /**
+     * Расчёт связности сторон секции
+     *
+     * @param solid твёрдые ячейки секции, бит на ячейку в порядке Chunk.index()
+     * @return маска связности
+     */
+    public long compute(long[] solid) {
+        int solidCount = 0;
+        for (long word : solid) solidCount += Long.bitCount(word);
+        if (solidCount < MIN_SOLID) return ALL;
+        if (solidCount == Chunk.VOLUME) return 0;
+
+        System.arraycopy(solid, 0, visited, 0, visited.length);
+        long connectivity = 0;
+        for (int word = 0; word < visited.length; word++) {
+            while (visited[word] != -1L) {
+                final int start = word << 6 | Long.numberOfTrailingZeros(~visited[word]);
+                final int faces = fill(start);
+                for (int side = 0; side < 6; side++) {
+                    if ((faces >> side & 1) != 0) connectivity |= (long) faces << (side * 6);
+                }
+            }
+        }
+        return connectivity;
+    }
+
+    /**
+     * Заливка связной области пустых ячеек
+     *
+     * @param start первая ячейка области
+     * @return маска сторон секции, которых касается область
+     */
+    private int fill(int start) {
+        int head = 0, tail = 0, faces = 0;
+        mark(start);
+        queue[tail++] = start;
+        while (head < tail) {
+            final int index = queue[head++];
+            final int x = index & Chunk.MASK, y = index >> (Chunk.SHIFT * 2), z = (index >> Chunk.SHIFT) & Chunk.MASK;
+            for (int side = 0; side < 6; side++) {
+                final int[] offset = Block.SIDE_OFFSETS[side];
+                final int nx = x + offset[0], ny = y + offset[1], nz = z + offset[2];
+                if (nx < 0 || ny < 0 || nz < 0 || nx >= Chunk.SIZE || ny >= Chunk.SIZE || nz >= Chunk.SIZE) {
+                    faces |= 1 << side;
+                    continue;
+                }
+                final int next = Chunk.index(nx, ny, nz);
+                if ((visited[next >> 6] >> next & 1) != 0) continue;
+                mark(next);
+                queue[tail++] = next;
+            }
+        }
+        return faces;
+    }
+
+    /**
+     * @param index индекс ячейки
+     */
+    private void mark(int index) {
+        visited[index >> 6] |= 1L << index;
+    }
+
+    /**
+     * Очистка маски твёрдых ячеек
+     *
+     * @param solid маска
+     */
+    public static void clear(long[] solid) {
+        Arrays.fill(solid, 0);
+    }
+
+    /**
+     * Отметка твёрдой ячейки
+     *
+     * @param solid маска
+     * @param index индекс ячейки
+     */
+    public static void setSolid(long[] solid, int index) {
+        solid[index >> 6] |= 1L << index;
+    }
+}
@@ -0,0 +1,219 @@
+package graphics;
+
+import engine.Chunk;
+import engine.World;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4fc;
+import org.lwjgl.BufferUtils;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Отсечение секций по пирамиде видимости камеры и построение команд непрямой отрисовки
+ * (DrawElementsIndirectCommand) для видимых секций. Не обращается к OpenGL.
+ * Секции хранятся в плотных примитивных массивах, удаление переносит последнюю запись на место удалённой
+ */
+public class ChunkCuller {
+    /**
+     * Количество int в одной команде: count, instanceCount, firstIndex, baseVertex, baseInstance
+     */
+    public static final int COMMAND_SIZE = 5;
+
+    /**
+     * Номер записи по ключу секции
+     */
+    private final LongIntMap entries;
+    /**
+     * Ключи секций записей
+     */
+    private long[] keys;
+    /**
+     * Минимальные углы AABB секций: x, y, z на запись
+     */
+    private float[] bounds;
+    /**
+     * Первый индекс и количество индексов геометрии секций
+     */
+    private int[] firstIndices, counts;
+    private int size;
+    private final FrustumIntersection frustum;
+    /**
+     * Построенные команды
+     */
+    private IntBuffer commands;
+    private int commandCount;
+    private int visible;
+    /**
+     * Смещения сегментов текущего построения команд по графу видимости
+     */
+    private int indexBase, baseVertex;
+    private final LongConsumer reachable;
+
+    /**
+     * Конструктор
+     */
+    public ChunkCuller() {
+        entries = new LongIntMap(64);
+        keys = new long[64];
+        bounds = new float[64 * 3];
+        firstIndices = new int[64];
+        counts = new int[64];
+        frustum = new FrustumIntersection();
+        commands = BufferUtils.createIntBuffer(64 * COMMAND_SIZE);
+        reachable = this::appendReachable;
+    }
+
+    /**
+     * Добавление или обновление диапазона индексов секции
+     *
+     * @param key        ключ секции
+     * @param firstIndex первый индекс геометрии секции
+     * @param count      количество индексов
+     */
+    public void set(long key, int firstIndex, int count) {
+        int entry = entries.get(key);
+        if (entry == LongIntMap.MISSING) {
+            if (size == keys.length) grow();
+            entry = size++;
+            entries.put(key, entry);
+            keys[entry] = key;
+            bounds[entry * 3] = World.keyX(key) << Chunk.SHIFT;
+            bounds[entry * 3 + 1] = World.keyY(key) << Chunk.SHIFT;
+            bounds[entry * 3 + 2] = World.keyZ(key) << Chunk.SHIFT;
+        }
+        firstIndices[entry] = firstIndex;
+        counts[entry] = count;
+    }
+
+    /**
+     * Удаление секции
+     *
+     * @param key ключ секции
+     */
+    public void remove(long key) {
+        final int entry = entries.remove(key);
+        if (entry == LongIntMap.MISSING) return;
+        final int last = --size;
+        if (entry != last) {
+            keys[entry] = keys[last];
+            System.arraycopy(bounds, last * 3, bounds, entry * 3, 3);
+            firstIndices[entry] = firstIndices[last];
+            counts[entry] = counts[last];
+            entries.put(keys[entry], entry);
+        }
+    }
+
+    /**
+     * @return количество секций
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Построение команд для секций, пересекающих пирамиду видимости, с начала буфера команд
+     *
+     * @param viewProjection матрица проекции, умноженная на матрицу вида
+     * @param indexBase      смещение первого индекса (начало текущего сегмента индексов)
+     * @param baseVertex     смещение номеров вершин (начало текущего сегмента вершин)
+     * @return количество команд
+     */
+    public int cull(Matrix4fc viewProjection, int indexBase, int baseVertex) {
+        frustum.set(viewProjection, false);
+        commandCount = 0;
+        visible = 0;
+        final float[] bounds = this.bounds;
+        for (int i = 0; i < size; i++) {
+            final float x = bounds[i * 3], y = bounds[i * 3 + 1], z = bounds[i * 3 + 2];
+            if (!frustum.testAab(x, y, z, x + Chunk.SIZE, y + Chunk.SIZE, z + Chunk.SIZE)) continue;
+            append(counts[i], indexBase + firstIndices[i], baseVertex);
+            visible++;
+        }
+        return commandCount;
+    }
+
+    /**
+     * Построение команд для секций, пересекающих пирамиду видимости и достижимых от секции камеры
+     * по графу видимости. Если камера вне границ графа, отсекается только по пирамиде видимости
+     *
+     * @param viewProjection матрица проекции, умноженная на матрицу вида
+     * @param graph          граф видимости секций
+     * @param camera         ключ секции камеры
+     * @param indexBase      смещение первого индекса (начало текущего сегмента индексов)
+     * @param baseVertex     смещение номеров вершин (начало текущего сегмента вершин)
+     * @return количество команд
+     */
+    public int cull(Matrix4fc viewProjection, VisibilityGraph graph, long camera, int indexBase, int baseVertex) {
+        frustum.set(viewProjection, false);
+        commandCount = 0;
+        visible = 0;
+        this.indexBase = indexBase;
+        this.baseVertex = baseVertex;
+        if (!graph.traverse(camera, frustum, reachable)) return cull(viewProjection, indexBase, baseVertex);
+        return commandCount;
+    }
+
+    /**
+     * Добавление команды для секции, достижимой по графу видимости
+     *
+     * @param key ключ секции
+     */
+    private void appendReachable(long key) {
+        final int entry = entries.get(key);
+        if (entry == LongIntMap.MISSING) return;
+        append(counts[entry], indexBase + firstIndices[entry], baseVertex);
+        visible++;
+    }
+
+    /**
+     * Добавление команды после построенных, например для отрезков вне секций
+     *
+     * @param count      количество индексов
+     * @param firstIndex первый индекс
+     * @param baseVertex смещение номеров вершин
+     */
+    public void append(int count, int firstIndex, int baseVertex) {
+        if ((commandCount + 1) * COMMAND_SIZE > commands.capacity()) {
+            final IntBuffer grown = BufferUtils.createIntBuffer(commands.capacity() * 2);
+            grown.put(0, commands, 0, commandCount * COMMAND_SIZE);
+            commands = grown;
+        }
+        final int offset = commandCount * COMMAND_SIZE;
+        commands.put(offset, count).put(offset + 1, 1).put(offset + 2, firstIndex).put(offset + 3, baseVertex).put(offset + 4, 0);
+        commandCount++;
+    }
+
+    /**
+     * @return буфер команд, действительны первые commandCount() * COMMAND_SIZE значений
+     */
+    public IntBuffer commands() {
+        return commands;
+    }
+
+    /**
+     * @return количество построенных команд
+     */
+    public int commandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @return количество секций, прошедших отсечение при последнем вызове cull()
+     */
+    public int visible() {
+        return visible;
+    }
+
+    /**
+     * Увеличение массивов записей вдвое
+     */
+    private void grow() {
+        final int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        bounds = Arrays.copyOf(bounds, capacity * 3);
+        firstIndices = Arrays.copyOf(firstIndices, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+}
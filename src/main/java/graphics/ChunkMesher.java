@@ -0,0 +1,303 @@
+package graphics;
+
+import controller.Settings;
+import engine.Block;
+import engine.BlockStore;
+import engine.Chunk;
+import engine.World;
+
+import java.util.Arrays;
+
+/**
+ * Построение геометрии одной секции из снимка мира в отдельный буфер (Mesh) вместе со связностью её сторон.
+ * Не обращается к OpenGL и к общим массивам DataTransformation, поэтому может выполняться в рабочих потоках.
+ * Экземпляр переиспользует буферы и не потокобезопасен: у каждого потока свой построитель
+ */
+public class ChunkMesher {
+    /**
+     * Вершины куба a, b, c, d для каждой стороны, бит 0 - x, бит 1 - y, бит 2 - z максимальны
+     */
+    private static final int[][] SIDE_CORNERS = {{4, 6, 7, 5}, {6, 2, 3, 7}, {0, 4, 5, 1}, {1, 3, 2, 0}, {0, 2, 6, 4}, {5, 7, 3, 1}};
+
+    /**
+     * Оси, вдоль которых повторяется текстура стороны (a-d, a-b): 0 - x, 1 - y, 2 - z
+     */
+    private static final int[][] SIDE_UV_AXES = {{0, 1}, {0, 2}, {0, 2}, {0, 1}, {2, 1}, {2, 1}};
+
+    /**
+     * Оси (слой, u, v) для каждой стороны при жадном построении геометрии: 0 - x, 1 - y, 2 - z
+     */
+    private static final int[][] GREEDY_AXES = {{2, 0, 1}, {1, 0, 2}, {1, 0, 2}, {2, 0, 1}, {0, 2, 1}, {0, 2, 1}};
+
+    /**
+     * Расчёт связности сторон секции для графа видимости
+     */
+    private final ChunkConnectivity connectivity;
+    /**
+     * Твёрдые ячейки перестраиваемой секции, бит на ячейку
+     */
+    private final long[] solid;
+    /**
+     * id прорисовываемых сторон секции для жадного построения геометрии, -1 - сторона не прорисовывается
+     */
+    private final int[] faceIds;
+    /**
+     * Обработчики блоков секции: построение геометрии по блокам и заполнение faceIds
+     */
+    private final BlockStore.BlockVisitor blockVisitor, faceVisitor, lodVisitor;
+    /**
+     * Построение упрощённых уровней детализации дальних секций
+     */
+    private final LodBuilder lodBuilder;
+    /**
+     * Вспомогательные массивы жадного построения: начало и размер прямоугольника по осям x, y, z
+     */
+    private final int[] greedyStart = new int[3], greedySize = new int[3];
+
+    /**
+     * Снимок мира и буфер текущего построения
+     */
+    private BlockStore blocks;
+    private Mesh mesh;
+
+    /**
+     * Конструктор
+     */
+    public ChunkMesher() {
+        connectivity = new ChunkConnectivity();
+        solid = new long[Chunk.VOLUME / 64];
+        faceIds = new int[6 * Chunk.VOLUME];
+        blockVisitor = (x, y, z, id, sideIds, faces) -> {
+            if (id != -1) ChunkConnectivity.setSolid(solid, Chunk.index(x, y, z));
+            transferBlock(x, y, z, sideIds, faces);
+        };
+        faceVisitor = (x, y, z, id, sideIds, faces) -> {
+            final int index = Chunk.index(x, y, z);
+            if (id != -1) ChunkConnectivity.setSolid(solid, index);
+            for (int side = 0; side < 6; side++) {
+                if ((faces & (1 << side)) != 0) faceIds[side * Chunk.VOLUME + index] = sideIds[side];
+            }
+        };
+        lodBuilder = new LodBuilder();
+        lodVisitor = (x, y, z, id, sideIds, faces) -> {
+            if (id == -1) return;
+            final int index = Chunk.index(x, y, z);
+            ChunkConnectivity.setSolid(solid, index);
+            lodBuilder.add(index, sideIds);
+        };
+    }
+
+    /**
+     * Построение геометрии секции в формате, выбранном в Settings
+     * @param blocks снимок мира
+     * @param key ключ секции
+     * @param level уровень детализации, 0 - полный
+     * @param mesh буфер для записи, предварительно очищается
+     * @return маска связности сторон секции (ChunkConnectivity)
+     */
+    public long build(BlockStore blocks, long key, int level, Mesh mesh) {
+        this.blocks = blocks;
+        this.mesh = mesh;
+        mesh.reset();
+        ChunkConnectivity.clear(solid);
+        if (level > 0) transferChunkLod(key, level);
+        else if (Settings.greedyMeshing) transferChunkGreedy(key);
+        else blocks.forEachInChunk(key, blockVisitor);
+        this.blocks = null;
+        this.mesh = null;
+        return connectivity.compute(solid);
+    }
+
+    /**
+     * Передача видимых сторон одного блока в буфер секции
+     * @param x координата x блока
+     * @param y координата y блока
+     * @param z координата z блока
+     * @param sideIds массив[6] id сторон
+     * @param faces маска прорисовки сторон
+     */
+    private void transferBlock(int x, int y, int z, int[] sideIds, int faces) {
+        for (int side = 0; side < 6; side++) {
+            if ((faces & (1 << side)) != 0) transferBox(x, y, z, x + 1, y + 1, z + 1, side, sideIds[side]);
+        }
+    }
+
+    /**
+     * Преобразование и передача одной стороны прямоугольного параллелепипеда из блоков [x0, x1) x [y0, y1) x [z0, z1).
+     * Вершины пишутся сразу в буфер секции без создания промежуточных объектов в формате, выбранном в Settings,
+     * текстура стороны повторяется по одному разу на каждый блок
+     * @param x0 минимальная координата x
+     * @param y0 минимальная координата y
+     * @param z0 минимальная координата z
+     * @param x1 координата x, следующая за максимальной
+     * @param y1 координата y, следующая за максимальной
+     * @param z1 координата z, следующая за максимальной
+     * @param side номер стороны
+     * @param id id стороны
+     */
+    private void transferBox(int x0, int y0, int z0, int x1, int y1, int z1, int side, int id) {
+        final float delta = Settings.blockSize - 1.0f;
+        final float maxX = x1 + delta, maxY = y1 + delta, maxZ = z1 + delta;
+        final int[] corners = SIDE_CORNERS[side];
+        final int[] uv = SIDE_UV_AXES[side];
+        final int[] normal = Block.SIDE_OFFSETS[side];
+        final float width = uv[0] == 0 ? x1 - x0 : (uv[0] == 1 ? y1 - y0 : z1 - z0);
+        final float height = uv[1] == 0 ? x1 - x0 : (uv[1] == 1 ? y1 - y0 : z1 - z0);
+        if (Settings.packedVertices) {
+            transferPackedBox(x0, y0, z0, x1, y1, z1, side, id, (int) width, (int) height);
+            return;
+        }
+        final float tile = id;
+
+        mesh.ensure(4 * DataTransformation.VERTEX_SIZE, 6);
+        for (int k = 0; k < 4; k++) {
+            final int corner = corners[k];
+            mesh.vertex(
+                    (corner & 1) != 0 ? maxX : x0,
+                    (corner & 2) != 0 ? maxY : y0,
+                    (corner & 4) != 0 ? maxZ : z0,
+                    k < 2 ? 0.0f : width,
+                    k == 0 || k == 3 ? 0.0f : height,
+                    -normal[0], -normal[1], -normal[2], tile
+            );
+        }
+        mesh.quad();
+    }
+
+    /**
+     * Передача стороны параллелепипеда в упакованном формате, координаты вершин считаются целыми
+     * @param x0 минимальная координата x
+     * @param y0 минимальная координата y
+     * @param z0 минимальная координата z
+     * @param x1 координата x, следующая за максимальной
+     * @param y1 координата y, следующая за максимальной
+     * @param z1 координата z, следующая за максимальной
+     * @param side номер стороны
+     * @param id id стороны
+     * @param width количество повторений текстуры вдоль a-d
+     * @param height количество повторений текстуры вдоль a-b
+     */
+    private void transferPackedBox(int x0, int y0, int z0, int x1, int y1, int z1, int side, int id, int width, int height) {
+        final int[] corners = SIDE_CORNERS[side];
+        mesh.ensure(4 * DataTransformation.PACKED_VERTEX_SIZE, 6);
+        for (int k = 0; k < 4; k++) {
+            final int corner = corners[k];
+            final int x = (corner & 1) != 0 ? x1 : x0;
+            final int y = (corner & 2) != 0 ? y1 : y0;
+            final int z = (corner & 4) != 0 ? z1 : z0;
+            final int u = k < 2 ? 0 : width;
+            final int v = k == 0 || k == 3 ? 0 : height;
+            mesh.vertex(packPosition(x, z), packAttributes(y, side, u, v, id));
+        }
+        mesh.quad();
+    }
+
+    /**
+     * Первое слово упакованной вершины: x в битах 0-15, z в битах 16-31 (оба со знаком)
+     * @param x координата x от -32768 до 32767
+     * @param z координата z от -32768 до 32767
+     * @return первое слово вершины
+     */
+    static int packPosition(int x, int z) {
+        return (x & 0xFFFF) | (z << 16);
+    }
+
+    /**
+     * Второе слово упакованной вершины: y со знаком в битах 0-10, сторона в битах 11-13,
+     * u в битах 14-18, v в битах 19-23, id тайла в битах 24-31
+     * @param y координата y от -1024 до 1023
+     * @param side номер стороны
+     * @param u текстурная координата u от 0 до 31
+     * @param v текстурная координата v от 0 до 31
+     * @param id id тайла от 0 до 255
+     * @return второе слово вершины
+     */
+    static int packAttributes(int y, int side, int u, int v, int id) {
+        return (y & 0x7FF) | (side << 11) | (u << 14) | (v << 19) | ((id & 0xFF) << 24);
+    }
+
+    /**
+     * Построение геометрии секции с объединением соседних сторон с одинаковым id в прямоугольники.
+     * @param key ключ секции
+     */
+    private void transferChunkGreedy(long key) {
+        Arrays.fill(faceIds, -1);
+        blocks.forEachInChunk(key, faceVisitor);
+        transferGreedy(key, Chunk.SIZE, 1);
+    }
+
+    /**
+     * Построение геометрии секции на упрощённом уровне детализации
+     * @param key ключ секции
+     * @param level уровень детализации
+     */
+    private void transferChunkLod(long key, int level) {
+        lodBuilder.clear();
+        blocks.forEachInChunk(key, lodVisitor);
+        lodBuilder.build(blocks, key, level, faceIds);
+        transferGreedy(key, LodBuilder.size(level), 1 << level);
+    }
+
+    /**
+     * Жадное объединение видимых сторон из faceIds в прямоугольники.
+     * Для каждой стороны и каждого слоя сетки строится маска id сторон, из которой жадно выбираются
+     * максимальные прямоугольники: сначала по ширине, затем по высоте
+     * @param key ключ секции
+     * @param size размер стороны сетки в ячейках
+     * @param scale размер ячейки в блоках
+     */
+    private void transferGreedy(long key, int size, int scale) {
+        final int baseX = World.keyX(key) << Chunk.SHIFT, baseY = World.keyY(key) << Chunk.SHIFT, baseZ = World.keyZ(key) << Chunk.SHIFT;
+        final int[] local = greedyStart, extent = greedySize;
+        for (int side = 0; side < 6; side++) {
+            final int[] axes = GREEDY_AXES[side];
+            final int offset = side * Chunk.VOLUME;
+            final int strideL = axisStride(axes[0], size), strideU = axisStride(axes[1], size), strideV = axisStride(axes[2], size);
+            for (int layer = 0; layer < size; layer++) {
+                for (int v = 0; v < size; v++) {
+                    for (int u = 0; u < size; ) {
+                        final int id = faceIds[offset + layer * strideL + u * strideU + v * strideV];
+                        if (id == -1) {
+                            u++;
+                            continue;
+                        }
+                        int width = 1;
+                        while (u + width < size && faceIds[offset + layer * strideL + (u + width) * strideU + v * strideV] == id) width++;
+                        int height = 1;
+                        grow:
+                        while (v + height < size) {
+                            for (int du = 0; du < width; du++) {
+                                if (faceIds[offset + layer * strideL + (u + du) * strideU + (v + height) * strideV] != id) break grow;
+                            }
+                            height++;
+                        }
+                        for (int dv = 0; dv < height; dv++) {
+                            for (int du = 0; du < width; du++) {
+                                faceIds[offset + layer * strideL + (u + du) * strideU + (v + dv) * strideV] = -1;
+                            }
+                        }
+                        local[axes[0]] = layer;
+                        local[axes[1]] = u;
+                        local[axes[2]] = v;
+                        extent[axes[0]] = 1;
+                        extent[axes[1]] = width;
+                        extent[axes[2]] = height;
+                        final int x0 = baseX + local[0] * scale, y0 = baseY + local[1] * scale, z0 = baseZ + local[2] * scale;
+                        transferBox(x0, y0, z0, x0 + extent[0] * scale, y0 + extent[1] * scale, z0 + extent[2] * scale, side, id);
+                        u += width;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Шаг индекса ячейки сетки при смещении на 1 вдоль оси, порядок осей как в Chunk.index()
+     * @param axis ось: 0 - x, 1 - y, 2 - z
+     * @param size размер стороны сетки
+     * @return шаг индекса
+     */
+    private static int axisStride(int axis, int size) {
+        return axis == 0 ? 1 : (axis == 1 ? size * size : size);
+    }
+}
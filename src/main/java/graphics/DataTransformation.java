@@ -2,32 +2,123 @@ package graphics;
 
 import controller.RTController;
 import controller.Settings;
-import engine.Block;
+import engine.BlockStore;
+import engine.Chunk;
 import engine.EngineRuntime;
 import engine.Line;
+import engine.RenderSnapshot;
+import engine.World;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Преобразователь данных движка в данные для отправки в видеопроцессор
+ * Преобразователь данных движка в данные для отправки в видеопроцессор.
+ * Геометрия строится по секциям мира: перестраиваются только изменённые секции,
+ * а их данные вписываются в общие массивы на отведённые секциям участки
  */
 public class DataTransformation {
+    /**
+     * Количество 4-байтовых значений на одну вершину обычного формата:
+     * позиция(3), текстурные координаты в тайлах(2), нормаль(3), id тайла(1)
+     */
+    public static final int VERTEX_SIZE = 9;
+    /**
+     * Количество 4-байтовых значений на одну вершину упакованного формата:
+     * слово 0 - x(16 бит) и z(16 бит), слово 1 - y(11 бит), сторона(3), u(5), v(5), id тайла(8)
+     */
+    public static final int PACKED_VERTEX_SIZE = 2;
     /**
      * Движок
      */
     private final EngineRuntime engineRuntime;
     /**
-     * Массив индексов вершин
+     * Начальная ёмкость буферов значений вершин и индексов
+     */
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    /**
+     * Буфер индексов вершин вне кучи Java, увеличивается вдвое при нехватке места
+     */
+    private IntBuffer indicesRaw;
+    /**
+     * Буфер значений вершин вне кучи Java, увеличивается вдвое при нехватке места
+     */
+    private FloatBuffer cordsRaw;
+    /**
+     * Участки общих массивов, занятые секциями
+     */
+    private final Map<Long, ChunkSlot> slots;
+    /**
+     * Отрисованная версия мира (null до первого обновления) и её снимок блоков
+     */
+    private RenderSnapshot snapshot;
+    private BlockStore blocks;
+    /**
+     * Отсечение секций по пирамиде видимости, хранит диапазоны индексов секций
      */
-    private final int[] indicesRaw;
+    private final ChunkCuller culler;
     /**
-     * Массив значений вершин
+     * Граф видимости секций, связность сторон секции пересчитывается при её перестроении
      */
-    private final float[] cordsRaw;
+    private final VisibilityGraph visibilityGraph;
+    /**
+     * Буфер, в который собирается геометрия отрезков и синхронно перестраиваемой секции
+     */
+    private final Mesh mesh;
+    /**
+     * Построитель геометрии секций для синхронного перестроения в потоке отрисовки
+     */
+    private final ChunkMesher mesher;
+    /**
+     * Пул рабочих потоков построения геометрии секций
+     */
+    private final MeshingPool meshingPool;
+    /**
+     * Позиция камеры, по которой выбираются уровни детализации, и секция, в которой она была при последней проверке
+     */
+    private float viewerX, viewerY, viewerZ;
+    private long viewerChunk;
+    /**
+     * Ключи секций, уровень детализации которых устарел, переиспользуется между кадрами
+     */
+    private long[] outdated = new long[64];
 
     /**
-     * Вспомогательные поля
+     * Вспомогательные поля: общий размер данных, конец области секций и объём неиспользуемых индексов в ней
      */
-    private int sizeI = 0, sizeC = 0, verticesCount = 0;
+    private int sizeI = 0, sizeC = 0, slotsEndI = 0, slotsEndV = 0, wastedI = 0;
+    /**
+     * Изменённые с последней отправки диапазоны массивов [from, to)
+     */
+    private int changedFromC, changedToC, changedFromI, changedToI;
+
+    /**
+     * Участок общих массивов, отведённый секции
+     */
+    private static class ChunkSlot {
+        /**
+         * Номер первой вершины и количество вершин, помещающихся в участок
+         */
+        int vertexOffset, vertexCapacity;
+        /**
+         * Номер первого индекса и количество индексов, помещающихся в участок
+         */
+        int indexOffset, indexCapacity;
+        /**
+         * Количество индексов геометрии секции, остаток участка заполнен вырожденными треугольниками
+         */
+        int indexCount;
+        /**
+         * Уровень детализации, на котором построена геометрия
+         */
+        int level;
+    }
 
     /**
      * Конструктор преобразователя
@@ -35,64 +126,395 @@ public class DataTransformation {
      */
     DataTransformation(RTController controller) {
         this.engineRuntime = controller.getEngineRuntime();
-        indicesRaw = new int[Settings.translationSize];
-        cordsRaw = new float[Settings.translationSize];
+        indicesRaw = BufferUtils.createIntBuffer(INITIAL_CAPACITY);
+        cordsRaw = BufferUtils.createFloatBuffer(INITIAL_CAPACITY);
+        slots = new HashMap<>();
+        culler = new ChunkCuller();
+        visibilityGraph = new VisibilityGraph();
+        blocks = engineRuntime.getRenderSnapshot().blocks();
+        mesh = new Mesh();
+        mesher = new ChunkMesher();
+        meshingPool = new MeshingPool(Settings.meshingThreads);
+        viewerChunk = World.chunkKey(0, 0, 0);
+        clearChanges();
+    }
+
+    /**
+     * Метод вызова обновления данных для трансфера.
+     * Берётся последняя опубликованная движком версия мира, на перестроение ставятся только секции,
+     * изменённые после уже отрисованной версии, ближние к камере - в первую очередь.
+     * При переходе камеры в другую секцию перестраиваются секции, у которых сменился уровень детализации.
+     * Геометрия строится в пуле рабочих потоков, здесь готовые секции только записываются в общие массивы
+     * @param viewer позиция камеры
+     */
+    public void update(Vector3fc viewer) {
+        viewerX = viewer.x();
+        viewerY = viewer.y();
+        viewerZ = viewer.z();
+        final RenderSnapshot latest = engineRuntime.getRenderSnapshot();
+        if (latest != snapshot) {
+            final RenderSnapshot previous = snapshot;
+            blocks = latest.blocks();
+            snapshot = latest;
+            if (previous == null) blocks.forEachChunk(this::submit);
+            else previous.forEachChangedUntil(latest, this::submit);
+        }
+        final long chunk = World.chunkKey((int) Math.floor(viewerX), (int) Math.floor(viewerY), (int) Math.floor(viewerZ));
+        if (Settings.levelOfDetail && chunk != viewerChunk) {
+            viewerChunk = chunk;
+            rebuildOutdatedLevels();
+        }
+        meshingPool.drain(job -> apply(job.key(), job.level(), job.mesh(), job.connectivity()));
+        if (wastedI > slotsEndI / 2) compact();
+        updateLines();
+    }
+
+    /**
+     * Перестроение секций, построенных не на том уровне детализации, который соответствует позиции камеры
+     */
+    private void rebuildOutdatedLevels() {
+        int count = 0;
+        for (Map.Entry<Long, ChunkSlot> entry : slots.entrySet()) {
+            if (entry.getValue().level == levelOf(entry.getKey())) continue;
+            if (count == outdated.length) outdated = Arrays.copyOf(outdated, count * 2);
+            outdated[count++] = entry.getKey();
+        }
+        for (int i = 0; i < count; i++) submit(outdated[i]);
+    }
+
+    /**
+     * Постановка секции на перестроение по текущему снимку мира
+     * @param key ключ секции
+     */
+    private void submit(long key) {
+        final float distance = distanceTo(key);
+        meshingPool.submit(key, levelOf(distance), blocks, distance);
+    }
+
+    /**
+     * Расстояние от камеры до центра секции
+     * @param key ключ секции
+     * @return расстояние в блоках
+     */
+    private float distanceTo(long key) {
+        final float half = Chunk.SIZE / 2.0f;
+        final float dx = (World.keyX(key) << Chunk.SHIFT) + half - viewerX;
+        final float dy = (World.keyY(key) << Chunk.SHIFT) + half - viewerY;
+        final float dz = (World.keyZ(key) << Chunk.SHIFT) + half - viewerZ;
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Уровень детализации секции по расстоянию от камеры до её центра
+     * @param distance расстояние от камеры до центра секции
+     * @return уровень детализации, 0 - полный
+     */
+    private static int levelOf(float distance) {
+        return Settings.levelOfDetail ? LodBuilder.level(distance) : 0;
     }
 
     /**
-     * Метод вызова обновления данных для трансфера
+     * @param key ключ секции
+     * @return уровень детализации секции при текущей позиции камеры
      */
-    public void update() {
-        reset();
-        for (Block block : engineRuntime.blocks.values()) {
-            transferBlock(block);
+    private int levelOf(long key) {
+        return levelOf(distanceTo(key));
+    }
+
+    /**
+     * Синхронное перестроение геометрии секции в вызывающем потоке и её запись на отведённый участок.
+     * Доступен в пакете для замеров производительности
+     * @param key ключ секции
+     */
+    void rebuildChunk(long key) {
+        final int level = levelOf(key);
+        final long connectivity = mesher.build(blocks, key, level, mesh);
+        apply(key, level, mesh, connectivity);
+    }
+
+    /**
+     * Запись построенной геометрии секции на отведённый участок, при нехватке места выделяется новый участок
+     * @param key ключ секции
+     * @param level уровень детализации геометрии
+     * @param mesh геометрия секции
+     * @param connectivity маска связности сторон секции
+     */
+    private void apply(long key, int level, Mesh mesh, long connectivity) {
+        visibilityGraph.set(key, connectivity);
+
+        ChunkSlot slot = slots.get(key);
+        if (slot != null && (mesh.sizeI == 0 || mesh.verticesCount > slot.vertexCapacity || mesh.sizeI > slot.indexCapacity)) {
+            release(slot);
+            slots.remove(key);
+            culler.remove(key);
+            slot = null;
+        }
+        if (mesh.sizeI == 0) return;
+        if (slot == null) {
+            slot = allocate(mesh.verticesCount + mesh.verticesCount / 2, mesh.sizeI + mesh.sizeI / 2);
+            slots.put(key, slot);
         }
-        synchronized (engineRuntime.lines) {
+        write(slot, mesh);
+        slot.level = level;
+        culler.set(key, slot.indexOffset, slot.indexCount);
+    }
+
+    /**
+     * Выделение нового участка в конце области секций
+     * @param vertexCapacity количество вершин
+     * @param indexCapacity количество индексов
+     * @return участок
+     */
+    private ChunkSlot allocate(int vertexCapacity, int indexCapacity) {
+        final ChunkSlot slot = new ChunkSlot();
+        slot.vertexOffset = slotsEndV;
+        slot.vertexCapacity = vertexCapacity;
+        slot.indexOffset = slotsEndI;
+        slot.indexCapacity = indexCapacity;
+        slotsEndV += vertexCapacity;
+        slotsEndI += indexCapacity;
+        ensureCapacity(slotsEndV * vertexSize(), slotsEndI);
+        return slot;
+    }
+
+    /**
+     * Освобождение участка: его индексы заменяются вырожденными треугольниками
+     * @param slot участок
+     */
+    private void release(ChunkSlot slot) {
+        fillIndices(slot.indexOffset, slot.indexOffset + slot.indexCapacity, 0);
+        markChanged(0, 0, slot.indexOffset, slot.indexOffset + slot.indexCapacity);
+        wastedI += slot.indexCapacity;
+    }
+
+    /**
+     * Запись собранной геометрии секции на её участок,
+     * оставшиеся индексы участка заполняются вырожденными треугольниками
+     * @param slot участок
+     * @param mesh геометрия секции
+     */
+    private void write(ChunkSlot slot, Mesh mesh) {
+        final int fromC = slot.vertexOffset * vertexSize();
+        cordsRaw.put(fromC, mesh.cords, 0, mesh.sizeC);
+        copyIndices(mesh.indices, 0, slot.indexOffset, mesh.sizeI, slot.vertexOffset);
+        fillIndices(slot.indexOffset + mesh.sizeI, slot.indexOffset + slot.indexCapacity, slot.vertexOffset);
+        slot.indexCount = mesh.sizeI;
+        markChanged(fromC, fromC + mesh.sizeC, slot.indexOffset, slot.indexOffset + slot.indexCapacity);
+    }
+
+    /**
+     * Уплотнение области секций: участки переносятся к началу массивов без промежутков
+     */
+    private void compact() {
+        int endV = 0, endI = 0;
+        for (Map.Entry<Long, ChunkSlot> entry : slots.entrySet().stream().sorted((a, b) -> Integer.compare(a.getValue().indexOffset, b.getValue().indexOffset)).toList()) {
+            final ChunkSlot slot = entry.getValue();
+            final int deltaV = endV - slot.vertexOffset;
+            cordsRaw.put(endV * vertexSize(), cordsRaw, slot.vertexOffset * vertexSize(), slot.vertexCapacity * vertexSize());
+            copyIndices(indicesRaw, slot.indexOffset, endI, slot.indexCapacity, deltaV);
+            slot.vertexOffset = endV;
+            slot.indexOffset = endI;
+            culler.set(entry.getKey(), slot.indexOffset, slot.indexCount);
+            endV += slot.vertexCapacity;
+            endI += slot.indexCapacity;
+        }
+        slotsEndV = endV;
+        slotsEndI = endI;
+        wastedI = 0;
+        markChanged(0, endV * vertexSize(), 0, endI);
+    }
+
+    /**
+     * Запись отрезков после области секций, выполняется каждый кадр.
+     * Отрезки не выражаются в упакованном формате и в нём не выводятся
+     */
+    private void updateLines() {
+        mesh.reset();
+        if (!Settings.packedVertices) synchronized (engineRuntime.lines) {
             for (Line line : engineRuntime.lines) {
                 transferLine(line);
             }
         }
+        final int fromC = slotsEndV * vertexSize();
+        ensureCapacity(fromC + mesh.sizeC, slotsEndI + mesh.sizeI);
+        cordsRaw.put(fromC, mesh.cords, 0, mesh.sizeC);
+        copyIndices(mesh.indices, 0, slotsEndI, mesh.sizeI, slotsEndV);
+        markChanged(fromC, fromC + mesh.sizeC, slotsEndI, slotsEndI + mesh.sizeI);
+        sizeC = fromC + mesh.sizeC;
+        sizeI = slotsEndI + mesh.sizeI;
+    }
+
+    /**
+     * Подготовка места в общих буферах, при нехватке буфер увеличивается не менее чем вдвое
+     * @param values необходимое количество значений вершин
+     * @param indexes необходимое количество индексов
+     */
+    private void ensureCapacity(int values, int indexes) {
+        if (values > cordsRaw.capacity()) {
+            final FloatBuffer grown = BufferUtils.createFloatBuffer(Math.max(cordsRaw.capacity() * 2, values));
+            grown.put(0, cordsRaw, 0, cordsRaw.capacity());
+            cordsRaw = grown;
+        }
+        if (indexes > indicesRaw.capacity()) {
+            final IntBuffer grown = BufferUtils.createIntBuffer(Math.max(indicesRaw.capacity() * 2, indexes));
+            grown.put(0, indicesRaw, 0, indicesRaw.capacity());
+            indicesRaw = grown;
+        }
     }
 
     /**
-     * Getter для получения массива преобразованных данных вершин
-     * @return массив преобразованных данных вершин
+     * Копирование индексов в общий буфер со сдвигом номеров вершин
+     * @param source буфер-источник
+     * @param from начало диапазона источника
+     * @param to начало диапазона в общем буфере
+     * @param count количество индексов
+     * @param delta сдвиг номеров вершин
      */
-    public float[] getCords() {
-        final float[] cords = new float[sizeC];
-        System.arraycopy(cordsRaw, 0, cords, 0, sizeC);
-        return cords;
+    private void copyIndices(IntBuffer source, int from, int to, int count, int delta) {
+        for (int i = 0; i < count; i++) {
+            indicesRaw.put(to + i, source.get(from + i) + delta);
+        }
     }
 
     /**
-     * Getter для получения массива индексов
-     * @return массив индексов
+     * Заполнение диапазона общего буфера индексов одним значением
+     * @param from начало диапазона
+     * @param to конец диапазона
+     * @param value значение
      */
-    public int[] getIndices() {
-        final int[] indices = new int[sizeI];
-        System.arraycopy(indicesRaw, 0, indices, 0, sizeI);
-        return indices;
+    private void fillIndices(int from, int to, int value) {
+        for (int i = from; i < to; i++) {
+            indicesRaw.put(i, value);
+        }
     }
 
     /**
-     * Добавление нового пакета данных в массиы значений и индексов
-     * @param cords массив добавляемых значений вершин
-     * @param indices массив добавляемых индексов
+     * Расширение изменённых диапазонов массивов
+     * @param fromC начало диапазона значений вершин
+     * @param toC конец диапазона значений вершин
+     * @param fromI начало диапазона индексов
+     * @param toI конец диапазона индексов
      */
-    private void transfer(float[] cords, int[] indices) {
-        System.arraycopy(cords, 0, cordsRaw, sizeC, cords.length);
-        System.arraycopy(indices, 0, indicesRaw, sizeI, indices.length);
-        sizeC += cords.length;
-        sizeI += indices.length;
+    private void markChanged(int fromC, int toC, int fromI, int toI) {
+        if (fromC < toC) {
+            changedFromC = Math.min(changedFromC, fromC);
+            changedToC = Math.max(changedToC, toC);
+        }
+        if (fromI < toI) {
+            changedFromI = Math.min(changedFromI, fromI);
+            changedToI = Math.max(changedToI, toI);
+        }
     }
 
     /**
-     * Обнуление значений вспомогательных полей
+     * @return количество 4-байтовых значений на одну вершину в выбранном в Settings формате
      */
-    private void reset() {
-        sizeI = 0;
-        sizeC = 0;
-        verticesCount = 0;
+    public static int vertexSize() {
+        return Settings.packedVertices ? PACKED_VERTEX_SIZE : VERTEX_SIZE;
+    }
+
+    /**
+     * @return количество секций, поставленных на перестроение и ещё не записанных
+     */
+    public int pendingChunks() {
+        return meshingPool.pending();
+    }
+
+    /**
+     * Остановка рабочих потоков построения геометрии
+     */
+    public void close() {
+        meshingPool.shutdown();
+    }
+
+    /**
+     * @return отсечение секций по пирамиде видимости с диапазонами индексов секций
+     */
+    public ChunkCuller getCuller() {
+        return culler;
+    }
+
+    /**
+     * @return граф видимости секций
+     */
+    public VisibilityGraph getVisibilityGraph() {
+        return visibilityGraph;
+    }
+
+    /**
+     * @return конец области секций в индексах, после него записаны индексы отрезков
+     */
+    public int chunkIndicesEnd() {
+        return slotsEndI;
+    }
+
+    /**
+     * @return есть ли изменения с последней отправки данных
+     */
+    public boolean hasChanges() {
+        return changedFromC < changedToC || changedFromI < changedToI;
+    }
+
+    /**
+     * Сброс изменённых диапазонов после отправки данных
+     */
+    public void clearChanges() {
+        changedFromC = Integer.MAX_VALUE;
+        changedToC = 0;
+        changedFromI = Integer.MAX_VALUE;
+        changedToI = 0;
+    }
+
+    /**
+     * @return начало изменённого диапазона значений вершин
+     */
+    public int changedFromC() {
+        return changedFromC;
+    }
+
+    /**
+     * @return конец изменённого диапазона значений вершин
+     */
+    public int changedToC() {
+        return changedToC;
+    }
+
+    /**
+     * @return начало изменённого диапазона индексов
+     */
+    public int changedFromI() {
+        return changedFromI;
+    }
+
+    /**
+     * @return конец изменённого диапазона индексов
+     */
+    public int changedToI() {
+        return changedToI;
+    }
+
+    /**
+     * Getter для буфера значений вершин, действительны первые cordsSize() значений
+     * @return буфер значений вершин
+     */
+    public FloatBuffer getCordsRaw() {
+        return cordsRaw;
+    }
+
+    /**
+     * Getter для буфера индексов, действительны первые indicesSize() значений
+     * @return буфер индексов
+     */
+    public IntBuffer getIndicesRaw() {
+        return indicesRaw;
+    }
+
+    /**
+     * Размер массива значений вершин
+     * @return размер массива значений вершин
+     */
+    public int cordsSize() {
+        return sizeC;
     }
 
     /**
@@ -112,26 +534,17 @@ public class DataTransformation {
      * @param id id стороны
      */
     public void transferSquare(Vector3f a, Vector3f b, Vector3f c, Vector3f d, long id) {
-        final float yId = (float) (id / 16L) / 16.0f;
-        final float xId = (float) (id % 16L) / 16.0f;
-        final float delta = 1.0f / 16.0f;
-
         final float kX = (b.y - a.y) * (c.z - a.z) - (c.y - a.y) * ( b.z - a.z);
         final float kY = (c.x - a.x) * (b.z - a.z) - (b.x - a.x) * ( c.z - a.z);
         final float kZ = (b.x - a.x) * (c.y - a.y) - (c.x - a.x) * ( b.y - a.y);
+        final float tile = (float) id;
 
-        final float[] tempCordsRaw = new float[]{
-                a.x, a.y, a.z, xId,         yId        , kX, kY, kZ,
-                b.x, b.y, b.z, xId,         yId + delta, kX, kY, kZ,
-                c.x, c.y, c.z, xId + delta, yId + delta, kX, kY, kZ,
-                d.x, d.y, d.z, xId + delta, yId        , kX, kY, kZ
-        };
-        final int[] tempIndicesRaw = new int[]{
-                verticesCount, verticesCount + 2, verticesCount + 1,
-                verticesCount, verticesCount + 3, verticesCount + 2
-        };
-        verticesCount += 4;
-        transfer(tempCordsRaw, tempIndicesRaw);
+        mesh.ensure(4 * VERTEX_SIZE, 6);
+        mesh.vertex(a.x, a.y, a.z, 0.0f, 0.0f, kX, kY, kZ, tile);
+        mesh.vertex(b.x, b.y, b.z, 0.0f, 1.0f, kX, kY, kZ, tile);
+        mesh.vertex(c.x, c.y, c.z, 1.0f, 1.0f, kX, kY, kZ, tile);
+        mesh.vertex(d.x, d.y, d.z, 1.0f, 0.0f, kX, kY, kZ, tile);
+        mesh.quad();
     }
 
     /**
@@ -147,29 +560,4 @@ public class DataTransformation {
         transferSquare(startUp, startDown, endDown, endUp, 17);
         transferSquare(endUp, endDown, startDown, startUp, 17);
     }
-
-    /**
-     * Преобразование и передача данных блока в массивы индексов и значений вершин
-     * @param block блок(куб)
-     */
-    public void transferBlock(Block block) {
-        final float delta = Settings.blockSize / 2.0f;
-        final Vector3f center = new Vector3f(block.cord).add(delta, delta, delta);
-        final Vector3f[] vertex = new Vector3f[]{
-                new Vector3f(center.x - delta, center.y - delta, center.z - delta),//0 - far down left
-                new Vector3f(center.x + delta, center.y - delta, center.z - delta),//1 - far down right
-                new Vector3f(center.x - delta, center.y + delta, center.z - delta),//2 - far up left
-                new Vector3f(center.x + delta, center.y + delta, center.z - delta),//3 - far up right
-                new Vector3f(center.x - delta, center.y - delta, center.z + delta),//4 - near down left
-                new Vector3f(center.x + delta, center.y - delta, center.z + delta),//5 - near down right
-                new Vector3f(center.x - delta, center.y + delta, center.z + delta),//6 - near up left
-                new Vector3f(center.x + delta, center.y + delta, center.z + delta) //7 - near up right
-        };
-        if (block.sideRender[0]) transferSquare(vertex[4], vertex[6], vertex[7], vertex[5], block.sideIds[0]);//near
-        if (block.sideRender[1]) transferSquare(vertex[6], vertex[2], vertex[3], vertex[7], block.sideIds[1]);//up
-        if (block.sideRender[2]) transferSquare(vertex[0], vertex[4], vertex[5], vertex[1], block.sideIds[2]);//down
-        if (block.sideRender[3]) transferSquare(vertex[1], vertex[3], vertex[2], vertex[0], block.sideIds[3]);//far
-        if (block.sideRender[4]) transferSquare(vertex[0], vertex[2], vertex[6], vertex[4], block.sideIds[4]);//left
-        if (block.sideRender[5]) transferSquare(vertex[5], vertex[7], vertex[3], vertex[1], block.sideIds[5]);//right
-    }
 }
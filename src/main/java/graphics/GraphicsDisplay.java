@@ -2,7 +2,9 @@ package graphics;
 
 import controller.RTController;
 import controller.Settings;
+import controller.StartupProfile;
 import engine.LightPoint;
+import graphics.translateObjects.SSBO;
 import graphics.translateObjects.Translation;
 import org.joml.Random;
 import org.joml.Vector3f;
@@ -13,11 +15,9 @@ import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.system.MemoryStack;
 
-import java.io.File;
-import java.io.IOException;
 import java.nio.IntBuffer;
-import java.nio.file.Files;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
 import static org.lwjgl.glfw.GLFW.*;
@@ -67,20 +67,40 @@ public class GraphicsDisplay {
     private final Camera camera;
 
     /**
-     * GLSL код вершинного шейдера
+     * GLSL код вершинного шейдера, загружается параллельно созданию окна
      */
-    private String vertexShaderSource;
+    private CompletableFuture<String> vertexShaderSource;
 
     /**
-     * GLSL код фрагментного шейдера
+     * GLSL код фрагментного шейдера, загружается параллельно созданию окна
      */
-    private String fragmentShaderSource;
+    private CompletableFuture<String> fragmentShaderSource;
+
+    /**
+     * Разрезанные карты текстур и бликов, загружаются параллельно созданию окна
+     */
+    private CompletableFuture<TextureAtlas> textureAtlas, specularAtlas;
 
     /**
      * Внешнее(Ambient) освещение
      */
     private float ambLight;
 
+    /**
+     * Распределение источников света по кластерам
+     */
+    private final LightClusters lightClusters;
+
+    /**
+     * Буферы шейдера с источниками света и сеткой кластеров, создаются в потоке отрисовки
+     */
+    private SSBO lightBuffer, clusterBuffer;
+
+    /**
+     * Загруженный в буферы набор источников света
+     */
+    private LightPoint[] uploadedLights;
+
     /**
      * Подсчёт и вывод fps
      */
@@ -119,13 +139,35 @@ public class GraphicsDisplay {
         this.name = name;
         this.camera = new Camera(width, height, new Vector3f(0.0f, 0.0f, 2.0f));
         this.rtController = rtController;
+        this.lightClusters = new LightClusters(Settings.lightClusterSize, Settings.lightRadius, Settings.maxLightClusters);
+    }
 
-        try {
-            vertexShaderSource = Files.readString(new File("src/main/java/graphics/translateObjects/vertexShader").toPath());
-            fragmentShaderSource = Files.readString(new File("src/main/java/graphics/translateObjects/fragmentShader").toPath());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Запуск фоновой загрузки шейдеров и текстур, которым не нужен контекст OpenGL
+     */
+    private void loadAssets() {
+        vertexShaderSource = load("vertex shader source",
+                () -> Shader.readResource(Settings.packedVertices ? "packedVertexShader" : "vertexShader"));
+        fragmentShaderSource = load("fragment shader source", () -> Shader.readResource("fragmentShader"));
+        textureAtlas = load("texture " + Settings.textureName, () -> Texture.load(Settings.textureName));
+        specularAtlas = load("texture " + Settings.specularMapName, () -> Texture.load(Settings.specularMapName));
+    }
+
+    /**
+     * Фоновая загрузка с замером в профиле запуска
+     *
+     * @param phase  название этапа
+     * @param loader загрузка
+     * @return результат загрузки
+     */
+    private <T> CompletableFuture<T> load(String phase, Supplier<T> loader) {
+        final StartupProfile profile = rtController.getStartupProfile();
+        return CompletableFuture.supplyAsync(() -> {
+            final long begin = profile.begin();
+            final T result = loader.get();
+            profile.end(phase, begin);
+            return result;
+        });
     }
 
     /**
@@ -134,7 +176,11 @@ public class GraphicsDisplay {
     public void run() {
         System.out.println("GraphicsDisplay has launched with LWJGL " + Version.getVersion());
 
+        final StartupProfile profile = rtController.getStartupProfile();
+        loadAssets();
+        final long begin = profile.begin();
         init();
+        profile.end("window", begin);
         loop();
 
         // Free the window callbacks and destroy the window
@@ -214,38 +260,25 @@ public class GraphicsDisplay {
     }
 
     /**
-     * Передача значений источников света в шейдер
-     *
-     * @param shader шейдер
+     * Передача источников света в шейдер: при изменении набора источников перестраиваются кластеры
+     * и перезаписываются буферы шейдера, иначе ничего не делается
      */
-    private void translateLightPoints(Shader shader) {
-        int lightSize = glGetUniformLocation(shader.getId(), "lightSize");
-        int lightColor = glGetUniformLocation(shader.getId(), "lightColor");
-        int lightPos = glGetUniformLocation(shader.getId(), "lightPos");
-
-        Set<LightPoint> lightPoints = rtController.getEngineRuntime().lightPoints;
-        final int size = lightPoints.size();
-        float[] cords = new float[size * 3], colors = new float[size * 4];
-        int count = 0;
-        for (LightPoint point : lightPoints) {
-            colors[count * 4] = point.color.x;
-            colors[count * 4 + 1] = point.color.y;
-            colors[count * 4 + 2] = point.color.z;
-            colors[count * 4 + 3] = point.color.w;
-            cords[count * 3] = point.cord.x;
-            cords[count * 3 + 1] = point.cord.y;
-            cords[count * 3 + 2] = point.cord.z;
-            count++;
-        }
-
-        glUniform1i(lightSize, size);
-        glUniform4fv(lightColor, colors);
-        glUniform3fv(lightPos, cords);
+    private void translateLightPoints() {
+        final LightPoint[] lights = rtController.getEngineRuntime().getLights();
+        if (lights == uploadedLights) return;
+        uploadedLights = lights;
+        lightClusters.build(lights);
+        lightBuffer.upload(lightClusters.lights(), lightClusters.lightsSize());
+        clusterBuffer.upload(lightClusters.grid(), lightClusters.gridSize());
     }
 
-    private void translateAmbientLight(Shader shader){
-        int ambLightPos = glGetUniformLocation(shader.getId(), "ambient");
-        glUniform1f(ambLightPos, ambLight);
+    /**
+     * Передача внешнего освещения в шейдер
+     *
+     * @param ambient uniform внешнего освещения
+     */
+    private void translateAmbientLight(Shader.Uniform ambient){
+        ambient.set(ambLight);
     }
 
     /**
@@ -257,22 +290,34 @@ public class GraphicsDisplay {
         glEnable(GL_DEPTH_TEST);
         glEnable(GL_CULL_FACE);
 
-        Shader shader = new Shader(vertexShaderSource, fragmentShaderSource);
+        final StartupProfile profile = rtController.getStartupProfile();
+        long begin = profile.begin();
+        Shader shader = new Shader(vertexShaderSource.join(), fragmentShaderSource.join());
+        final Shader.Uniform camMatrix = shader.uniform("camMatrix");
+        final Shader.Uniform ambient = shader.uniform("ambient");
+        final Shader.Uniform camPos = shader.uniform("camPos");
 
-        Texture texture = new Texture(Settings.textureName, 0, Settings.textureWidth, Settings.textureHeight);
+        profile.end("shader compile", begin);
+
+        begin = profile.begin();
+        Texture texture = new Texture(Settings.textureName, textureAtlas, 0);
         texture.texUnit(shader, "tex0");
 
-        Texture texture2 = new Texture("texturePackSpecularMap.png", 1, Settings.textureWidth, Settings.textureHeight);
+        Texture texture2 = new Texture(Settings.specularMapName, specularAtlas, 1);
         texture2.texUnit(shader, "tex1");
-
+        textureAtlas = specularAtlas = null;
+        profile.end("texture upload", begin);
 
         DataTransformation dataTransformation = new DataTransformation(rtController);
+        lightBuffer = new SSBO(0);
+        clusterBuffer = new SSBO(1);
 
         Translation translation = new Translation(dataTransformation);
+        final Vector3f cameraPosition = new Vector3f();
 
         while (!glfwWindowShouldClose(window)) {
 
-            dataTransformation.update();
+            dataTransformation.update(camera.position);
             translation.update();
 
 
@@ -283,27 +328,30 @@ public class GraphicsDisplay {
 
             rtController.Input(window);
             camera.mouseInput(window);
-            camera.Matrix(45.0f, 0.1f, 10000.0f, shader, "camMatrix");
-
-            translateLightPoints(shader);
-            translateAmbientLight(shader);
+            camera.setPos(rtController.getEngineRuntime().getInterpolatedCameraPosition(cameraPosition));
+            camera.Matrix(45.0f, 0.1f, 10000.0f, camMatrix);
 
-            int camPos = glGetUniformLocation(shader.getId(), "camPos");
-            glUniform3fv(camPos, new float[]{camera.position.x, camera.position.y, camera.position.z});
+            translateLightPoints();
+            translateAmbientLight(ambient);
+            camPos.set(camera.position.x, camera.position.y, camera.position.z);
 
 
             texture.bind();
             texture2.bind();
             translation.setupVAO();
 
-            glDrawElements(GL_TRIANGLES, dataTransformation.indicesSize(), GL_UNSIGNED_INT, 0);
+            translation.draw(camera.getViewProjection(), camera.position);
 
             glfwSwapBuffers(window);
             glfwPollEvents();
+            profile.report("Первый кадр");
             //printRenderTime();
         }
 
+        dataTransformation.close();
         translation.destroy();
+        lightBuffer.delete();
+        clusterBuffer.delete();
         texture.delete();
         shader.delete();
 
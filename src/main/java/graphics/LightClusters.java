@@ -0,0 +1,267 @@
+package graphics;
+
+import engine.LightPoint;
+
+import java.util.Arrays;
+
+/**
+ * Распределение источников света по кластерам - ячейкам равномерной сетки мирового пространства.
+ * Сетка покрывает сферы влияния всех источников, в каждую ячейку попадают источники, сфера которых её пересекает,
+ * поэтому фрагмент перебирает только источники своей ячейки. Сетка строится в мировых координатах
+ * и не зависит от камеры: перестроение нужно только при изменении набора источников.
+ * Данные готовы к загрузке в SSBO в раскладке std430:
+ * источники - по два vec4 (позиция и радиус, цвет), сетка - ivec4 начала сетки в ячейках и размера ячейки,
+ * ivec4 размеров сетки, затем смещения списков ячеек (количество ячеек + 1) и номера источников
+ */
+public class LightClusters {
+    /**
+     * Количество float на источник света
+     */
+    public static final int LIGHT_SIZE = 8;
+    /**
+     * Количество int заголовка сетки
+     */
+    public static final int HEADER_SIZE = 8;
+
+    /**
+     * Начальный размер ячейки в блоках
+     */
+    private final int clusterSize;
+    /**
+     * Радиус влияния источника
+     */
+    private final float radius;
+    /**
+     * Наибольшее количество ячеек, при превышении размер ячейки увеличивается вдвое
+     */
+    private final int maxClusters;
+    /**
+     * Данные источников
+     */
+    private float[] lights;
+    private int lightCount;
+    /**
+     * Заголовок, смещения списков ячеек и номера источников
+     */
+    private int[] grid;
+    private int gridSize;
+    /**
+     * Текущий размер ячейки, начало сетки в ячейках и размеры сетки
+     */
+    private int size, originX, originY, originZ, sizeX, sizeY, sizeZ;
+
+    /**
+     * Конструктор
+     *
+     * @param clusterSize размер ячейки в блоках
+     * @param radius      радиус влияния источника
+     * @param maxClusters наибольшее количество ячеек сетки
+     */
+    public LightClusters(int clusterSize, float radius, int maxClusters) {
+        if (clusterSize < 1 || radius <= 0 || maxClusters < 1) throw new IllegalArgumentException("Неверные параметры сетки кластеров");
+        this.clusterSize = clusterSize;
+        this.radius = radius;
+        this.maxClusters = maxClusters;
+        lights = new float[LIGHT_SIZE * 16];
+        grid = new int[HEADER_SIZE + 2];
+        build(new LightPoint[0]);
+    }
+
+    /**
+     * Перестроение сетки по набору источников
+     *
+     * @param points источники света
+     */
+    public void build(LightPoint[] points) {
+        lightCount = points.length;
+        if (lights.length < lightCount * LIGHT_SIZE) lights = new float[lightCount * LIGHT_SIZE];
+        for (int i = 0; i < lightCount; i++) {
+            final LightPoint point = points[i];
+            final int offset = i * LIGHT_SIZE;
+            lights[offset] = point.cord.x;
+            lights[offset + 1] = point.cord.y;
+            lights[offset + 2] = point.cord.z;
+            lights[offset + 3] = radius;
+            lights[offset + 4] = point.color.x;
+            lights[offset + 5] = point.color.y;
+            lights[offset + 6] = point.color.z;
+            lights[offset + 7] = point.color.w;
+        }
+        layoutGrid();
+        final int clusters = sizeX * sizeY * sizeZ;
+        gridSize = HEADER_SIZE + clusters + 1;
+        if (grid.length < gridSize) grid = new int[gridSize];
+        Arrays.fill(grid, 0, gridSize, 0);
+        grid[0] = originX;
+        grid[1] = originY;
+        grid[2] = originZ;
+        grid[3] = size;
+        grid[4] = sizeX;
+        grid[5] = sizeY;
+        grid[6] = sizeZ;
+
+        // подсчёт источников в ячейках, затем смещения списков и их заполнение (сортировка подсчётом)
+        final int offsets = HEADER_SIZE;
+        for (int i = 0; i < lightCount; i++) assign(i, offsets + 1, null);
+        for (int cluster = 0; cluster < clusters; cluster++) grid[offsets + cluster + 1] += grid[offsets + cluster];
+        final int indices = grid[offsets + clusters];
+        gridSize += indices;
+        if (grid.length < gridSize) grid = Arrays.copyOf(grid, gridSize);
+        final int[] cursor = Arrays.copyOfRange(grid, offsets, offsets + clusters);
+        for (int i = 0; i < lightCount; i++) assign(i, offsets + clusters + 1, cursor);
+    }
+
+    /**
+     * Обход ячеек, пересекаемых сферой источника: подсчёт (cursor == null) или запись номера источника
+     *
+     * @param light  номер источника
+     * @param base   начало счётчиков ячеек или списков источников в grid
+     * @param cursor текущие позиции записи в списках ячеек
+     */
+    private void assign(int light, int base, int[] cursor) {
+        final float x = lights[light * LIGHT_SIZE], y = lights[light * LIGHT_SIZE + 1], z = lights[light * LIGHT_SIZE + 2];
+        final int fromX = cell(x - radius) - originX, toX = cell(x + radius) - originX;
+        final int fromY = cell(y - radius) - originY, toY = cell(y + radius) - originY;
+        final int fromZ = cell(z - radius) - originZ, toZ = cell(z + radius) - originZ;
+        final float radiusSquared = radius * radius;
+        for (int cz = fromZ; cz <= toZ; cz++) {
+            final float dz = axisDistance(z, originZ + cz);
+            for (int cy = fromY; cy <= toY; cy++) {
+                final float dy = axisDistance(y, originY + cy);
+                for (int cx = fromX; cx <= toX; cx++) {
+                    final float dx = axisDistance(x, originX + cx);
+                    if (dx * dx + dy * dy + dz * dz > radiusSquared) continue;
+                    final int cluster = (cz * sizeY + cy) * sizeX + cx;
+                    if (cursor == null) grid[base + cluster]++;
+                    else grid[base + cursor[cluster]++] = light;
+                }
+            }
+        }
+    }
+
+    /**
+     * Выбор размера ячейки и границ сетки, покрывающей сферы влияния всех источников
+     */
+    private void layoutGrid() {
+        size = clusterSize;
+        if (lightCount == 0) {
+            originX = originY = originZ = 0;
+            sizeX = sizeY = sizeZ = 1;
+            return;
+        }
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = 0; i < lightCount; i++) {
+            final int offset = i * LIGHT_SIZE;
+            minX = Math.min(minX, lights[offset]);
+            minY = Math.min(minY, lights[offset + 1]);
+            minZ = Math.min(minZ, lights[offset + 2]);
+            maxX = Math.max(maxX, lights[offset]);
+            maxY = Math.max(maxY, lights[offset + 1]);
+            maxZ = Math.max(maxZ, lights[offset + 2]);
+        }
+        while (true) {
+            originX = cell(minX - radius);
+            originY = cell(minY - radius);
+            originZ = cell(minZ - radius);
+            sizeX = cell(maxX + radius) - originX + 1;
+            sizeY = cell(maxY + radius) - originY + 1;
+            sizeZ = cell(maxZ + radius) - originZ + 1;
+            if ((long) sizeX * sizeY * sizeZ <= maxClusters) return;
+            size *= 2;
+        }
+    }
+
+    /**
+     * @param coordinate мировая координата
+     * @return координата ячейки
+     */
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / size);
+    }
+
+    /**
+     * Расстояние по одной оси от точки до ячейки
+     *
+     * @param coordinate мировая координата точки
+     * @param cell       координата ячейки
+     * @return расстояние, 0 - точка внутри ячейки по этой оси
+     */
+    private float axisDistance(float coordinate, int cell) {
+        final float from = (float) cell * size, to = from + size;
+        return coordinate < from ? from - coordinate : coordinate > to ? coordinate - to : 0.0f;
+    }
+
+    /**
+     * Номер ячейки, содержащей точку
+     *
+     * @param x мировая координата x
+     * @param y мировая координата y
+     * @param z мировая координата z
+     * @return номер ячейки или -1, если точка вне сетки
+     */
+    public int clusterAt(float x, float y, float z) {
+        final int cx = cell(x) - originX, cy = cell(y) - originY, cz = cell(z) - originZ;
+        if (cx < 0 || cy < 0 || cz < 0 || cx >= sizeX || cy >= sizeY || cz >= sizeZ) return -1;
+        return (cz * sizeY + cy) * sizeX + cx;
+    }
+
+    /**
+     * @param cluster номер ячейки
+     * @return количество источников в ячейке
+     */
+    public int lightCount(int cluster) {
+        return grid[HEADER_SIZE + cluster + 1] - grid[HEADER_SIZE + cluster];
+    }
+
+    /**
+     * @param cluster номер ячейки
+     * @param i       номер в списке ячейки
+     * @return номер источника
+     */
+    public int light(int cluster, int i) {
+        return grid[HEADER_SIZE + clusterCount() + 1 + grid[HEADER_SIZE + cluster] + i];
+    }
+
+    /**
+     * @return количество ячеек сетки
+     */
+    public int clusterCount() {
+        return sizeX * sizeY * sizeZ;
+    }
+
+    /**
+     * @return размер ячейки в блоках
+     */
+    public int clusterSize() {
+        return size;
+    }
+
+    /**
+     * @return данные источников, действительны первые lightsSize() значений
+     */
+    public float[] lights() {
+        return lights;
+    }
+
+    /**
+     * @return количество действительных значений данных источников
+     */
+    public int lightsSize() {
+        return lightCount * LIGHT_SIZE;
+    }
+
+    /**
+     * @return данные сетки, действительны первые gridSize() значений
+     */
+    public int[] grid() {
+        return grid;
+    }
+
+    /**
+     * @return количество действительных значений данных сетки
+     */
+    public int gridSize() {
+        return gridSize;
+    }
+}
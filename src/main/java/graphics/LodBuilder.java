@@ -0,0 +1,197 @@
+package graphics;
+
+import controller.Settings;
+import engine.Block;
+import engine.BlockStore;
+import engine.Chunk;
+import engine.World;
+
+import java.util.Arrays;
+
+/**
+ * Построение упрощённых уровней детализации секции: уровень level объединяет кубы из 2^level блоков
+ * в одну ячейку сетки (16 >> level)^3. Ячейка твёрдая, если в ней есть хотя бы один блок, так что
+ * поверхность не пропадает на расстоянии; id стороны ячейки берётся у крайнего в направлении этой стороны блока.
+ * Результат - id видимых сторон ячеек в порядке, который понимает жадное построение геометрии.
+ * Экземпляр переиспользует буферы и не потокобезопасен
+ */
+public class LodBuilder {
+    /**
+     * Наибольший уровень детализации: ячейка 8x8x8 блоков
+     */
+    public static final int MAX_LEVEL = 3;
+
+    /**
+     * Твёрдые блоки секции, бит на ячейку в порядке Chunk.index()
+     */
+    private final long[] solid = new long[Chunk.VOLUME / 64];
+    /**
+     * id сторон блоков секции: sideIds[index * 6 + side]
+     */
+    private final int[] sideIds = new int[Chunk.VOLUME * 6];
+    /**
+     * Твёрдые ячейки упрощённой сетки
+     */
+    private final boolean[] coarse = new boolean[Chunk.VOLUME];
+    /**
+     * id сторон текущей ячейки, выбранные в pickSideIds()
+     */
+    private final int[] cellSideIds = new int[6];
+
+    /**
+     * Уровень детализации для секции на заданном расстоянии от камеры по порогам Settings.lodDistances
+     *
+     * @param distance расстояние от камеры до центра секции
+     * @return уровень детализации от 0 (полный) до MAX_LEVEL
+     */
+    public static int level(float distance) {
+        int level = 0;
+        while (level < Math.min(MAX_LEVEL, Settings.lodDistances.length) && distance >= Settings.lodDistances[level]) level++;
+        return level;
+    }
+
+    /**
+     * @param level уровень детализации
+     * @return размер стороны сетки уровня в ячейках
+     */
+    public static int size(int level) {
+        return Chunk.SIZE >> level;
+    }
+
+    /**
+     * Индекс ячейки сетки уровня, порядок осей совпадает с Chunk.index()
+     *
+     * @param x    координата ячейки x
+     * @param y    координата ячейки y
+     * @param z    координата ячейки z
+     * @param size размер стороны сетки
+     * @return индекс ячейки
+     */
+    public static int index(int x, int y, int z, int size) {
+        return (y * size + z) * size + x;
+    }
+
+    /**
+     * Очистка перед сбором блоков новой секции
+     */
+    public void clear() {
+        Arrays.fill(solid, 0);
+    }
+
+    /**
+     * Добавление блока секции
+     *
+     * @param index   индекс ячейки секции
+     * @param sideIds массив[6] id сторон блока
+     */
+    public void add(int index, int[] sideIds) {
+        solid[index >> 6] |= 1L << index;
+        System.arraycopy(sideIds, 0, this.sideIds, index * 6, 6);
+    }
+
+    /**
+     * Построение видимых сторон ячеек уровня. Сторона ячейки видна, если соседняя ячейка того же уровня
+     * не содержит блоков; соседние ячейки за границей секции проверяются по хранилищу блоков
+     *
+     * @param blocks  хранилище блоков для проверки соседних секций
+     * @param key     ключ секции
+     * @param level   уровень детализации от 1 до MAX_LEVEL
+     * @param faceIds массив[6 * 4096] для записи: faceIds[side * 4096 + index(x, y, z, size(level))], -1 - сторона не видна
+     * @return количество видимых сторон
+     */
+    public int build(BlockStore blocks, long key, int level, int[] faceIds) {
+        if (level < 1 || level > MAX_LEVEL) throw new IllegalArgumentException("Уровень детализации вне диапазона: " + level);
+        final int size = size(level), scale = 1 << level;
+        for (int y = 0; y < size; y++)
+            for (int z = 0; z < size; z++)
+                for (int x = 0; x < size; x++) coarse[index(x, y, z, size)] = anySolid(x * scale, y * scale, z * scale, scale);
+
+        final int baseX = World.keyX(key) << Chunk.SHIFT, baseY = World.keyY(key) << Chunk.SHIFT, baseZ = World.keyZ(key) << Chunk.SHIFT;
+        Arrays.fill(faceIds, 0, 6 * Chunk.VOLUME, -1);
+        int faces = 0;
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    final int cell = index(x, y, z, size);
+                    if (!coarse[cell]) continue;
+                    boolean ids = false;
+                    for (int side = 0; side < 6; side++) {
+                        final int[] offset = Block.SIDE_OFFSETS[side];
+                        final int nx = x + offset[0], ny = y + offset[1], nz = z + offset[2];
+                        final boolean covered = nx >= 0 && ny >= 0 && nz >= 0 && nx < size && ny < size && nz < size
+                                ? coarse[index(nx, ny, nz, size)]
+                                : anySolid(blocks, baseX + nx * scale, baseY + ny * scale, baseZ + nz * scale, scale);
+                        if (covered) continue;
+                        if (!ids) {
+                            pickSideIds(x * scale, y * scale, z * scale, scale);
+                            ids = true;
+                        }
+                        faceIds[side * Chunk.VOLUME + cell] = cellSideIds[side];
+                        faces++;
+                    }
+                }
+            }
+        }
+        return faces;
+    }
+
+    /**
+     * @param x0    минимальная локальная координата x
+     * @param y0    минимальная локальная координата y
+     * @param z0    минимальная локальная координата z
+     * @param scale размер куба
+     * @return есть ли блок секции в кубе [x0, x0 + scale) x [y0, y0 + scale) x [z0, z0 + scale)
+     */
+    private boolean anySolid(int x0, int y0, int z0, int scale) {
+        for (int y = y0; y < y0 + scale; y++)
+            for (int z = z0; z < z0 + scale; z++)
+                for (int x = x0; x < x0 + scale; x++) {
+                    final int index = Chunk.index(x, y, z);
+                    if ((solid[index >> 6] >> index & 1) != 0) return true;
+                }
+        return false;
+    }
+
+    /**
+     * @param blocks хранилище блоков
+     * @param x0     минимальная координата x
+     * @param y0     минимальная координата y
+     * @param z0     минимальная координата z
+     * @param scale  размер куба
+     * @return есть ли в хранилище твёрдый блок в кубе [x0, x0 + scale) x [y0, y0 + scale) x [z0, z0 + scale)
+     */
+    private static boolean anySolid(BlockStore blocks, int x0, int y0, int z0, int scale) {
+        for (int y = y0; y < y0 + scale; y++)
+            for (int z = z0; z < z0 + scale; z++)
+                for (int x = x0; x < x0 + scale; x++) if (blocks.isSolid(x, y, z)) return true;
+        return false;
+    }
+
+    /**
+     * Выбор id сторон ячейки: для каждой стороны берётся блок ячейки, крайний в направлении стороны,
+     * из равных - верхний, так как он виден издалека сверху. Результат записывается в cellSideIds
+     *
+     * @param x0    минимальная локальная координата x
+     * @param y0    минимальная локальная координата y
+     * @param z0    минимальная локальная координата z
+     * @param scale размер ячейки в блоках
+     */
+    private void pickSideIds(int x0, int y0, int z0, int scale) {
+        for (int side = 0; side < 6; side++) {
+            final int[] offset = Block.SIDE_OFFSETS[side];
+            int best = Integer.MIN_VALUE, id = -1;
+            for (int y = y0 + scale - 1; y >= y0; y--)
+                for (int z = z0; z < z0 + scale; z++)
+                    for (int x = x0; x < x0 + scale; x++) {
+                        final int index = Chunk.index(x, y, z);
+                        if ((solid[index >> 6] >> index & 1) == 0) continue;
+                        final int projection = x * offset[0] + y * offset[1] + z * offset[2];
+                        if (projection > best) {
+                            best = projection;
+                            id = sideIds[index * 6 + side];
+                        }
+                    }
+            cellSideIds[side] = id;
+        }
+    }
+}
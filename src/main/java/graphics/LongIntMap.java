@@ -0,0 +1,134 @@
+package graphics;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица "long - int" с открытой адресацией на примитивных массивах, без упаковки ключей при поиске
+ */
+class LongIntMap {
+    /**
+     * Значение, возвращаемое для отсутствующего ключа
+     */
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    /**
+     * Конструктор
+     *
+     * @param capacity начальная вместимость, округляется вверх до степени двойки
+     */
+    LongIntMap(int capacity) {
+        final int length = Integer.highestOneBit(Math.max(4, capacity) * 2 - 1);
+        keys = new long[length];
+        values = new int[length];
+        used = new boolean[length];
+        mask = length - 1;
+    }
+
+    /**
+     * Номер ячейки для ключа
+     *
+     * @param key ключ
+     * @return начальная ячейка поиска
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+
+    /**
+     * @param key ключ
+     * @return значение или MISSING
+     */
+    int get(long key) {
+        for (int i = slot(key); used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+        }
+        return MISSING;
+    }
+
+    /**
+     * Запись значения
+     *
+     * @param key   ключ
+     * @param value значение
+     */
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+        int i = slot(key);
+        for (; used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * Удаление ключа со сдвигом следующих записей цепочки на освободившееся место
+     *
+     * @param key ключ
+     * @return удалённое значение или MISSING
+     */
+    int remove(long key) {
+        int i = slot(key);
+        while (used[i] && keys[i] != key) i = (i + 1) & mask;
+        if (!used[i]) return MISSING;
+        final int removed = values[i];
+        int gap = i;
+        for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+            final int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        used[gap] = false;
+        size--;
+        return removed;
+    }
+
+    /**
+     * @return количество записей
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Удаление всех записей
+     */
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Перенос записей в таблицу нового размера
+     *
+     * @param length новый размер таблицы
+     */
+    private void rehash(int length) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        final boolean[] oldUsed = used;
+        keys = new long[length];
+        values = new int[length];
+        used = new boolean[length];
+        mask = length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package graphics;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Расширяемый буфер вершин и индексов вне кучи Java,
+ * в который собирается геометрия одной секции или набора отрезков.
+ * Данные вершин доступны как float (обычный формат) и как int (упакованный формат) поверх одной памяти
+ */
+public class Mesh {
+    /**
+     * Память данных вершин
+     */
+    private ByteBuffer data;
+    /**
+     * Данные вершин как float
+     */
+    FloatBuffer cords;
+    /**
+     * Данные вершин как int
+     */
+    IntBuffer words;
+    /**
+     * Буфер индексов вершин, нумерация вершин начинается с 0
+     */
+    IntBuffer indices;
+    /**
+     * Количество занятых 4-байтовых значений вершин
+     */
+    int sizeC;
+    /**
+     * Количество занятых индексов
+     */
+    int sizeI;
+    /**
+     * Количество вершин
+     */
+    int verticesCount;
+
+    /**
+     * Конструктор пустого буфера
+     */
+    Mesh() {
+        setData(BufferUtils.createByteBuffer(16 * 1024 * Float.BYTES));
+        indices = BufferUtils.createIntBuffer(4 * 1024);
+    }
+
+    /**
+     * Замена памяти данных вершин
+     *
+     * @param data новая память
+     */
+    private void setData(ByteBuffer data) {
+        this.data = data;
+        cords = data.asFloatBuffer();
+        words = data.asIntBuffer();
+    }
+
+    /**
+     * Обнуление буфера без освобождения памяти
+     */
+    void reset() {
+        sizeC = 0;
+        sizeI = 0;
+        verticesCount = 0;
+    }
+
+    /**
+     * Подготовка места под вершины и индексы, при нехватке буферы увеличиваются вдвое
+     *
+     * @param values  количество добавляемых 4-байтовых значений вершин
+     * @param indexes количество добавляемых индексов
+     */
+    void ensure(int values, int indexes) {
+        if (sizeC + values > cords.capacity()) {
+            final ByteBuffer grown = BufferUtils.createByteBuffer(Math.max(cords.capacity() * 2, sizeC + values) * Float.BYTES);
+            grown.put(0, data, 0, sizeC * Float.BYTES);
+            setData(grown);
+        }
+        if (sizeI + indexes > indices.capacity()) {
+            final IntBuffer grown = BufferUtils.createIntBuffer(Math.max(indices.capacity() * 2, sizeI + indexes));
+            grown.put(0, indices, 0, sizeI);
+            indices = grown;
+        }
+    }
+
+    /**
+     * Запись вершины обычного формата, место должно быть подготовлено через ensure()
+     *
+     * @param x    координата x
+     * @param y    координата y
+     * @param z    координата z
+     * @param u    текстурная координата u в размерах тайла
+     * @param v    текстурная координата v в размерах тайла
+     * @param nX   нормаль x
+     * @param nY   нормаль y
+     * @param nZ   нормаль z
+     * @param tile id тайла в карте текстур
+     */
+    void vertex(float x, float y, float z, float u, float v, float nX, float nY, float nZ, float tile) {
+        final FloatBuffer buffer = cords;
+        int i = sizeC;
+        buffer.put(i++, x).put(i++, y).put(i++, z)
+                .put(i++, u).put(i++, v)
+                .put(i++, nX).put(i++, nY).put(i++, nZ)
+                .put(i++, tile);
+        sizeC = i;
+        verticesCount++;
+    }
+
+    /**
+     * Запись вершины упакованного формата, место должно быть подготовлено через ensure()
+     *
+     * @param first  первое слово вершины
+     * @param second второе слово вершины
+     */
+    void vertex(int first, int second) {
+        words.put(sizeC, first).put(sizeC + 1, second);
+        sizeC += 2;
+        verticesCount++;
+    }
+
+    /**
+     * Запись двух треугольников для последних четырёх вершин a, b, c, d
+     */
+    void quad() {
+        final int a = verticesCount - 4;
+        int i = sizeI;
+        indices.put(i++, a).put(i++, a + 2).put(i++, a + 1)
+                .put(i++, a).put(i++, a + 3).put(i++, a + 2);
+        sizeI = i;
+    }
+}
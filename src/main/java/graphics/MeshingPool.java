@@ -0,0 +1,221 @@
+package graphics;
+
+import engine.BlockStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Пул рабочих потоков построения геометрии секций.
+ * Задачи выполняются в порядке приоритета (ближние к камере секции раньше), результат - готовый к копированию
+ * в общие массивы буфер Mesh и связность сторон секции. Повторная постановка секции отменяет её устаревшую задачу:
+ * невыполненная задача пропускается, а результат уже выполняемой отбрасывается при приёме.
+ * Постановка задач и приём результатов выполняются одним потоком (потоком отрисовки).
+ * При 0 рабочих потоков задачи выполняются сразу в вызывающем потоке
+ */
+public class MeshingPool {
+    /**
+     * Построитель геометрии каждого потока
+     */
+    private static final ThreadLocal<ChunkMesher> MESHERS = ThreadLocal.withInitial(ChunkMesher::new);
+
+    /**
+     * Задача построения геометрии одной секции
+     */
+    public final class Job implements Runnable, Comparable<Job> {
+        private final long key;
+        private final int level;
+        private final BlockStore blocks;
+        /**
+         * Приоритет: расстояние до камеры, при равенстве - порядок постановки
+         */
+        private final float distance;
+        private final long order;
+        private volatile boolean cancelled;
+        private Mesh mesh;
+        private long connectivity;
+
+        /**
+         * Конструктор
+         *
+         * @param key      ключ секции
+         * @param level    уровень детализации
+         * @param blocks   снимок мира
+         * @param distance расстояние от камеры до секции
+         * @param order    порядковый номер постановки
+         */
+        private Job(long key, int level, BlockStore blocks, float distance, long order) {
+            this.key = key;
+            this.level = level;
+            this.blocks = blocks;
+            this.distance = distance;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            final Mesh mesh = acquireMesh();
+            connectivity = MESHERS.get().build(blocks, key, level, mesh);
+            this.mesh = mesh;
+            completed.add(this);
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            final int byDistance = Float.compare(distance, other.distance);
+            return byDistance != 0 ? byDistance : Long.compare(order, other.order);
+        }
+
+        /**
+         * @return ключ секции
+         */
+        public long key() {
+            return key;
+        }
+
+        /**
+         * @return уровень детализации
+         */
+        public int level() {
+            return level;
+        }
+
+        /**
+         * @return построенная геометрия, действительна только в обработчике drain()
+         */
+        public Mesh mesh() {
+            return mesh;
+        }
+
+        /**
+         * @return маска связности сторон секции
+         */
+        public long connectivity() {
+            return connectivity;
+        }
+    }
+
+    /**
+     * Рабочие потоки, null при выполнении задач в вызывающем потоке
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * Последняя поставленная задача каждой секции, ещё не принятая в drain()
+     */
+    private final Map<Long, Job> pending;
+    /**
+     * Выполненные задачи
+     */
+    private final Queue<Job> completed;
+    /**
+     * Свободные буферы геометрии
+     */
+    private final Queue<Mesh> meshes;
+    private long order;
+
+    /**
+     * Конструктор
+     *
+     * @param threads количество рабочих потоков, 0 - выполнение в вызывающем потоке
+     */
+    public MeshingPool(int threads) {
+        pending = new HashMap<>();
+        completed = new ConcurrentLinkedQueue<>();
+        meshes = new ConcurrentLinkedQueue<>();
+        if (threads <= 0) {
+            executor = null;
+            return;
+        }
+        final AtomicInteger number = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "mesher-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Постановка секции на построение, предыдущая задача этой секции отменяется
+     *
+     * @param key      ключ секции
+     * @param level    уровень детализации
+     * @param blocks   снимок мира
+     * @param distance расстояние от камеры до секции
+     */
+    public void submit(long key, int level, BlockStore blocks, float distance) {
+        final Job job = new Job(key, level, blocks, distance, order++);
+        final Job previous = pending.put(key, job);
+        if (previous != null) previous.cancelled = true;
+        if (executor == null) job.run();
+        else executor.execute(job);
+    }
+
+    /**
+     * Приём выполненных актуальных задач, результаты отменённых задач отбрасываются.
+     * Буфер геометрии возвращается в пул после обработчика
+     *
+     * @param consumer обработчик задачи
+     * @return количество принятых задач
+     */
+    public int drain(Consumer<Job> consumer) {
+        int accepted = 0;
+        Job job;
+        while ((job = completed.poll()) != null) {
+            if (pending.get(job.key) == job) {
+                pending.remove(job.key);
+                consumer.accept(job);
+                accepted++;
+            }
+            releaseMesh(job.mesh);
+            job.mesh = null;
+        }
+        return accepted;
+    }
+
+    /**
+     * @return количество поставленных и ещё не принятых задач
+     */
+    public int pending() {
+        return pending.size();
+    }
+
+    /**
+     * @param key ключ секции
+     * @return есть ли у секции поставленная и ещё не принятая задача
+     */
+    public boolean isPending(long key) {
+        return pending.containsKey(key);
+    }
+
+    /**
+     * Остановка рабочих потоков, невыполненные задачи отбрасываются
+     */
+    public void shutdown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    /**
+     * @return свободный буфер геометрии
+     */
+    private Mesh acquireMesh() {
+        final Mesh mesh = meshes.poll();
+        return mesh != null ? mesh : new Mesh();
+    }
+
+    /**
+     * Возврат буфера геометрии в пул
+     *
+     * @param mesh буфер
+     */
+    private void releaseMesh(Mesh mesh) {
+        if (mesh != null) meshes.add(mesh);
+    }
+}
@@ -1,39 +1,341 @@
 package graphics;
 
+import org.joml.Matrix4fc;
+import org.lwjgl.system.MemoryStack;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.lwjgl.opengl.GL46.*;
 import static org.lwjgl.opengl.GL46.glDeleteProgram;
 
 /**
- * Шейдерная программа
+ * Шейдерная программа.
+ * Ошибки компиляции и сборки программы выбрасываются как ShaderException с журналом драйвера.
+ * После сборки активные uniform и атрибуты программы запрашиваются один раз и хранятся по именам,
+ * значения uniform задаются через Uniform, который не отправляет в видеопроцессор неизменившееся значение
  */
 public class Shader {
+    /**
+     * Ошибка компиляции или сборки шейдерной программы
+     */
+    public static class ShaderException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Конструктор
+         * @param message описание ошибки с журналом драйвера
+         */
+        public ShaderException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Uniform программы: место, тип и последнее отправленное значение.
+     * Значение отправляется через glProgramUniform*, поэтому программа может быть неактивна
+     */
+    public static class Uniform {
+        /**
+         * id шейдерной программы, место и GLSL тип uniform
+         */
+        private final int program, location, type;
+        /**
+         * Последнее отправленное значение, вмещает mat4
+         */
+        private final float[] value = new float[16];
+        /**
+         * Последнее отправленное int-значение. Хранится отдельно: как биты float отрицательные int
+         * становятся NaN, а все NaN при сравнении массивов float равны
+         */
+        private int intValue;
+        /**
+         * Новое значение для сравнения с последним отправленным
+         */
+        private final float[] pending = new float[16];
+        /**
+         * Было ли значение отправлено хотя бы раз
+         */
+        private boolean uploaded;
+
+        /**
+         * Конструктор
+         * @param program id шейдерной программы
+         * @param location место uniform, -1 - uniform отсутствует и значения не отправляются
+         * @param type GLSL тип uniform
+         */
+        Uniform(int program, int location, int type) {
+            this.program = program;
+            this.location = location;
+            this.type = type;
+        }
+
+        /**
+         * Задание int или sampler uniform
+         * @param x значение
+         */
+        public void set(int x) {
+            if (changedInt(x)) glProgramUniform1i(program, location, x);
+        }
+
+        /**
+         * Задание float uniform
+         * @param x значение
+         */
+        public void set(float x) {
+            pending[0] = x;
+            if (changed(1)) glProgramUniform1f(program, location, x);
+        }
+
+        /**
+         * Задание vec3 uniform
+         * @param x первая компонента
+         * @param y вторая компонента
+         * @param z третья компонента
+         */
+        public void set(float x, float y, float z) {
+            pending[0] = x;
+            pending[1] = y;
+            pending[2] = z;
+            if (changed(3)) glProgramUniform3f(program, location, x, y, z);
+        }
+
+        /**
+         * Задание mat4 uniform
+         * @param matrix матрица
+         */
+        public void set(Matrix4fc matrix) {
+            matrix.get(pending);
+            if (changed(16)) glProgramUniformMatrix4fv(program, location, false, value);
+        }
+
+        /**
+         * Сравнение нового значения с последним отправленным и его запоминание.
+         * Доступен в пакете для проверки без контекста OpenGL
+         * @param components количество компонент нового значения
+         * @return нужно ли отправить значение
+         */
+        boolean changed(int components) {
+            if (!accepts(components)) return false;
+            if (uploaded && Arrays.equals(pending, 0, components, value, 0, components)) return false;
+            System.arraycopy(pending, 0, value, 0, components);
+            uploaded = true;
+            return true;
+        }
+
+        /**
+         * Сравнение нового int-значения с последним отправленным и его запоминание.
+         * Доступен в пакете для проверки без контекста OpenGL
+         * @param x новое значение
+         * @return нужно ли отправить значение
+         */
+        boolean changedInt(int x) {
+            if (!accepts(1)) return false;
+            if (uploaded && intValue == x) return false;
+            intValue = x;
+            uploaded = true;
+            return true;
+        }
+
+        /**
+         * Проверка количества компонент нового значения
+         * @param components количество компонент
+         * @return есть ли uniform в программе
+         * @throws IllegalArgumentException если тип uniform не принимает столько компонент
+         */
+        private boolean accepts(int components) {
+            if (location == -1) return false;
+            if (components != components(type)) {
+                throw new IllegalArgumentException("Uniform типа 0x" + Integer.toHexString(type) + " не принимает " + components + " компонент(ы)");
+            }
+            return true;
+        }
+
+        /**
+         * @return место uniform, -1 - uniform отсутствует
+         */
+        public int location() {
+            return location;
+        }
+
+        /**
+         * @return GLSL тип uniform
+         */
+        public int type() {
+            return type;
+        }
+    }
+
     /**
      * id шейдерной программы
      */
-    private int id;
+    private final int id;
+    /**
+     * Активные uniform программы по именам
+     */
+    private final Map<String, Uniform> uniforms;
+    /**
+     * Места активных атрибутов программы по именам
+     */
+    private final Map<String, Integer> attributes;
 
     /**
-     * Конструктор шейдера, в котором происходит компилящия шейдерной программы
+     * Конструктор шейдера, в котором происходит компиляция и сборка шейдерной программы
      * @param vertexString GLSL код для вершинного шейдера
      * @param fragmentString GLSL код для фрагментного шейдера
+     * @throws ShaderException при ошибке компиляции или сборки
      */
     Shader(String vertexString, String fragmentString) {
-        int vertexShader = glCreateShader(GL_VERTEX_SHADER);
-        glShaderSource(vertexShader, vertexString);
-        glCompileShader(vertexShader);
-
-        int fragmentShader = glCreateShader(GL_FRAGMENT_SHADER);
-        glShaderSource(fragmentShader, fragmentString);
-        glCompileShader(fragmentShader);
+        final int vertexShader = compile(GL_VERTEX_SHADER, "вершинного", vertexString);
+        final int fragmentShader;
+        try {
+            fragmentShader = compile(GL_FRAGMENT_SHADER, "фрагментного", fragmentString);
+        } catch (ShaderException e) {
+            glDeleteShader(vertexShader);
+            throw e;
+        }
 
         id = glCreateProgram();
-        //System.out.println(id);
         glAttachShader(id, vertexShader);
         glAttachShader(id, fragmentShader);
         glLinkProgram(id);
 
         glDeleteShader(vertexShader);
         glDeleteShader(fragmentShader);
+
+        if (glGetProgrami(id, GL_LINK_STATUS) == GL_FALSE) {
+            final String log = glGetProgramInfoLog(id);
+            glDeleteProgram(id);
+            throw new ShaderException("Ошибка сборки шейдерной программы:\n" + log);
+        }
+        uniforms = new HashMap<>();
+        attributes = new HashMap<>();
+        reflect();
+    }
+
+    /**
+     * Чтение GLSL кода из ресурсов classpath (каталог shaders)
+     * @param name имя файла шейдера
+     * @return GLSL код
+     * @throws UncheckedIOException если ресурс не найден или не читается
+     */
+    static String readResource(String name) {
+        try (InputStream stream = Shader.class.getResourceAsStream("/shaders/" + name)) {
+            if (stream == null) throw new FileNotFoundException("shaders/" + name);
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать шейдер " + name, e);
+        }
+    }
+
+    /**
+     * Компиляция шейдера
+     * @param stage тип шейдера
+     * @param name название типа шейдера для сообщения об ошибке
+     * @param source GLSL код
+     * @return id шейдера
+     * @throws ShaderException при ошибке компиляции
+     */
+    private static int compile(int stage, String name, String source) {
+        final int shader = glCreateShader(stage);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE) {
+            final String log = glGetShaderInfoLog(shader);
+            glDeleteShader(shader);
+            throw new ShaderException("Ошибка компиляции " + name + " шейдера:\n" + log);
+        }
+        return shader;
+    }
+
+    /**
+     * Запрос активных uniform и атрибутов собранной программы
+     */
+    private void reflect() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer size = stack.mallocInt(1), type = stack.mallocInt(1);
+            final int uniformCount = glGetProgrami(id, GL_ACTIVE_UNIFORMS);
+            for (int i = 0; i < uniformCount; i++) {
+                final String name = baseName(glGetActiveUniform(id, i, size, type));
+                final int location = glGetUniformLocation(id, name);
+                // uniform блоков буферов не имеют места
+                if (location != -1) uniforms.put(name, new Uniform(id, location, type.get(0)));
+            }
+            final int attributeCount = glGetProgrami(id, GL_ACTIVE_ATTRIBUTES);
+            for (int i = 0; i < attributeCount; i++) {
+                final String name = baseName(glGetActiveAttrib(id, i, size, type));
+                attributes.put(name, glGetAttribLocation(id, name));
+            }
+        }
+    }
+
+    /**
+     * Имя uniform или атрибута без суффикса первого элемента массива
+     * @param name имя, возвращённое драйвером
+     * @return имя для поиска
+     */
+    static String baseName(String name) {
+        return name.endsWith("[0]") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    /**
+     * Количество компонент значения uniform по его GLSL типу
+     * @param type GLSL тип
+     * @return количество компонент
+     */
+    static int components(int type) {
+        return switch (type) {
+            case GL_FLOAT_VEC2, GL_INT_VEC2 -> 2;
+            case GL_FLOAT_VEC3, GL_INT_VEC3 -> 3;
+            case GL_FLOAT_VEC4, GL_INT_VEC4, GL_FLOAT_MAT2 -> 4;
+            case GL_FLOAT_MAT3 -> 9;
+            case GL_FLOAT_MAT4 -> 16;
+            default -> 1;
+        };
+    }
+
+    /**
+     * Uniform программы по имени. Для отсутствующего (в том числе удалённого компилятором) uniform
+     * возвращается пустой Uniform, значения которого никуда не отправляются
+     * @param name имя uniform
+     * @return uniform
+     */
+    public Uniform uniform(String name) {
+        final Uniform uniform = uniforms.get(name);
+        if (uniform != null) return uniform;
+        System.out.println("Uniform " + name + " отсутствует в шейдерной программе " + id);
+        return new Uniform(id, -1, GL_FLOAT);
+    }
+
+    /**
+     * @return активные uniform программы по именам
+     */
+    public Map<String, Uniform> getUniforms() {
+        return Collections.unmodifiableMap(uniforms);
+    }
+
+    /**
+     * Место атрибута по имени
+     * @param name имя атрибута
+     * @return место атрибута, -1 - атрибут отсутствует
+     */
+    public int attribute(String name) {
+        return attributes.getOrDefault(name, -1);
+    }
+
+    /**
+     * @return места активных атрибутов программы по именам
+     */
+    public Map<String, Integer> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
     }
 
     /**
@@ -1,16 +1,20 @@
 package graphics;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.File;
+import controller.Settings;
+import org.lwjgl.system.MemoryStack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.opengl.GL46.*;
 import static org.lwjgl.opengl.GL46.glDeleteTextures;
 import static org.lwjgl.opengl.GL46.glActiveTexture;
-import static org.lwjgl.opengl.GL46.glGetUniformLocation;
-import static org.lwjgl.opengl.GL46.glUniform1i;
-import static org.lwjgl.opengl.GL46.glGenerateMipmap;
+import static org.lwjgl.stb.STBImage.*;
+import static org.lwjgl.system.MemoryStack.stackPush;
 
 /**
  * Текстура(карта текстур) для отображения
@@ -26,81 +30,111 @@ public class Texture {
     private final int slot;
 
     /**
-     * Конструктор текстуры
+     * Конструктор текстуры: карта текстур загружается как массив слоёв-тайлов GL_TEXTURE_2D_ARRAY
+     * с готовыми уровнями детализации. Слои берутся из файла кеша, если он соответствует файлу карты,
+     * иначе PNG декодируется STB вне кучи Java, разрезается на тайлы и сохраняется в кеш (см. load())
      * @param path путь к файлу .png с текстурой
+     * @param source загружаемая в фоне карта текстур
      * @param slot слот ячейки текстуры
-     * @param width ширина текстуры в пикселях
-     * @param height высота текстуры в пикселях
      */
-    Texture(String path, int slot, int width, int height) {
+    Texture(String path, CompletableFuture<TextureAtlas> source, int slot) {
         this.slot = slot;
         texture = glGenTextures();
-        //System.out.println(texture);
         glActiveTexture(GL_TEXTURE0 + slot);
 
         bind();
 
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_NEAREST_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
 
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_REPEAT);
 
         try {
-            File imgPath = new File(path);
-            BufferedImage image = ImageIO.read(imgPath);
-
-            int[] pixels = new int[image.getWidth() * image.getHeight()];
-            image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
-            ByteBuffer buffer = ByteBuffer.allocateDirect(image.getWidth() * image.getHeight() * 4);
-
-            for (int h = 0; h < image.getHeight(); h++) {
-                for (int w = 0; w < image.getWidth(); w++) {
-                    int pixel = pixels[(image.getHeight() - 1 - h) * image.getWidth() + w];
-
-                    buffer.put((byte) ((pixel >> 16) & 0xFF));
-                    buffer.put((byte) ((pixel >> 8) & 0xFF));
-                    buffer.put((byte) (pixel & 0xFF));
-                    buffer.put((byte) ((pixel >> 24) & 0xFF));
-                }
+            final TextureAtlas atlas = source.join();
+            glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAX_LEVEL, atlas.levels() - 1);
+            glTexStorage3D(GL_TEXTURE_2D_ARRAY, atlas.levels(), GL_RGBA8, atlas.width(0), atlas.height(0), atlas.layers());
+            for (int level = 0; level < atlas.levels(); level++) {
+                glTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, 0, 0, atlas.width(level), atlas.height(level), atlas.layers(),
+                        GL_RGBA, GL_UNSIGNED_BYTE, atlas.level(level));
             }
-            buffer.flip();
-            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
-            System.out.println("Texture (capacity = " + buffer.capacity() + ") loaded");
+            System.out.println("Texture " + path + " (" + atlas.layers() + " layers, " + atlas.levels() + " levels) loaded");
         } catch (Exception e) {
-            System.out.println("Unable to load " + path + " texture");
-            //System.out.println(e);
+            System.out.println("Unable to load " + path + " texture: " + e.getMessage());
         }
 
-        glGenerateMipmap(GL_TEXTURE_2D);
-
         unbind();
     }
 
+    /**
+     * Загрузка карты текстур без обращения к OpenGL, может выполняться в любом потоке
+     * @param path путь к файлу .png
+     * @return карта текстур
+     * @throws UncheckedIOException ошибка чтения файла карты
+     */
+    static TextureAtlas load(String path) {
+        try {
+            return load(Path.of(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Загрузка карты текстур из кеша или из PNG с сохранением в кеш
+     * @param path путь к файлу .png
+     * @return карта текстур
+     * @throws IOException ошибка чтения файла карты
+     */
+    private static TextureAtlas load(Path path) throws IOException {
+        final long stamp = TextureAtlas.stamp(path, Settings.atlasTiles);
+        final Path cache = Path.of(Settings.textureCacheDirectory, path.getFileName() + ".atlas");
+        final TextureAtlas cached = TextureAtlas.read(cache, stamp);
+        if (cached != null) return cached;
+
+        final TextureAtlas atlas;
+        try (MemoryStack stack = stackPush()) {
+            final IntBuffer width = stack.mallocInt(1), height = stack.mallocInt(1), channels = stack.mallocInt(1);
+            stbi_set_flip_vertically_on_load(true);
+            final ByteBuffer image = stbi_load(path.toString(), width, height, channels, 4);
+            if (image == null) throw new IOException(stbi_failure_reason());
+            try {
+                atlas = TextureAtlas.slice(image, width.get(0), height.get(0), Settings.atlasTiles);
+            } finally {
+                stbi_image_free(image);
+            }
+        }
+        try {
+            atlas.write(cache, stamp);
+        } catch (IOException e) {
+            System.out.println("Unable to cache " + path + " texture: " + e.getMessage());
+        }
+        return atlas;
+    }
+
     /**
      * Активация шейдера и задание слота для используемой текстуры
      * @param shader шейдерная программв
-     * @param uniform uniform для tex0Uni
+     * @param uniform имя sampler uniform
      */
     public void texUnit(Shader shader, String uniform) {
-        int tex0Uni = glGetUniformLocation(shader.getId(), uniform);
         shader.activate();
-        glUniform1i(tex0Uni, slot);
+        shader.uniform(uniform).set(slot);
     }
 
     /**
-     * Активация текстуры и задание её как GL_TEXTURE_2D для шейдерной программы
+     * Активация текстуры и задание её как GL_TEXTURE_2D_ARRAY для шейдерной программы
      */
     public void bind() {
         glActiveTexture(GL_TEXTURE0 + slot);
-        glBindTexture(GL_TEXTURE_2D, texture);
+        glBindTexture(GL_TEXTURE_2D_ARRAY, texture);
     }
 
     /**
-     * Задание GL_TEXTURE_2D как 0
+     * Задание GL_TEXTURE_2D_ARRAY как 0
      */
     public void unbind() {
-        glBindTexture(GL_TEXTURE_2D, 0);
+        glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
     }
 
     /**
@@ -0,0 +1,241 @@
+package graphics;
+
+import org.lwjgl.BufferUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Карта текстур, разрезанная на тайлы-слои с готовыми уровнями детализации (mip).
+ * Все уровни хранятся подряд в одном буфере вне кучи Java: уровень - слои подряд, слой - строки RGBA снизу вверх.
+ * Карта сохраняется в двоичный файл кеша с отметкой исходного файла, чтобы при следующем запуске
+ * не декодировать PNG и не считать уровни заново
+ */
+public class TextureAtlas {
+    /**
+     * Сигнатура и версия формата файла кеша
+     */
+    private static final int MAGIC = 0x56584154, VERSION = 1;
+    /**
+     * Размер заголовка файла кеша в байтах
+     */
+    private static final int HEADER = 32;
+
+    private final int tileWidth, tileHeight, layers, levels;
+    /**
+     * Данные всех уровней
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Конструктор
+     *
+     * @param tileWidth  ширина тайла в пикселях
+     * @param tileHeight высота тайла в пикселях
+     * @param layers     количество тайлов
+     * @param data       данные всех уровней, null - выделить память
+     */
+    private TextureAtlas(int tileWidth, int tileHeight, int layers, ByteBuffer data) {
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.layers = layers;
+        this.levels = levels(tileWidth, tileHeight);
+        this.data = data != null ? data : BufferUtils.createByteBuffer(offset(levels));
+    }
+
+    /**
+     * Разрезание карты текстур на тайлы и расчёт уровней детализации.
+     * Тайл с номером id находится в столбце id % tiles и строке id / tiles, считая строки снизу,
+     * как в прежней карте GL_TEXTURE_2D
+     *
+     * @param rgba   пиксели карты RGBA, строки снизу вверх
+     * @param width  ширина карты в пикселях
+     * @param height высота карты в пикселях
+     * @param tiles  количество тайлов по каждой стороне карты
+     * @return карта
+     */
+    public static TextureAtlas slice(ByteBuffer rgba, int width, int height, int tiles) {
+        if (width % tiles != 0 || height % tiles != 0) {
+            throw new IllegalArgumentException("Размер карты текстур " + width + "x" + height + " не делится на " + tiles + " тайлов");
+        }
+        final int tileWidth = width / tiles, tileHeight = height / tiles;
+        final TextureAtlas atlas = new TextureAtlas(tileWidth, tileHeight, tiles * tiles, null);
+        final int row = tileWidth * 4;
+        for (int layer = 0; layer < atlas.layers; layer++) {
+            final int x = (layer % tiles) * tileWidth, y = (layer / tiles) * tileHeight;
+            for (int line = 0; line < tileHeight; line++) {
+                atlas.data.put(layer * tileHeight * row + line * row, rgba, ((y + line) * width + x) * 4, row);
+            }
+        }
+        for (int level = 1; level < atlas.levels; level++) atlas.downsample(level);
+        return atlas;
+    }
+
+    /**
+     * Расчёт уровня усреднением блоков 2x2 предыдущего уровня
+     *
+     * @param level номер уровня
+     */
+    private void downsample(int level) {
+        final int sourceWidth = width(level - 1), sourceHeight = height(level - 1);
+        final int width = width(level), height = height(level);
+        final int source = offset(level - 1), target = offset(level);
+        for (int layer = 0; layer < layers; layer++) {
+            final int sourceLayer = source + layer * sourceWidth * sourceHeight * 4;
+            final int targetLayer = target + layer * width * height * 4;
+            for (int y = 0; y < height; y++) {
+                final int y0 = Math.min(y * 2, sourceHeight - 1), y1 = Math.min(y * 2 + 1, sourceHeight - 1);
+                for (int x = 0; x < width; x++) {
+                    final int x0 = Math.min(x * 2, sourceWidth - 1), x1 = Math.min(x * 2 + 1, sourceWidth - 1);
+                    for (int channel = 0; channel < 4; channel++) {
+                        final int sum = (data.get(sourceLayer + (y0 * sourceWidth + x0) * 4 + channel) & 0xFF)
+                                + (data.get(sourceLayer + (y0 * sourceWidth + x1) * 4 + channel) & 0xFF)
+                                + (data.get(sourceLayer + (y1 * sourceWidth + x0) * 4 + channel) & 0xFF)
+                                + (data.get(sourceLayer + (y1 * sourceWidth + x1) * 4 + channel) & 0xFF);
+                        data.put(targetLayer + (y * width + x) * 4 + channel, (byte) ((sum + 2) >> 2));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param tileWidth  ширина тайла в пикселях
+     * @param tileHeight высота тайла в пикселях
+     * @return количество уровней детализации до уровня 1x1
+     */
+    private static int levels(int tileWidth, int tileHeight) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(tileWidth, tileHeight));
+    }
+
+    /**
+     * Размер данных всех уровней без выделения памяти, для проверки заголовка файла кеша
+     *
+     * @param tileWidth  ширина тайла в пикселях
+     * @param tileHeight высота тайла в пикселях
+     * @param layers     количество тайлов
+     * @return размер в байтах
+     */
+    private static long dataSize(int tileWidth, int tileHeight, int layers) {
+        long size = 0;
+        for (int level = 0; level < levels(tileWidth, tileHeight); level++) {
+            size += (long) Math.max(1, tileWidth >> level) * Math.max(1, tileHeight >> level) * 4 * layers;
+        }
+        return size;
+    }
+
+    /**
+     * Смещение уровня в данных
+     *
+     * @param level номер уровня, levels - конец данных
+     * @return смещение в байтах
+     */
+    private int offset(int level) {
+        int offset = 0;
+        for (int i = 0; i < level; i++) offset += width(i) * height(i) * 4 * layers;
+        return offset;
+    }
+
+    /**
+     * @param level номер уровня
+     * @return ширина слоя на уровне
+     */
+    public int width(int level) {
+        return Math.max(1, tileWidth >> level);
+    }
+
+    /**
+     * @param level номер уровня
+     * @return высота слоя на уровне
+     */
+    public int height(int level) {
+        return Math.max(1, tileHeight >> level);
+    }
+
+    /**
+     * @return количество слоёв (тайлов)
+     */
+    public int layers() {
+        return layers;
+    }
+
+    /**
+     * @return количество уровней детализации
+     */
+    public int levels() {
+        return levels;
+    }
+
+    /**
+     * @param level номер уровня
+     * @return данные всех слоёв уровня
+     */
+    public ByteBuffer level(int level) {
+        return data.slice(offset(level), offset(level + 1) - offset(level));
+    }
+
+    /**
+     * Отметка исходного файла и разрезания для проверки актуальности кеша
+     *
+     * @param source исходный файл
+     * @param tiles  количество тайлов по каждой стороне карты
+     * @return отметка из размера и времени изменения файла и количества тайлов
+     * @throws IOException ошибка чтения атрибутов
+     */
+    public static long stamp(Path source, int tiles) throws IOException {
+        return (Files.size(source) * 31 + Files.getLastModifiedTime(source).toMillis()) * 31 + tiles;
+    }
+
+    /**
+     * Сохранение карты в файл кеша
+     *
+     * @param path  файл кеша
+     * @param stamp отметка исходного файла
+     * @throws IOException ошибка записи
+     */
+    public void write(Path path, long stamp) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        final ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(stamp).putInt(tileWidth).putInt(tileHeight).putInt(layers).putInt(levels).flip();
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer body = data.duplicate().clear();
+            while (header.hasRemaining()) channel.write(header);
+            while (body.hasRemaining()) channel.write(body);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загрузка карты из файла кеша
+     *
+     * @param path  файл кеша
+     * @param stamp ожидаемая отметка исходного файла
+     * @return карта или null, если файла нет, он устарел или повреждён
+     * @throws IOException ошибка чтения
+     */
+    public static TextureAtlas read(Path path, long stamp) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) if (channel.read(header) < 0) return null;
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != stamp) return null;
+            final int tileWidth = header.getInt(), tileHeight = header.getInt(), layers = header.getInt(), levels = header.getInt();
+            if (tileWidth <= 0 || tileHeight <= 0 || layers <= 0 || levels != levels(tileWidth, tileHeight)) return null;
+            final long size = dataSize(tileWidth, tileHeight, layers);
+            // размер проверяется до выделения памяти, чтобы повреждённый заголовок не приводил к огромному буферу
+            if (size > Integer.MAX_VALUE || channel.size() != HEADER + size) return null;
+            final TextureAtlas atlas = new TextureAtlas(tileWidth, tileHeight, layers, null);
+            while (atlas.data.hasRemaining()) if (channel.read(atlas.data) < 0) return null;
+            atlas.data.clear();
+            return atlas;
+        }
+    }
+}
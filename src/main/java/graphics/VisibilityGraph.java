@@ -0,0 +1,182 @@
+package graphics;
+
+import engine.Block;
+import engine.Chunk;
+import engine.World;
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Граф видимости секций для отсечения закрытых пространств.
+ * Для каждой секции хранится связность её сторон (ChunkConnectivity), отсутствующие секции считаются пустыми.
+ * Обход в ширину от секции камеры переходит в соседнюю секцию, только если сторона входа в текущую секцию
+ * видна из стороны выхода, соседняя секция пересекает пирамиду видимости и направление перехода
+ * не противоположно уже пройденным (луч от камеры не поворачивает назад)
+ */
+public class VisibilityGraph {
+    /**
+     * Номер узла по ключу секции
+     */
+    private final LongIntMap nodes;
+    /**
+     * Связность сторон узлов
+     */
+    private long[] connectivity;
+    /**
+     * Номер обхода, в котором узел был посещён
+     */
+    private int[] visits;
+    private int nodeCount;
+    /**
+     * Номер текущего обхода
+     */
+    private int visit;
+    /**
+     * Очередь обхода: ключ секции, сторона входа (-1 для секции камеры) и маска пройденных направлений
+     */
+    private long[] queueKeys;
+    private byte[] queueEntered, queueDirections;
+    /**
+     * Границы известных секций в координатах секций, расширенные на 1 для обхода вокруг мира
+     */
+    private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+    /**
+     * Конструктор
+     */
+    public VisibilityGraph() {
+        nodes = new LongIntMap(64);
+        connectivity = new long[64];
+        visits = new int[64];
+        queueKeys = new long[64];
+        queueEntered = new byte[64];
+        queueDirections = new byte[64];
+    }
+
+    /**
+     * Задание связности сторон секции
+     *
+     * @param key          ключ секции
+     * @param connectivity маска связности (ChunkConnectivity.ALL для пустой или удалённой секции)
+     */
+    public void set(long key, long connectivity) {
+        final int node = node(key);
+        this.connectivity[node] = connectivity;
+        final int x = World.keyX(key), y = World.keyY(key), z = World.keyZ(key);
+        minX = Math.min(minX, x - 1);
+        minY = Math.min(minY, y - 1);
+        minZ = Math.min(minZ, z - 1);
+        maxX = Math.max(maxX, x + 1);
+        maxY = Math.max(maxY, y + 1);
+        maxZ = Math.max(maxZ, z + 1);
+    }
+
+    /**
+     * @param key ключ секции
+     * @return маска связности секции
+     */
+    public long get(long key) {
+        final int node = nodes.get(key);
+        return node == LongIntMap.MISSING ? ChunkConnectivity.ALL : connectivity[node];
+    }
+
+    /**
+     * Обход потенциально видимых секций
+     *
+     * @param camera  ключ секции камеры
+     * @param frustum пирамида видимости
+     * @param visible обработчик ключей потенциально видимых секций
+     * @return false, если камера вне границ известных секций и обход не выполнялся
+     */
+    public boolean traverse(long camera, FrustumIntersection frustum, LongConsumer visible) {
+        if (!inside(World.keyX(camera), World.keyY(camera), World.keyZ(camera))) return false;
+        visit++;
+        final int start = node(camera);
+        visits[start] = visit;
+        int head = 0, tail = enqueue(0, camera, -1, 0);
+        while (head < tail) {
+            final long key = queueKeys[head];
+            final int entered = queueEntered[head], directions = queueDirections[head];
+            head++;
+            visible.accept(key);
+            final long connections = get(key);
+            final int x = World.keyX(key), y = World.keyY(key), z = World.keyZ(key);
+            for (int side = 0; side < 6; side++) {
+                if ((directions >> Block.OPPOSITE_SIDE[side] & 1) != 0) continue;
+                if (entered >= 0 && !ChunkConnectivity.connected(connections, entered, side)) continue;
+                final int[] offset = Block.SIDE_OFFSETS[side];
+                final int nx = x + offset[0], ny = y + offset[1], nz = z + offset[2];
+                if (!inside(nx, ny, nz)) continue;
+                final long next = World.key(nx, ny, nz);
+                final int node = node(next);
+                if (visits[node] == visit) continue;
+                visits[node] = visit;
+                final float bx = nx << Chunk.SHIFT, by = ny << Chunk.SHIFT, bz = nz << Chunk.SHIFT;
+                if (!frustum.testAab(bx, by, bz, bx + Chunk.SIZE, by + Chunk.SIZE, bz + Chunk.SIZE)) continue;
+                tail = enqueue(tail, next, Block.OPPOSITE_SIDE[side], directions | 1 << side);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return количество узлов графа, включая пустые секции, пройденные обходом
+     */
+    public int size() {
+        return nodeCount;
+    }
+
+    /**
+     * Узел секции, при отсутствии создаётся узел пустой секции
+     *
+     * @param key ключ секции
+     * @return номер узла
+     */
+    private int node(long key) {
+        int node = nodes.get(key);
+        if (node != LongIntMap.MISSING) return node;
+        node = nodeCount++;
+        if (node == connectivity.length) {
+            connectivity = Arrays.copyOf(connectivity, node * 2);
+            visits = Arrays.copyOf(visits, node * 2);
+        }
+        connectivity[node] = ChunkConnectivity.ALL;
+        visits[node] = 0;
+        nodes.put(key, node);
+        return node;
+    }
+
+    /**
+     * @param x координата секции x
+     * @param y координата секции y
+     * @param z координата секции z
+     * @return лежит ли секция в границах известных секций
+     */
+    private boolean inside(int x, int y, int z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Добавление секции в очередь обхода
+     *
+     * @param tail       конец очереди
+     * @param key        ключ секции
+     * @param entered    сторона входа в секцию
+     * @param directions маска пройденных направлений
+     * @return новый конец очереди
+     */
+    private int enqueue(int tail, long key, int entered, int directions) {
+        if (tail == queueKeys.length) {
+            queueKeys = Arrays.copyOf(queueKeys, tail * 2);
+            queueEntered = Arrays.copyOf(queueEntered, tail * 2);
+            queueDirections = Arrays.copyOf(queueDirections, tail * 2);
+        }
+        queueKeys[tail] = key;
+        queueEntered[tail] = (byte) entered;
+        queueDirections[tail] = (byte) directions;
+        return tail + 1;
+    }
+}
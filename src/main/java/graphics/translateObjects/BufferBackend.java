@@ -0,0 +1,56 @@
+package graphics.translateObjects;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Операции GPU, нужные потоковому буферу (StreamBuffer).
+ * Вынесены в интерфейс, чтобы логику кольца буферов можно было проверять без контекста OpenGL
+ */
+public interface BufferBackend {
+    /**
+     * Создание буфера с неизменяемым хранилищем, отображённым в память постоянно и когерентно
+     *
+     * @param bytes размер хранилища в байтах
+     * @return имя буфера
+     */
+    int create(long bytes);
+
+    /**
+     * Постоянное отображение хранилища буфера
+     *
+     * @param id    имя буфера
+     * @param bytes размер хранилища в байтах
+     * @return отображённая память
+     */
+    ByteBuffer map(int id, long bytes);
+
+    /**
+     * Снятие отображения и удаление буфера
+     *
+     * @param id имя буфера
+     */
+    void delete(int id);
+
+    /**
+     * Постановка барьера после уже отправленных команд
+     *
+     * @return барьер
+     */
+    long fence();
+
+    /**
+     * Ожидание прохождения барьера
+     *
+     * @param fence   барьер
+     * @param timeout наибольшее время ожидания в наносекундах
+     * @return пройден ли барьер
+     */
+    boolean await(long fence, long timeout);
+
+    /**
+     * Удаление барьера
+     *
+     * @param fence барьер
+     */
+    void deleteFence(long fence);
+}
@@ -1,30 +1,43 @@
 package graphics.translateObjects;
 
+import controller.Settings;
 import graphics.DataTransformation;
 
 import static org.lwjgl.opengl.GL46.*;
 
-/**Element Buffer Object, буфер для индексов*/
+/**Element Buffer Object, буфер для индексов в кольце постоянно отображённых сегментов*/
 public class EBO {
-    private final int id;
     private final DataTransformation dataTransformation;
+    private final StreamBuffer buffer;
 
-    protected EBO(DataTransformation dataTransformation) {
-        id = glGenBuffers();
+    protected EBO(DataTransformation dataTransformation, BufferBackend backend) {
         this.dataTransformation = dataTransformation;
+        buffer = new StreamBuffer(backend, Settings.streamBufferCount, 1);
     }
 
     protected void bindRefresh() {
-        bind();
         refresh();
+        bind();
     }
 
+    /**Запись изменённых индексов в следующий сегмент кольца*/
     private void refresh() {
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, dataTransformation.getIndices(), GL_DYNAMIC_DRAW);
+        buffer.upload(dataTransformation.getIndicesRaw(), dataTransformation.indicesSize(),
+                dataTransformation.changedFromI(), dataTransformation.changedToI());
+    }
+
+    /**@return смещение текущего сегмента в байтах*/
+    protected long offset() {
+        return (long) buffer.offset() * Integer.BYTES;
+    }
+
+    /**Барьер после отрисовки из текущего сегмента*/
+    protected void fence() {
+        buffer.fence();
     }
 
     private void bind() {
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, id);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, buffer.id());
     }
 
     protected void unbind() {
@@ -32,6 +45,6 @@ public class EBO {
     }
 
     protected void delete() {
-        glDeleteBuffers(id);
+        buffer.delete();
     }
 }
@@ -0,0 +1,45 @@
+package graphics.translateObjects;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL46.*;
+
+/**Реализация BufferBackend через glBufferStorage и glFenceSync*/
+public class GLBufferBackend implements BufferBackend {
+    /**Флаги хранилища и отображения*/
+    private static final int FLAGS = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+
+    @Override
+    public int create(long bytes) {
+        final int id = glCreateBuffers();
+        glNamedBufferStorage(id, bytes, FLAGS);
+        return id;
+    }
+
+    @Override
+    public ByteBuffer map(int id, long bytes) {
+        return glMapNamedBufferRange(id, 0, bytes, FLAGS);
+    }
+
+    @Override
+    public void delete(int id) {
+        glUnmapNamedBuffer(id);
+        glDeleteBuffers(id);
+    }
+
+    @Override
+    public long fence() {
+        return glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    @Override
+    public boolean await(long fence, long timeout) {
+        final int result = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, timeout);
+        return result == GL_ALREADY_SIGNALED || result == GL_CONDITION_SATISFIED;
+    }
+
+    @Override
+    public void deleteFence(long fence) {
+        glDeleteSync(fence);
+    }
+}
@@ -0,0 +1,43 @@
+package graphics.translateObjects;
+
+import controller.Settings;
+import graphics.ChunkCuller;
+
+import static org.lwjgl.opengl.GL46.*;
+
+/**Indirect Buffer Object, буфер команд непрямой отрисовки в кольце постоянно отображённых сегментов*/
+public class IBO {
+    private final StreamBuffer buffer;
+
+    protected IBO(BufferBackend backend) {
+        buffer = new StreamBuffer(backend, Settings.streamBufferCount, ChunkCuller.COMMAND_SIZE);
+    }
+
+    /**
+     * Запись команд в следующий сегмент кольца и привязка буфера
+     * @param culler источник построенных команд
+     */
+    protected void bindRefresh(ChunkCuller culler) {
+        final int size = culler.commandCount() * ChunkCuller.COMMAND_SIZE;
+        buffer.upload(culler.commands(), size, 0, size);
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, buffer.id());
+    }
+
+    /**@return смещение текущего сегмента в байтах*/
+    protected long offset() {
+        return (long) buffer.offset() * Integer.BYTES;
+    }
+
+    /**Барьер после отрисовки из текущего сегмента*/
+    protected void fence() {
+        buffer.fence();
+    }
+
+    protected void unbind() {
+        glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+    }
+
+    protected void delete() {
+        buffer.delete();
+    }
+}
@@ -0,0 +1,71 @@
+package graphics.translateObjects;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL46.*;
+
+/**Shader Storage Buffer Object, буфер данных шейдера на постоянной точке привязки, перезаписывается целиком при изменении данных*/
+public class SSBO {
+    private final int id;
+    private final int binding;
+    /**Промежуточный буфер вне кучи Java*/
+    private ByteBuffer staging;
+
+    /**
+     * Конструктор, требует текущего контекста OpenGL
+     * @param binding номер точки привязки (binding в шейдере)
+     */
+    public SSBO(int binding) {
+        this.binding = binding;
+        id = glGenBuffers();
+        staging = BufferUtils.createByteBuffer(1024);
+    }
+
+    /**
+     * Загрузка первых size значений массива и привязка буфера к его точке
+     * @param data данные
+     * @param size количество значений
+     */
+    public void upload(float[] data, int size) {
+        staging(size).asFloatBuffer().put(0, data, 0, size);
+        upload(size);
+    }
+
+    /**
+     * Загрузка первых size значений массива и привязка буфера к его точке
+     * @param data данные
+     * @param size количество значений
+     */
+    public void upload(int[] data, int size) {
+        staging(size).asIntBuffer().put(0, data, 0, size);
+        upload(size);
+    }
+
+    /**
+     * @param size количество 4-байтовых значений
+     * @return промежуточный буфер достаточного размера
+     */
+    private ByteBuffer staging(int size) {
+        if (staging.capacity() < size * 4) staging = BufferUtils.createByteBuffer(Math.max(staging.capacity() * 2, size * 4));
+        return staging;
+    }
+
+    /**
+     * Перезапись хранилища из промежуточного буфера, пустые данные заменяются одним нулевым значением
+     * @param size количество 4-байтовых значений
+     */
+    private void upload(int size) {
+        staging.clear().limit(Math.max(size, 1) * 4);
+        if (size == 0) staging.putInt(0, 0);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, id);
+        glBufferData(GL_SHADER_STORAGE_BUFFER, staging, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, binding, id);
+    }
+
+    public void delete() {
+        glDeleteBuffers(id);
+    }
+}
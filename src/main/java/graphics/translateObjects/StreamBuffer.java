@@ -0,0 +1,201 @@
+package graphics.translateObjects;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Потоковый буфер GPU из кольца сегментов в одном постоянно отображённом хранилище.
+ * Каждый кадр данные пишутся в следующий сегмент, который GPU уже не читает (это гарантирует барьер),
+ * в сегмент копируются только диапазоны, изменённые с момента его прошлой записи.
+ * Размеры и смещения считаются в 4-байтовых значениях
+ */
+public class StreamBuffer {
+    /**Время одного ожидания барьера, нс*/
+    private static final long WAIT_TIMEOUT = 1_000_000_000L;
+
+    private final BufferBackend backend;
+    /**Количество сегментов в кольце*/
+    private final int segments;
+    /**Кратность размера сегмента*/
+    private final int granularity;
+    /**Имя буфера, 0 - хранилище ещё не создано*/
+    private int id;
+    /**Отображённая память как float*/
+    private FloatBuffer floats;
+    /**Отображённая память как int*/
+    private IntBuffer ints;
+    /**Размер одного сегмента*/
+    private int capacity;
+    /**Текущий сегмент, -1 - запись ещё не выполнялась*/
+    private int current;
+    /**Барьеры сегментов, 0 - барьера нет*/
+    private final long[] fences;
+    /**Накопленные для каждого сегмента изменённые диапазоны*/
+    private final int[] dirtyFrom, dirtyTo;
+
+    /**
+     * Конструктор
+     * @param backend операции GPU
+     * @param segments количество сегментов в кольце
+     * @param granularity кратность размера сегмента (например, размер вершины)
+     */
+    public StreamBuffer(BufferBackend backend, int segments, int granularity) {
+        if (segments < 1) throw new IllegalArgumentException("Количество сегментов должно быть положительным");
+        this.backend = backend;
+        this.segments = segments;
+        this.granularity = granularity;
+        fences = new long[segments];
+        dirtyFrom = new int[segments];
+        dirtyTo = new int[segments];
+        Arrays.fill(dirtyFrom, Integer.MAX_VALUE);
+        current = -1;
+    }
+
+    /**
+     * Запись данных вершин в следующий сегмент
+     * @param source исходные данные
+     * @param size количество действительных значений
+     * @param changedFrom начало изменённого диапазона
+     * @param changedTo конец изменённого диапазона
+     */
+    public void upload(FloatBuffer source, int size, int changedFrom, int changedTo) {
+        final int segment = next(size, changedFrom, changedTo);
+        final int from = dirtyFrom[segment], to = dirtyTo[segment];
+        if (from < to) floats.put(segment * capacity + from, source, from, to - from);
+        clean(segment);
+    }
+
+    /**
+     * Запись индексов в следующий сегмент
+     * @param source исходные данные
+     * @param size количество действительных значений
+     * @param changedFrom начало изменённого диапазона
+     * @param changedTo конец изменённого диапазона
+     */
+    public void upload(IntBuffer source, int size, int changedFrom, int changedTo) {
+        final int segment = next(size, changedFrom, changedTo);
+        final int from = dirtyFrom[segment], to = dirtyTo[segment];
+        if (from < to) ints.put(segment * capacity + from, source, from, to - from);
+        clean(segment);
+    }
+
+    /**
+     * Постановка барьера текущего сегмента, вызывается после команд отрисовки, читающих его
+     */
+    public void fence() {
+        if (current < 0) return;
+        if (fences[current] != 0) backend.deleteFence(fences[current]);
+        fences[current] = backend.fence();
+    }
+
+    /**
+     * @return смещение текущего сегмента от начала буфера в значениях
+     */
+    public int offset() {
+        return current < 0 ? 0 : current * capacity;
+    }
+
+    /**
+     * @return имя буфера, 0 - хранилище ещё не создано
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return размер одного сегмента в значениях
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return номер текущего сегмента, -1 - запись ещё не выполнялась
+     */
+    public int current() {
+        return current;
+    }
+
+    /**
+     * Удаление хранилища и барьеров
+     */
+    public void delete() {
+        for (int i = 0; i < segments; i++) {
+            if (fences[i] != 0) backend.deleteFence(fences[i]);
+            fences[i] = 0;
+        }
+        if (id != 0) backend.delete(id);
+        id = 0;
+        capacity = 0;
+        current = -1;
+    }
+
+    /**
+     * Переход к следующему сегменту: учёт изменений во всех сегментах, при нехватке места - пересоздание хранилища,
+     * ожидание освобождения сегмента GPU
+     * @param size количество действительных значений
+     * @param changedFrom начало изменённого диапазона
+     * @param changedTo конец изменённого диапазона
+     * @return номер сегмента для записи
+     */
+    private int next(int size, int changedFrom, int changedTo) {
+        if (size > capacity) {
+            grow(size);
+            for (int i = 0; i < segments; i++) {
+                dirtyFrom[i] = 0;
+                dirtyTo[i] = size;
+            }
+        } else if (changedFrom < changedTo) {
+            for (int i = 0; i < segments; i++) {
+                dirtyFrom[i] = Math.min(dirtyFrom[i], changedFrom);
+                dirtyTo[i] = Math.max(dirtyTo[i], changedTo);
+            }
+        }
+        final int segment = (current + 1) % segments;
+        awaitSegment(segment);
+        dirtyTo[segment] = Math.min(dirtyTo[segment], size);
+        current = segment;
+        return segment;
+    }
+
+    /**
+     * Пересоздание хранилища с запасом в половину размера, старое удаляется после освобождения всех сегментов
+     * @param size необходимый размер сегмента
+     */
+    private void grow(int size) {
+        for (int i = 0; i < segments; i++) awaitSegment(i);
+        if (id != 0) backend.delete(id);
+        capacity = size + size / 2;
+        capacity += (granularity - capacity % granularity) % granularity;
+        final long bytes = (long) capacity * segments * Float.BYTES;
+        id = backend.create(bytes);
+        final ByteBuffer mapping = backend.map(id, bytes).order(ByteOrder.nativeOrder());
+        floats = mapping.asFloatBuffer();
+        ints = mapping.asIntBuffer();
+        current = -1;
+    }
+
+    /**
+     * Ожидание прохождения барьера сегмента и его удаление
+     * @param segment номер сегмента
+     */
+    private void awaitSegment(int segment) {
+        final long fence = fences[segment];
+        if (fence == 0) return;
+        while (!backend.await(fence, WAIT_TIMEOUT)) Thread.onSpinWait();
+        backend.deleteFence(fence);
+        fences[segment] = 0;
+    }
+
+    /**
+     * Сброс накопленного диапазона записанного сегмента
+     * @param segment номер сегмента
+     */
+    private void clean(int segment) {
+        dirtyFrom[segment] = Integer.MAX_VALUE;
+        dirtyTo[segment] = 0;
+    }
+}
@@ -1,6 +1,13 @@
 package graphics.translateObjects;
 
+import controller.Settings;
+import engine.World;
+import graphics.ChunkCuller;
 import graphics.DataTransformation;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+import static org.lwjgl.opengl.GL46.*;
 
 /**
  * Транслятор данных в GPU
@@ -18,23 +25,32 @@ public class Translation {
      * Элементный(индексный) буфер
      */
     private final EBO elementBufferObject;
+    /**
+     * Буфер команд непрямой отрисовки видимых секций
+     */
+    private final IBO indirectBufferObject;
+    /**
+     * Преобразователь информации, откуда берутся данные для вершин и индексов
+     */
+    private final DataTransformation dataTransformation;
 
     /**
      * Конструктор
      * @param dataTransformation преобразователь игфромации, откуда берутся данные для вершин и индексов
      */
     public Translation(DataTransformation dataTransformation){
+        this.dataTransformation = dataTransformation;
         vertexArrayObject = new VAO();
         vertexArrayObject.bind();
-        vertexBufferObject = new VBO(dataTransformation);
-        elementBufferObject = new EBO(dataTransformation);
+        final BufferBackend backend = new GLBufferBackend();
+        vertexBufferObject = new VBO(dataTransformation, backend);
+        elementBufferObject = new EBO(dataTransformation, backend);
+        indirectBufferObject = new IBO(backend);
 
         vertexBufferObject.bindRefresh();
         elementBufferObject.bindRefresh();
 
-        vertexArrayObject.LinkAttrib(vertexBufferObject, 0, 32, 0);
-        vertexArrayObject.LinkAttrib(vertexBufferObject, 1, 32, 12);
-        vertexArrayObject.LinkAttrib(vertexBufferObject, 2, 32, 20);
+        linkAttribs();
 
         vertexArrayObject.unbind();
         vertexBufferObject.unbind();
@@ -42,20 +58,34 @@ public class Translation {
     }
 
     /**
-     * Повторная отправка данных
+     * Отправка изменённых с прошлого вызова данных, при отсутствии изменений ничего не делает
      */
     public void update(){
+        if (!dataTransformation.hasChanges()) return;
         vertexArrayObject.bind();
         vertexBufferObject.bindRefresh();
         elementBufferObject.bindRefresh();
 
-        vertexArrayObject.LinkAttrib(vertexBufferObject, 0, 32, 0);
-        vertexArrayObject.LinkAttrib(vertexBufferObject, 1, 32, 12);
-        vertexArrayObject.LinkAttrib(vertexBufferObject, 2, 32, 20);
+        linkAttribs();
 
         vertexArrayObject.unbind();
         vertexBufferObject.unbind();
         elementBufferObject.unbind();
+        dataTransformation.clearChanges();
+    }
+
+    /**
+     * Привязка атрибутов вершин в формате, выбранном в Settings
+     */
+    private void linkAttribs() {
+        if (Settings.packedVertices) {
+            vertexArrayObject.LinkIntAttrib(vertexBufferObject, 0, 2, 8, 0);
+            return;
+        }
+        vertexArrayObject.LinkAttrib(vertexBufferObject, 0, 3, 36, 0);
+        vertexArrayObject.LinkAttrib(vertexBufferObject, 1, 2, 36, 12);
+        vertexArrayObject.LinkAttrib(vertexBufferObject, 2, 3, 36, 20);
+        vertexArrayObject.LinkAttrib(vertexBufferObject, 3, 1, 36, 32);
     }
 
     /**
@@ -65,6 +95,40 @@ public class Translation {
         vertexArrayObject.bind();
     }
 
+    /**
+     * Отрисовка треугольников из текущих сегментов буферов и постановка барьеров на эти сегменты.
+     * При Settings.frustumCulling рисуются только секции, пересекающие пирамиду видимости, одной командой
+     * glMultiDrawElementsIndirect, отрезки после области секций рисуются всегда
+     * При Settings.occlusionCulling секции дополнительно отбираются обходом графа видимости от секции камеры
+     * @param viewProjection произведение матриц проекции и вида камеры
+     * @param camera позиция камеры
+     */
+    public void draw(Matrix4fc viewProjection, Vector3fc camera){
+        if (!Settings.frustumCulling) {
+            glDrawElementsBaseVertex(GL_TRIANGLES, dataTransformation.indicesSize(), GL_UNSIGNED_INT,
+                    elementBufferObject.offset(), vertexBufferObject.baseVertex());
+        } else {
+            final ChunkCuller culler = dataTransformation.getCuller();
+            final int indexBase = (int) (elementBufferObject.offset() / Integer.BYTES), baseVertex = vertexBufferObject.baseVertex();
+            if (Settings.occlusionCulling)
+                culler.cull(viewProjection, dataTransformation.getVisibilityGraph(),
+                        World.chunkKey((int) Math.floor(camera.x()), (int) Math.floor(camera.y()), (int) Math.floor(camera.z())),
+                        indexBase, baseVertex);
+            else culler.cull(viewProjection, indexBase, baseVertex);
+            final int linesFrom = dataTransformation.chunkIndicesEnd();
+            if (dataTransformation.indicesSize() > linesFrom)
+                culler.append(dataTransformation.indicesSize() - linesFrom, indexBase + linesFrom, baseVertex);
+            if (culler.commandCount() > 0) {
+                indirectBufferObject.bindRefresh(culler);
+                glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_INT, indirectBufferObject.offset(), culler.commandCount(), 0);
+                indirectBufferObject.fence();
+                indirectBufferObject.unbind();
+            }
+        }
+        vertexBufferObject.fence();
+        elementBufferObject.fence();
+    }
+
     /**
      * Удаление VAO, VBO, EBO
      */
@@ -72,5 +136,6 @@ public class Translation {
         vertexArrayObject.delete();
         vertexBufferObject.delete();
         elementBufferObject.delete();
+        indirectBufferObject.delete();
     }
 }
@@ -13,9 +13,16 @@ public class VAO {
         id = glGenVertexArrays();
     }
 
-    protected void LinkAttrib(VBO vbo, int layout, int offset, int pointer) {
+    protected void LinkAttrib(VBO vbo, int layout, int size, int offset, int pointer) {
         vbo.bind();
-        glVertexAttribPointer(layout, 4, GL_FLOAT, false, offset, pointer);
+        glVertexAttribPointer(layout, size, GL_FLOAT, false, offset, pointer);
+        glEnableVertexAttribArray(layout);
+        vbo.unbind();
+    }
+
+    protected void LinkIntAttrib(VBO vbo, int layout, int size, int offset, int pointer) {
+        vbo.bind();
+        glVertexAttribIPointer(layout, size, GL_INT, offset, pointer);
         glEnableVertexAttribArray(layout);
         vbo.unbind();
     }
@@ -1,30 +1,43 @@
 package graphics.translateObjects;
 
+import controller.Settings;
 import graphics.DataTransformation;
 
 import static org.lwjgl.opengl.GL46.*;
 
-/**Vertex Buffer Object, буфер вершин*/
+/**Vertex Buffer Object, буфер вершин в кольце постоянно отображённых сегментов*/
 public class VBO {
-    private final int id;
     private final DataTransformation dataTransformation;
+    private final StreamBuffer buffer;
 
-    protected VBO(DataTransformation dataTransformation) {
-        id = glGenBuffers();
+    protected VBO(DataTransformation dataTransformation, BufferBackend backend) {
         this.dataTransformation = dataTransformation;
+        buffer = new StreamBuffer(backend, Settings.streamBufferCount, DataTransformation.vertexSize());
     }
 
     protected void bindRefresh() {
-        bind();
         refresh();
+        bind();
     }
 
+    /**Запись изменённых значений в следующий сегмент кольца*/
     private void refresh() {
-        glBufferData(GL_ARRAY_BUFFER, dataTransformation.getCords(), GL_DYNAMIC_DRAW);
+        buffer.upload(dataTransformation.getCordsRaw(), dataTransformation.cordsSize(),
+                dataTransformation.changedFromC(), dataTransformation.changedToC());
+    }
+
+    /**@return номер первой вершины текущего сегмента*/
+    protected int baseVertex() {
+        return buffer.offset() / DataTransformation.vertexSize();
+    }
+
+    /**Барьер после отрисовки из текущего сегмента*/
+    protected void fence() {
+        buffer.fence();
     }
 
     protected void bind() {
-        glBindBuffer(GL_ARRAY_BUFFER, id);
+        glBindBuffer(GL_ARRAY_BUFFER, buffer.id());
     }
 
     protected void unbind() {
@@ -32,6 +45,6 @@ public class VBO {
     }
 
     protected void delete() {
-        glDeleteBuffers(id);
+        buffer.delete();
     }
 }
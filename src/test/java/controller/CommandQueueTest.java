@@ -0,0 +1,81 @@
+package controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandQueueTest {
+    @Test
+    public void deliversEventsInOrderWithTimestamps() {
+        final CommandQueue queue = new CommandQueue(4);
+        assertTrue(queue.offer(Commands.ADD, 10));
+        assertTrue(queue.offer(Commands.REMOVE, 20));
+        final List<Commands> received = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        assertEquals(2, queue.drain((command, timestamp) -> {
+            received.add(command);
+            timestamps.add(timestamp);
+            return true;
+        }));
+        assertEquals(List.of(Commands.ADD, Commands.REMOVE), received);
+        assertEquals(List.of(10L, 20L), timestamps);
+        assertEquals(0, queue.drain((command, timestamp) -> true));
+    }
+
+    @Test
+    public void rejectsWhenFullAndAcceptsAfterDrain() {
+        final CommandQueue queue = new CommandQueue(3);
+        assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++) assertTrue(queue.offer(Commands.JUMP, i));
+        assertFalse(queue.offer(Commands.JUMP, 4));
+        assertEquals(1, queue.drain((command, timestamp) -> timestamp == 0));
+        assertTrue(queue.offer(Commands.ADD, 5));
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void rejectedEventStaysForNextDrain() {
+        final CommandQueue queue = new CommandQueue(8);
+        queue.offer(Commands.ADD, 1);
+        queue.offer(Commands.ADD, 2);
+        queue.offer(Commands.REMOVE, 3);
+        final List<Long> first = new ArrayList<>();
+        queue.drain((command, timestamp) -> {
+            if (first.size() == 1) return false;
+            first.add(timestamp);
+            return true;
+        });
+        assertEquals(List.of(1L), first);
+        final List<Long> second = new ArrayList<>();
+        queue.drain((command, timestamp) -> second.add(timestamp));
+        assertEquals(List.of(2L, 3L), second);
+    }
+
+    @Test
+    public void deliversEveryEventOnceBetweenThreads() throws InterruptedException {
+        final CommandQueue queue = new CommandQueue(64);
+        final int events = 1_000_000;
+        final Commands[] values = Commands.values();
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < events; i++) {
+                while (!queue.offer(values[i % values.length], i)) Thread.onSpinWait();
+            }
+        });
+        producer.start();
+        final long[] expected = {0};
+        final boolean[] ordered = {true};
+        while (expected[0] < events) {
+            queue.drain((command, timestamp) -> {
+                if (timestamp != expected[0] || command != values[(int) (timestamp % values.length)]) ordered[0] = false;
+                expected[0]++;
+                return true;
+            });
+        }
+        producer.join();
+        assertTrue(ordered[0]);
+        assertEquals(0, queue.size());
+    }
+}
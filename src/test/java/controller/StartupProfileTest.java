@@ -0,0 +1,29 @@
+package controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StartupProfileTest {
+
+    @Test
+    public void phasesFromSeveralThreadsAreRecorded() throws InterruptedException {
+        final StartupProfile profile = new StartupProfile();
+        final long begin = profile.begin();
+        final Thread worker = new Thread(() -> profile.end("background", profile.begin()), "loader");
+        worker.start();
+        worker.join();
+        profile.end("main", begin);
+
+        final List<StartupProfile.Phase> phases = profile.phases();
+        assertEquals(2, phases.size());
+        assertEquals("background", phases.get(0).name());
+        assertEquals("loader", phases.get(0).thread());
+        assertEquals("main", phases.get(1).name());
+        assertTrue(phases.get(1).duration() >= phases.get(0).duration());
+        assertTrue(phases.get(0).start() >= phases.get(1).start());
+        assertTrue(profile.toString().contains("background"));
+    }
+}
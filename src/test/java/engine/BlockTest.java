@@ -0,0 +1,49 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockTest {
+
+    @Test
+    public void equalBlocksShareOneType() {
+        final int[] sideIds = {5, 6, 7, 8, 9, 10};
+        final Block block = Block.of(3, sideIds);
+        Block.of(4, sideIds);
+        assertSame(block, Block.of(3, new int[]{5, 6, 7, 8, 9, 10}));
+        assertSame(block, Block.get(block.type));
+        assertNotSame(block, Block.of(3, new int[]{5, 6, 7, 8, 9, 11}));
+        assertNotSame(block, Block.of(4, sideIds));
+    }
+
+    @Test
+    public void typeIsImmutable() {
+        final int[] sideIds = {1, 2, 3, 4, 5, 6};
+        final Block block = Block.of(7, sideIds);
+        sideIds[0] = 100;
+        assertEquals(1, block.sideId(0));
+        final int[] copy = block.getSideIds(new int[6]);
+        copy[1] = 100;
+        assertEquals(2, block.sideId(1));
+        assertThrows(IllegalArgumentException.class, () -> Block.of(7, new int[5]));
+    }
+
+    @Test
+    public void chunkStoresTypeAndFaceMask() {
+        final World world = new World();
+        final int[] sideIds = {11, 12, 13, 14, 15, 16};
+        world.set(0, 0, 0, 2, sideIds);
+        world.set(1, 0, 0, 2, sideIds);
+        world.sweepFaces(world.chunkKeys());
+
+        final Block block = Block.of(2, sideIds);
+        assertEquals(block.type, world.getType(0, 0, 0));
+        assertEquals(block.type, world.getType(1, 0, 0));
+        assertEquals(-1, world.getType(2, 0, 0));
+        assertEquals(2, world.getId(1, 0, 0));
+        assertEquals(16, world.getSideId(1, 0, 0, 5));
+        assertEquals(Block.ALL_FACES & ~(1 << 5), world.getFaces(0, 0, 0));
+        assertEquals(Block.ALL_FACES & ~(1 << 4), world.getFaces(1, 0, 0));
+    }
+}
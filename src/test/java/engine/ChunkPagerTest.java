@@ -0,0 +1,150 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkPagerTest {
+    private static final int[] STONE = {1, 1, 1, 1, 1, 1};
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Сгенерированный мир: пол на высоте 0 от x = -80 до 250 и от z = -16 до 15
+     */
+    private static World floor() {
+        final World world = new World();
+        for (int z = -16; z < 16; z++) {
+            for (int x = -80; x <= 250; x++) world.set(x, 0, z, 0, STONE);
+        }
+        world.sweepFaces(world.chunkKeys());
+        return world;
+    }
+
+    @Test
+    public void evictedEditsSurviveRestart() throws IOException {
+        final World world = floor();
+        final ChunkPager pager = new ChunkPager(world, directory, 1);
+        pager.update(0, 0);
+        assertTrue(world.remove(40, 0, 0));
+        assertTrue(world.remove(5, 0, 5));
+        pager.update(200, 0);
+        assertFalse(world.contains(5, 0, 5));
+        assertFalse(world.contains(0, 0, 0));
+        assertTrue(world.remove(200, 0, 0));
+        pager.update(0, 0);
+        assertFalse(world.contains(40, 0, 0));
+        assertFalse(world.contains(5, 0, 5));
+        assertTrue(world.contains(20, 0, 0));
+        pager.close();
+
+        // сгенерированный заново мир отличается от сохранённого блоком, которого в файлах нет
+        final World restarted = floor();
+        restarted.set(6, 1, 6, 0, STONE);
+        final ChunkPager next = new ChunkPager(restarted, directory, 1);
+        next.update(0, 0);
+        assertFalse(restarted.contains(40, 0, 0));
+        assertFalse(restarted.contains(5, 0, 5));
+        assertFalse(restarted.contains(6, 1, 6));
+        assertTrue(restarted.contains(4, 0, 5));
+        assertEquals((1 << 1) | (1 << 2), restarted.getFaces(7, 0, 0));
+        assertEquals((1 << 0) | (1 << 1) | (1 << 2), restarted.getFaces(5, 0, 4));
+        next.update(40, 0);
+        assertFalse(restarted.contains(40, 0, 0));
+        assertTrue(restarted.contains(41, 0, 0));
+        next.update(200, 0);
+        assertFalse(restarted.contains(200, 0, 0));
+        assertTrue(restarted.contains(201, 0, 0));
+        assertFalse(restarted.contains(0, 0, 0));
+        next.close();
+    }
+
+    @Test
+    public void invalidateDropsRegionsOfPreviousWorld() throws IOException {
+        final World world = floor();
+        final ChunkPager pager = new ChunkPager(world, directory, 1);
+        pager.update(0, 0);
+        pager.update(200, 0);
+
+        final World loaded = new World();
+        loaded.set(3, 3, 3, 0, STONE);
+        world.replaceWith(loaded);
+        pager.invalidate();
+        pager.update(0, 0);
+        assertTrue(world.contains(3, 3, 3));
+        pager.update(200, 0);
+        assertFalse(world.contains(200, 0, 0));
+        assertEquals(0, world.size());
+        pager.update(0, 0);
+        assertTrue(world.contains(3, 3, 3));
+        assertFalse(world.contains(0, 0, 0));
+        assertEquals(1, world.size());
+        pager.close();
+    }
+
+    @Test
+    public void savedPagedWorldKeepsEvictedColumns() throws IOException {
+        final World world = floor();
+        final ChunkPager pager = new ChunkPager(world, directory.resolve("regions"), 1);
+        pager.update(200, 0);
+        assertTrue(world.remove(200, 0, 0));
+        pager.update(0, 0);
+        assertTrue(world.remove(5, 0, 5));
+
+        final long[] storedColumns = pager.storedColumns();
+        assertTrue(storedColumns.length > 0);
+        final List<ByteBuffer> columns = new ArrayList<>();
+        for (long column : storedColumns) columns.add(pager.storedColumnData(column));
+        final Path state = directory.resolve("state");
+        StateFile.save(world.snapshot(), columns, state, progress -> {
+        });
+
+        final World loaded = new World();
+        StateFile.load(state, loaded);
+        loaded.sweepFaces(loaded.chunkKeys());
+        assertEquals(331 * 32 - 2, loaded.size());
+        assertFalse(loaded.contains(200, 0, 0));
+        assertFalse(loaded.contains(5, 0, 5));
+        assertTrue(loaded.contains(-80, 0, -16));
+
+        // загрузка сохранения в мир с подкачкой: файлы регионов заменяются содержимым сохранения
+        world.replaceWith(loaded);
+        pager.invalidate();
+        pager.update(0, 0);
+        assertFalse(world.contains(5, 0, 5));
+        pager.update(200, 0);
+        assertFalse(world.contains(200, 0, 0));
+        assertTrue(world.contains(201, 0, 0));
+        pager.update(-70, 0);
+        assertTrue(world.contains(-80, 0, -16));
+        pager.close();
+    }
+
+    @Test
+    public void failedColumnReadKeepsStoreColumn() throws IOException {
+        final World world = floor();
+        final ChunkPager pager = new ChunkPager(world, directory, 1);
+        pager.update(200, 0);
+        pager.close();
+        // порча данных столбцов региона (0, 0): CRC32 перестаёт совпадать
+        final Path region = directory.resolve("r.0.0.region");
+        final byte[] bytes = Files.readAllBytes(region);
+        for (int i = 32 * 32 * 12; i < bytes.length; i++) bytes[i] ^= 0x55;
+        Files.write(region, bytes);
+
+        final World restarted = floor();
+        final ChunkPager next = new ChunkPager(restarted, directory, 1);
+        assertThrows(IOException.class, () -> next.update(0, 0));
+        assertTrue(restarted.contains(0, 0, 0));
+        assertTrue(restarted.contains(15, 0, 15));
+    }
+}
@@ -0,0 +1,59 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkTableTest {
+
+    private static Map<Long, Chunk> dump(ChunkTable table) {
+        final Map<Long, Chunk> entries = new HashMap<>();
+        table.forEach((key, chunk) -> assertNull(entries.put(key, chunk)));
+        return entries;
+    }
+
+    @Test
+    public void matchesHashMapOnRandomEdits() {
+        final Random random = new Random(7);
+        final Map<Long, Chunk> reference = new HashMap<>();
+        ChunkTable table = ChunkTable.EMPTY;
+        for (int i = 0; i < 20000; i++) {
+            final long key = World.key(random.nextInt(41) - 20, random.nextInt(9) - 4, random.nextInt(41) - 20);
+            if (random.nextInt(3) == 0) {
+                reference.remove(key);
+                table = table.remove(key);
+            } else {
+                final Chunk chunk = new Chunk();
+                reference.put(key, chunk);
+                table = table.put(key, chunk);
+            }
+            assertSame(reference.get(key), table.get(key));
+        }
+        assertEquals(reference.size(), table.size());
+        assertEquals(reference, dump(table));
+        for (long key : reference.keySet()) table = table.remove(key);
+        assertEquals(0, table.size());
+        assertTrue(dump(table).isEmpty());
+    }
+
+    @Test
+    public void olderVersionsAreUnchanged() {
+        final Chunk first = new Chunk(), second = new Chunk();
+        final long key = World.key(-1, 2, -3);
+        final ChunkTable empty = ChunkTable.EMPTY;
+        final ChunkTable one = empty.put(key, first);
+        final ChunkTable replaced = one.put(key, second);
+        final ChunkTable removed = replaced.remove(key);
+
+        assertNull(empty.get(key));
+        assertSame(first, one.get(key));
+        assertSame(second, replaced.get(key));
+        assertNull(removed.get(key));
+        assertEquals(1, replaced.size());
+        assertSame(removed, removed.remove(key));
+    }
+}
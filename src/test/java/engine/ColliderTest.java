@@ -0,0 +1,86 @@
+package engine;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColliderTest {
+    private static final int[] STONE = {1, 1, 1, 1, 1, 1};
+    private static final float EPSILON = 1e-3f;
+
+    /**
+     * Пол на высоте 0 от -8 до 7 по x и z, стена x = 3 высотой 2 блока,
+     * ступень (-2, 1, 0) высотой 1 блок и потолок на высоте 4 над x от -8 до -4
+     */
+    private static World world() {
+        final World world = new World();
+        for (int z = -8; z < 8; z++) {
+            for (int x = -8; x < 8; x++) world.set(x, 0, z, 0, STONE);
+            world.set(3, 1, z, 0, STONE);
+            world.set(3, 2, z, 0, STONE);
+            for (int x = -8; x <= -4; x++) world.set(x, 4, z, 0, STONE);
+        }
+        world.set(-2, 1, 0, 0, STONE);
+        return world;
+    }
+
+    private static void assertPosition(float x, float y, float z, Vector3f position) {
+        assertEquals(x, position.x, EPSILON);
+        assertEquals(y, position.y, EPSILON);
+        assertEquals(z, position.z, EPSILON);
+    }
+
+    @Test
+    public void fallLandsOnFloor() {
+        final Collider collider = new Collider(0.3f, 1.8f);
+        final Vector3f position = new Vector3f(0.5f, 3.0f, 0.5f), motion = new Vector3f(0.0f, -5.0f, 0.0f);
+        assertEquals(Collider.AXIS_Y, collider.move(world(), position, motion));
+        assertPosition(0.5f, 1.0f, 0.5f, position);
+        assertTrue(position.y >= 1.0f);
+        assertEquals(0.0f, motion.y);
+        assertFalse(collider.intersects(position, 0, 0, 0));
+    }
+
+    @Test
+    public void movesFreelyWithoutObstacles() {
+        final Collider collider = new Collider(0.3f, 1.8f);
+        final Vector3f position = new Vector3f(0.5f, 1.0f, 0.5f), motion = new Vector3f(1.0f, 0.5f, -2.0f);
+        assertEquals(0, collider.move(world(), position, motion));
+        assertPosition(1.5f, 1.5f, -1.5f, position);
+    }
+
+    @Test
+    public void slidesAlongWall() {
+        final Collider collider = new Collider(0.3f, 1.8f);
+        final Vector3f position = new Vector3f(2.0f, 1.0f, 0.5f), motion = new Vector3f(2.0f, 0.0f, 1.0f);
+        assertEquals(Collider.AXIS_X, collider.move(world(), position, motion));
+        assertPosition(2.7f, 1.0f, 1.5f, position);
+        assertTrue(position.x + 0.3f < 3.0f);
+        assertEquals(0.0f, motion.x);
+    }
+
+    @Test
+    public void stepBlocksWithoutClimbing() {
+        final Collider collider = new Collider(0.3f, 1.8f);
+        final Vector3f position = new Vector3f(0.5f, 1.0f, 0.5f), motion = new Vector3f(-3.0f, 0.0f, 0.0f);
+        assertEquals(Collider.AXIS_X, collider.move(world(), position, motion));
+        assertPosition(-0.7f, 1.0f, 0.5f, position);
+
+        // над ступенью параллелепипед проходит
+        position.set(0.5f, 2.0f, 0.5f);
+        motion.set(-3.0f, 0.0f, 0.0f);
+        assertEquals(0, collider.move(world(), position, motion));
+        assertPosition(-2.5f, 2.0f, 0.5f, position);
+    }
+
+    @Test
+    public void ceilingStopsJumpButNotHorizontalMotion() {
+        final Collider collider = new Collider(0.3f, 1.8f);
+        final Vector3f position = new Vector3f(-6.0f, 1.0f, 0.5f), motion = new Vector3f(0.5f, 5.0f, 0.0f);
+        assertEquals(Collider.AXIS_Y, collider.move(world(), position, motion));
+        assertPosition(-5.5f, 4.0f - 1.8f, 0.5f, position);
+        assertTrue(position.y + 1.8f < 4.0f);
+        assertEquals(0.0f, motion.y);
+    }
+}
@@ -0,0 +1,83 @@
+package engine;
+
+import controller.Commands;
+import controller.RTController;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static controller.Commands.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandScriptTest {
+
+    private static Set<Commands> held(RTController controller) {
+        return controller.getHeldCommands(EnumSet.noneOf(Commands.class));
+    }
+
+    @Test
+    public void parsedStepsDriveController() {
+        final CommandScript script = CommandScript.parse("""
+                # разгон вперёд
+                0 hold FORWARD
+                0 hold SPEED_1   # быстро
+                2 release FORWARD
+
+                3 press ADD
+                3 look 0 -2 0
+                """);
+        final RTController controller = new RTController();
+        final HeadlessOrientation orientation = new HeadlessOrientation();
+        assertEquals(4, script.length());
+
+        script.apply(0, controller, orientation);
+        assertEquals(EnumSet.of(FORWARD, SPEED_1), held(controller));
+        script.apply(1, controller, orientation);
+        assertEquals(EnumSet.of(FORWARD, SPEED_1), held(controller));
+        script.apply(2, controller, orientation);
+        assertEquals(EnumSet.of(SPEED_1), held(controller));
+        script.apply(3, controller, orientation);
+        final List<Commands> pressed = new ArrayList<>();
+        controller.getCommandQueue().drain((command, timestamp) -> pressed.add(command));
+        assertEquals(List.of(ADD), pressed);
+        assertEquals(new Vector3f(0, -1, 0), new Vector3f(orientation.getOrientation()));
+
+        script.apply(0, controller, orientation);
+        assertEquals(EnumSet.of(FORWARD, SPEED_1), held(controller));
+    }
+
+    @Test
+    public void reportsInvalidLine() {
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> CommandScript.parse("0 hold FORWARD\n1 jump"));
+        assertTrue(e.getMessage().contains("строке 2"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> CommandScript.parse("0 press FLY"));
+        assertThrows(IllegalArgumentException.class, () -> CommandScript.parse("0 look 1 0"));
+        assertThrows(IllegalArgumentException.class, () -> new CommandScript().hold(-1, FORWARD));
+    }
+
+    @Test
+    public void headlessRuntimeFollowsScript() {
+        final RTController controller = new RTController();
+        final HeadlessOrientation orientation = new HeadlessOrientation();
+        final EngineRuntime runtime = new EngineRuntime(controller, EngineRuntime.generateBlockLayer(new Vector3i(0, 5, 0), 25), orientation);
+        controller.hookEngineRuntime(runtime);
+
+        runtime.runScript(new CommandScript().look(0, 1, -1, 0).press(300, REMOVE), 301);
+        final Vector3f position = runtime.getModel().getPosition();
+        assertEquals(6.0f, position.y, 0.01f);
+        assertFalse(runtime.blocks.contains(1, 5, 0));
+        assertTrue(runtime.blocks.contains(0, 5, 0));
+
+        runtime.runScript(CommandScript.parse("0 look 0 0 -1\n0 hold FORWARD\n10 release FORWARD"), 20);
+        final Vector3f moved = runtime.getModel().getPosition();
+        assertTrue(moved.z < position.z - 1.0f, moved.toString());
+        assertEquals(6.0f, moved.y, 0.01f);
+        assertTrue(held(controller).isEmpty());
+    }
+}
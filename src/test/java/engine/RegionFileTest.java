@@ -0,0 +1,167 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegionFileTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Содержимое хранилища без масок сторон: координата - id и id сторон
+     */
+    private static Map<String, String> dump(BlockStore store) {
+        final Map<String, String> blocks = new TreeMap<>();
+        store.forEach((x, y, z, id, sideIds, faces) -> blocks.put(x + "," + y + "," + z, id + Arrays.toString(sideIds)));
+        return blocks;
+    }
+
+    /**
+     * Столбец (cx, cz) из секций с y от 0 до height - 1, в каждой секции по одному слою блоков.
+     * При noisy блоки получают случайные id, и данные столбца занимают несколько секторов
+     */
+    private static World column(int cx, int cz, int height, boolean noisy, long seed) {
+        final World world = new World();
+        final Random random = new Random(seed);
+        for (int cy = 0; cy < height; cy++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                for (int x = 0; x < Chunk.SIZE; x++) {
+                    final int id = noisy ? random.nextInt(200) : 0;
+                    for (int y = 0; y < (noisy ? Chunk.SIZE : 1); y++) {
+                        world.set((cx << Chunk.SHIFT) + x, (cy << Chunk.SHIFT) + y, (cz << Chunk.SHIFT) + z, id,
+                                new int[]{id, id + 1, id, id, id, (int) seed});
+                    }
+                }
+            }
+        }
+        return world;
+    }
+
+    private static void write(RegionFile region, int cx, int cz, World world) throws IOException {
+        final long[] keys = world.chunkKeys();
+        region.writeColumn(cx, cz, world, keys, keys.length);
+    }
+
+    private static World read(RegionFile region, int cx, int cz) throws IOException {
+        final World world = new World();
+        region.readColumn(cx, cz, world);
+        return world;
+    }
+
+    @Test
+    public void writeReadAndRewriteColumn() throws IOException {
+        final Path path = directory.resolve("r.0.0.region");
+        final World first = column(3, -2, 3, false, 1), second = column(3, -2, 2, true, 2);
+        try (RegionFile region = new RegionFile(path)) {
+            assertFalse(region.hasColumn(3, -2));
+            write(region, 3, -2, first);
+            assertTrue(region.hasColumn(3, -2));
+            assertFalse(region.hasColumn(4, -2));
+            assertEquals(dump(first), dump(read(region, 3, -2)));
+
+            write(region, 3, -2, second);
+            assertEquals(dump(second), dump(read(region, 3, -2)));
+        }
+        try (RegionFile region = new RegionFile(path)) {
+            assertEquals(dump(second), dump(read(region, 3, -2)));
+            region.writeColumn(3, -2, new World(), new long[0], 0);
+            assertFalse(region.hasColumn(3, -2));
+            assertEquals(0, read(region, 3, -2).size());
+        }
+    }
+
+    @Test
+    public void freedSectorsAreReused() throws IOException {
+        final World small = column(0, 0, 1, false, 3), large = column(0, 0, 1, true, 4), other = column(1, 0, 1, false, 5);
+        try (RegionFile region = new RegionFile(directory.resolve("r.0.0.region"))) {
+            write(region, 0, 0, small);
+            write(region, 1, 0, other);
+            final int initial = region.sectorCount();
+            for (int i = 0; i < 20; i++) {
+                write(region, 0, 0, large);
+                write(region, 0, 0, small);
+            }
+            // без повторного использования файл рос бы на размер большого столбца (несколько секторов) за итерацию
+            assertTrue(region.sectorCount() <= initial + 8, "sectors: " + region.sectorCount());
+            assertEquals(dump(small), dump(read(region, 0, 0)));
+            assertEquals(dump(other), dump(read(region, 1, 0)));
+
+            region.writeColumn(0, 0, new World(), new long[0], 0);
+            region.writeColumn(1, 0, new World(), new long[0], 0);
+            assertTrue(region.sectorCount() < initial);
+        }
+    }
+
+    /**
+     * Запись таблицы смещений столбца (cx, cz) локальных координат: сектор, длина, CRC32
+     */
+    private static int[] entry(Path path, int cx, int cz) throws IOException {
+        final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(path));
+        final int offset = (cz * RegionFile.SIZE + cx) * 12;
+        return new int[]{header.getInt(offset), header.getInt(offset + 4), header.getInt(offset + 8)};
+    }
+
+    private static void putEntry(Path path, int cx, int cz, int[] entry) throws IOException {
+        final byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putInt((cz * RegionFile.SIZE + cx) * 12, entry[0])
+                .putInt((cz * RegionFile.SIZE + cx) * 12 + 4, entry[1])
+                .putInt((cz * RegionFile.SIZE + cx) * 12 + 8, entry[2]);
+        Files.write(path, bytes);
+    }
+
+    @Test
+    public void rewriteDoesNotOverwriteOldData() throws IOException {
+        final Path path = directory.resolve("r.0.0.region");
+        try (RegionFile region = new RegionFile(path)) {
+            write(region, 0, 0, column(0, 0, 1, true, 6));
+        }
+        final int[] before = entry(path, 0, 0);
+        try (RegionFile region = new RegionFile(path)) {
+            write(region, 0, 0, column(0, 0, 1, true, 7));
+        }
+        final int[] after = entry(path, 0, 0);
+        assertEquals((before[1] + 4095) / 4096, (after[1] + 4095) / 4096);
+        assertNotEquals(before[0], after[0]);
+        // прежняя версия столбца цела: запись таблицы со старым сектором читается без ошибок
+        putEntry(path, 0, 0, before);
+        try (RegionFile region = new RegionFile(path)) {
+            assertEquals(dump(column(0, 0, 1, true, 6)), dump(read(region, 0, 0)));
+        }
+    }
+
+    @Test
+    public void corruptEntriesFailWithIOException() throws IOException {
+        final Path path = directory.resolve("r.0.0.region");
+        try (RegionFile region = new RegionFile(path)) {
+            write(region, 0, 0, column(0, 0, 2, false, 8));
+        }
+        final int[] entry = entry(path, 0, 0);
+        final int[][] corrupt = {
+                {entry[0], -5, entry[2]},
+                {entry[0], Integer.MAX_VALUE, entry[2]},
+                {1_000_000, entry[1], entry[2]},
+                {1, entry[1], entry[2]},
+                {entry[0], entry[1], entry[2] + 1},
+        };
+        for (int[] bad : corrupt) {
+            putEntry(path, 0, 0, bad);
+            try (RegionFile region = new RegionFile(path)) {
+                assertThrows(IOException.class, () -> read(region, 0, 0));
+                // повреждённая запись не мешает записи других столбцов
+                write(region, 1, 0, column(1, 0, 1, false, 9));
+                assertEquals(dump(column(1, 0, 1, false, 9)), dump(read(region, 1, 0)));
+            }
+        }
+    }
+}
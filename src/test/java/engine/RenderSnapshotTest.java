@@ -0,0 +1,48 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenderSnapshotTest {
+    private static final int[] SIDES = {1, 1, 1, 1, 1, 1};
+
+    private static List<Long> changed(RenderSnapshot from, RenderSnapshot to) {
+        final List<Long> keys = new ArrayList<>();
+        from.forEachChangedUntil(to, keys::add);
+        return keys;
+    }
+
+    @Test
+    public void publishedSnapshotIsNotAffectedByLaterEdits() {
+        final World world = new World();
+        world.set(1, 2, 3, 0, SIDES);
+        final RenderSnapshot first = new RenderSnapshot(0, world.snapshot(), new long[0]);
+        world.remove(1, 2, 3);
+        world.set(40, 2, 3, 0, SIDES);
+        final RenderSnapshot second = first.append(world.snapshot(), new long[]{World.chunkKey(1, 2, 3), World.chunkKey(40, 2, 3)});
+
+        assertTrue(first.blocks().contains(1, 2, 3));
+        assertFalse(first.blocks().contains(40, 2, 3));
+        assertFalse(second.blocks().contains(1, 2, 3));
+        assertTrue(second.blocks().contains(40, 2, 3));
+        assertEquals(1, second.epoch());
+    }
+
+    @Test
+    public void collectsChangesOfSkippedVersionsOnce() {
+        final World world = new World();
+        final RenderSnapshot first = new RenderSnapshot(0, world.snapshot(), new long[0]);
+        final RenderSnapshot second = first.append(world.snapshot(), new long[]{1, 2});
+        final RenderSnapshot third = second.append(world.snapshot(), new long[]{2, 3});
+        final RenderSnapshot fourth = third.append(world.snapshot(), new long[]{4});
+
+        assertEquals(List.of(1L, 2L), changed(first, second));
+        assertEquals(List.of(1L, 2L, 3L), changed(first, third));
+        assertEquals(List.of(2L, 3L, 4L), changed(second, fourth));
+        assertEquals(List.of(), changed(fourth, fourth));
+    }
+}
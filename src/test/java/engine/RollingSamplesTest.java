@@ -0,0 +1,30 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RollingSamplesTest {
+
+    @Test
+    public void percentilesOfPartialWindow() {
+        final RollingSamples samples = new RollingSamples(8);
+        assertEquals(0, samples.percentile(50));
+        for (long value : new long[]{5, 1, 4, 2, 3}) samples.add(value);
+        assertEquals(5, samples.count());
+        assertEquals(1, samples.percentile(0));
+        assertEquals(3, samples.percentile(50));
+        assertEquals(5, samples.percentile(99));
+        assertEquals(5, samples.percentile(100));
+    }
+
+    @Test
+    public void oldSamplesAreEvicted() {
+        final RollingSamples samples = new RollingSamples(4);
+        for (long value = 1; value <= 10; value++) samples.add(value * 100);
+        assertEquals(10, samples.count());
+        assertEquals(700, samples.percentile(0));
+        assertEquals(800, samples.percentile(50));
+        assertEquals(1000, samples.percentile(100));
+    }
+}
@@ -0,0 +1,122 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateFileTest {
+    private static final int[] STONE = {1, 1, 1, 1, 1, 1};
+    private static final int[] GRASS = {2, 3, 3, 4, 3, 3};
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Содержимое хранилища: координата - id, id сторон и маска сторон
+     */
+    private static Map<String, String> dump(BlockStore store) {
+        final Map<String, String> blocks = new TreeMap<>();
+        store.forEach((x, y, z, id, sideIds, faces) ->
+                blocks.put(x + "," + y + "," + z, id + Arrays.toString(sideIds) + faces));
+        return blocks;
+    }
+
+    private static World load(Path path) throws IOException {
+        final World world = new World();
+        StateFile.load(path, world);
+        world.sweepFaces(world.chunkKeys());
+        return world;
+    }
+
+    /**
+     * Двоичный файл с заголовком и числами после него в кодировке varint
+     */
+    private static Path binary(Path path, int... varInts) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.writeBytes(ByteBuffer.allocate(8).putInt(StateFile.MAGIC).putInt(StateFile.VERSION).array());
+        for (int value : varInts) {
+            while ((value & ~0x7F) != 0) {
+                bytes.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write(value);
+        }
+        return Files.write(path, bytes.toByteArray());
+    }
+
+    @Test
+    public void binaryRoundTripKeepsBlocksAndFaces() throws IOException {
+        final World world = new World();
+        for (int x = -20; x < 5; x++) {
+            for (int z = -3; z < 3; z++) world.set(x, -17, z, 0, STONE);
+        }
+        world.set(-1, -16, -1, 7, GRASS);
+        world.set(-1, -15, -1, 7, GRASS);
+        world.set(100, 40, -100, 255, new int[]{10, 20, 30, 40, 50, 60});
+        world.sweepFaces(world.chunkKeys());
+
+        final Path path = directory.resolve("state");
+        StateFile.save(world.snapshot(), path);
+        final World loaded = load(path);
+
+        assertEquals(dump(world), dump(loaded));
+        assertEquals(world.size(), loaded.size());
+        assertEquals(Block.ALL_FACES & ~(1 << 1) & ~(1 << 2), loaded.getFaces(-1, -16, -1));
+        assertEquals(30, loaded.getSideId(100, 40, -100, 2));
+    }
+
+    @Test
+    public void emptyWorldRoundTrip() throws IOException {
+        final Path path = directory.resolve("empty");
+        StateFile.save(new World(), path);
+        assertEquals(0, load(path).size());
+    }
+
+    @Test
+    public void importsOldTextFormat() throws IOException {
+        final Path path = directory.resolve("text");
+        Files.writeString(path, String.join("\n",
+                "Block: cord=[\t-1\t2\t-3\t],\tid=4,\tsideIds=[1, 2, 3, 4, 5, 6]",
+                "",
+                "Block: cord=[\t-1\t3\t-3\t],\tid=0,\tsideIds=[17, 17, 17, 17, 17, 17]"
+        ), StandardCharsets.UTF_8);
+        final World loaded = load(path);
+
+        assertEquals(2, loaded.size());
+        assertEquals(4, loaded.getId(-1, 2, -3));
+        assertEquals(6, loaded.getSideId(-1, 2, -3, 5));
+        assertEquals(0, loaded.getId(-1, 3, -3));
+        assertEquals(Block.ALL_FACES & ~(1 << 1), loaded.getFaces(-1, 2, -3));
+    }
+
+    @Test
+    public void corruptFilesFailWithIOException() throws IOException {
+        final World world = new World();
+        for (int x = 0; x < 40; x++) world.set(x, 0, 0, 1, STONE);
+        final Path saved = directory.resolve("saved");
+        StateFile.save(world, saved);
+        final byte[] bytes = Files.readAllBytes(saved);
+        final Path truncated = Files.write(directory.resolve("truncated"), Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> load(truncated));
+
+        final Path version = binary(directory.resolve("version"));
+        Files.write(version, ByteBuffer.allocate(8).putInt(StateFile.MAGIC).putInt(StateFile.VERSION + 1).array());
+        assertThrows(IOException.class, () -> load(version));
+
+        assertThrows(IOException.class, () -> load(binary(directory.resolve("count"), -1)));
+        assertThrows(IOException.class, () -> load(binary(directory.resolve("palette"), 1, 0, 0, 0, -1, Chunk.VOLUME, 0)));
+        assertThrows(IOException.class, () -> load(binary(directory.resolve("entry"), 1, 0, 0, 0, 0, 1, -1)));
+        assertThrows(IOException.class, () -> load(binary(directory.resolve("length"), 1, 0, 0, 0, 0, Chunk.VOLUME + 1, 0)));
+    }
+}
@@ -0,0 +1,78 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TickSchedulerTest {
+    /**
+     * Поддельные часы: время идёт только при ожидании и внутри тактов
+     */
+    private static class FakeClock {
+        long now = 1_000_000L;
+    }
+
+    private static final long TICK = 1_000_000_000L / 100;
+
+    @Test
+    public void keepsFixedRateWithSleeps() {
+        final FakeClock clock = new FakeClock();
+        final TickScheduler scheduler = new TickScheduler(100, 5, () -> clock.now, nanos -> clock.now += nanos);
+        final int[] ticks = {0};
+        scheduler.run(() -> clock.now < 3_000_000_000L, () -> {
+            ticks[0]++;
+            clock.now += TICK / 4;
+        });
+        assertEquals(299, ticks[0], 1);
+        assertEquals(100.0, scheduler.metrics().tps(), 1.0);
+        assertEquals(0, scheduler.metrics().overruns());
+        assertEquals(0, scheduler.metrics().droppedTicks());
+        assertEquals(TICK / 4, scheduler.metrics().p50());
+    }
+
+    @Test
+    public void limitsCatchUpAndDropsTheRest() {
+        final FakeClock clock = new FakeClock();
+        final TickScheduler scheduler = new TickScheduler(100, 5, () -> clock.now, nanos -> clock.now += nanos);
+        final int[] ticks = {0};
+        scheduler.step(() -> ticks[0]++);
+        clock.now += 20 * TICK + TICK / 2;
+        assertEquals(5, scheduler.step(() -> ticks[0]++));
+        assertEquals(5, ticks[0]);
+        assertEquals(15, scheduler.metrics().droppedTicks());
+        assertEquals(0.5f, scheduler.alpha(), 1e-3f);
+    }
+
+    @Test
+    public void countsOverrunsAndPercentiles() {
+        final FakeClock clock = new FakeClock();
+        final TickScheduler scheduler = new TickScheduler(100, 1000, () -> clock.now, nanos -> clock.now += nanos);
+        final int[] ticks = {0};
+        scheduler.run(() -> ticks[0] < 200, () -> {
+            clock.now += ticks[0] % 50 == 0 ? 3 * TICK : TICK / 10;
+            ticks[0]++;
+        });
+        final TickMetrics metrics = scheduler.metrics();
+        assertEquals(4, metrics.overruns());
+        assertEquals(200, metrics.totalTicks());
+        assertEquals(TICK / 10, metrics.p50());
+        assertEquals(3 * TICK, metrics.p99());
+        assertEquals(0, metrics.droppedTicks());
+    }
+
+    @Test
+    public void interpolatesBetweenTicks() {
+        final FakeClock clock = new FakeClock();
+        final TickScheduler scheduler = new TickScheduler(100, 5, () -> clock.now, nanos -> clock.now += nanos);
+        scheduler.step(() -> {
+        });
+        clock.now += TICK + TICK / 4;
+        assertEquals(1, scheduler.step(() -> {
+        }));
+        assertEquals(0.25f, scheduler.alpha(), 1e-3f);
+        clock.now += TICK / 2;
+        assertEquals(0, scheduler.step(() -> {
+        }));
+        assertEquals(0.75f, scheduler.alpha(), 1e-3f);
+    }
+}
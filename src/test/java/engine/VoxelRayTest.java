@@ -0,0 +1,85 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VoxelRayTest {
+    private static final int[] STONE = {1, 1, 1, 1, 1, 1};
+    private static final float EPSILON = 1e-5f;
+
+    /**
+     * Пол на высоте 0 от -8 до 7 по x и z и отдельный блок (3, 2, -4)
+     */
+    private static World world() {
+        final World world = new World();
+        for (int z = -8; z < 8; z++) {
+            for (int x = -8; x < 8; x++) world.set(x, 0, z, 0, STONE);
+        }
+        world.set(3, 2, -4, 0, STONE);
+        return world;
+    }
+
+    @Test
+    public void hitsFloorFromAbove() {
+        final RayHit hit = new RayHit();
+        assertTrue(VoxelRay.trace(world(), -2.5f, 4.0f, 1.25f, 0.0f, -1.0f, 0.0f, 10.0f, hit));
+        assertTrue(hit.hit);
+        assertEquals(-3, hit.x);
+        assertEquals(0, hit.y);
+        assertEquals(1, hit.z);
+        assertEquals(0, hit.normalX);
+        assertEquals(1, hit.normalY);
+        assertEquals(0, hit.normalZ);
+        assertEquals(1, hit.side());
+        assertEquals(-2.5f, hit.pointX, EPSILON);
+        assertEquals(1.0f, hit.pointY, EPSILON);
+        assertEquals(1.25f, hit.pointZ, EPSILON);
+        assertEquals(3.0f, hit.distance, EPSILON);
+    }
+
+    @Test
+    public void hitsSideOfBlockAlongDiagonal() {
+        final RayHit hit = new RayHit();
+        // луч проходит над полом и входит в блок (3, 2, -4) через сторону -x
+        assertTrue(VoxelRay.trace(world(), 0.5f, 2.5f, -1.25f, 1.0f, 0.0f, -1.0f, 10.0f, hit));
+        assertEquals(3, hit.x);
+        assertEquals(2, hit.y);
+        assertEquals(-4, hit.z);
+        assertEquals(-1, hit.normalX);
+        assertEquals(0, hit.normalY);
+        assertEquals(0, hit.normalZ);
+        assertEquals(4, hit.side());
+        assertEquals(3.0f, hit.pointX, EPSILON);
+        assertEquals(2.5f, hit.pointY, EPSILON);
+        assertEquals(-3.75f, hit.pointZ, EPSILON);
+        assertEquals(2.5f * (float) Math.sqrt(2.0), hit.distance, EPSILON);
+    }
+
+    @Test
+    public void missesWhenNothingIsInRange() {
+        final World world = world();
+        final RayHit hit = new RayHit();
+        assertFalse(VoxelRay.trace(world, 0.5f, 4.0f, 0.5f, 0.0f, 1.0f, 0.0f, 50.0f, hit));
+        assertFalse(hit.hit);
+        assertEquals(-1, hit.side());
+        // до пола 3 блока, луч короче
+        assertFalse(VoxelRay.trace(world, 0.5f, 4.0f, 0.5f, 0.0f, -1.0f, 0.0f, 2.5f, hit));
+        assertFalse(VoxelRay.trace(world, 0.5f, 4.0f, 0.5f, 0.0f, 0.0f, 0.0f, 10.0f, hit));
+    }
+
+    @Test
+    public void rayStartingInsideBlockHitsItImmediately() {
+        final RayHit hit = new RayHit();
+        assertTrue(VoxelRay.trace(world(), 3.5f, 2.5f, -3.5f, 1.0f, 1.0f, 0.0f, 10.0f, hit));
+        assertEquals(3, hit.x);
+        assertEquals(2, hit.y);
+        assertEquals(-4, hit.z);
+        assertEquals(0, hit.normalX);
+        assertEquals(0, hit.normalY);
+        assertEquals(0, hit.normalZ);
+        assertEquals(-1, hit.side());
+        assertEquals(0.0f, hit.distance);
+        assertEquals(3.5f, hit.pointX, EPSILON);
+    }
+}
@@ -0,0 +1,196 @@
+package engine;
+
+import org.joml.Vector3i;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldEditTest {
+    private static final int[] STONE = {1, 1, 1, 1, 1, 1};
+    private static final int[] GRASS = {2, 3, 3, 4, 3, 3};
+
+    /**
+     * Содержимое хранилища: координата - id, id сторон и маска сторон
+     */
+    private static Map<String, String> dump(BlockStore store) {
+        final Map<String, String> blocks = new TreeMap<>();
+        store.forEach((x, y, z, id, sideIds, faces) ->
+                blocks.put(x + "," + y + "," + z, id + Arrays.toString(sideIds) + faces));
+        return blocks;
+    }
+
+    /**
+     * Эталон: поблочные изменения и пересчёт сторон всех секций через BlockStore.updateFaces()
+     */
+    private static void updateAllFaces(World world) {
+        world.forEachChunk(world::updateFaces);
+    }
+
+    @Test
+    public void bulkEditMatchesPerBlockEdits() {
+        final World bulk = new World();
+        new WorldEdit()
+                .fill(new Vector3i(-20, 0, -20), new Vector3i(20, 3, 20), 1, STONE)
+                .clear(new Vector3i(-5, 2, -5), new Vector3i(5, 10, 5))
+                .replace(new Vector3i(20, 3, 20), new Vector3i(-20, 3, -20), 1, 2, GRASS)
+                .apply(bulk);
+
+        final World reference = new World();
+        for (int y = 0; y <= 3; y++) {
+            for (int z = -20; z <= 20; z++) {
+                for (int x = -20; x <= 20; x++) {
+                    if (y >= 2 && Math.abs(x) <= 5 && Math.abs(z) <= 5) continue;
+                    reference.set(x, y, z, y == 3 ? 2 : 1, y == 3 ? GRASS : STONE);
+                }
+            }
+        }
+        updateAllFaces(reference);
+
+        assertEquals(dump(reference), dump(bulk));
+        assertEquals(41 * 41 * 4 - 11 * 11 * 2, bulk.size());
+    }
+
+    @Test
+    public void largeRegionIsEditedInParallel() {
+        final World bulk = new World();
+        final long[] changed = new WorldEdit()
+                .fill(new Vector3i(0, 0, 0), new Vector3i(99, 40, 99), 1, STONE)
+                .clear(new Vector3i(10, 10, 10), new Vector3i(89, 30, 89))
+                .apply(bulk);
+
+        final World reference = new World();
+        for (int y = 0; y <= 40; y++) {
+            for (int z = 0; z < 100; z++) {
+                for (int x = 0; x < 100; x++) {
+                    if (y >= 10 && y <= 30 && x >= 10 && x <= 89 && z >= 10 && z <= 89) continue;
+                    reference.set(x, y, z, 1, STONE);
+                }
+            }
+        }
+        updateAllFaces(reference);
+
+        assertEquals(dump(reference), dump(bulk));
+        final Set<Long> dirty = new HashSet<>();
+        bulk.drainDirtyChunks(dirty::add);
+        final Set<Long> expected = new HashSet<>();
+        for (long key : changed) expected.add(key);
+        assertEquals(expected, dirty);
+        assertEquals(toSet(bulk.chunkKeys()), dirty);
+    }
+
+    @Test
+    public void pasteCopiesSchematicWithOffset() {
+        final World schematic = new World();
+        schematic.set(0, 0, 0, 1, STONE);
+        schematic.set(1, 0, 0, 2, GRASS);
+        schematic.set(1, 1, 0, 2, GRASS);
+
+        final World world = new World();
+        world.set(100, 50, 100, 1, STONE);
+        world.set(101, 51, 100, 1, STONE);
+        world.set(102, 50, 100, 1, STONE);
+        updateAllFaces(world);
+        new WorldEdit().paste(schematic, new Vector3i(100, 50, 100)).apply(world);
+
+        final World reference = new World();
+        reference.set(100, 50, 100, 1, STONE);
+        reference.set(101, 50, 100, 2, GRASS);
+        reference.set(101, 51, 100, 2, GRASS);
+        reference.set(102, 50, 100, 1, STONE);
+        updateAllFaces(reference);
+        assertEquals(dump(reference), dump(world));
+    }
+
+    @Test
+    public void neighbourChunkFacesAreSweptOnce() {
+        final World world = new World();
+        world.set(16, 0, 0, 1, STONE);
+        updateAllFaces(world);
+        world.drainDirtyChunks(key -> {
+        });
+
+        final long[] changed = new WorldEdit().fill(new Vector3i(0, 0, 0), new Vector3i(15, 0, 0), 1, STONE).apply(world);
+        final long left = World.key(0, 0, 0), right = World.key(1, 0, 0);
+        assertEquals(Set.of(left, right), toSet(changed));
+        assertEquals(Block.ALL_FACES & ~(1 << 4), world.getFaces(16, 0, 0));
+        assertEquals(Block.ALL_FACES & ~(1 << 4) & ~(1 << 5), world.getFaces(15, 0, 0));
+
+        final long[] cleared = new WorldEdit().clear(new Vector3i(0, 0, 0), new Vector3i(15, 0, 0)).apply(world);
+        assertEquals(Set.of(left, right), toSet(cleared));
+        assertNull(world.getChunk(left));
+        assertEquals(Block.ALL_FACES, world.getFaces(16, 0, 0));
+        final Set<Long> dirty = new HashSet<>();
+        world.drainDirtyChunks(dirty::add);
+        assertEquals(Set.of(left, right), dirty);
+    }
+
+    @Test
+    public void clearAndReplaceSkipAbsentChunks() {
+        final World world = new World();
+        world.set(0, 0, 0, 1, STONE);
+        final long present = World.key(0, 0, 0);
+        final Set<Long> visited = new HashSet<>();
+        world.edit(new long[]{present, World.key(1, 0, 0), World.key(0, 5, 0)}, key -> false, (key, chunk) -> {
+            synchronized (visited) {
+                visited.add(key);
+            }
+            return false;
+        });
+        assertEquals(Set.of(present), visited);
+        assertEquals(1, world.chunkKeys().length);
+
+        final long[] changed = new WorldEdit()
+                .clear(new Vector3i(-100, -100, -100), new Vector3i(100, 100, 100))
+                .replace(new Vector3i(-100, -100, -100), new Vector3i(100, 100, 100), 1, 2, GRASS)
+                .fill(new Vector3i(40, 40, 40), new Vector3i(40, 40, 40), 1, STONE)
+                .apply(world);
+        assertEquals(Set.of(present, World.key(2, 2, 2)), toSet(changed));
+        assertFalse(world.contains(0, 0, 0));
+        assertTrue(world.contains(40, 40, 40));
+        assertEquals(1, world.size());
+        assertEquals(1, world.chunkKeys().length);
+    }
+
+    @Test
+    public void editDoesNotChangePublishedSnapshot() {
+        final World world = new World();
+        new WorldEdit().fill(new Vector3i(0, 0, 0), new Vector3i(3, 3, 3), 1, STONE).apply(world);
+        final BlockStore snapshot = world.snapshot();
+        final Map<String, String> before = dump(snapshot);
+        new WorldEdit().clear(new Vector3i(0, 0, 0), new Vector3i(1, 3, 3)).apply(world);
+        assertEquals(before, dump(snapshot));
+        assertEquals(32, world.size());
+    }
+
+    @Test
+    public void successiveSnapshotsAndReplacedWorldsStayIndependent() {
+        final World world = new World();
+        world.set(0, 0, 0, 1, STONE);
+        final BlockStore first = world.snapshot();
+        world.set(1, 0, 0, 1, STONE);
+        final BlockStore second = world.snapshot();
+        world.set(2, 0, 0, 1, STONE);
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertEquals(3, world.size());
+
+        final World source = new World();
+        source.set(5, 5, 5, 0, GRASS);
+        final World target = new World();
+        target.replaceWith(source);
+        source.set(6, 5, 5, 0, GRASS);
+        target.set(4, 5, 5, 0, STONE);
+        assertFalse(target.contains(6, 5, 5));
+        assertFalse(source.contains(4, 5, 5));
+        assertEquals(2, source.size());
+        assertEquals(2, target.size());
+    }
+
+    private static Set<Long> toSet(long[] keys) {
+        final Set<Long> set = new HashSet<>();
+        for (long key : keys) set.add(key);
+        return set;
+    }
+}
@@ -0,0 +1,74 @@
+package graphics;
+
+import engine.Chunk;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkConnectivityTest {
+    /**
+     * Стороны: 0 - +z, 1 - +y, 2 - -y, 3 - -z, 4 - -x, 5 - +x
+     */
+    private static final int NEAR = 0, UP = 1, DOWN = 2, FAR = 3, LEFT = 4, RIGHT = 5;
+
+    private final ChunkConnectivity connectivity = new ChunkConnectivity();
+
+    private static long[] solid(int x0, int y0, int z0, int x1, int y1, int z1) {
+        final long[] solid = new long[Chunk.VOLUME / 64];
+        fill(solid, x0, y0, z0, x1, y1, z1);
+        return solid;
+    }
+
+    private static void fill(long[] solid, int x0, int y0, int z0, int x1, int y1, int z1) {
+        for (int x = x0; x < x1; x++)
+            for (int y = y0; y < y1; y++)
+                for (int z = z0; z < z1; z++) ChunkConnectivity.setSolid(solid, Chunk.index(x, y, z));
+    }
+
+    private static void clear(long[] solid, int x0, int y0, int z0, int x1, int y1, int z1) {
+        for (int x = x0; x < x1; x++)
+            for (int y = y0; y < y1; y++)
+                for (int z = z0; z < z1; z++) {
+                    final int index = Chunk.index(x, y, z);
+                    solid[index >> 6] &= ~(1L << index);
+                }
+    }
+
+    @Test
+    public void emptyAndSparseChunksAreFullyConnected() {
+        assertEquals(ChunkConnectivity.ALL, connectivity.compute(new long[Chunk.VOLUME / 64]));
+        assertEquals(ChunkConnectivity.ALL, connectivity.compute(solid(0, 0, 0, 15, 1, 15)));
+    }
+
+    @Test
+    public void solidChunkConnectsNothing() {
+        assertEquals(0, connectivity.compute(solid(0, 0, 0, 16, 16, 16)));
+    }
+
+    @Test
+    public void floorSeparatesTopFromBottom() {
+        final long connections = connectivity.compute(solid(0, 7, 0, 16, 8, 16));
+        assertFalse(ChunkConnectivity.connected(connections, UP, DOWN));
+        assertTrue(ChunkConnectivity.connected(connections, UP, LEFT));
+        assertTrue(ChunkConnectivity.connected(connections, DOWN, NEAR));
+        assertTrue(ChunkConnectivity.connected(connections, LEFT, RIGHT));
+    }
+
+    @Test
+    public void tunnelConnectsOnlyItsEnds() {
+        final long[] solid = solid(0, 0, 0, 16, 16, 16);
+        clear(solid, 7, 7, 0, 9, 9, 16);
+        final long connections = connectivity.compute(solid);
+        assertTrue(ChunkConnectivity.connected(connections, NEAR, FAR));
+        assertTrue(ChunkConnectivity.connected(connections, FAR, NEAR));
+        assertFalse(ChunkConnectivity.connected(connections, NEAR, UP));
+        assertFalse(ChunkConnectivity.connected(connections, LEFT, RIGHT));
+    }
+
+    @Test
+    public void enclosedCavityConnectsNothing() {
+        final long[] solid = solid(0, 0, 0, 16, 16, 16);
+        clear(solid, 4, 4, 4, 12, 12, 12);
+        assertEquals(0, connectivity.compute(solid));
+    }
+}
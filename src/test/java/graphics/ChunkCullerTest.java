@@ -0,0 +1,71 @@
+package graphics;
+
+import engine.World;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkCullerTest {
+    /**
+     * Камера в начале координат, смотрящая вдоль -z
+     */
+    private static Matrix4f lookingForward() {
+        return new Matrix4f().perspective((float) Math.toRadians(45), 1f, 0.1f, 10000f)
+                .lookAt(new Vector3f(0, 0, 0), new Vector3f(0, 0, -1), new Vector3f(0, 1, 0));
+    }
+
+    private static Set<Integer> firstIndices(ChunkCuller culler) {
+        final Set<Integer> result = new HashSet<>();
+        final IntBuffer commands = culler.commands();
+        for (int i = 0; i < culler.commandCount(); i++) result.add(commands.get(i * ChunkCuller.COMMAND_SIZE + 2));
+        return result;
+    }
+
+    @Test
+    public void keepsOnlyChunksInsideFrustum() {
+        final ChunkCuller culler = new ChunkCuller();
+        culler.set(World.key(0, 0, -3), 0, 6);
+        culler.set(World.key(0, 0, 3), 6, 6);
+        culler.set(World.key(40, 0, -3), 12, 6);
+        culler.set(World.key(-1, -1, -1), 18, 6);
+
+        assertEquals(2, culler.cull(lookingForward(), 0, 0));
+        assertEquals(2, culler.visible());
+        assertEquals(Set.of(0, 18), firstIndices(culler));
+    }
+
+    @Test
+    public void writesIndirectCommandsWithSegmentOffsets() {
+        final ChunkCuller culler = new ChunkCuller();
+        culler.set(World.key(0, 0, -2), 30, 12);
+        assertEquals(1, culler.cull(lookingForward(), 1000, 500));
+        culler.append(4, 1100, 500);
+        assertEquals(2, culler.commandCount());
+        final IntBuffer commands = culler.commands();
+        assertArrayEquals(new int[]{12, 1, 1030, 500, 0, 4, 1, 1100, 500, 0},
+                new int[]{commands.get(0), commands.get(1), commands.get(2), commands.get(3), commands.get(4),
+                        commands.get(5), commands.get(6), commands.get(7), commands.get(8), commands.get(9)});
+    }
+
+    @Test
+    public void updatesAndRemovesChunks() {
+        final ChunkCuller culler = new ChunkCuller();
+        for (int z = 1; z <= 100; z++) culler.set(World.key(0, 0, -z), z * 10, 6);
+        culler.set(World.key(0, 0, -1), 7, 3);
+        for (int z = 2; z <= 100; z += 2) culler.remove(World.key(0, 0, -z));
+        culler.remove(World.key(5, 5, 5));
+        assertEquals(50, culler.size());
+
+        assertEquals(50, culler.cull(lookingForward(), 0, 0));
+        final Set<Integer> expected = new HashSet<>();
+        expected.add(7);
+        for (int z = 3; z <= 99; z += 2) expected.add(z * 10);
+        assertEquals(expected, firstIndices(culler));
+    }
+}
@@ -0,0 +1,103 @@
+package graphics;
+
+import engine.World;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkMesherTest {
+    private static final int[] DIRT = {1, 1, 1, 1, 1, 1};
+    private static final int[] STONE = {2, 2, 2, 2, 2, 2};
+
+    /**
+     * Слой 16x16 блоков на высоте 5 в секции (0, 0, 0), id блока выбирается по координате
+     */
+    private static World layer(boolean checkerboard) {
+        final World world = new World();
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) world.set(x, 5, z, 0, checkerboard && (x + z) % 2 != 0 ? STONE : DIRT);
+        }
+        world.sweepFaces(world.chunkKeys());
+        return world;
+    }
+
+    /**
+     * Суммарная площадь прямоугольников геометрии в блоках: вершина c хранит количество повторений текстуры
+     */
+    private static int area(Mesh mesh) {
+        int area = 0;
+        for (int quad = 0; quad < mesh.verticesCount / 4; quad++) {
+            final int c = (quad * 4 + 2) * DataTransformation.VERTEX_SIZE;
+            area += (int) (mesh.cords.get(c + 3) * mesh.cords.get(c + 4));
+        }
+        return area;
+    }
+
+    @Test
+    public void flatLayerIsOneQuadPerSide() {
+        final Mesh mesh = new Mesh();
+        new ChunkMesher().build(layer(false).snapshot(), World.key(0, 0, 0), 0, mesh);
+        assertEquals(6 * 4, mesh.verticesCount);
+        assertEquals(6 * 6, mesh.sizeI);
+        assertEquals(2 * 16 * 16 + 4 * 16, area(mesh));
+    }
+
+    @Test
+    public void checkerboardOfIdsIsNotMerged() {
+        final Mesh mesh = new Mesh();
+        new ChunkMesher().build(layer(true).snapshot(), World.key(0, 0, 0), 0, mesh);
+        final int quads = 2 * 16 * 16 + 4 * 16;
+        assertEquals(quads * 4, mesh.verticesCount);
+        assertEquals(quads * 6, mesh.sizeI);
+        assertEquals(quads, area(mesh));
+    }
+
+    @Test
+    public void separateBlocksKeepAllSides() {
+        final World world = new World();
+        world.set(0, 0, 0, 0, DIRT);
+        world.set(2, 0, 0, 0, DIRT);
+        world.set(1, 1, 0, 0, DIRT);
+        world.sweepFaces(world.chunkKeys());
+        final Mesh mesh = new Mesh();
+        new ChunkMesher().build(world.snapshot(), World.key(0, 0, 0), 0, mesh);
+        assertEquals(3 * 6 * 4, mesh.verticesCount);
+        assertEquals(3 * 6, area(mesh));
+    }
+
+    /**
+     * Распаковка вершины так же, как в packedVertexShader: x, y, z, сторона, u, v, id тайла
+     */
+    private static int[] unpack(int first, int second) {
+        return new int[]{
+                (first << 16) >> 16, (second << 21) >> 21, first >> 16,
+                (second >> 11) & 7, (second >> 14) & 31, (second >> 19) & 31, (second >> 24) & 255
+        };
+    }
+
+    @Test
+    public void packedVertexKeepsFieldsAtRangeBounds() {
+        final int[][] vertices = {
+                {0, 0, 0, 0, 0, 0, 0},
+                {-32768, -1024, -32768, 5, 31, 31, 255},
+                {32767, 1023, 32767, 3, 16, 1, 128},
+                {-1, -1, -1, 2, 0, 16, 17},
+        };
+        for (int[] vertex : vertices) {
+            final int first = ChunkMesher.packPosition(vertex[0], vertex[2]);
+            final int second = ChunkMesher.packAttributes(vertex[1], vertex[3], vertex[4], vertex[5], vertex[6]);
+            assertArrayEquals(vertex, unpack(first, second));
+        }
+    }
+
+    @Test
+    public void packedFieldsDoNotOverlap() {
+        assertEquals(0x0000FFFF, ChunkMesher.packPosition(-1, 0));
+        assertEquals(0xFFFF0000, ChunkMesher.packPosition(0, -1));
+        assertEquals(0x000007FF, ChunkMesher.packAttributes(-1, 0, 0, 0, 0));
+        assertEquals(0x00003800, ChunkMesher.packAttributes(0, 7, 0, 0, 0));
+        assertEquals(0x0007C000, ChunkMesher.packAttributes(0, 0, 31, 0, 0));
+        assertEquals(0x00F80000, ChunkMesher.packAttributes(0, 0, 0, 31, 0));
+        assertEquals(0xFF000000, ChunkMesher.packAttributes(0, 0, 0, 0, 255));
+    }
+}
@@ -0,0 +1,98 @@
+package graphics;
+
+import engine.LightPoint;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LightClustersTest {
+
+    private static LightPoint light(float x, float y, float z) {
+        return new LightPoint(new Vector3f(x, y, z), new Vector4f(1.0f, 1.0f, 1.0f, 1.0f));
+    }
+
+    /**
+     * Номера источников ячейки, содержащей точку
+     */
+    private static Set<Integer> lightsAt(LightClusters clusters, float x, float y, float z) {
+        final Set<Integer> lights = new HashSet<>();
+        final int cluster = clusters.clusterAt(x, y, z);
+        if (cluster == -1) return lights;
+        for (int i = 0; i < clusters.lightCount(cluster); i++) lights.add(clusters.light(cluster, i));
+        return lights;
+    }
+
+    @Test
+    public void everyPointSeesAllLightsWithinRadius() {
+        final Random random = new Random(7);
+        final LightPoint[] lights = new LightPoint[40];
+        for (int i = 0; i < lights.length; i++) {
+            lights[i] = light(random.nextFloat() * 200 - 100, random.nextFloat() * 40, random.nextFloat() * 200 - 100);
+        }
+        final LightClusters clusters = new LightClusters(16, 32.0f, 1 << 16);
+        clusters.build(lights);
+        int total = 0;
+        for (int n = 0; n < 5000; n++) {
+            final float x = random.nextFloat() * 300 - 150, y = random.nextFloat() * 120 - 40, z = random.nextFloat() * 300 - 150;
+            final Set<Integer> found = lightsAt(clusters, x, y, z);
+            for (int i = 0; i < lights.length; i++) {
+                if (lights[i].cord.distance(x, y, z) <= 32.0f) assertTrue(found.contains(i));
+            }
+            total += found.size();
+        }
+        assertTrue(total < 5000 * lights.length / 4, "в ячейках должна быть лишь часть источников");
+    }
+
+    @Test
+    public void clusterListsMatchSphereIntersection() {
+        final LightClusters clusters = new LightClusters(16, 10.0f, 1 << 16);
+        clusters.build(new LightPoint[]{light(8, 8, 8), light(40, 8, 8)});
+        assertEquals(Set.of(0), lightsAt(clusters, 1, 1, 1));
+        assertEquals(Set.of(0, 1), lightsAt(clusters, 20, 8, 8));
+        assertEquals(Set.of(1), lightsAt(clusters, 47, 8, 8));
+        // угол ячейки (16..32, 16..32, 16..32) дальше радиуса от обоих источников
+        assertEquals(Set.of(), lightsAt(clusters, 20, 20, 20));
+        assertEquals(-1, clusters.clusterAt(100, 8, 8));
+        assertEquals(2 * LightClusters.LIGHT_SIZE, clusters.lightsSize());
+    }
+
+    @Test
+    public void emptySetHasNoLights() {
+        final LightClusters clusters = new LightClusters(16, 32.0f, 1 << 16);
+        clusters.build(new LightPoint[]{light(0, 0, 0)});
+        clusters.build(new LightPoint[0]);
+        assertEquals(0, clusters.lightsSize());
+        assertEquals(1, clusters.clusterCount());
+        assertEquals(0, clusters.lightCount(0));
+        assertEquals(LightClusters.HEADER_SIZE + 2, clusters.gridSize());
+    }
+
+    @Test
+    public void distantLightsCoarsenGrid() {
+        final LightClusters clusters = new LightClusters(16, 32.0f, 4096);
+        clusters.build(new LightPoint[]{light(-5000, 0, 0), light(5000, 0, 0)});
+        assertTrue(clusters.clusterCount() <= 4096);
+        assertTrue(clusters.clusterSize() > 16);
+        assertEquals(Set.of(0), lightsAt(clusters, -5000, 0, 0));
+        assertEquals(Set.of(1), lightsAt(clusters, 5000, 0, 0));
+    }
+
+    @Test
+    public void gridHeaderDescribesLayout() {
+        final LightClusters clusters = new LightClusters(16, 8.0f, 1 << 16);
+        clusters.build(new LightPoint[]{light(4, 4, 4)});
+        final int[] grid = clusters.grid();
+        assertArrayEquals(new int[]{-1, -1, -1, 16, 2, 2, 2}, Arrays.copyOf(grid, 7));
+        final int clusterCount = clusters.clusterCount();
+        assertEquals(8, clusterCount);
+        assertEquals(LightClusters.HEADER_SIZE + clusterCount + 1 + 8, clusters.gridSize());
+        assertEquals(8, grid[LightClusters.HEADER_SIZE + clusterCount]);
+    }
+}
@@ -0,0 +1,103 @@
+package graphics;
+
+import engine.Chunk;
+import engine.World;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LodBuilderTest {
+    private static final int[] DIRT = {1, 1, 1, 1, 1, 1};
+    private static final int[] GRASS = {2, 3, 1, 2, 2, 2};
+
+    /**
+     * Сбор блоков секции в построитель
+     */
+    private static LodBuilder collect(World world, long key) {
+        final LodBuilder builder = new LodBuilder();
+        builder.clear();
+        world.forEachInChunk(key, (x, y, z, id, sideIds, faces) -> builder.add(Chunk.index(x, y, z), sideIds));
+        return builder;
+    }
+
+    private static int count(int[] faceIds, int side) {
+        int count = 0;
+        for (int i = side * Chunk.VOLUME; i < (side + 1) * Chunk.VOLUME; i++) if (faceIds[i] != -1) count++;
+        return count;
+    }
+
+    @Test
+    public void thinLayerKeepsItsSurfaceAtEveryLevel() {
+        final World world = new World();
+        for (int x = 0; x < 16; x++) for (int z = 0; z < 16; z++) world.set(x, 5, z, 0, DIRT);
+        final LodBuilder builder = collect(world, World.key(0, 0, 0));
+        final int[] faceIds = new int[6 * Chunk.VOLUME];
+        for (int level = 1; level <= LodBuilder.MAX_LEVEL; level++) {
+            final int size = LodBuilder.size(level);
+            final int faces = builder.build(world, World.key(0, 0, 0), level, faceIds);
+            assertEquals(size * size, count(faceIds, 1));
+            assertEquals(size * size, count(faceIds, 2));
+            assertEquals(2 * size * size + 4 * size, faces);
+        }
+    }
+
+    @Test
+    public void topFaceTakesIdOfTopmostBlock() {
+        final World world = new World();
+        for (int x = 0; x < 16; x++)
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < 3; y++) world.set(x, y, z, 0, DIRT);
+                world.set(x, 3, z, 0, GRASS);
+            }
+        final LodBuilder builder = collect(world, World.key(0, 0, 0));
+        final int[] faceIds = new int[6 * Chunk.VOLUME];
+        builder.build(world, World.key(0, 0, 0), 2, faceIds);
+        final int cell = LodBuilder.index(1, 0, 1, LodBuilder.size(2));
+        assertEquals(3, faceIds[Chunk.VOLUME + cell]);
+        assertEquals(1, faceIds[2 * Chunk.VOLUME + cell]);
+        assertEquals(2, faceIds[5 * Chunk.VOLUME + LodBuilder.index(3, 0, 1, LodBuilder.size(2))]);
+    }
+
+    @Test
+    public void solidNeighbourChunksHideBorderFaces() {
+        final World world = new World();
+        for (int x = -16; x < 32; x++)
+            for (int y = 0; y < 16; y++)
+                for (int z = -16; z < 32; z++) world.set(x, y, z, 0, DIRT);
+        final LodBuilder builder = collect(world, World.key(0, 0, 0));
+        final int[] faceIds = new int[6 * Chunk.VOLUME];
+        final int faces = builder.build(world, World.key(0, 0, 0), 1, faceIds);
+        assertEquals(64 * 2, faces);
+        assertEquals(64, count(faceIds, 1));
+        assertEquals(64, count(faceIds, 2));
+    }
+
+    @Test
+    public void fewerFacesAtCoarserLevels() {
+        final World world = new World();
+        for (int x = 0; x < 16; x++)
+            for (int z = 0; z < 16; z++) {
+                final int height = 4 + (int) (3 * Math.sin(x * 0.7) + 3 * Math.cos(z * 0.5));
+                for (int y = 0; y < height; y++) world.set(x, y, z, 0, DIRT);
+            }
+        world.forEachChunk(world::updateFaces);
+        final int[] full = {0};
+        world.forEachInChunk(World.key(0, 0, 0), (x, y, z, id, sideIds, faces) -> full[0] += Integer.bitCount(faces));
+        final LodBuilder builder = collect(world, World.key(0, 0, 0));
+        final int[] faceIds = new int[6 * Chunk.VOLUME];
+        int previous = full[0];
+        for (int level = 1; level <= LodBuilder.MAX_LEVEL; level++) {
+            final int faces = builder.build(world, World.key(0, 0, 0), level, faceIds);
+            assertTrue(faces < previous, "level " + level + ": " + faces + " >= " + previous);
+            previous = faces;
+        }
+    }
+
+    @Test
+    public void levelGrowsWithDistance() {
+        assertEquals(0, LodBuilder.level(10));
+        assertEquals(1, LodBuilder.level(200));
+        assertEquals(2, LodBuilder.level(300));
+        assertEquals(3, LodBuilder.level(5000));
+    }
+}
@@ -0,0 +1,60 @@
+package graphics;
+
+import engine.BlockStore;
+import engine.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MeshingPoolTest {
+    private static final int[] DIRT = {1, 1, 1, 1, 1, 1};
+
+    /**
+     * Мир из одиночных блоков в секциях (i, 0, 0)
+     */
+    private static BlockStore world(int chunks) {
+        final World world = new World();
+        for (int i = 0; i < chunks; i++) world.set(i * 16, 0, 0, 0, DIRT);
+        return world.snapshot();
+    }
+
+    @Test
+    public void resubmittedChunkKeepsOnlyLatestResult() {
+        final MeshingPool pool = new MeshingPool(0);
+        final BlockStore first = world(1);
+        final World edited = new World();
+        pool.submit(World.key(0, 0, 0), 0, first, 0);
+        pool.submit(World.key(0, 0, 0), 0, edited.snapshot(), 0);
+        assertEquals(1, pool.pending());
+
+        final List<Integer> indices = new ArrayList<>();
+        assertEquals(1, pool.drain(job -> indices.add(job.mesh().sizeI)));
+        assertEquals(List.of(0), indices);
+        assertEquals(0, pool.pending());
+        assertFalse(pool.isPending(World.key(0, 0, 0)));
+    }
+
+    @Test
+    public void workerThreadsBuildEveryChunk() {
+        final MeshingPool pool = new MeshingPool(2);
+        final BlockStore blocks = world(50);
+        for (int i = 0; i < 50; i++) pool.submit(World.key(i, 0, 0), 0, blocks, 50 - i);
+        for (int i = 0; i < 50; i += 2) pool.submit(World.key(i, 0, 0), 0, blocks, 0);
+
+        final List<Long> keys = new ArrayList<>();
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (pool.pending() > 0 && System.nanoTime() < deadline) {
+            pool.drain(job -> {
+                assertEquals(36, job.mesh().sizeI);
+                keys.add(job.key());
+            });
+            Thread.onSpinWait();
+        }
+        pool.shutdown();
+        assertEquals(50, keys.size());
+        assertEquals(50, keys.stream().distinct().count());
+    }
+}
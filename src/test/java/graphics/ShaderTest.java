@@ -0,0 +1,59 @@
+package graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.opengl.GL46.*;
+
+public class ShaderTest {
+
+    @Test
+    public void unchangedValueIsNotUploadedAgain() {
+        final Shader.Uniform uniform = new Shader.Uniform(1, 3, GL_FLOAT_VEC3);
+        assertTrue(uniform.changed(3));
+        assertFalse(uniform.changed(3));
+    }
+
+    @Test
+    public void changedIntValueIsUploaded() {
+        final Shader.Uniform uniform = new Shader.Uniform(1, 2, GL_INT);
+        assertTrue(uniform.changedInt(-1));
+        assertFalse(uniform.changedInt(-1));
+        assertTrue(uniform.changedInt(-2));
+        assertTrue(uniform.changedInt(-8388607));
+        assertTrue(uniform.changedInt(5));
+        assertFalse(uniform.changedInt(5));
+    }
+
+    @Test
+    public void missingUniformNeverUploads() {
+        final Shader.Uniform uniform = new Shader.Uniform(1, -1, GL_FLOAT);
+        assertFalse(uniform.changed(16));
+        assertEquals(-1, uniform.location());
+    }
+
+    @Test
+    public void wrongComponentCountIsRejected() {
+        final Shader.Uniform uniform = new Shader.Uniform(1, 0, GL_FLOAT_MAT4);
+        assertThrows(IllegalArgumentException.class, () -> uniform.changed(3));
+    }
+
+    @Test
+    public void reflectionNamesAndSizes() {
+        assertEquals("lightPos", Shader.baseName("lightPos[0]"));
+        assertEquals("camMatrix", Shader.baseName("camMatrix"));
+        assertEquals(16, Shader.components(GL_FLOAT_MAT4));
+        assertEquals(3, Shader.components(GL_FLOAT_VEC3));
+        assertEquals(1, Shader.components(GL_SAMPLER_2D));
+    }
+
+    @Test
+    public void shaderSourcesLoadFromClasspath() {
+        for (String name : new String[]{"vertexShader", "packedVertexShader", "fragmentShader"}) {
+            assertTrue(Shader.readResource(name).startsWith("#version"));
+        }
+        assertThrows(UncheckedIOException.class, () -> Shader.readResource("missingShader"));
+    }
+}
@@ -0,0 +1,98 @@
+package graphics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextureAtlasTest {
+
+    /**
+     * Карта 2x2 тайла по 4x4 пикселя, все каналы пикселя равны номеру тайла * 10 + x
+     */
+    private static ByteBuffer image() {
+        final ByteBuffer rgba = ByteBuffer.allocateDirect(8 * 8 * 4);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                final int tile = (y / 4) * 2 + x / 4;
+                for (int channel = 0; channel < 4; channel++) rgba.put((y * 8 + x) * 4 + channel, (byte) (tile * 10 + x % 4));
+            }
+        }
+        return rgba;
+    }
+
+    @Test
+    public void tilesBecomeLayersInIdOrder() {
+        final TextureAtlas atlas = TextureAtlas.slice(image(), 8, 8, 2);
+        assertEquals(4, atlas.layers());
+        assertEquals(3, atlas.levels());
+        final ByteBuffer level = atlas.level(0);
+        assertEquals(4 * 4 * 4 * 4, level.capacity());
+        for (int layer = 0; layer < 4; layer++) {
+            for (int pixel = 0; pixel < 16; pixel++) {
+                assertEquals(layer * 10 + pixel % 4, level.get((layer * 16 + pixel) * 4));
+            }
+        }
+    }
+
+    @Test
+    public void mipsAverageTheirLayerOnly() {
+        final TextureAtlas atlas = TextureAtlas.slice(image(), 8, 8, 2);
+        assertEquals(2, atlas.width(1));
+        final ByteBuffer first = atlas.level(1);
+        // уровень 1 слоя 3: среднее x = 0,1 -> 30.5 и x = 2,3 -> 32.5
+        assertEquals(31, first.get((3 * 4) * 4));
+        assertEquals(33, first.get((3 * 4 + 1) * 4));
+        final ByteBuffer last = atlas.level(2);
+        assertEquals(1, atlas.width(2));
+        assertEquals(4 * 4, last.capacity());
+        assertEquals(12, last.get(4));
+    }
+
+    @Test
+    public void cacheRoundTripChecksStamp(@TempDir Path directory) throws IOException {
+        final TextureAtlas atlas = TextureAtlas.slice(image(), 8, 8, 2);
+        final Path cache = directory.resolve("atlas.bin");
+        assertNull(TextureAtlas.read(cache, 1));
+        atlas.write(cache, 42);
+        assertNull(TextureAtlas.read(cache, 43));
+        final TextureAtlas loaded = TextureAtlas.read(cache, 42);
+        assertNotNull(loaded);
+        assertEquals(atlas.layers(), loaded.layers());
+        assertEquals(atlas.levels(), loaded.levels());
+        for (int level = 0; level < atlas.levels(); level++) assertEquals(atlas.level(level), loaded.level(level));
+    }
+
+    @Test
+    public void cacheWithInconsistentHeaderIsIgnored(@TempDir Path directory) throws IOException {
+        final TextureAtlas atlas = TextureAtlas.slice(image(), 8, 8, 2);
+        final Path cache = directory.resolve("atlas.bin");
+        atlas.write(cache, 42);
+        final byte[] bytes = Files.readAllBytes(cache);
+        // количество слоёв в заголовке: при неверном размере файл отвергается до выделения буфера
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(24, Integer.MAX_VALUE);
+        Files.write(cache, bytes);
+        assertNull(TextureAtlas.read(cache, 42));
+        Files.write(cache, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(TextureAtlas.read(cache, 42));
+    }
+
+    @Test
+    public void stampDependsOnTiles(@TempDir Path directory) throws IOException {
+        final Path source = Files.write(directory.resolve("atlas.png"), new byte[]{1, 2, 3});
+        assertEquals(TextureAtlas.stamp(source, 16), TextureAtlas.stamp(source, 16));
+        assertNotEquals(TextureAtlas.stamp(source, 16), TextureAtlas.stamp(source, 8));
+    }
+
+    @Test
+    public void indivisibleAtlasIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TextureAtlas.slice(image(), 8, 8, 3));
+    }
+}
@@ -0,0 +1,85 @@
+package graphics;
+
+import engine.Chunk;
+import engine.World;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisibilityGraphTest {
+    /**
+     * Пирамида видимости камеры в точке eye, смотрящей вдоль -z
+     */
+    private static FrustumIntersection frustum(Vector3f eye) {
+        return new FrustumIntersection(new Matrix4f().perspective((float) Math.toRadians(90), 1f, 0.1f, 10000f)
+                .lookAt(eye, new Vector3f(eye).add(0, 0, -1), new Vector3f(0, 1, 0)));
+    }
+
+    private static Set<Long> traverse(VisibilityGraph graph, long camera, Vector3f eye) {
+        final Set<Long> visible = new HashSet<>();
+        assertTrue(graph.traverse(camera, frustum(eye), visible::add));
+        return visible;
+    }
+
+    @Test
+    public void openWorldSeesEverythingAhead() {
+        final VisibilityGraph graph = new VisibilityGraph();
+        for (int z = -5; z <= 0; z++) graph.set(World.key(0, 0, z), ChunkConnectivity.ALL);
+        final Set<Long> visible = traverse(graph, World.key(0, 0, 0), new Vector3f(8, 8, 8));
+        for (int z = -5; z <= 0; z++) assertTrue(visible.contains(World.key(0, 0, z)));
+        assertFalse(visible.contains(World.key(0, 0, 1)));
+    }
+
+    @Test
+    public void solidWallHidesChunksBehindIt() {
+        final VisibilityGraph graph = new VisibilityGraph();
+        for (int x = -4; x <= 4; x++) {
+            for (int y = -4; y <= 4; y++) {
+                for (int z = -6; z <= 0; z++) graph.set(World.key(x, y, z), ChunkConnectivity.ALL);
+                graph.set(World.key(x, y, -2), 0);
+            }
+        }
+        final Set<Long> visible = traverse(graph, World.key(0, 0, 0), new Vector3f(8, 8, 8));
+        assertTrue(visible.contains(World.key(0, 0, -1)));
+        assertTrue(visible.contains(World.key(0, 0, -2)));
+        assertFalse(visible.contains(World.key(0, 0, -3)));
+        assertFalse(visible.contains(World.key(0, 0, -6)));
+    }
+
+    @Test
+    public void tunnelLeadsThroughWall() {
+        final ChunkConnectivity connectivity = new ChunkConnectivity();
+        final long[] solid = new long[Chunk.VOLUME / 64];
+        for (int index = 0; index < Chunk.VOLUME; index++) {
+            final int x = index & 15, y = index >> 8;
+            if (x < 7 || x > 8 || y < 7 || y > 8) ChunkConnectivity.setSolid(solid, index);
+        }
+        final long tunnel = connectivity.compute(solid);
+
+        final VisibilityGraph graph = new VisibilityGraph();
+        for (int x = -4; x <= 4; x++) {
+            for (int y = -4; y <= 4; y++) {
+                for (int z = -6; z <= 0; z++) graph.set(World.key(x, y, z), ChunkConnectivity.ALL);
+                graph.set(World.key(x, y, -2), 0);
+            }
+        }
+        graph.set(World.key(0, 0, -2), tunnel);
+        final Set<Long> visible = traverse(graph, World.key(0, 0, 0), new Vector3f(8, 8, 8));
+        assertTrue(visible.contains(World.key(0, 0, -3)));
+        assertTrue(visible.contains(World.key(0, 0, -6)));
+        assertFalse(visible.contains(World.key(0, 0, 1)));
+    }
+
+    @Test
+    public void cameraOutsideKnownChunksSkipsTraversal() {
+        final VisibilityGraph graph = new VisibilityGraph();
+        graph.set(World.key(0, 0, 0), 0);
+        assertFalse(graph.traverse(World.key(10, 0, 0), frustum(new Vector3f(168, 8, 8)), key -> fail()));
+    }
+}
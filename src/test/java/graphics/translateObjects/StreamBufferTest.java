@@ -0,0 +1,157 @@
+package graphics.translateObjects;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamBufferTest {
+
+    /**
+     * Поддельный GPU: хранилища в памяти, барьеры проходятся только по команде теста
+     */
+    private static class FakeBackend implements BufferBackend {
+        final Map<Integer, ByteBuffer> buffers = new HashMap<>();
+        final Set<Long> fences = new HashSet<>();
+        final List<Long> awaited = new ArrayList<>();
+        int nextId = 1;
+        long nextFence = 1;
+
+        @Override
+        public int create(long bytes) {
+            buffers.put(nextId, BufferUtils.createByteBuffer((int) bytes));
+            return nextId++;
+        }
+
+        @Override
+        public ByteBuffer map(int id, long bytes) {
+            return buffers.get(id);
+        }
+
+        @Override
+        public void delete(int id) {
+            assertNotNull(buffers.remove(id));
+        }
+
+        @Override
+        public long fence() {
+            fences.add(nextFence);
+            return nextFence++;
+        }
+
+        @Override
+        public boolean await(long fence, long timeout) {
+            assertTrue(fences.contains(fence));
+            awaited.add(fence);
+            return true;
+        }
+
+        @Override
+        public void deleteFence(long fence) {
+            assertTrue(fences.remove(fence));
+        }
+
+        IntBuffer ints(int id) {
+            return buffers.get(id).asIntBuffer();
+        }
+    }
+
+    private static IntBuffer source(int... values) {
+        final IntBuffer buffer = BufferUtils.createIntBuffer(values.length);
+        buffer.put(0, values);
+        return buffer;
+    }
+
+    @Test
+    public void rotatesSegmentsAndWaitsForTheirFences() {
+        final FakeBackend backend = new FakeBackend();
+        final StreamBuffer buffer = new StreamBuffer(backend, 3, 1);
+        final IntBuffer data = source(1, 2, 3, 4);
+
+        buffer.upload(data, 4, 0, 4);
+        assertEquals(6, buffer.capacity());
+        final int[] order = new int[6];
+        for (int frame = 0; frame < 6; frame++) {
+            if (frame > 0) buffer.upload(data, 4, 0, 0);
+            order[frame] = buffer.current();
+            buffer.fence();
+        }
+        assertArrayEquals(new int[]{0, 1, 2, 0, 1, 2}, order);
+        // сегменты 0, 1, 2 при повторном использовании ждут барьеры кадров 0, 1, 2
+        assertEquals(List.of(1L, 2L, 3L), backend.awaited);
+        assertEquals(3, backend.fences.size());
+
+        buffer.delete();
+        assertTrue(backend.fences.isEmpty());
+        assertTrue(backend.buffers.isEmpty());
+    }
+
+    @Test
+    public void copiesOnlyChangedRangesIntoEachSegment() {
+        final FakeBackend backend = new FakeBackend();
+        final StreamBuffer buffer = new StreamBuffer(backend, 2, 1);
+        final IntBuffer data = source(1, 2, 3, 4);
+
+        buffer.upload(data, 4, 0, 4);
+        buffer.upload(data, 4, 0, 0);
+        final IntBuffer memory = backend.ints(buffer.id());
+        final int capacity = buffer.capacity();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 1, memory.get(i));
+            assertEquals(i + 1, memory.get(capacity + i));
+        }
+
+        // изменение попадает в сегмент 0 сразу, а в сегмент 1 - при его следующей записи
+        data.put(2, 30);
+        memory.put(capacity + 3, -1);
+        buffer.upload(data, 4, 2, 3);
+        assertEquals(0, buffer.current());
+        assertEquals(30, memory.get(2));
+        assertEquals(3, memory.get(capacity + 2));
+
+        buffer.upload(data, 4, 0, 0);
+        assertEquals(1, buffer.current());
+        assertEquals(30, memory.get(capacity + 2));
+        // значения вне изменённых диапазонов не перезаписываются
+        assertEquals(-1, memory.get(capacity + 3));
+        assertEquals(capacity, buffer.offset());
+    }
+
+    @Test
+    public void growsStorageAndRewritesAllSegments() {
+        final FakeBackend backend = new FakeBackend();
+        final StreamBuffer buffer = new StreamBuffer(backend, 2, 9);
+        final FloatBuffer data = BufferUtils.createFloatBuffer(40);
+        for (int i = 0; i < 40; i++) data.put(i, i);
+
+        buffer.upload(data, 18, 0, 18);
+        buffer.fence();
+        final int firstId = buffer.id();
+        assertEquals(27, buffer.capacity());
+
+        buffer.upload(data, 40, 18, 40);
+        buffer.fence();
+        assertNotEquals(firstId, buffer.id());
+        assertFalse(backend.buffers.containsKey(firstId));
+        assertEquals(0, buffer.capacity() % 9);
+        assertTrue(buffer.capacity() >= 40);
+        assertEquals(0, buffer.current());
+
+        buffer.upload(data, 40, 0, 0);
+        final FloatBuffer memory = backend.buffers.get(buffer.id()).asFloatBuffer();
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, memory.get(i));
+            assertEquals(i, memory.get(buffer.capacity() + i));
+        }
+    }
+}